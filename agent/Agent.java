@@ -21,6 +21,9 @@ public class Agent extends AgentImpl {
 	
     public static final int NUM_DAYS = 5;
     public static final int NUM_CLIENTS = 8;
+
+    // Milliseconds the package search may take before settling for the best packages found
+    private static final long PACKAGE_SEARCH_TIME = 1000;
     
     private Client[] clients;
     private List<Package> packages;
@@ -37,15 +40,25 @@ public class Agent extends AgentImpl {
     private EntertainmentAgent entertainmentAgent;
     
     // Auctions //
-    private Map<Pair<Boolean>, FlightAuction> flightAuctions;
-    private Map<Pair<Boolean>, HotelAuction> hotelAuctions;
-    private Map<Pair<EntertainmentType>, EntertainmentAuction> entertainmentAuctions;
+    private AuctionRegistry auctions;
+
+    private final StrategyParameters parameters = new StrategyParameters();
+    private boolean hotelHistoryDecayed;
 
     public static void logMessage(String identifier, String message) {
     	Logger.getLogger(identifier).info(message);
     }
     
     protected void init(ArgEnumerator args) {
+        AgentLogger.setThresholds(agent.getConfig("logThresholds", null));
+        // The configuration is only available while initialising
+        for (String name : StrategyParameters.NAMES) {
+            String value = agent.getConfig(StrategyParameters.CONFIG_PREFIX + name, null);
+            if (value != null) {
+                parameters.set(name, value);
+            }
+        }
+        hotelHistoryDecayed = "true".equals(agent.getConfig("hotelHistoryDecayed", "false"));
         mainLogger.log("Initialising", AgentLogger.INFO);
     }
 
@@ -58,19 +71,19 @@ public class Agent extends AgentImpl {
         hotelBookings = new ArrayList<HotelBooking>();
         entertainmentTickets = new ArrayList<EntertainmentTicket>();
 
-        for (FlightAuction auction : flightAuctions.values()) {
+        for (FlightAuction auction : auctions.getFlightAuctions()) {
             for (int i = 0; i < agent.getOwn(auction.getAuctionID()); i++) {
                 flightTickets.add(auction.getBuyable());
             }
         }
 
-        for (HotelAuction auction : hotelAuctions.values()) {
+        for (HotelAuction auction : auctions.getHotelAuctions()) {
             for (int i = 0; i < agent.getOwn(auction.getAuctionID()); i++) {
                 hotelBookings.add(auction.getBuyable());
             }
         }
 
-        for (EntertainmentAuction auction : entertainmentAuctions.values()) {
+        for (EntertainmentAuction auction : auctions.getEntertainmentAuctions()) {
             for (int i = 0; i < agent.getOwn(auction.getAuctionID()); i++) {
                 entertainmentTickets.add(auction.getBuyable());
             }
@@ -79,6 +92,8 @@ public class Agent extends AgentImpl {
 
     public void gameStarted() {
         mainLogger.log("Game started");
+        WatcherMetrics.getDefault().reset();
+        WatcherMetrics.getDefault().setLogger(mainLogger.getSublogger("watchers"));
         
         // Create auctions
         createAuctions();
@@ -111,6 +126,8 @@ public class Agent extends AgentImpl {
         flightAgent.gameStopped();
         hotelAgent.gameStopped();
         entertainmentAgent.gameStopped();
+
+        mainLogger.getSublogger("watchers").log(WatcherMetrics.getDefault().format());
         
         mainLogger.save();
     }
@@ -142,280 +159,128 @@ public class Agent extends AgentImpl {
         return agent.getGameTime();
     }
 
-    // Return list of possible entertainment ticket allocations
-    private List<EntertainmentType[]> getTicketAllocations(
-        Set<Integer> days, Set<EntertainmentType> types) {
-        List<EntertainmentType[]> allocs = new ArrayList<EntertainmentType[]>();
-
-        if (types.size() > 0 && days.size() > 0) {
-            // For a ticket type, allocate it each possible day
-            for (EntertainmentType type : types) {
-                Set<EntertainmentType> lessTypes = 
-                    new HashSet<EntertainmentType>(types);
-                lessTypes.remove(type);
-                for (int day : days) {
-                    Set<Integer> lessDays = new HashSet<Integer>(days);
-                    lessDays.remove(day);
-                    List<EntertainmentType[]> newAllocs = 
-                        getTicketAllocations(lessDays, lessTypes);
-                    
-                    for (EntertainmentType[] alloc : newAllocs) {
-                        alloc[day] = type;
-                    }
-                    allocs.addAll(newAllocs);
-                }
-            }
-        } else {
-            allocs.add(new EntertainmentType[NUM_DAYS + 1]);
-        }
-
-        return allocs;
+    /** @return the slowest auction watchers, shown in the agent display. */
+    public String getStatus() {
+        return WatcherMetrics.getDefault().getSummary(3);
     }
 
-    // Return expected profit on this package
-    private float getPackageOutcome(Package pack, 
-            int[] arriveStock,
-            int[] departStock,
-            boolean towers,
-            int[] hotelStock,
-            Map<EntertainmentType, int[]> entStock) {
-
-        float probFlight = 1f;
-        float costFlight = 0f;
-
-        // If a ticket or booking is already stocked, prob=1 and cost=0 so
-        // we can skip it.
-
-        // Get flight probabilities
-        int arrive = pack.getArrivalDay();
-        if (arriveStock[arrive] <= 0) {
-            probFlight *= flightAgent.purchaseProbability(getFlightAuction(arrive, true));
-            costFlight += flightAgent.estimatedPrice(getFlightAuction(arrive, true));
-        }
+    /** @return the constants of the strategy, as configured. */
+    public StrategyParameters getParameters() {
+        return parameters;
+    }
 
-        int depart = pack.getDepartureDay();
-        if (departStock[depart] <= 0) {
-            probFlight *= flightAgent.purchaseProbability(getFlightAuction(depart, false));
-            costFlight += flightAgent.estimatedPrice(getFlightAuction(depart, false));
-        }
+    /** @return whether recent games should weigh more in the hotel price history. */
+    public boolean isHotelHistoryDecayed() {
+        return hotelHistoryDecayed;
+    }
 
-        // Get hotel probabilities
-        float probHotel = 1f;
-        float costHotel = 0f;
-        for (int day = arrive; day < depart; day++) {
-            if (hotelAgent.isAuctionClosed(getHotelAuction(day, towers))) {
-                // This is impossible, return loss
-                return -1f;
-            }
-            if (hotelStock[day] <= 0) {
-                probHotel *= hotelAgent.purchaseProbability(getHotelAuction(day, towers));
-                costHotel += hotelAgent.estimatedPrice(getHotelAuction(day, towers));
+    private PackageModel createPackageModel() {
+        PackageModel model = new PackageModel(clients, flightTickets, hotelBookings, entertainmentTickets,
+            parameters.getTravelPenalty());
+        for (int day = 1; day <= NUM_DAYS; day++) {
+            if (day > 1) {
+                FlightAuction auction = getFlightAuction(day, false);
+                model.setFlight(day, false, flightAgent.estimatedPrice(auction),
+                    flightAgent.purchaseProbability(auction));
             }
-        }
-
-        // Get entertainment probabilities
-        float funBonus = 0f;
 
-        // Get all possible ticket allocations
-        Set<Integer> days = new HashSet<Integer>();
-        for (int day = arrive; day < depart; day ++) {
-            days.add(day);
-        }
-        Set<EntertainmentType> types = new HashSet<EntertainmentType>();
-        for (EntertainmentType type : EntertainmentType.values()) {
-            types.add(type);
-        }
-        List<EntertainmentType[]> allocs = getTicketAllocations(days, types);
-
-        for (EntertainmentType[] alloc : allocs) {
-            float valueThis = 0f;
-            for (int day = 1; day <= NUM_DAYS; day++) {
-                if (alloc[day] != null) {
-                    float price = entertainmentAgent.estimatedPrice(
-                        getEntertainmentAuction(day, alloc[day]));
-                    float bonus = pack.getClient().getEntertainmentPremium(alloc[day]);
-
-                    // If in stock, costs nothing
-                    boolean inStock = entStock.get(alloc[day])[day] > 0;
-                    float prob;
-                    if (inStock) {
-                        price = 0f;
-                        prob = 1f;
-                    } else {
-                        prob = entertainmentAgent.purchaseProbability(
-                            getEntertainmentAuction(day, alloc[day]));
-                    }
-
-                    // Only buy this ticket if it benefits us
-                    if (bonus > price) {
-                        valueThis += (bonus - price) * prob;
-                    }
+            if (day < NUM_DAYS) {
+                FlightAuction auction = getFlightAuction(day, true);
+                model.setFlight(day, true, flightAgent.estimatedPrice(auction),
+                    flightAgent.purchaseProbability(auction));
+
+                for (boolean towers : new boolean[] { true, false }) {
+                    HotelAuction hotel = getHotelAuction(day, towers);
+                    model.setHotel(day, towers, hotelAgent.estimatedPrice(hotel),
+                        hotelAgent.purchaseProbability(hotel), hotelAgent.isAuctionClosed(hotel));
+                }
 
+                for (EntertainmentType type : EntertainmentType.values()) {
+                    EntertainmentAuction ent = getEntertainmentAuction(day, type);
+                    model.setEntertainment(day, type, entertainmentAgent.estimatedPrice(ent),
+                        entertainmentAgent.purchaseProbability(ent));
                 }
             }
-            
-            if (valueThis > funBonus) {
-                funBonus = valueThis;
-            }
         }
-
-        // Three outcomes: we buy the package at the estimated price with TT or
-        // SS, OR we don't, but we still pay some cost for buying some things
-        // (assume half cost of package).
-        // Extra penalty for using days outside wanted holiday.
-        // This is to deal with problems with clients 'stealing' one another's
-        // booking and tickets.
-        float profit = pack.potentialUtility(towers, 100) + funBonus;
-        float cost = costHotel + costFlight;
-
-        float outcome = 
-            probFlight * probHotel * (profit - cost) - 
-            (1f - probFlight) * (1f - probHotel) * cost / 2f;
-        return outcome;
+        return model;
     }
 
     private void createPackages() {
-        // Create packages
-        packages = new ArrayList<Package>();
-
-        // Create a stock of owned tickets and bookings that could be allocated
-        int[] arriveStock = new int[NUM_DAYS + 1];
-        int[] departStock = new int[NUM_DAYS + 1];
-        int[] ttStock = new int[NUM_DAYS + 1];
-        int[] ssStock = new int[NUM_DAYS + 1];
-        Map<EntertainmentType, int[]> entStock = 
-            new HashMap<EntertainmentType, int[]>();
-
-        for (EntertainmentType type : EntertainmentType.values()) {
-            entStock.put(type, new int[NUM_DAYS + 1]);
-        }
+        // Take a copy of the stock and of the subagents' price estimates
+        packages = createPackages(createPackageModel(), PACKAGE_SEARCH_TIME, mainLogger);
+    }
 
-        for (int day = 0; day <= NUM_DAYS; day ++) {
-            arriveStock[day] = 0;
-            departStock[day] = 0;
-            ttStock[day] = 0;
-            ssStock[day] = 0;
-            for (EntertainmentType type : EntertainmentType.values()) {
-                entStock.get(type)[day] = 0;
+    /**
+     * Chooses the packages for all clients of the model within the search time, logging the stock and the chosen
+     * allocations if the logger logs information.
+     */
+    public static List<Package> createPackages(PackageModel model, long searchTime, AgentLogger logger) {
+        int[] stock = model.getStock();
+        boolean logging = logger.isLoggable(AgentLogger.INFO);
+
+        logger.log("Creating packages:");
+
+        if (logging) {
+            logger.log("Stock:");
+            logger.log("Type\tIn\tout\tTT\t\tSS\t\tE1\tE2\tE3");
+            for (int day = 1; day <= NUM_DAYS; day ++) {
+                boolean ttClosed, ssClosed;
+                if (day < 5) {
+                    ttClosed = model.isHotelClosed(day, true);
+                    ssClosed = model.isHotelClosed(day, false);
+                } else {
+                    ttClosed = true;
+                    ssClosed = true;
+                }
+                logger.log(""+day+"\t"+model.getArriveStock(stock, day)+"\t"+model.getDepartStock(stock, day)+
+                    "\t"+model.getHotelStock(stock, day, true)+"\t"+(ttClosed ? "closed" : "open")+
+                    "\t"+model.getHotelStock(stock, day, false)+"\t"+(ssClosed ? "closed" : "open")+"\t"+
+                    model.getEntertainmentStock(stock, day, EntertainmentType.fromValue(1))+"\t"+
+                    model.getEntertainmentStock(stock, day, EntertainmentType.fromValue(2))+"\t"+
+                    model.getEntertainmentStock(stock, day, EntertainmentType.fromValue(3)));
             }
         }
 
-        for (FlightTicket ticket : flightTickets) {
-            int[] stock = ticket.isArrival() ? arriveStock : departStock;
-            stock[ticket.getDay()] += 1;
-        }
-
-        for (HotelBooking booking : hotelBookings) {
-            int[] stock = booking.towers ? ttStock : ssStock;
-            stock[booking.getDay()] += 1;
-        }
-
-        for (EntertainmentTicket ticket : entertainmentTickets) {
-            entStock.get(ticket.getType())[ticket.getDay()] += 1;
-        }
-
-        mainLogger.log("Creating packages:");
-
-        mainLogger.log("Stock:");
-        mainLogger.log("Type\tIn\tout\tTT\t\tSS\t\tE1\tE2\tE3");
-        for (int day = 1; day <= NUM_DAYS; day ++) {
-            boolean ttClosed, ssClosed;
-            if (day < 5) {
-                ttClosed = hotelAgent.isAuctionClosed(getHotelAuction(day, true));
-                ssClosed = hotelAgent.isAuctionClosed(getHotelAuction(day, false));
-            } else {
-                ttClosed = true;
-                ssClosed = true;
-            }
-            mainLogger.log(""+day+"\t"+arriveStock[day]+"\t"+departStock[day]+
-                "\t"+ttStock[day]+"\t"+(ttClosed ? "closed" : "open")+
-                "\t"+ssStock[day]+"\t"+(ssClosed ? "closed" : "open")+"\t"+
-                entStock.get(EntertainmentType.fromValue(1))[day]+"\t"+
-                entStock.get(EntertainmentType.fromValue(2))[day]+"\t"+
-                entStock.get(EntertainmentType.fromValue(3))[day]);
+        // Choose the packages for all clients together, starting from the
+        // best package for each client in turn
+        PackageOptimizer optimizer = new PackageOptimizer(model);
+        int[] options = optimizer.optimize(searchTime);
+        List<Package> packages = optimizer.getPackages(options);
+        if (!logging) {
+            return packages;
         }
 
-        mainLogger.log("Allocations:");
-        mainLogger.log("id\tHotel\tE1\tE2\tE3\tIn\tOut\tSetIn\tSetOut\tOutcome");
+        double greedyValue = optimizer.getValue(optimizer.greedy());
+        float[] outcomes = optimizer.getOutcomes(options);
+        logger.log("Expected outcome " + optimizer.getValue(options) + " (client by client "
+            + greedyValue + ")" + (optimizer.isTimedOut() ? ", search stopped at deadline" : ""));
 
-        for (int i = 0; i < clients.length; i++) {
-            // Select viable packages with highest expected outcome
-            Package bestPackage = null;
-            float bestOutcome = 0;
-            boolean bestTowers = false;
-
-            for (int arrive = 1; arrive <= NUM_DAYS-1; arrive++) {
-                for (int depart = arrive + 1; depart <= NUM_DAYS; depart++) {
-                    Package pack = new Package(clients[i], arrive, depart);
-
-                    // Calculate expected outcome of package
-                    // With good hotel
-                    float outcomeTT = getPackageOutcome(pack, 
-                        arriveStock, departStock, true, ttStock, entStock);
-
-                    if (outcomeTT > bestOutcome) {
-                        bestOutcome = outcomeTT;
-                        bestPackage = pack;
-                        bestTowers = true;
-                    }
-
-                    // With cheap hotel
-                    float outcomeSS = getPackageOutcome(pack,
-                        arriveStock, departStock, false, ssStock, entStock);
-
-                    if (outcomeSS > bestOutcome) {
-                        bestOutcome = outcomeSS;
-                        bestPackage = pack;
-                        bestTowers = false;
-                    }
-                }
-            }
+        logger.log("Allocations:");
+        logger.log("id\tHotel\tE1\tE2\tE3\tIn\tOut\tSetIn\tSetOut\tOutcome");
 
-            // If package is null, no good package can be found,
+        for (int i = 0; i < model.getNumClients(); i++) {
+            // If there is no package, no good package can be found,
             // so we forget this client.
             String setIn;
             String setOut;
-            if (bestPackage == null) {
+            if (options[i] == PackageModel.NO_OPTION) {
                 setIn = "_";
                 setOut = "_";
             } else {
-                setIn = Integer.toString(bestPackage.getArrivalDay());
-                setOut = Integer.toString(bestPackage.getDepartureDay());
-
-                packages.add(bestPackage);
-
-                // Remove any used stock
-                int arrive = bestPackage.getArrivalDay();
-                int depart = bestPackage.getDepartureDay();
-                arriveStock[arrive] -= 1;
-                departStock[depart] -= 1;
-
-                int[] stock = bestTowers ? ttStock : ssStock;
-                for (int day = arrive; day < depart; day++) {
-                    stock[day] -= 1;
-                }
-
-                // Remove from first ticket type with stock left
-                int numDays = Math.min(depart - arrive, 3);
-                for (int day = 0; day < numDays; day++) {
-                    for (int[] ent : entStock.values()) {
-                        if (ent[arrive+day] > 0) {
-                            ent[arrive+day] -= 1;
-                            break;
-                        }
-                    }
-                }
+                setIn = Integer.toString(PackageModel.getArrivalDay(options[i]));
+                setOut = Integer.toString(PackageModel.getDepartureDay(options[i]));
             }
 
-            mainLogger.log(""+i+"\t"+clients[i].getHotelPremium()+"\t"+
-                clients[i].getEntertainmentPremium(EntertainmentType.fromValue(1))+"\t"+
-                clients[i].getEntertainmentPremium(EntertainmentType.fromValue(2))+"\t"+
-                clients[i].getEntertainmentPremium(EntertainmentType.fromValue(3))+"\t"+
-                clients[i].getPreferredArrivalDay()+"\t"+
-                clients[i].getPreferredDepartureDay()+"\t"+
-                setIn+"\t"+ setOut+"\t"+bestOutcome);
+            Client client = model.getClient(i);
+            logger.log(""+i+"\t"+client.getHotelPremium()+"\t"+
+                client.getEntertainmentPremium(EntertainmentType.fromValue(1))+"\t"+
+                client.getEntertainmentPremium(EntertainmentType.fromValue(2))+"\t"+
+                client.getEntertainmentPremium(EntertainmentType.fromValue(3))+"\t"+
+                client.getPreferredArrivalDay()+"\t"+
+                client.getPreferredDepartureDay()+"\t"+
+                setIn+"\t"+ setOut+"\t"+outcomes[i]);
         }
-
+        return packages;
     }
 
     private void fulfillPackages() {
@@ -433,52 +298,23 @@ public class Agent extends AgentImpl {
 
     private void createAuctions() {
     	mainLogger.log("Creating auctions");
-        flightAuctions = new HashMap<Pair<Boolean>, FlightAuction>();
-        hotelAuctions = new HashMap<Pair<Boolean>, HotelAuction>();
-        entertainmentAuctions = 
-            new HashMap<Pair<EntertainmentType>, EntertainmentAuction>();
-
-        for (int day = 1; day <= NUM_DAYS; day++) {
-            
-            if (day > 1) {
-                flightAuctions.put(new Pair<Boolean>(day,false), new FlightAuction(agent, day, false));
-            }
-
-            if (day < NUM_DAYS) {
-                flightAuctions.put(new Pair<Boolean>(day,true), new FlightAuction(agent, day, true));
-                hotelAuctions.put(new Pair<Boolean>(day,false), new HotelAuction(agent, day, false));
-                hotelAuctions.put(new Pair<Boolean>(day,true), new HotelAuction(agent, day, true));
-
-                for (EntertainmentType type : EntertainmentType.values()) {
-                    entertainmentAuctions.put(new Pair<EntertainmentType>(day,type), 
-                        new EntertainmentAuction(agent, day, type));
-                }
-            }
-        }
+        auctions = new AuctionRegistry(agent);
     }
 
     private Auction<?> getAuctionByID(int auctionID) {
-        int day = TACAgent.getAuctionDay(auctionID);
-        int type = TACAgent.getAuctionType(auctionID);
-        switch (TACAgent.getAuctionCategory(auctionID)) {
-            case TACAgent.CAT_FLIGHT:
-                return getFlightAuction(day, type==TACAgent.TYPE_INFLIGHT);
-            case TACAgent.CAT_HOTEL:
-                return getHotelAuction(day, type==TACAgent.TYPE_GOOD_HOTEL);
-            case TACAgent.CAT_ENTERTAINMENT:
-                return getEntertainmentAuction(day, 
-                    EntertainmentType.fromValue(type));
-            default:
-                throw new IllegalArgumentException("auctionID is invalid");
-        }
+        return auctions.getAuction(auctionID);
+    }
+
+    public AuctionRegistry getAuctions() {
+        return auctions;
     }
 
     public FlightAuction getFlightAuction(int day, boolean arrival) {
-        return flightAuctions.get(new Pair<Boolean>(day,arrival));
+        return auctions.getFlightAuction(day, arrival);
     }
 
     public HotelAuction getHotelAuction(int day, boolean tt) {
-        return hotelAuctions.get(new Pair<Boolean>(day,tt));
+        return auctions.getHotelAuction(day, tt);
     }
 
     public EntertainmentAuction getEntertainmentAuction(EntertainmentTicket ticket) {
@@ -486,7 +322,7 @@ public class Agent extends AgentImpl {
     }
 
     public EntertainmentAuction getEntertainmentAuction(int day, EntertainmentType type) {
-        return entertainmentAuctions.get(new Pair<EntertainmentType>(day,type));
+        return auctions.getEntertainmentAuction(day, type);
     }
 
     /** Called when new information about the quotes on the auction (quote.getAuction()) arrives. */
@@ -500,6 +336,24 @@ public class Agent extends AgentImpl {
     public void quoteUpdated(int auctionCategory) {
     }
 
+    /** Called once per round of quotes with the quotes of all auctions. Each
+     * {@link agent.Auction.SnapshotWatcher} of an updated auction is told once, however
+     * many of its auctions were updated. */
+    public void quotesUpdated(QuoteSnapshot snapshot) {
+        Set<Auction.SnapshotWatcher> snapshotWatchers =
+            new LinkedHashSet<Auction.SnapshotWatcher>();
+        for (int auction = 0; auction < snapshot.getAuctionCount(); auction++) {
+            if (snapshot.isUpdated(auction)) {
+                getAuctionByID(auction).collectSnapshotWatchers(snapshotWatchers);
+            }
+        }
+        for (Auction.SnapshotWatcher watcher : snapshotWatchers) {
+            long start = System.nanoTime();
+            watcher.auctionQuotesUpdated(snapshot);
+            WatcherMetrics.getDefault().record(WatcherMetrics.Event.QUOTES, watcher, start);
+        }
+    }
+
     /** Called when the TACAgent has received an answer on a bid query/submission
      * (new information about the bid is available)
      */
@@ -528,28 +382,3 @@ public class Agent extends AgentImpl {
     }
 
 }
-
-class Pair<T> {
-
-	private int i;
-	private T t;
-	
-	public Pair(int i, T t) {
-		this.i = i;
-		this.t = t;
-	}
-	
-	@SuppressWarnings("unchecked")
-	@Override
-	public boolean equals(Object o) {
-		if (getClass() != o.getClass())
-			return false;
-		return (this.i == ((Pair<T>)o).i) && (this.t.equals(((Pair<T>)o).t));
-	}
-	
-	@Override
-	public int hashCode() {
-		return (t.hashCode() * Agent.NUM_DAYS + i);
-	}
-
-}
@@ -2,6 +2,7 @@ package agent;
 
 import se.sics.tac.aw.BidString;
 import se.sics.tac.aw.Quote;
+import se.sics.tac.aw.QuoteSnapshot;
 import se.sics.tac.aw.TACAgent;
 import se.sics.tac.aw.Transaction;
 
@@ -13,6 +14,7 @@ public abstract class Auction<T extends Buyable> {
     private boolean awaitingConfirmation = false;
     private TACAgent agent;
     private Quote mostRecentQuote;
+    private final WatcherMetrics metrics = WatcherMetrics.getDefault();
     
     protected int day;
     
@@ -46,7 +48,18 @@ public abstract class Auction<T extends Buyable> {
     public void fireQuoteUpdated(Quote quote) {
         mostRecentQuote = quote;
         for (Watcher watcher : watchers) {
+            long start = System.nanoTime();
             watcher.auctionQuoteUpdated(this, quote);
+            metrics.record(WatcherMetrics.Event.QUOTE, watcher, start);
+        }
+    }
+
+    /** Add the {@link agent.Auction.SnapshotWatcher}s of this auction to the given set. */
+    public void collectSnapshotWatchers(Set<SnapshotWatcher> snapshotWatchers) {
+        for (Watcher watcher : watchers) {
+            if (watcher instanceof SnapshotWatcher) {
+                snapshotWatchers.add((SnapshotWatcher) watcher);
+            }
         }
     }
 
@@ -54,21 +67,27 @@ public abstract class Auction<T extends Buyable> {
         activeBids = new BidMap(workingBids);
         awaitingConfirmation = false;
         for (Watcher watcher : watchers) {
+            long start = System.nanoTime();
             watcher.auctionBidUpdated(this, bidString);
+            metrics.record(WatcherMetrics.Event.BID_UPDATED, watcher, start);
         }
     }
 
     public void fireBidRejected(BidString bidString) {
         awaitingConfirmation = false;
         for (Watcher watcher : watchers) {
+            long start = System.nanoTime();
             watcher.auctionBidRejected(this, bidString);
+            metrics.record(WatcherMetrics.Event.BID_REJECTED, watcher, start);
         }
     }
 
     public void fireBidError(BidString bidString, int error) {
         awaitingConfirmation = false;
         for (Watcher watcher : watchers) {
+            long start = System.nanoTime();
             watcher.auctionBidError(this, bidString, error);
+            metrics.record(WatcherMetrics.Event.BID_ERROR, watcher, start);
         }
     }
 
@@ -79,14 +98,18 @@ public abstract class Auction<T extends Buyable> {
         }
 
         for (Watcher watcher : watchers) {
+            long start = System.nanoTime();
             watcher.auctionBuySuccessful(this, buyables);
+            metrics.record(WatcherMetrics.Event.BUY, watcher, start);
             if (buyables.isEmpty()) break;
         }
     }
 
     private void fireSellSuccessful(Transaction transaction) {
         for (Watcher watcher : watchers) {
+            long start = System.nanoTime();
             watcher.auctionSellSuccessful(this, -transaction.getQuantity());
+            metrics.record(WatcherMetrics.Event.SELL, watcher, start);
         }
     }
 
@@ -100,7 +123,9 @@ public abstract class Auction<T extends Buyable> {
 
     public void fireClosed() {
         for (Watcher watcher : watchers) {
+            long start = System.nanoTime();
             watcher.auctionClosed(this);
+            metrics.record(WatcherMetrics.Event.CLOSED, watcher, start);
         }
     }
 
@@ -122,6 +147,18 @@ public abstract class Auction<T extends Buyable> {
         public void auctionClosed(Auction<?> auction);
     }
 
+    /** A {@link agent.Auction.Watcher} that also wants to know when a whole round of quotes has arrived.
+     * Watchers of several auctions are only told once per round, so this is the place to recompute bids.
+     */
+    public interface SnapshotWatcher extends Watcher {
+        /** Called once per round of quotes if any of the watched auctions received a new quote.
+         *
+         * @param snapshot The quotes of all auctions. Use {@link se.sics.tac.aw.QuoteSnapshot#isUpdated(int)}
+         *                 to see which auctions were updated in this round.
+         */
+        public void auctionQuotesUpdated(QuoteSnapshot snapshot);
+    }
+
     /** Clear the bid string currently being built. Changes are not submitted until submitBid is called.
      *
      * @throws BidInUseException if the previously submitted bid has not yet been confirmed.
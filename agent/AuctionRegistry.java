@@ -0,0 +1,99 @@
+package agent;
+
+import agent.entertainment.EntertainmentAuction;
+import agent.entertainment.EntertainmentType;
+import agent.flight.FlightAuction;
+import agent.hotel.HotelAuction;
+import se.sics.tac.aw.TACAgent;
+
+import java.util.*;
+
+/** Holds the {@link agent.Auction}s of a game in an array indexed by the TAC auction number
+ * (see {@link se.sics.tac.aw.TACAgent#getAuctionFor(int, int, int)}), so looking up an auction
+ * by ID or by day and type is an array read.
+ */
+public class AuctionRegistry {
+
+    private final Auction<?>[] auctions = new Auction<?>[TACAgent.getAuctionNo()];
+
+    private final List<FlightAuction> flightAuctions = new ArrayList<FlightAuction>();
+    private final List<HotelAuction> hotelAuctions = new ArrayList<HotelAuction>();
+    private final List<EntertainmentAuction> entertainmentAuctions =
+        new ArrayList<EntertainmentAuction>();
+
+    /** Create the auctions of a TAC Classic game. */
+    public AuctionRegistry(TACAgent agent) {
+        for (int day = 1; day <= Agent.NUM_DAYS; day++) {
+            if (day > 1) {
+                register(new FlightAuction(agent, day, false));
+            }
+
+            if (day < Agent.NUM_DAYS) {
+                register(new FlightAuction(agent, day, true));
+                register(new HotelAuction(agent, day, false));
+                register(new HotelAuction(agent, day, true));
+
+                for (EntertainmentType type : EntertainmentType.values()) {
+                    register(new EntertainmentAuction(agent, day, type));
+                }
+            }
+        }
+    }
+
+    private void register(Auction<?> auction) {
+        auctions[auction.getAuctionID()] = auction;
+        if (auction instanceof FlightAuction) {
+            flightAuctions.add((FlightAuction) auction);
+        } else if (auction instanceof HotelAuction) {
+            hotelAuctions.add((HotelAuction) auction);
+        } else {
+            entertainmentAuctions.add((EntertainmentAuction) auction);
+        }
+    }
+
+    public Auction<?> getAuction(int auctionID) {
+        if (auctionID < 0 || auctionID >= auctions.length) {
+            throw new IllegalArgumentException("auctionID is invalid");
+        }
+        return auctions[auctionID];
+    }
+
+    /** @return the flight auction, or null if there is no such flight (arrivals on day 5 or departures on day 1). */
+    public FlightAuction getFlightAuction(int day, boolean arrival) {
+        if (arrival ? (day < 1 || day >= Agent.NUM_DAYS) : (day <= 1 || day > Agent.NUM_DAYS)) {
+            return null;
+        }
+        return (FlightAuction) auctions[TACAgent.getAuctionFor(TACAgent.CAT_FLIGHT,
+            arrival ? TACAgent.TYPE_INFLIGHT : TACAgent.TYPE_OUTFLIGHT, day)];
+    }
+
+    /** @return the hotel auction, or null if the day has no hotel auction. */
+    public HotelAuction getHotelAuction(int day, boolean tt) {
+        if (day < 1 || day >= Agent.NUM_DAYS) {
+            return null;
+        }
+        return (HotelAuction) auctions[TACAgent.getAuctionFor(TACAgent.CAT_HOTEL,
+            tt ? TACAgent.TYPE_GOOD_HOTEL : TACAgent.TYPE_CHEAP_HOTEL, day)];
+    }
+
+    /** @return the entertainment auction, or null if the day has no entertainment auction. */
+    public EntertainmentAuction getEntertainmentAuction(int day, EntertainmentType type) {
+        if (day < 1 || day >= Agent.NUM_DAYS) {
+            return null;
+        }
+        return (EntertainmentAuction) auctions[TACAgent.getAuctionFor(
+            TACAgent.CAT_ENTERTAINMENT, type.getValue(), day)];
+    }
+
+    public List<FlightAuction> getFlightAuctions() {
+        return Collections.unmodifiableList(flightAuctions);
+    }
+
+    public List<HotelAuction> getHotelAuctions() {
+        return Collections.unmodifiableList(hotelAuctions);
+    }
+
+    public List<EntertainmentAuction> getEntertainmentAuctions() {
+        return Collections.unmodifiableList(entertainmentAuctions);
+    }
+}
@@ -0,0 +1,291 @@
+package agent;
+
+import agent.entertainment.EntertainmentTicket;
+import agent.entertainment.EntertainmentType;
+import agent.flight.FlightTicket;
+import agent.hotel.HotelBooking;
+
+import java.util.*;
+
+/**
+ * The information needed to value a package: the clients, the stock of owned goods and the estimated price and
+ * purchase probability of everything that could be bought, copied from the subagents when packages are created.
+ *
+ * A package option is one of the {@link #NUM_OPTIONS} choices of (arrival day, departure day, hotel). Stock is kept
+ * in an int array of {@link #STOCK_SIZE} so that it can be cheaply copied while searching.
+ */
+public class PackageModel {
+
+    /** No package for the client */
+    public static final int NO_OPTION = -1;
+
+    // Stock array layout, each part indexed by day
+    static final int ARRIVE = 0;
+    static final int DEPART = ARRIVE + Agent.NUM_DAYS + 1;
+    static final int TOWERS = DEPART + Agent.NUM_DAYS + 1;
+    static final int SHANTY = TOWERS + Agent.NUM_DAYS + 1;
+    static final int ENTERTAINMENT = SHANTY + Agent.NUM_DAYS + 1;
+    static final int NUM_TYPES = EntertainmentType.values().length;
+    static final int STOCK_SIZE = ENTERTAINMENT + NUM_TYPES * (Agent.NUM_DAYS + 1);
+
+    // {arrive, depart, towers (1 or 0)} in the order createPackages has always tried them
+    private static final int[][] OPTIONS = createOptions();
+    public static final int NUM_OPTIONS = OPTIONS.length;
+
+    private final Client[] clients;
+    private final int[] stock = new int[STOCK_SIZE];
+
+    private final float[] arrivePrice = new float[Agent.NUM_DAYS + 1];
+    private final float[] arriveProb = new float[Agent.NUM_DAYS + 1];
+    private final float[] departPrice = new float[Agent.NUM_DAYS + 1];
+    private final float[] departProb = new float[Agent.NUM_DAYS + 1];
+    // Indexed by [towers ? 1 : 0][day]
+    private final float[][] hotelPrice = new float[2][Agent.NUM_DAYS + 1];
+    private final float[][] hotelProb = new float[2][Agent.NUM_DAYS + 1];
+    private final boolean[][] hotelClosed = new boolean[2][Agent.NUM_DAYS + 1];
+    // Indexed by [type value - 1][day]
+    private final float[][] entPrice = new float[NUM_TYPES][Agent.NUM_DAYS + 1];
+    private final float[][] entProb = new float[NUM_TYPES][Agent.NUM_DAYS + 1];
+
+    // Per client and option
+    private final int[][] potentialUtility;
+    private final int[][] entPremium;
+
+    public PackageModel(Client[] clients, List<FlightTicket> flightTickets, List<HotelBooking> hotelBookings,
+                        List<EntertainmentTicket> entertainmentTickets) {
+        this(clients, flightTickets, hotelBookings, entertainmentTickets, 100);
+    }
+
+    /** @param travelPenalty The penalty per day of travel away from a client's preferred days. */
+    public PackageModel(Client[] clients, List<FlightTicket> flightTickets, List<HotelBooking> hotelBookings,
+                        List<EntertainmentTicket> entertainmentTickets, int travelPenalty) {
+        this.clients = clients.clone();
+
+        for (FlightTicket ticket : flightTickets) {
+            stock[(ticket.isArrival() ? ARRIVE : DEPART) + ticket.getDay()] += 1;
+        }
+        for (HotelBooking booking : hotelBookings) {
+            stock[(booking.towers ? TOWERS : SHANTY) + booking.getDay()] += 1;
+        }
+        for (EntertainmentTicket ticket : entertainmentTickets) {
+            stock[entIndex(ticket.getType().getValue(), ticket.getDay())] += 1;
+        }
+
+        potentialUtility = new int[clients.length][NUM_OPTIONS];
+        entPremium = new int[clients.length][NUM_TYPES + 1];
+        for (int c = 0; c < clients.length; c++) {
+            for (int o = 0; o < NUM_OPTIONS; o++) {
+                Package pack = new Package(clients[c], getArrivalDay(o), getDepartureDay(o));
+                potentialUtility[c][o] = pack.potentialUtility(isTowers(o), travelPenalty);
+            }
+            for (EntertainmentType type : EntertainmentType.values()) {
+                entPremium[c][type.getValue()] = clients[c].getEntertainmentPremium(type);
+            }
+        }
+    }
+
+    public void setFlight(int day, boolean arrival, float price, float probability) {
+        (arrival ? arrivePrice : departPrice)[day] = price;
+        (arrival ? arriveProb : departProb)[day] = probability;
+    }
+
+    public void setHotel(int day, boolean towers, float price, float probability, boolean closed) {
+        int t = towers ? 1 : 0;
+        hotelPrice[t][day] = price;
+        hotelProb[t][day] = probability;
+        hotelClosed[t][day] = closed;
+    }
+
+    public void setEntertainment(int day, EntertainmentType type, float price, float probability) {
+        entPrice[type.getValue() - 1][day] = price;
+        entProb[type.getValue() - 1][day] = probability;
+    }
+
+    public boolean isHotelClosed(int day, boolean towers) {
+        return hotelClosed[towers ? 1 : 0][day];
+    }
+
+    public int getNumClients() {
+        return clients.length;
+    }
+
+    public Client getClient(int client) {
+        return clients[client];
+    }
+
+    public static int getArrivalDay(int option) {
+        return OPTIONS[option][0];
+    }
+
+    public static int getDepartureDay(int option) {
+        return OPTIONS[option][1];
+    }
+
+    public static boolean isTowers(int option) {
+        return OPTIONS[option][2] == 1;
+    }
+
+    /** @return a copy of the stock owned when the model was created. */
+    public int[] getStock() {
+        return stock.clone();
+    }
+
+    public int getArriveStock(int[] stock, int day) {
+        return stock[ARRIVE + day];
+    }
+
+    public int getDepartStock(int[] stock, int day) {
+        return stock[DEPART + day];
+    }
+
+    public int getHotelStock(int[] stock, int day, boolean towers) {
+        return stock[(towers ? TOWERS : SHANTY) + day];
+    }
+
+    public int getEntertainmentStock(int[] stock, int day, EntertainmentType type) {
+        return stock[entIndex(type.getValue(), day)];
+    }
+
+    public Package createPackage(int client, int option) {
+        return new Package(clients[client], getArrivalDay(option), getDepartureDay(option));
+    }
+
+    /**
+     * Expected profit of giving the client the package option, when the given stock is still unallocated.
+     *
+     * @return the expected outcome, or -1 if the package needs a hotel that has closed.
+     */
+    public float getOutcome(int client, int option, int[] stock) {
+        return outcome(client, option, stock, false);
+    }
+
+    /**
+     * An upper bound of {@link #getOutcome(int, int, int[])} for any stock that is a part of the given stock.
+     */
+    public float getOutcomeBound(int client, int option, int[] stock) {
+        return outcome(client, option, stock, true);
+    }
+
+    private float outcome(int client, int option, int[] stock, boolean bound) {
+        float probFlight = 1f;
+        float costFlight = 0f;
+
+        // If a ticket or booking is already stocked, prob=1 and cost=0 so
+        // we can skip it.
+
+        int arrive = getArrivalDay(option);
+        if (stock[ARRIVE + arrive] <= 0) {
+            probFlight *= arriveProb[arrive];
+            costFlight += arrivePrice[arrive];
+        }
+
+        int depart = getDepartureDay(option);
+        if (stock[DEPART + depart] <= 0) {
+            probFlight *= departProb[depart];
+            costFlight += departPrice[depart];
+        }
+
+        boolean towers = isTowers(option);
+        int t = towers ? 1 : 0;
+        int hotelStock = towers ? TOWERS : SHANTY;
+        float probHotel = 1f;
+        float costHotel = 0f;
+        for (int day = arrive; day < depart; day++) {
+            if (hotelClosed[t][day]) {
+                // This is impossible, return loss
+                return -1f;
+            }
+            if (stock[hotelStock + day] <= 0) {
+                probHotel *= hotelProb[t][day];
+                costHotel += hotelPrice[t][day];
+            }
+        }
+
+        // Best of all possible ticket allocations for the stay
+        float funBonus = 0f;
+        int[] premium = entPremium[client];
+        for (int alloc : TicketAllocations.forStay(arrive, depart)) {
+            float valueThis = 0f;
+            for (int day = arrive; day < depart; day++) {
+                int type = TicketAllocations.getTypeValue(alloc, day);
+                if (type != 0) {
+                    float price;
+                    float prob;
+                    // If in stock, costs nothing
+                    if (stock[entIndex(type, day)] > 0) {
+                        price = 0f;
+                        prob = 1f;
+                    } else {
+                        price = entPrice[type - 1][day];
+                        prob = entProb[type - 1][day];
+                    }
+                    float bonus = premium[type];
+
+                    // Only buy this ticket if it benefits us
+                    if (bonus > price) {
+                        valueThis += (bonus - price) * prob;
+                    }
+                }
+            }
+            if (valueThis > funBonus) {
+                funBonus = valueThis;
+            }
+        }
+
+        // Three outcomes: we buy the package at the estimated price with TT or
+        // SS, OR we don't, but we still pay some cost for buying some things
+        // (assume half cost of package).
+        float profit = potentialUtility[client][option] + funBonus;
+        float cost = costHotel + costFlight;
+
+        if (bound) {
+            // Goods missing from this stock must be bought, goods in it might
+            // be taken by someone else. Profit and the purchase probabilities
+            // can only go down and the cost up, and the loss term is never
+            // positive.
+            return Math.max(0f, probFlight * probHotel * (profit - cost));
+        }
+
+        return probFlight * probHotel * (profit - cost) -
+            (1f - probFlight) * (1f - probHotel) * cost / 2f;
+    }
+
+    /** Remove the stock used by the package option. */
+    public void consume(int option, int[] stock) {
+        int arrive = getArrivalDay(option);
+        int depart = getDepartureDay(option);
+        stock[ARRIVE + arrive] -= 1;
+        stock[DEPART + depart] -= 1;
+
+        int hotelStock = isTowers(option) ? TOWERS : SHANTY;
+        for (int day = arrive; day < depart; day++) {
+            stock[hotelStock + day] -= 1;
+        }
+
+        // Remove from first ticket type with stock left
+        int numDays = Math.min(depart - arrive, NUM_TYPES);
+        for (int day = arrive; day < arrive + numDays; day++) {
+            for (int type = 1; type <= NUM_TYPES; type++) {
+                if (stock[entIndex(type, day)] > 0) {
+                    stock[entIndex(type, day)] -= 1;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int entIndex(int type, int day) {
+        return ENTERTAINMENT + (type - 1) * (Agent.NUM_DAYS + 1) + day;
+    }
+
+    private static int[][] createOptions() {
+        List<int[]> options = new ArrayList<int[]>();
+        for (int arrive = 1; arrive <= Agent.NUM_DAYS - 1; arrive++) {
+            for (int depart = arrive + 1; depart <= Agent.NUM_DAYS; depart++) {
+                options.add(new int[] { arrive, depart, 1 });
+                options.add(new int[] { arrive, depart, 0 });
+            }
+        }
+        return options.toArray(new int[options.size()][]);
+    }
+}
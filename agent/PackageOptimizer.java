@@ -0,0 +1,285 @@
+package agent;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Chooses the packages of all clients together, rather than giving each client in turn its best package from the
+ * stock left by the previous clients.
+ *
+ * Clients are considered in order and each gets one of the package options or no package. Stock used by earlier
+ * clients is not available to later ones, exactly as in the greedy choice. The best value the remaining clients can
+ * get only depends on which client is next and on the stock left, so it is memoized on that state. Options that
+ * cannot beat the best option found for a state, even if the remaining clients got the best they could do with all
+ * of the stock, are not searched. The first levels are searched in parallel on the common fork/join pool.
+ *
+ * The search stops at a deadline, if given one, in which case the greedy choice is returned.
+ */
+public class PackageOptimizer {
+
+    // States down to this client are searched as separate tasks
+    private static final int PARALLEL_DEPTH = 2;
+    // Number of states searched between checks of the deadline
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+    private static final double EPSILON = 1e-4;
+
+    private final PackageModel model;
+    private final int numClients;
+    // The best the clients from a client onwards can do with all stock available
+    private final double[] remainingBound;
+
+    private final Map<State, Choice> memo = new ConcurrentHashMap<State, Choice>();
+    private long deadline;
+    private volatile boolean timedOut;
+
+    public PackageOptimizer(PackageModel model) {
+        this.model = model;
+        this.numClients = model.getNumClients();
+
+        int[] stock = model.getStock();
+        remainingBound = new double[numClients + 1];
+        for (int c = numClients - 1; c >= 0; c--) {
+            float clientBound = 0f;
+            for (int o = 0; o < PackageModel.NUM_OPTIONS; o++) {
+                clientBound = Math.max(clientBound, model.getOutcomeBound(c, o, stock));
+            }
+            remainingBound[c] = remainingBound[c + 1] + clientBound;
+        }
+    }
+
+    /** @return the option for each client when choosing the best package for each client in turn. */
+    public int[] greedy() {
+        int[] stock = model.getStock();
+        int[] options = new int[numClients];
+        for (int c = 0; c < numClients; c++) {
+            // Select viable package with highest expected outcome
+            int bestOption = PackageModel.NO_OPTION;
+            float bestOutcome = 0;
+            for (int o = 0; o < PackageModel.NUM_OPTIONS; o++) {
+                float outcome = model.getOutcome(c, o, stock);
+                if (outcome > bestOutcome) {
+                    bestOutcome = outcome;
+                    bestOption = o;
+                }
+            }
+            options[c] = bestOption;
+            if (bestOption != PackageModel.NO_OPTION) {
+                model.consume(bestOption, stock);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Search for the best options for all clients.
+     *
+     * @param timeLimit Milliseconds after which the search gives up and the greedy choice is returned.
+     * @return the option for each client, {@link agent.PackageModel#NO_OPTION} for clients without a package.
+     */
+    public int[] optimize(long timeLimit) {
+        return optimizeUntil(System.nanoTime() + timeLimit * 1000000L);
+    }
+
+    /**
+     * Search for the best options for all clients however long it takes, so that the choice does not depend on the
+     * load of the machine, e.g. when comparing strategies offline.
+     *
+     * @return the option for each client, {@link agent.PackageModel#NO_OPTION} for clients without a package.
+     */
+    public int[] optimize() {
+        return optimizeUntil(Long.MAX_VALUE);
+    }
+
+    private synchronized int[] optimizeUntil(long deadline) {
+        this.deadline = deadline;
+        timedOut = false;
+        memo.clear();
+
+        int[] greedy = greedy();
+        new SearchTask(0, model.getStock()).invoke();
+        if (timedOut) {
+            memo.clear();
+            return greedy;
+        }
+
+        // Follow the best choices from the start
+        int[] options = new int[numClients];
+        int[] stock = model.getStock();
+        for (int c = 0; c < numClients; c++) {
+            options[c] = memo.get(new State(c, stock)).option;
+            if (options[c] != PackageModel.NO_OPTION) {
+                model.consume(options[c], stock);
+            }
+        }
+        memo.clear();
+
+        // Keep the greedy choice unless it can be improved on
+        return getValue(options) > getValue(greedy) + EPSILON ? options : greedy;
+    }
+
+    /** @return true if the last {@link #optimize(long)} was stopped by the deadline before the search completed. */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /** @return the expected outcome of each client when the clients get their options in order. */
+    public float[] getOutcomes(int[] options) {
+        int[] stock = model.getStock();
+        float[] outcomes = new float[options.length];
+        for (int c = 0; c < options.length; c++) {
+            if (options[c] != PackageModel.NO_OPTION) {
+                outcomes[c] = model.getOutcome(c, options[c], stock);
+                model.consume(options[c], stock);
+            }
+        }
+        return outcomes;
+    }
+
+    public double getValue(int[] options) {
+        double value = 0d;
+        for (float outcome : getOutcomes(options)) {
+            value += outcome;
+        }
+        return value;
+    }
+
+    /** @return the packages for the given options, in client order. */
+    public List<Package> getPackages(int[] options) {
+        List<Package> packages = new ArrayList<Package>();
+        for (int c = 0; c < options.length; c++) {
+            if (options[c] != PackageModel.NO_OPTION) {
+                packages.add(model.createPackage(c, options[c]));
+            }
+        }
+        return packages;
+    }
+
+    private class SearchTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final int client;
+        private final int[] stock;
+        private int states = 0;
+
+        SearchTask(int client, int[] stock) {
+            this.client = client;
+            this.stock = stock;
+        }
+
+        @Override
+        protected Double compute() {
+            if (client >= PARALLEL_DEPTH || client >= numClients) {
+                return search(client, stock);
+            }
+
+            List<SearchTask> tasks = new ArrayList<SearchTask>();
+            List<Integer> options = new ArrayList<Integer>();
+            List<Float> outcomes = new ArrayList<Float>();
+            for (int o = 0; o < PackageModel.NUM_OPTIONS; o++) {
+                float outcome = model.getOutcome(client, o, stock);
+                if (outcome > 0) {
+                    int[] nextStock = stock.clone();
+                    model.consume(o, nextStock);
+                    tasks.add(new SearchTask(client + 1, nextStock));
+                    options.add(o);
+                    outcomes.add(outcome);
+                }
+            }
+            SearchTask noPackage = new SearchTask(client + 1, stock);
+            tasks.add(noPackage);
+            invokeAll(tasks);
+
+            // No package unless a package is better
+            Choice best = new Choice(PackageModel.NO_OPTION, noPackage.join());
+            for (int i = 0; i < options.size(); i++) {
+                double value = outcomes.get(i) + tasks.get(i).join();
+                if (value > best.value + EPSILON) {
+                    best = new Choice(options.get(i), value);
+                }
+            }
+            if (!timedOut) {
+                memo.put(new State(client, stock), best);
+            }
+            return best.value;
+        }
+
+        private double search(int c, int[] stock) {
+            if (c == numClients || timedOut) {
+                return 0d;
+            }
+            if (++states % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                timedOut = true;
+                return 0d;
+            }
+
+            State state = new State(c, stock);
+            Choice known = memo.get(state);
+            if (known != null) {
+                return known.value;
+            }
+
+            // No package unless a package is better
+            Choice best = new Choice(PackageModel.NO_OPTION, search(c + 1, stock));
+            int[] nextStock = new int[stock.length];
+            for (int o = 0; o < PackageModel.NUM_OPTIONS; o++) {
+                float outcome = model.getOutcome(c, o, stock);
+                // Skip options that cannot beat the best so far, even if
+                // the remaining clients could use all of the stock
+                if (outcome > 0 && outcome + remainingBound[c + 1] > best.value + EPSILON) {
+                    System.arraycopy(stock, 0, nextStock, 0, stock.length);
+                    model.consume(o, nextStock);
+                    double value = outcome + search(c + 1, nextStock);
+                    if (value > best.value + EPSILON) {
+                        best = new Choice(o, value);
+                    }
+                }
+            }
+            if (!timedOut) {
+                memo.put(state, best);
+            }
+            return best.value;
+        }
+    }
+
+    /** The next client and the stock left for it and the clients after it. */
+    private static final class State {
+        private final int client;
+        private final byte[] stock;
+        private final int hash;
+
+        State(int client, int[] stock) {
+            this.client = client;
+            this.stock = new byte[stock.length];
+            for (int i = 0; i < stock.length; i++) {
+                // Stock used up or overused behaves the same from here on
+                this.stock[i] = (byte) Math.max(0, Math.min(stock[i], Byte.MAX_VALUE));
+            }
+            this.hash = 31 * Arrays.hashCode(this.stock) + client;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof State))
+                return false;
+            State other = (State) o;
+            return client == other.client && Arrays.equals(stock, other.stock);
+        }
+    }
+
+    /** The best option for a state and the value it leads to. */
+    private static final class Choice {
+        private final int option;
+        private final double value;
+
+        Choice(int option, double value) {
+            this.option = option;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package agent;
+
+import java.util.Arrays;
+
+/**
+ * The constants of the bidding strategy, tuned by hand, in one set so that they can be set in the configuration
+ * ("strategy." followed by the name, e.g. strategy.travelPenalty=80) and compared by {@link agent.sweep.ParameterSweep}.
+ * The defaults are the values the agent has always used.
+ */
+public class StrategyParameters {
+
+    /** The names of the parameters, as used by {@link #set(String, String)}. */
+    public static final String[] NAMES = {
+        "hotelBidProportions", "flightBidConfidence", "entertainmentProfitFactor", "entertainmentSellPrice",
+        "travelPenalty"
+    };
+
+    public static final String CONFIG_PREFIX = "strategy.";
+
+    // Multiple of the estimated next price bid for hotels, indexed by the number of quotes seen
+    private double[] hotelBidProportions = { 1.5, 1.1, 1.1, 1.1, 1.2, 1.3, 1.4, 1.5, 0 };
+    // The most confidence put in the flight price estimate when choosing a bid, 1 for no cap
+    private double flightBidConfidence = 1d;
+    // Part of a client's premium kept as profit when bidding for entertainment
+    private float entertainmentProfitFactor = 0.2f;
+    // Price asked for unused entertainment tickets
+    private float entertainmentSellPrice = 100f;
+    // Penalty per day of travel away from the preferred days, when valuing packages
+    private int travelPenalty = 100;
+
+    public StrategyParameters() {
+    }
+
+    public StrategyParameters(StrategyParameters parameters) {
+        hotelBidProportions = parameters.hotelBidProportions.clone();
+        flightBidConfidence = parameters.flightBidConfidence;
+        entertainmentProfitFactor = parameters.entertainmentProfitFactor;
+        entertainmentSellPrice = parameters.entertainmentSellPrice;
+        travelPenalty = parameters.travelPenalty;
+    }
+
+    /** @return the proportion of the estimated next price to bid for a hotel after the number of quotes. */
+    public double getHotelBidProportion(int quotes) {
+        return hotelBidProportions[Math.min(quotes, hotelBidProportions.length - 1)];
+    }
+
+    public double[] getHotelBidProportions() {
+        return hotelBidProportions.clone();
+    }
+
+    public void setHotelBidProportions(double[] hotelBidProportions) {
+        if (hotelBidProportions.length == 0) {
+            throw new IllegalArgumentException("no hotel bid proportions");
+        }
+        this.hotelBidProportions = hotelBidProportions.clone();
+    }
+
+    public double getFlightBidConfidence() {
+        return flightBidConfidence;
+    }
+
+    public void setFlightBidConfidence(double flightBidConfidence) {
+        this.flightBidConfidence = flightBidConfidence;
+    }
+
+    public float getEntertainmentProfitFactor() {
+        return entertainmentProfitFactor;
+    }
+
+    public void setEntertainmentProfitFactor(float entertainmentProfitFactor) {
+        this.entertainmentProfitFactor = entertainmentProfitFactor;
+    }
+
+    public float getEntertainmentSellPrice() {
+        return entertainmentSellPrice;
+    }
+
+    public void setEntertainmentSellPrice(float entertainmentSellPrice) {
+        this.entertainmentSellPrice = entertainmentSellPrice;
+    }
+
+    public int getTravelPenalty() {
+        return travelPenalty;
+    }
+
+    public void setTravelPenalty(int travelPenalty) {
+        this.travelPenalty = travelPenalty;
+    }
+
+    /**
+     * Sets the parameter with the name to the value, numbers separated by commas for the hotel bid proportions.
+     *
+     * @throws IllegalArgumentException if there is no such parameter or the value is not a number.
+     */
+    public void set(String name, String value) {
+        value = value.trim();
+        switch (name) {
+        case "hotelBidProportions":
+            String[] parts = value.split(",");
+            double[] proportions = new double[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                proportions[i] = Double.parseDouble(parts[i].trim());
+            }
+            setHotelBidProportions(proportions);
+            break;
+        case "flightBidConfidence":
+            setFlightBidConfidence(Double.parseDouble(value));
+            break;
+        case "entertainmentProfitFactor":
+            setEntertainmentProfitFactor(Float.parseFloat(value));
+            break;
+        case "entertainmentSellPrice":
+            setEntertainmentSellPrice(Float.parseFloat(value));
+            break;
+        case "travelPenalty":
+            setTravelPenalty(Integer.parseInt(value));
+            break;
+        default:
+            throw new IllegalArgumentException("no strategy parameter " + name);
+        }
+    }
+
+    /** @return the value of the parameter with the name, as accepted by {@link #set(String, String)}. */
+    public String get(String name) {
+        switch (name) {
+        case "hotelBidProportions":
+            StringBuilder sb = new StringBuilder();
+            for (double p : hotelBidProportions) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(p);
+            }
+            return sb.toString();
+        case "flightBidConfidence":
+            return Double.toString(flightBidConfidence);
+        case "entertainmentProfitFactor":
+            return Float.toString(entertainmentProfitFactor);
+        case "entertainmentSellPrice":
+            return Float.toString(entertainmentSellPrice);
+        case "travelPenalty":
+            return Integer.toString(travelPenalty);
+        default:
+            throw new IllegalArgumentException("no strategy parameter " + name);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StrategyParameters)) {
+            return false;
+        }
+        StrategyParameters p = (StrategyParameters) o;
+        return Arrays.equals(hotelBidProportions, p.hotelBidProportions)
+            && flightBidConfidence == p.flightBidConfidence
+            && entertainmentProfitFactor == p.entertainmentProfitFactor
+            && entertainmentSellPrice == p.entertainmentSellPrice
+            && travelPenalty == p.travelPenalty;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(hotelBidProportions) * 31 + travelPenalty;
+    }
+
+    /** @return the parameters that differ from the defaults as name=value pairs, or "default". */
+    @Override
+    public String toString() {
+        StrategyParameters defaults = new StrategyParameters();
+        StringBuilder sb = new StringBuilder();
+        for (String name : NAMES) {
+            String value = get(name);
+            if (!value.equals(defaults.get(name))) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(name).append('=').append(value);
+            }
+        }
+        return sb.length() > 0 ? sb.toString() : "default";
+    }
+}
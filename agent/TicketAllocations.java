@@ -0,0 +1,80 @@
+package agent;
+
+import agent.entertainment.EntertainmentType;
+
+import java.util.*;
+
+/** The ways of giving a client one entertainment ticket per night of a stay, each type at most once.
+ *
+ * The allocations only depend on the stay, so they are computed once for each of the possible
+ * (arrive, depart) intervals. Each allocation is packed in an int holding two bits per day: the
+ * {@link agent.entertainment.EntertainmentType} value of the ticket for that day, or 0 for no ticket.
+ */
+public final class TicketAllocations {
+
+    private static final int BITS_PER_DAY = 2;
+    private static final int DAY_MASK = (1 << BITS_PER_DAY) - 1;
+    private static final int NUM_TYPES = EntertainmentType.values().length;
+
+    // Indexed by [arrive][depart]
+    private static final int[][][] ALLOCATIONS = createAllocations();
+
+    private TicketAllocations() {
+    }
+
+    /** @return the packed allocations for a stay from arrive to depart. The array must not be modified. */
+    public static int[] forStay(int arrive, int depart) {
+        return ALLOCATIONS[arrive][depart];
+    }
+
+    /** @return the {@link agent.entertainment.EntertainmentType} value allocated on day, or 0 if none. */
+    public static int getTypeValue(int allocation, int day) {
+        return (allocation >>> (day * BITS_PER_DAY)) & DAY_MASK;
+    }
+
+    /** @return the {@link agent.entertainment.EntertainmentType} allocated on day, or null if none. */
+    public static EntertainmentType getType(int allocation, int day) {
+        int value = getTypeValue(allocation, day);
+        return value == 0 ? null : EntertainmentType.fromValue(value);
+    }
+
+    private static int[][][] createAllocations() {
+        int[][][] allocations = new int[Agent.NUM_DAYS + 1][Agent.NUM_DAYS + 1][];
+        for (int arrive = 1; arrive < Agent.NUM_DAYS; arrive++) {
+            for (int depart = arrive + 1; depart <= Agent.NUM_DAYS; depart++) {
+                List<Integer> found = new ArrayList<Integer>();
+                int tickets = Math.min(depart - arrive, NUM_TYPES);
+                enumerate(arrive, depart, 0, 0, tickets, found);
+                int[] packed = new int[found.size()];
+                for (int i = 0; i < packed.length; i++) {
+                    packed[i] = found.get(i);
+                }
+                allocations[arrive][depart] = packed;
+            }
+        }
+        return allocations;
+    }
+
+    // Give each remaining day a ticket of an unused type or none, keeping
+    // the allocations where as many tickets as possible are given
+    private static void enumerate(int day, int depart, int allocation, int usedTypes,
+                                  int ticketsLeft, List<Integer> found) {
+        if (day == depart) {
+            if (ticketsLeft == 0) {
+                found.add(allocation);
+            }
+            return;
+        }
+        if (depart - day > ticketsLeft) {
+            enumerate(day + 1, depart, allocation, usedTypes, ticketsLeft, found);
+        }
+        if (ticketsLeft > 0) {
+            for (int value = 1; value <= NUM_TYPES; value++) {
+                if ((usedTypes & (1 << value)) == 0) {
+                    enumerate(day + 1, depart, allocation | (value << (day * BITS_PER_DAY)),
+                        usedTypes | (1 << value), ticketsLeft - 1, found);
+                }
+            }
+        }
+    }
+}
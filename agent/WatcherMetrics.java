@@ -0,0 +1,176 @@
+package agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import agent.logging.AgentLogger;
+import se.sics.tac.util.LatencyHistogram;
+
+/**
+ * How long the {@link agent.Auction.Watcher}s take to handle the events of the auctions, as a
+ * {@link se.sics.tac.util.LatencyHistogram} per event and watcher class. The events are dispatched on the thread that
+ * reads the server's replies, so a slow watcher holds up every quote and bid confirmation behind it. A call slower
+ * than the warning threshold is logged as it happens.
+ */
+public class WatcherMetrics {
+
+    /** The events of an auction, by the watcher method called. */
+    public enum Event {
+        QUOTE("auctionQuoteUpdated"),
+        QUOTES("auctionQuotesUpdated"),
+        BID_UPDATED("auctionBidUpdated"),
+        BID_REJECTED("auctionBidRejected"),
+        BID_ERROR("auctionBidError"),
+        BUY("auctionBuySuccessful"),
+        SELL("auctionSellSuccessful"),
+        CLOSED("auctionClosed");
+
+        private final String method;
+
+        private Event(String method) {
+            this.method = method;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+    }
+
+    /** Calls taking longer than this are logged as they happen. */
+    public static final long DEFAULT_WARNING_NANOS = 100000000L;
+
+    private static final WatcherMetrics defaultMetrics = new WatcherMetrics();
+
+    /** @return the metrics of the auctions of the agent. */
+    public static WatcherMetrics getDefault() {
+        return defaultMetrics;
+    }
+
+    private final ConcurrentHashMap<Class<?>, LatencyHistogram[]> histograms =
+        new ConcurrentHashMap<Class<?>, LatencyHistogram[]>();
+    private volatile long warningNanos = DEFAULT_WARNING_NANOS;
+    private volatile AgentLogger logger;
+
+    /** Sets the logger slow calls are warned of in, or null to not warn. */
+    public void setLogger(AgentLogger logger) {
+        this.logger = logger;
+    }
+
+    public void setWarningNanos(long warningNanos) {
+        this.warningNanos = warningNanos;
+    }
+
+    // Anonymous watchers have no simple name, so they go by their full name, e.g. agent.hotel.HotelAgent$1
+    private static String getName(Class<?> c) {
+        String name = c.getSimpleName();
+        return name.isEmpty() ? c.getName() : name;
+    }
+
+    /** Records a call to the watcher that started when {@link System#nanoTime()} returned startNanos. */
+    public void record(Event event, Object watcher, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        getHistograms(watcher.getClass())[event.ordinal()].record(nanos);
+        if (nanos > warningNanos) {
+            AgentLogger logger = this.logger;
+            if (logger != null) {
+                logger.log(AgentLogger.WARNING, "Slow watcher: {}.{} took {}", getName(watcher.getClass()),
+                    event.getMethod(), LatencyHistogram.formatMicros(nanos / 1000.0));
+            }
+        }
+    }
+
+    private LatencyHistogram[] getHistograms(Class<?> watcherClass) {
+        LatencyHistogram[] h = histograms.get(watcherClass);
+        if (h == null) {
+            h = new LatencyHistogram[Event.values().length];
+            for (int i = 0; i < h.length; i++) {
+                h[i] = new LatencyHistogram();
+            }
+            LatencyHistogram[] old = histograms.putIfAbsent(watcherClass, h);
+            if (old != null) {
+                h = old;
+            }
+        }
+        return h;
+    }
+
+    /** @return the histogram of the calls for the event to watchers of the class, empty if there were none. */
+    public LatencyHistogram getHistogram(Class<?> watcherClass, Event event) {
+        return getHistograms(watcherClass)[event.ordinal()];
+    }
+
+    /** @return the histogram of the calls for the event to all watchers. */
+    public LatencyHistogram getHistogram(Event event) {
+        LatencyHistogram total = new LatencyHistogram();
+        for (LatencyHistogram[] h : histograms.values()) {
+            total.add(h[event.ordinal()]);
+        }
+        return total;
+    }
+
+    /** Forgets all calls, e.g. at the start of a game. */
+    public void reset() {
+        for (LatencyHistogram[] h : histograms.values()) {
+            for (LatencyHistogram histogram : h) {
+                histogram.reset();
+            }
+        }
+    }
+
+    // The watcher classes and events with calls, slowest first
+    private List<Object[]> getRows() {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (Map.Entry<Class<?>, LatencyHistogram[]> e : histograms.entrySet()) {
+            for (Event event : Event.values()) {
+                LatencyHistogram h = e.getValue()[event.ordinal()];
+                if (h.getCount() > 0) {
+                    rows.add(new Object[] { getName(e.getKey()) + '.' + event.getMethod(), h });
+                }
+            }
+        }
+        Collections.sort(rows, new Comparator<Object[]>() {
+            public int compare(Object[] a, Object[] b) {
+                return Long.compare(((LatencyHistogram) b[1]).getMaxNanos(), ((LatencyHistogram) a[1]).getMaxNanos());
+            }
+        });
+        return rows;
+    }
+
+    /** @return a line with the slowest calls, for a live display. */
+    public String getSummary(int rows) {
+        StringBuilder sb = new StringBuilder("Slowest watchers:");
+        List<Object[]> all = getRows();
+        if (all.isEmpty()) {
+            return sb.append(" none yet").toString();
+        }
+        for (Object[] row : all.subList(0, Math.min(rows, all.size()))) {
+            LatencyHistogram h = (LatencyHistogram) row[1];
+            sb.append("  ").append(row[0]).append(" max ").append(LatencyHistogram.formatMicros(h.getMaxMicros()))
+                .append(" p99 ").append(LatencyHistogram.formatMicros(h.getPercentileMicros(0.99)));
+        }
+        return sb.toString();
+    }
+
+    /** @return a table of the calls of each watcher class and event, slowest first, with their bucket counts. */
+    public String format() {
+        StringBuilder sb = new StringBuilder("Watcher call latencies:\n");
+        for (Object[] row : getRows()) {
+            LatencyHistogram h = (LatencyHistogram) row[1];
+            sb.append(String.format("%-50s %s\n", row[0], h));
+            sb.append(String.format("%-50s", ""));
+            for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                if (h.getCount(i) > 0) {
+                    sb.append(" <=").append(i == LatencyHistogram.BUCKETS - 1 ? "inf"
+                        : LatencyHistogram.formatMicros(LatencyHistogram.getBucketLimit(i))).append(':')
+                        .append(h.getCount(i));
+                }
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
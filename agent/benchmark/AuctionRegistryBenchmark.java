@@ -0,0 +1,139 @@
+package agent.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import agent.Auction;
+import agent.AuctionRegistry;
+import agent.entertainment.EntertainmentAuction;
+import agent.entertainment.EntertainmentType;
+import agent.flight.FlightAuction;
+import agent.hotel.HotelAuction;
+
+/**
+ * Replays the auction lookups made by {@code Agent.createPackages()} (every
+ * candidate package of every client, with both hotels, looking up the
+ * flight, hotel and entertainment auctions as {@code getPackageOutcome} does)
+ * against the old {@code HashMap<Pair>} maps and the {@link agent.AuctionRegistry}.
+ */
+public class AuctionRegistryBenchmark {
+
+    private static final int CLIENTS = 8;
+    private static final int NUM_DAYS = 5;
+
+    private static long checksum;
+
+    public static void main(String[] args) {
+        final LegacyAuctions legacy = new LegacyAuctions();
+        final AuctionRegistry registry = new AuctionRegistry(null);
+
+        new Benchmark("createPackages lookups, HashMap<Pair>", 2000, 20000).run(new Runnable() {
+            public void run() {
+                for (int client = 0; client < CLIENTS; client++) {
+                    for (int arrive = 1; arrive < NUM_DAYS; arrive++) {
+                        for (int depart = arrive + 1; depart <= NUM_DAYS; depart++) {
+                            for (int towers = 0; towers < 2; towers++) {
+                                checksum += sum(legacy.getFlightAuction(arrive, true));
+                                checksum += sum(legacy.getFlightAuction(depart, false));
+                                for (int day = arrive; day < depart; day++) {
+                                    checksum += sum(legacy.getHotelAuction(day, towers == 1));
+                                    for (EntertainmentType type : EntertainmentType.values()) {
+                                        checksum += sum(legacy.getEntertainmentAuction(day, type));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        new Benchmark("createPackages lookups, AuctionRegistry", 2000, 20000).run(new Runnable() {
+            public void run() {
+                for (int client = 0; client < CLIENTS; client++) {
+                    for (int arrive = 1; arrive < NUM_DAYS; arrive++) {
+                        for (int depart = arrive + 1; depart <= NUM_DAYS; depart++) {
+                            for (int towers = 0; towers < 2; towers++) {
+                                checksum += sum(registry.getFlightAuction(arrive, true));
+                                checksum += sum(registry.getFlightAuction(depart, false));
+                                for (int day = arrive; day < depart; day++) {
+                                    checksum += sum(registry.getHotelAuction(day, towers == 1));
+                                    for (EntertainmentType type : EntertainmentType.values()) {
+                                        checksum += sum(registry.getEntertainmentAuction(day, type));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        System.out.println("(checksum " + checksum + ')');
+    }
+
+    private static int sum(Auction<?> auction) {
+        return auction.getDay();
+    }
+
+    /** The maps previously kept by Agent. */
+    private static class LegacyAuctions {
+        private final Map<Pair<Boolean>, FlightAuction> flightAuctions =
+            new HashMap<Pair<Boolean>, FlightAuction>();
+        private final Map<Pair<Boolean>, HotelAuction> hotelAuctions =
+            new HashMap<Pair<Boolean>, HotelAuction>();
+        private final Map<Pair<EntertainmentType>, EntertainmentAuction> entertainmentAuctions =
+            new HashMap<Pair<EntertainmentType>, EntertainmentAuction>();
+
+        LegacyAuctions() {
+            for (int day = 1; day <= NUM_DAYS; day++) {
+                if (day > 1) {
+                    flightAuctions.put(new Pair<Boolean>(day, false), new FlightAuction(null, day, false));
+                }
+                if (day < NUM_DAYS) {
+                    flightAuctions.put(new Pair<Boolean>(day, true), new FlightAuction(null, day, true));
+                    hotelAuctions.put(new Pair<Boolean>(day, false), new HotelAuction(null, day, false));
+                    hotelAuctions.put(new Pair<Boolean>(day, true), new HotelAuction(null, day, true));
+                    for (EntertainmentType type : EntertainmentType.values()) {
+                        entertainmentAuctions.put(new Pair<EntertainmentType>(day, type),
+                            new EntertainmentAuction(null, day, type));
+                    }
+                }
+            }
+        }
+
+        FlightAuction getFlightAuction(int day, boolean arrival) {
+            return flightAuctions.get(new Pair<Boolean>(day, arrival));
+        }
+
+        HotelAuction getHotelAuction(int day, boolean tt) {
+            return hotelAuctions.get(new Pair<Boolean>(day, tt));
+        }
+
+        EntertainmentAuction getEntertainmentAuction(int day, EntertainmentType type) {
+            return entertainmentAuctions.get(new Pair<EntertainmentType>(day, type));
+        }
+    }
+
+    private static class Pair<T> {
+        private final int i;
+        private final T t;
+
+        Pair(int i, T t) {
+            this.i = i;
+            this.t = t;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (getClass() != o.getClass())
+                return false;
+            return (this.i == ((Pair<?>) o).i) && (this.t.equals(((Pair<?>) o).t));
+        }
+
+        @Override
+        public int hashCode() {
+            return (t.hashCode() * NUM_DAYS + i);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package agent.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+import agent.logging.AgentLogger;
+
+/**
+ * A small harness for timing the agent's hot paths from a plain main method.
+ *
+ * Each benchmark runs a warm-up phase followed by a number of measured
+ * iterations and reports the average time per operation and, when the JVM
+ * supports it, the number of bytes allocated per operation by the calling
+ * thread.
+ */
+public class Benchmark {
+
+    private static final com.sun.management.ThreadMXBean threads = threadBean();
+
+    private final String name;
+    private final int warmup;
+    private final int iterations;
+
+    public Benchmark(String name, int warmup, int iterations) {
+        this.name = name;
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    /** Measures op and prints the result on a single line. */
+    public Result run(Runnable op) {
+        for (int i = 0; i < warmup; i++) {
+            op.run();
+        }
+
+        long threadID = Thread.currentThread().getId();
+        long bytesBefore = allocatedBytes(threadID);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes(threadID) - bytesBefore;
+
+        Result result = new Result(name, (double) elapsed / iterations,
+                bytes < 0 ? -1 : (double) bytes / iterations);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Returns the logger of the benchmarks. The agent log is moved to a temporary directory first, so that the
+     * benchmarks do not add to the log of the agent in the working directory.
+     */
+    public static AgentLogger createLogger() throws IOException {
+        File dir = Files.createTempDirectory("benchmark").toFile();
+        AgentLogger.setLogFile(new File(dir, AgentLogger.fileName));
+        return new AgentLogger().getSublogger("benchmark");
+    }
+
+    private static long allocatedBytes(long threadID) {
+        return threads == null ? -1 : threads.getThreadAllocatedBytes(threadID);
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        try {
+            com.sun.management.ThreadMXBean bean =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        } catch (Throwable e) {
+            // Not a HotSpot JVM, allocation rates are not available
+            return null;
+        }
+    }
+
+    public static class Result {
+        public final String name;
+        public final double nsPerOp;
+        public final double bytesPerOp;
+
+        public Result(String name, double nsPerOp, double bytesPerOp) {
+            this.name = name;
+            this.nsPerOp = nsPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public double opsPerSecond() {
+            return 1e9 / nsPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-40s %14.1f ns/op %12.0f ops/s %12s B/op",
+                    name, nsPerOp, opsPerSecond(),
+                    bytesPerOp < 0 ? "n/a" : String.format("%.1f", bytesPerOp));
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package agent.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import agent.Agent;
+import agent.Package;
+import agent.PackageModel;
+import agent.entertainment.EntertainmentAgent;
+import agent.entertainment.EntertainmentAssignment;
+import agent.entertainment.EntertainmentTicket;
+import agent.flight.FlightAgent;
+import agent.flight.FlightAuction;
+import agent.flight.FlightBidder;
+import agent.flight.FlightPriceMonitor;
+import agent.hotel.HotelAllocationSearch;
+import agent.logging.AgentLogger;
+import se.sics.tac.aw.BidString;
+import se.sics.tac.aw.TACMessage;
+import se.sics.tac.aw.TagParser;
+
+/**
+ * Times each decision the agent makes during a game, on seeded inputs, as
+ * the cost of one decision: choosing the packages, the hotels of the
+ * packages and the entertainment tickets to give them, taking in a flight
+ * quote and choosing the flight bid, and parsing and writing the messages
+ * and bids exchanged with the server. Together they bound the latency from
+ * a quote to the bids it leads to.
+ *
+ * The time and allocation of each decision can be saved and compared with
+ * a later run to catch regressions:
+ *
+ * <pre>
+ * java agent.benchmark.DecisionBenchmark -o before.properties
+ * java agent.benchmark.DecisionBenchmark -b before.properties
+ * </pre>
+ *
+ * The second run exits with status 1 if a decision got slower, or
+ * allocates more, by more than the tolerance (-r, default 0.25 for 25%).
+ * Arguments that are not options only run the decisions whose names
+ * contain one of them.
+ */
+public class DecisionBenchmark {
+
+    private static final int MODELS = 16;
+    private static final double DEFAULT_TOLERANCE = 0.25;
+    // Allocation differences below this many bytes per op are noise
+    private static final double ALLOCATION_SLACK = 64;
+
+    private static double checksum;
+
+    private final List<String> filters;
+    private final List<Benchmark.Result> results = new ArrayList<Benchmark.Result>();
+
+    public DecisionBenchmark(List<String> filters) {
+        this.filters = filters;
+    }
+
+    /** Runs the benchmark if it matches the filters. @return whether it was run. */
+    private boolean run(String name, int warmup, int iterations, Runnable op) {
+        if (filters.isEmpty()) {
+            results.add(new Benchmark(name, warmup, iterations).run(op));
+            return true;
+        }
+        for (String filter : filters) {
+            if (name.contains(filter)) {
+                results.add(new Benchmark(name, warmup, iterations).run(op));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Runs the benchmarks that match the filters. @return their results. */
+    public List<Benchmark.Result> runAll() throws IOException {
+        Logger.getLogger("").setLevel(Level.OFF);
+        final AgentLogger logger = Benchmark.createLogger();
+        AgentLogger.setThreshold("Agent.benchmark", AgentLogger.OFF);
+        Random rnd = new Random(1);
+
+        // Packages, as chosen on every quote that changes the prices
+        final PackageModel[] models = new PackageModel[MODELS];
+        final List<List<Package>> packageSets = new ArrayList<List<Package>>();
+        for (int i = 0; i < MODELS; i++) {
+            models[i] = RandomModels.model(rnd);
+            packageSets.add(Agent.createPackages(models[i], 1000, logger));
+        }
+        run("Agent.createPackages", 20, 200, new Runnable() {
+            private int next;
+
+            public void run() {
+                checksum += Agent.createPackages(models[next++ % MODELS], 1000, logger).size();
+            }
+        });
+
+        // The hotel of each package, as HotelAgent.fulfillPackagesRecursive chooses it
+        final HotelAllocationSearch search = new HotelAllocationSearch();
+        final int[][][] hotelInputs = new int[MODELS][][];
+        final float[][] predPrices = new float[MODELS][8];
+        final boolean[][] isClosed = new boolean[MODELS][8];
+        for (int i = 0; i < MODELS; i++) {
+            List<Package> packages = packageSets.get(i);
+            int[] startDays = new int[packages.size()], endDays = new int[packages.size()];
+            int[] hps = new int[packages.size()], stock = new int[8];
+            for (int p = 0; p < packages.size(); p++) {
+                startDays[p] = packages.get(p).getArrivalDay();
+                endDays[p] = packages.get(p).getDepartureDay();
+                hps[p] = packages.get(p).getClient().getHotelPremium();
+            }
+            for (int a = 0; a < 8; a++) {
+                predPrices[i][a] = 20 + rnd.nextInt(300);
+                isClosed[i][a] = rnd.nextInt(4) == 0;
+                stock[a] = isClosed[i][a] ? 4 + rnd.nextInt(4) : 0;
+            }
+            hotelInputs[i] = new int[][] { startDays, endDays, hps, stock };
+        }
+        run("HotelAgent hotel allocation search", 1000, 10000, new Runnable() {
+            private int next;
+
+            public void run() {
+                int i = next++ % MODELS;
+                int[][] in = hotelInputs[i];
+                if (search.search(in[0].length, in[0], in[1], in[2], predPrices[i], isClosed[i], in[3])) {
+                    checksum += search.getCost();
+                }
+            }
+        });
+
+        // The entertainment tickets of each package, as EntertainmentAgent.fulfillPackages chooses them
+        final List<List<EntertainmentTicket>> endowments = new ArrayList<List<EntertainmentTicket>>();
+        for (int i = 0; i < MODELS; i++) {
+            endowments.add(RandomModels.endowment(rnd));
+        }
+        // Reused like the entertainment agent's
+        final EntertainmentAssignment assignment = new EntertainmentAssignment();
+        run("EntertainmentAgent.chooseAllocations", 1000, 10000, new Runnable() {
+            private int next;
+
+            public void run() {
+                int i = next++ % MODELS;
+                checksum += assignment.choose(packageSets.get(i), endowments.get(i)).size();
+            }
+        });
+        if (run("EntertainmentAgent.chooseGreedyAllocations", 1000, 10000, new Runnable() {
+            private int next;
+
+            public void run() {
+                int i = next++ % MODELS;
+                checksum += EntertainmentAgent.chooseGreedyAllocations(packageSets.get(i), endowments.get(i)).size();
+            }
+        })) {
+            // The greedy choice is faster but may give away less premium
+            int exact = 0, greedy = 0;
+            for (int i = 0; i < MODELS; i++) {
+                exact += getPremium(assignment.choose(packageSets.get(i), endowments.get(i)));
+                greedy += getPremium(EntertainmentAgent.chooseGreedyAllocations(packageSets.get(i), endowments.get(i)));
+            }
+            System.out.println(String.format("%-40s %d exact, %d greedy", "  entertainment premium", exact, greedy));
+        }
+
+        // The hardest choice: every client could use every ticket
+        final List<List<Package>> longStays = new ArrayList<List<Package>>();
+        for (int i = 0; i < MODELS; i++) {
+            longStays.add(RandomModels.longStays(rnd));
+        }
+        final List<EntertainmentTicket> ticketPerKind = RandomModels.ticketPerKind();
+        if (run("EntertainmentAgent.chooseAllocations long stays", 20, 200, new Runnable() {
+            private int next;
+
+            public void run() {
+                checksum += assignment.choose(longStays.get(next++ % MODELS), ticketPerKind).size();
+            }
+        })) {
+            int exact = 0, greedy = 0, timedOut = 0;
+            for (int i = 0; i < MODELS; i++) {
+                exact += getPremium(assignment.choose(longStays.get(i), ticketPerKind));
+                if (assignment.isTimedOut()) {
+                    timedOut++;
+                }
+                greedy += getPremium(EntertainmentAgent.chooseGreedyAllocations(longStays.get(i), ticketPerKind));
+            }
+            System.out.println(String.format("%-40s %d exact, %d greedy, %d of %d stopped at the deadline",
+                "  entertainment premium", exact, greedy, timedOut, MODELS));
+        }
+
+        // A flight quote taken in, with the estimate and distribution it leads to and the bid chosen from them
+        final double[][] games = new double[MODELS][];
+        for (int i = 0; i < MODELS; i++) {
+            games[i] = RandomModels.flightQuotes(rnd);
+        }
+        run("FlightPriceMonitor.addQuote", 20 * FlightAgent.MAX_TIME, 200 * FlightAgent.MAX_TIME,
+            new QuoteReplay(games) {
+                void quote(FlightPriceMonitor monitor, double ask, int t) {
+                    checksum += monitor.predictMinimumPrice(t);
+                }
+            });
+        run("FlightPriceMonitor.priceCumulativeDist", 20 * FlightAgent.MAX_TIME, 200 * FlightAgent.MAX_TIME,
+            new QuoteReplay(games) {
+                void quote(FlightPriceMonitor monitor, double ask, int t) {
+                    checksum += monitor.priceCumulativeDist(t).get(400);
+                }
+            });
+        run("FlightBidder.choosePrice", 20 * FlightAgent.MAX_TIME, 200 * FlightAgent.MAX_TIME,
+            new QuoteReplay(games) {
+                void quote(FlightPriceMonitor monitor, double ask, int t) {
+                    checksum += FlightBidder.choosePrice(monitor, (float) ask, t, 1);
+                }
+            });
+
+        // A reply from the server read tag by tag, as TACAgent reads the TACMessage it is delivered in
+        final String[] messages = RecordedMessages.messages(1000, 42);
+        final TagParser parser = new TagParser();
+        run("TACMessage reply parsing", 10000, 100000, new Runnable() {
+            private int next;
+
+            public void run() {
+                parser.reset(messages[next++ % messages.length]);
+                while (parser.nextTag()) {
+                    if (parser.isTag("lastAskPrice") || parser.isTag("lastBidPrice")) {
+                        checksum += parser.getValueAsFloat(0f);
+                    } else if (parser.isTag("nextQuoteTime") || parser.isTag("timeProcessed")) {
+                        checksum += parser.getValueAsLong(0L);
+                    } else if (parser.isTag("auctionStatus") || parser.isTag("bidID")
+                            || parser.isTag("processingState")) {
+                        checksum += parser.getValueAsInt(0);
+                    }
+                }
+            }
+        });
+
+        // A bid written, sent and read back from the server's bid information
+        final float[] prices = new float[MODELS];
+        for (int i = 0; i < MODELS; i++) {
+            prices[i] = 50 + rnd.nextInt(40000) / 100f;
+        }
+        run("BidString round trip", 10000, 100000, new Runnable() {
+            private int next;
+
+            public void run() {
+                int i = next++ % MODELS;
+                BidString bid = new BidString(16 + i % 12);
+                bid.addBidPoint(1, prices[i]);
+                bid.addBidPoint(-2, prices[(i + 1) % MODELS] + 100);
+                TACMessage msg = new TACMessage("submitBid");
+                msg.setParameter("auctionID", bid.getAuction());
+                msg.setParameter("bidString", bid.getBidString());
+                checksum += msg.getMessageString().length();
+                BidString received = BidString.parse(bid.getAuction(), msg.getParameter("bidString"));
+                checksum += received.getQuantity() + received.getPrice(0);
+            }
+        });
+
+        return results;
+    }
+
+    private static int getPremium(List<EntertainmentAgent.Allocation> allocations) {
+        int premium = 0;
+        for (EntertainmentAgent.Allocation allocation : allocations) {
+            premium += allocation.getValue();
+        }
+        return premium;
+    }
+
+    /** Takes in the quotes of a game of a flight auction, one quote per op. */
+    private abstract static class QuoteReplay implements Runnable {
+        private final double[][] games;
+        private int game = -1, t = FlightAgent.MAX_TIME;
+        private FlightPriceMonitor monitor;
+
+        QuoteReplay(double[][] games) {
+            this.games = games;
+        }
+
+        public void run() {
+            if (t == FlightAgent.MAX_TIME) {
+                game = (game + 1) % games.length;
+                t = 0;
+                monitor = new FlightPriceMonitor(new FlightAuction(null, 3, true));
+            }
+            double ask = games[game][t];
+            monitor.addQuote(ask, t);
+            quote(monitor, ask, t++);
+        }
+
+        /** Makes the decision that follows the quote. */
+        abstract void quote(FlightPriceMonitor monitor, double ask, int t);
+    }
+
+    private static void save(List<Benchmark.Result> results, File file) throws IOException {
+        Properties properties = new Properties();
+        for (Benchmark.Result r : results) {
+            properties.setProperty(r.name, r.nsPerOp + " " + r.bytesPerOp);
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "DecisionBenchmark results: ns/op B/op");
+        }
+    }
+
+    /** Prints the change of each result from the baseline. @return the number of regressions. */
+    private static int compare(List<Benchmark.Result> results, File file, double tolerance) throws IOException {
+        Properties baseline = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            baseline.load(in);
+        }
+        int regressions = 0;
+        System.out.println();
+        System.out.println("Compared with " + file + ":");
+        for (Benchmark.Result r : results) {
+            String value = baseline.getProperty(r.name);
+            if (value == null) {
+                System.out.println(String.format("%-40s %14s", r.name, "new"));
+                continue;
+            }
+            String[] parts = value.trim().split(" ");
+            double ns = Double.parseDouble(parts[0]), bytes = Double.parseDouble(parts[1]);
+            boolean slower = r.nsPerOp > ns * (1 + tolerance);
+            boolean bigger = bytes >= 0 && r.bytesPerOp >= 0
+                && r.bytesPerOp > bytes * (1 + tolerance) + ALLOCATION_SLACK;
+            if (slower || bigger) {
+                regressions++;
+            }
+            System.out.println(String.format("%-40s %+13.1f%% time %+12.1f B/op%s", r.name,
+                100 * (r.nsPerOp / ns - 1), r.bytesPerOp - bytes, slower || bigger ? "  REGRESSION" : ""));
+        }
+        return regressions;
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java agent.benchmark.DecisionBenchmark [options] [name...]");
+        System.err.println("Times the agent's decisions, only those whose names contain one of the names if given.");
+        System.err.println("Options:");
+        System.err.println("  -o <file>       save the results");
+        System.err.println("  -b <file>       compare the results with ones saved before");
+        System.err.println("  -r <tolerance>  the slowdown counted as a regression (default " + DEFAULT_TOLERANCE
+            + ")");
+        System.err.println("  -h              show this help");
+    }
+
+    public static void main(String[] args) throws IOException {
+        File output = null, baseline = null;
+        double tolerance = DEFAULT_TOLERANCE;
+        List<String> filters = new ArrayList<String>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-h")) {
+                    usage();
+                    return;
+                } else if (args[i].startsWith("-")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("missing value of " + args[i]);
+                    }
+                    switch (args[i]) {
+                    case "-o":
+                        output = new File(args[++i]);
+                        break;
+                    case "-b":
+                        baseline = new File(args[++i]);
+                        break;
+                    case "-r":
+                        tolerance = Double.parseDouble(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                    }
+                } else {
+                    filters.add(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(1);
+        }
+
+        List<Benchmark.Result> results = new DecisionBenchmark(filters).runAll();
+        System.out.println("(checksum " + checksum + ')');
+        if (output != null) {
+            save(results, output);
+        }
+        if (baseline != null && compare(results, baseline, tolerance) > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package agent.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import agent.flight.FlightAgent;
+import agent.flight.FlightAuction;
+import agent.flight.FlightPriceMonitor;
+
+/**
+ * Replays a game of flight quotes and, at every time step, asks for the
+ * estimated price (as each {@code createPackages()} does) and the price
+ * distribution (as each bid refresh does). Compares the projection that was
+ * re-simulated per x into new arrays and sorted through boxed maps with the
+ * precomputed tables of {@link agent.flight.FlightPriceMonitor}.
+ */
+public class FlightPriceMonitorBenchmark {
+
+    private static final int X_MIN = -10;
+    private static final int X_MAX = 30;
+    // Estimated price requests per time step
+    private static final int ESTIMATES = 8;
+
+    private static double checksum;
+
+    public static void main(String[] args) {
+        final double[] quotes = RandomModels.flightQuotes(new Random(1));
+
+        new Benchmark("re-simulated projection", 20, 200).run(new Runnable() {
+            public void run() {
+                LegacyProjection legacy = new LegacyProjection();
+                for (int t = 0; t < quotes.length; t++) {
+                    legacy.prices[t] = quotes[t];
+                    for (int i = 0; i < ESTIMATES; i++) {
+                        checksum += legacy.findMinPrice(legacy.projectPrices(t));
+                    }
+                    checksum += legacy.priceCumulativeDist(t).get(400);
+                }
+            }
+        });
+
+        new Benchmark("precomputed tables", 20, 200).run(new Runnable() {
+            public void run() {
+                FlightPriceMonitor monitor = new FlightPriceMonitor(new FlightAuction(null, 3, true));
+                for (int t = 0; t < quotes.length; t++) {
+                    monitor.addQuote(quotes[t], t);
+                    for (int i = 0; i < ESTIMATES; i++) {
+                        checksum += monitor.predictMinimumPrice(t);
+                    }
+                    checksum += monitor.priceCumulativeDistribution(t)[400];
+                }
+            }
+        });
+
+        System.out.println("(checksum " + checksum + ')');
+    }
+
+    // The projection previously in FlightPriceMonitor
+    private static class LegacyProjection {
+        final double[] prices = new double[FlightAgent.MAX_TIME];
+        final Map<Integer, Double> probX = new HashMap<Integer, Double>();
+
+        LegacyProjection() {
+            for (int x = X_MIN; x <= X_MAX; x++) {
+                probX.put(x, 1d / (X_MAX - X_MIN + 1));
+            }
+        }
+
+        List<Double> priceCumulativeDist(int time) {
+            List<Double> dist = new ArrayList<Double>();
+            final Map<Integer, Double> mins = new HashMap<Integer, Double>();
+            List<Integer> xByPrice = new ArrayList<Integer>();
+            for (int x = X_MIN; x <= X_MAX; x++) {
+                xByPrice.add(x);
+                mins.put(x, findMinPrice(projectPrices(x, time)));
+            }
+            Collections.sort(xByPrice, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer x1, Integer x2) {
+                    return mins.get(x1).compareTo(mins.get(x2));
+                }
+            });
+            Iterator<Integer> xs = xByPrice.iterator();
+            int x = xs.next();
+            boolean isX = true;
+            double cumulative = 0d;
+            for (int price = 0; price < FlightAgent.PRICE_MAX; price++) {
+                if (isX && price >= mins.get(x)) {
+                    cumulative += probX.get(x);
+                    if (xs.hasNext()) {
+                        x = xs.next();
+                    } else {
+                        isX = false;
+                    }
+                }
+                dist.add(cumulative);
+            }
+            return dist;
+        }
+
+        double findMinPrice(double[] prices) {
+            double min = FlightAgent.PRICE_MAX;
+            for (int i = 0; i < prices.length; i++) {
+                if (prices[i] < min && prices[i] != -1) {
+                    min = prices[i];
+                }
+            }
+            return min;
+        }
+
+        double averagePriceDiff(int x, int t) {
+            double f = 10d + ((double)t / (double)FlightAgent.MAX_TIME) * ((double)x - 10d);
+            if (f > 0) return (f - 10d) / 2d;
+            else return (f + 10d) / 2d;
+        }
+
+        double[] projectPrices(int x, int t) {
+            double last = prices[t];
+            double[] futPrices = new double[FlightAgent.MAX_TIME - t];
+            futPrices[0] = last;
+            for (int i = t + 1; i < FlightAgent.MAX_TIME; i++) {
+                double price = last + averagePriceDiff(x, i);
+                if (price < FlightAgent.PRICE_MIN) {
+                    price = FlightAgent.PRICE_MIN;
+                } else if (price > FlightAgent.PRICE_MAX) {
+                    price = FlightAgent.PRICE_MAX;
+                }
+                futPrices[i - t] = price;
+                last = price;
+            }
+            return futPrices;
+        }
+
+        double[] projectPrices(int t) {
+            double[] futPrices = new double[FlightAgent.MAX_TIME - t];
+            for (int x : probX.keySet()) {
+                double[] pricesX = projectPrices(x, t);
+                for (int i = 0; i < FlightAgent.MAX_TIME - t; i++) {
+                    futPrices[i] += pricesX[i] * probX.get(x);
+                }
+            }
+            return futPrices;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package agent.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import agent.logging.GameLogAnalyzer;
+
+/**
+ * Measures the throughput of {@link agent.logging.GameLogAnalyzer} over a directory of generated game logs of
+ * realistic size (quotes every 10 seconds in all 28 auctions, a few thousand bids and a few hundred transactions),
+ * with one thread and with one thread per core.
+ */
+public class GameLogAnalyzerBenchmark {
+
+    private static final int GAMES = 200;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "tgf-game-logs");
+        final File outDir = new File(dir, "out");
+        outDir.mkdirs();
+        Random rnd = new Random(1);
+        final List<File> logs = new ArrayList<File>();
+        long bytes = 0;
+        for (int g = 0; g < GAMES; g++) {
+            File log = new File(dir, "game" + g + ".log");
+            writeLog(log, g, rnd);
+            logs.add(log);
+            bytes += log.length();
+        }
+        System.out.printf("%d logs, %.1f MB%n", GAMES, bytes / 1e6);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (final int threads : cores > 1 ? new int[] { 1, cores } : new int[] { 1 }) {
+            new Benchmark("analyze " + GAMES + " logs, " + threads + " threads", 2, 5).run(new Runnable() {
+                public void run() {
+                    try {
+                        GameLogAnalyzer.Result result = GameLogAnalyzer.analyze(logs, outDir, threads);
+                        if (result.failed > 0) {
+                            throw new IllegalStateException(result.toString());
+                        }
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+        System.out.println(GameLogAnalyzer.analyze(logs, outDir, cores));
+    }
+
+    private static void writeLog(File file, int game, Random rnd) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(file))) {
+            long start = 1114000000L + game * 600L;
+            out.write(start + ",g," + game + ',' + start + ',' + (start + 540) + ",," + game + ",tacClassic,8\n");
+            for (int a = 0; a < 8; a++) {
+                out.write(start + ",a,agent" + a + ',' + (100 + a) + '\n');
+            }
+            StringBuilder sb = new StringBuilder().append(start).append(",u");
+            for (int i = 0; i < 28; i++) {
+                int resource = i < 8 ? i / 4 : (i < 16 ? 2 + (i - 8) / 4 : 4 + (i - 16) / 4);
+                sb.append(',').append(1000 + i).append(',').append(resource).append(',').append(1 + i % 4);
+            }
+            out.write(sb.append('\n').toString());
+            for (int a = 0; a < 8; a++) {
+                sb.setLength(0);
+                sb.append(start).append(",c,").append(game).append(',').append(100 + a);
+                for (int c = 0; c < 8 * 6; c++) {
+                    sb.append(',').append(rnd.nextInt(200));
+                }
+                out.write(sb.append('\n').toString());
+            }
+            int bidID = 1, transID = 1;
+            float[] prices = new float[28];
+            for (int t = 0; t <= 540; t += 10) {
+                long time = start + t;
+                for (int i = 0; i < 28; i++) {
+                    prices[i] += rnd.nextFloat() * 10;
+                    out.write(time + ",q," + (1000 + i) + ',' + prices[i] + ',' + (prices[i] / 2) + '\n');
+                }
+                for (int b = 0; b < 60; b++) {
+                    int auction = 1000 + rnd.nextInt(28);
+                    out.write(time + ",b," + bidID++ + ',' + (100 + rnd.nextInt(8)) + ',' + auction + ",s,2,"
+                            + (1 + rnd.nextInt(3)) + ',' + (50 + rnd.nextInt(300)) + '.' + rnd.nextInt(100) + '\n');
+                }
+                for (int x = 0; x < 6; x++) {
+                    out.write(time + ",t," + (100 + rnd.nextInt(8)) + ",auction," + (1000 + rnd.nextInt(28)) + ",1,"
+                            + (50 + rnd.nextInt(300)) + ".5," + transID++ + '\n');
+                }
+            }
+            for (int a = 0; a < 8; a++) {
+                sb.setLength(0);
+                sb.append(start + 540).append(",l,").append(game).append(',').append(100 + a);
+                for (int c = 0; c < 8 * 6; c++) {
+                    sb.append(',').append(rnd.nextInt(5));
+                }
+                out.write(sb.append('\n').toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package agent.benchmark;
+
+import java.util.Random;
+
+import agent.hotel.HotelAllocationSearch;
+
+/**
+ * Compares the exhaustive recursion {@code HotelAgent.bhsRecurse} used to
+ * choose the hotel of each package with {@link agent.hotel.HotelAllocationSearch},
+ * over random package sets of 8 and 16 packages with some auctions closed.
+ */
+public class HotelAllocationBenchmark {
+
+    private static final int INSTANCES = 32;
+
+    private static float checksum;
+
+    public static void main(String[] args) {
+        for (final int numPackages : new int[] { 8, 16 }) {
+            final Instance[] instances = new Instance[INSTANCES];
+            Random rnd = new Random(numPackages);
+            for (int i = 0; i < INSTANCES; i++) {
+                instances[i] = new Instance(numPackages, rnd);
+            }
+
+            new Benchmark("bhsRecurse, " + numPackages + " packages", 5, 20).run(new Runnable() {
+                public void run() {
+                    for (Instance in : instances) {
+                        Alloc result = bhsRecurse(0, in.startDays, in.endDays, in.hps, in.predPrices,
+                                                  in.isClosed, in.stock);
+                        if (result.feasible) {
+                            checksum += result.netCost;
+                        }
+                    }
+                }
+            });
+
+            final HotelAllocationSearch search = new HotelAllocationSearch();
+            int mismatches = 0;
+            for (Instance in : instances) {
+                Alloc result = bhsRecurse(0, in.startDays, in.endDays, in.hps, in.predPrices, in.isClosed, in.stock);
+                boolean feasible = search.search(in.startDays.length, in.startDays, in.endDays, in.hps,
+                                                 in.predPrices, in.isClosed, in.stock);
+                if (feasible != result.feasible
+                    || (feasible && Math.abs(search.getCost() - result.netCost) > 0.01f)) {
+                    mismatches++;
+                }
+            }
+            System.out.println(mismatches + " of " + INSTANCES + " results differ");
+
+            new Benchmark("HotelAllocationSearch, " + numPackages + " packages", 50, 500).run(new Runnable() {
+                public void run() {
+                    for (Instance in : instances) {
+                        if (search.search(in.startDays.length, in.startDays, in.endDays, in.hps, in.predPrices,
+                                          in.isClosed, in.stock)) {
+                            checksum += search.getCost();
+                        }
+                    }
+                }
+            });
+        }
+
+        System.out.println("(checksum " + checksum + ')');
+    }
+
+    private static class Instance {
+        final int[] startDays, endDays, hps;
+        final float[] predPrices = new float[8];
+        final boolean[] isClosed = new boolean[8];
+        final int[] stock = new int[8];
+
+        Instance(int numPackages, Random rnd) {
+            startDays = new int[numPackages];
+            endDays = new int[numPackages];
+            hps = new int[numPackages];
+            for (int p = 0; p < numPackages; p++) {
+                startDays[p] = 1 + rnd.nextInt(4);
+                endDays[p] = startDays[p] + 1 + rnd.nextInt(5 - startDays[p]);
+                hps[p] = 50 + rnd.nextInt(100);
+            }
+            for (int a = 0; a < 8; a++) {
+                predPrices[a] = 20 + rnd.nextInt(300);
+                isClosed[a] = rnd.nextInt(4) == 0;
+                stock[a] = isClosed[a] ? numPackages / 2 + rnd.nextInt(numPackages / 2) : 0;
+            }
+        }
+    }
+
+    // The recursion previously in HotelAgent
+    private static class Alloc {
+        boolean[] alloc;
+        float netCost = 0;
+        boolean feasible = true;
+    }
+
+    private static Alloc bhsRecurse(int depth, int[] startDays, int[] endDays, int[] hps, float[] predPrices,
+                                    boolean[] isClosed, int[] stock) {
+        int startDay = startDays[depth], endDay = endDays[depth], hp = hps[depth];
+        int[] ttStock = stock.clone(), ssStock = stock.clone();
+        Alloc ttAlloc = new Alloc(), ssAlloc = new Alloc();
+        ttAlloc.netCost -= hp;
+        int ttDay;
+        for (int ssDay = startDay - 1; ssDay < endDay - 1; ssDay++) {
+            ttDay = ssDay + 4;
+            if (!isClosed[ttDay])
+                ttAlloc.netCost += predPrices[ttDay];
+            else if (ttStock[ttDay] > 0)
+                ttStock[ttDay]--;
+            else
+                ttAlloc.feasible = false;
+            if (!isClosed[ssDay])
+                ssAlloc.netCost += predPrices[ssDay];
+            else if (ssStock[ssDay] > 0)
+                ssStock[ssDay]--;
+            else
+                ssAlloc.feasible = false;
+        }
+        ttAlloc.alloc = new boolean[startDays.length - depth];
+        ttAlloc.alloc[0] = true;
+        ssAlloc.alloc = new boolean[startDays.length - depth];
+        ssAlloc.alloc[0] = false;
+
+        if (depth < startDays.length - 1) {
+            Alloc newTT, newSS;
+            newTT = ttAlloc.feasible ? bhsRecurse(depth + 1, startDays, endDays, hps, predPrices, isClosed, ttStock)
+                : ttAlloc;
+            newSS = ssAlloc.feasible ? bhsRecurse(depth + 1, startDays, endDays, hps, predPrices, isClosed, ssStock)
+                : ssAlloc;
+            if (!newTT.feasible && !newSS.feasible) {
+                return newTT;
+            }
+            Alloc head, tail;
+            if (newTT.feasible && newSS.feasible) {
+                ttAlloc.netCost += newTT.netCost;
+                ssAlloc.netCost += newSS.netCost;
+                if (ttAlloc.netCost < ssAlloc.netCost) {
+                    head = ttAlloc;
+                    tail = newTT;
+                } else {
+                    head = ssAlloc;
+                    tail = newSS;
+                }
+            } else if (newTT.feasible) {
+                ttAlloc.netCost += newTT.netCost;
+                head = ttAlloc;
+                tail = newTT;
+            } else {
+                ssAlloc.netCost += newSS.netCost;
+                head = ssAlloc;
+                tail = newSS;
+            }
+            for (int i = 0; i < tail.alloc.length; i++)
+                head.alloc[i + 1] = tail.alloc[i];
+            return head;
+        } else {
+            if (!ttAlloc.feasible && !ssAlloc.feasible)
+                return ttAlloc;
+            if (ttAlloc.feasible && ssAlloc.feasible)
+                return ttAlloc.netCost < ssAlloc.netCost ? ttAlloc : ssAlloc;
+            else if (ttAlloc.feasible)
+                return ttAlloc;
+            else
+                return ssAlloc;
+        }
+    }
+}
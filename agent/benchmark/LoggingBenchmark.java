@@ -0,0 +1,55 @@
+package agent.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import agent.Agent;
+import agent.PackageModel;
+import agent.logging.AgentLogger;
+
+/**
+ * Times a full {@link agent.Agent#createPackages(PackageModel, long, AgentLogger)} for 8 random clients with the
+ * package manager's logging off and on, and the cost of a dropped parameterized message. The console handler of
+ * java.util.logging is silenced, so "on" measures formatting and appending to the agent log.
+ */
+public class LoggingBenchmark {
+
+    private static final int MODELS = 16;
+
+    private static int checksum;
+
+    public static void main(String[] args) throws IOException {
+        Logger.getLogger("").setLevel(Level.OFF);
+        final AgentLogger logger = Benchmark.createLogger();
+        final PackageModel[] models = new PackageModel[MODELS];
+        Random rnd = new Random(1);
+        for (int i = 0; i < MODELS; i++) {
+            models[i] = RandomModels.model(rnd);
+        }
+        Runnable createPackages = new Runnable() {
+            private int next;
+
+            public void run() {
+                checksum += Agent.createPackages(models[next++ % MODELS], 1000, logger).size();
+            }
+        };
+
+        AgentLogger.setThreshold("Agent.benchmark", AgentLogger.OFF);
+        new Benchmark("createPackages, logging off", 200, 2000).run(createPackages);
+        AgentLogger.setThreshold("Agent.benchmark", AgentLogger.INFO);
+        new Benchmark("createPackages, logging on", 200, 2000).run(createPackages);
+
+        AgentLogger.setThreshold("Agent.benchmark", AgentLogger.WARNING);
+        new Benchmark("dropped message", 100000, 1000000).run(new Runnable() {
+            private int i;
+
+            public void run() {
+                // Package numbers, like the agent's, are small enough to be boxed without allocating
+                logger.log(AgentLogger.INFO, "Sorting preferences for package {} with days {} to {}", i++ & 7, 1, 4);
+            }
+        });
+        System.out.println("checksum " + checksum);
+    }
+}
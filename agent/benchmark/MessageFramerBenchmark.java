@@ -0,0 +1,74 @@
+package agent.benchmark;
+
+import se.sics.tac.aw.MessageFramer;
+
+/**
+ * Compares the allocation rate of the framing done by
+ * {@link se.sics.tac.aw.TACReader} (a String per read chunk plus a
+ * StringBuffer and String per message) with the
+ * {@link se.sics.tac.aw.MessageFramer} used by
+ * {@link se.sics.tac.aw.TACChannelReader} on a recorded message stream.
+ */
+public class MessageFramerBenchmark {
+
+    private static final int MESSAGES = 1000;
+    private static final int READ_SIZE = 1024;
+
+    private static long checksum;
+
+    public static void main(String[] args) {
+        final byte[] stream = RecordedMessages.stream(MESSAGES, 42);
+        System.out.println("Stream of " + MESSAGES + " messages, "
+                + stream.length + " bytes, framed per stream:");
+
+        new Benchmark("legacy byte[]->String framing", 200, 2000).run(new Runnable() {
+            public void run() {
+                legacyFrame(stream);
+            }
+        });
+
+        final MessageFramer framer = new MessageFramer(16 * 1024);
+        final MessageFramer.Handler handler = new MessageFramer.Handler() {
+            public void messageFramed(CharSequence message) {
+                consume(message);
+            }
+        };
+        new Benchmark("MessageFramer buffer view", 200, 2000).run(new Runnable() {
+            public void run() {
+                for (int pos = 0; pos < stream.length; pos += READ_SIZE) {
+                    framer.feed(stream, pos, Math.min(READ_SIZE, stream.length - pos),
+                            handler);
+                }
+            }
+        });
+
+        System.out.println("(checksum " + checksum + ')');
+    }
+
+    // Same loop as TACReader.run() with reads of READ_SIZE bytes
+    private static void legacyFrame(byte[] stream) {
+        byte[] buffer = new byte[READ_SIZE];
+        StringBuffer lastMessage = new StringBuffer();
+        for (int offset = 0; offset < stream.length; offset += READ_SIZE) {
+            int len = Math.min(READ_SIZE, stream.length - offset);
+            System.arraycopy(stream, offset, buffer, 0, len);
+            int lastPos = 0;
+            for (int i = 0; i < len; i++) {
+                if (buffer[i] == 0) {
+                    String msg = new String(buffer, lastPos, i - lastPos);
+                    lastMessage.append(msg);
+                    consume(lastMessage.toString());
+                    lastMessage = new StringBuffer();
+                    lastPos = i + 1;
+                }
+            }
+            if (lastPos < len) {
+                lastMessage.append(new String(buffer, lastPos, len - lastPos));
+            }
+        }
+    }
+
+    private static void consume(CharSequence message) {
+        checksum += message.length() + message.charAt(message.length() / 2);
+    }
+}
@@ -0,0 +1,144 @@
+package agent.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import agent.Client;
+import agent.Package;
+import agent.PackageModel;
+import agent.entertainment.EntertainmentTicket;
+import agent.entertainment.EntertainmentType;
+import agent.flight.FlightAgent;
+import agent.flight.FlightTicket;
+import agent.hotel.HotelBooking;
+
+/**
+ * Seeded inputs for the benchmarks of the agent's decisions: clients drawn
+ * as the server draws them, package models with some goods held and
+ * plausible prices, and games of flight quotes.
+ */
+public class RandomModels {
+
+    public static final int CLIENTS = 8;
+
+    /** Returns a client with preferences drawn like the server's. */
+    public static Client client(Random rnd) {
+        int in = 1 + rnd.nextInt(4);
+        int out = in + 1 + rnd.nextInt(5 - in);
+        return new RandomClient(in, out, 50 + rnd.nextInt(100), rnd);
+    }
+
+    /** Returns the entertainment tickets an agent is endowed with. */
+    public static List<EntertainmentTicket> endowment(Random rnd) {
+        List<EntertainmentTicket> tickets = new ArrayList<EntertainmentTicket>();
+        for (EntertainmentType type : EntertainmentType.values()) {
+            boolean outer = rnd.nextBoolean();
+            for (int i = 0; i < 2; i++) {
+                tickets.add(new EntertainmentTicket(outer ? 1 : 2, type));
+                tickets.add(new EntertainmentTicket(outer ? 4 : 3, type));
+            }
+        }
+        return tickets;
+    }
+
+    /**
+     * Returns the packages of 8 clients who all stay from the first day to
+     * the last, the most ways of using entertainment tickets there are.
+     */
+    public static List<Package> longStays(Random rnd) {
+        List<Package> packages = new ArrayList<Package>();
+        for (int i = 0; i < CLIENTS; i++) {
+            packages.add(new Package(new RandomClient(1, 5, 50 + rnd.nextInt(100), rnd), 1, 5));
+        }
+        return packages;
+    }
+
+    /** Returns one entertainment ticket of each day and entertainment. */
+    public static List<EntertainmentTicket> ticketPerKind() {
+        List<EntertainmentTicket> tickets = new ArrayList<EntertainmentTicket>();
+        for (int day = 1; day <= 4; day++) {
+            for (EntertainmentType type : EntertainmentType.values()) {
+                tickets.add(new EntertainmentTicket(day, type));
+            }
+        }
+        return tickets;
+    }
+
+    /** Returns a model of 8 clients part way into a game. */
+    public static PackageModel model(Random rnd) {
+        Client[] clients = new Client[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = client(rnd);
+        }
+        List<FlightTicket> flights = new ArrayList<FlightTicket>();
+        List<HotelBooking> hotels = new ArrayList<HotelBooking>();
+        List<EntertainmentTicket> tickets = new ArrayList<EntertainmentTicket>();
+        for (int i = 0; i < 4; i++) {
+            flights.add(new FlightTicket(1 + rnd.nextInt(4), true));
+            flights.add(new FlightTicket(2 + rnd.nextInt(4), false));
+            hotels.add(new HotelBooking(1 + rnd.nextInt(4), rnd.nextBoolean()));
+            tickets.add(new EntertainmentTicket(1 + rnd.nextInt(4), EntertainmentType.randomType(rnd)));
+        }
+        PackageModel model = new PackageModel(clients, flights, hotels, tickets);
+        for (int day = 1; day <= 5; day++) {
+            if (day > 1) {
+                model.setFlight(day, false, 250 + rnd.nextInt(300), 1f);
+            }
+            if (day < 5) {
+                model.setFlight(day, true, 250 + rnd.nextInt(300), 1f);
+                model.setHotel(day, true, 100 + rnd.nextInt(200), 0.9f, rnd.nextInt(8) == 0);
+                model.setHotel(day, false, 50 + rnd.nextInt(150), 0.95f, rnd.nextInt(8) == 0);
+                for (EntertainmentType type : EntertainmentType.values()) {
+                    model.setEntertainment(day, type, 40 + rnd.nextInt(100), 0.8f);
+                }
+            }
+        }
+        return model;
+    }
+
+    /** Returns the ask prices of a flight auction for a game, following the server's random walk. */
+    public static double[] flightQuotes(Random rnd) {
+        double[] quotes = new double[FlightAgent.MAX_TIME];
+        double price = 250 + 150 * rnd.nextDouble();
+        for (int t = 0; t < quotes.length; t++) {
+            if (t > 0) {
+                double f = 10d + ((double)t / FlightAgent.MAX_TIME) * (15d - 10d);
+                price += -10d + (f + 10d) * rnd.nextDouble();
+                price = Math.max(FlightAgent.PRICE_MIN, Math.min(FlightAgent.PRICE_MAX, price));
+            }
+            quotes[t] = price;
+        }
+        return quotes;
+    }
+
+    private static class RandomClient extends Client {
+        private final int in, out, premium;
+        private final int[] funPremium = new int[4];
+
+        RandomClient(int in, int out, int premium, Random rnd) {
+            this.in = in;
+            this.out = out;
+            this.premium = premium;
+            for (int i = 1; i < funPremium.length; i++) {
+                funPremium[i] = rnd.nextInt(200);
+            }
+        }
+
+        public int getPreferredArrivalDay() {
+            return in;
+        }
+
+        public int getPreferredDepartureDay() {
+            return out;
+        }
+
+        public int getHotelPremium() {
+            return premium;
+        }
+
+        public int getEntertainmentPremium(EntertainmentType type) {
+            return funPremium[type.getValue()];
+        }
+    }
+}
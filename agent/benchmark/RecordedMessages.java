@@ -0,0 +1,78 @@
+package agent.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * A recorded stream of TAC server replies as they arrive on the socket:
+ * NUL terminated XML messages in the mix seen during a game (mostly quote
+ * replies with some bid and transaction information).
+ */
+public class RecordedMessages {
+
+    private static final String[] TEMPLATES = {
+        "<getQuote><auctionID>%d</auctionID><lastAskPrice>%.2f</lastAskPrice>"
+            + "<lastBidPrice>%.2f</lastBidPrice><hypotheticalQuantityWon>%d"
+            + "</hypotheticalQuantityWon><auctionStatus>1</auctionStatus>"
+            + "<nextQuoteTime>%d</nextQuoteTime><lastQuoteTime>%d"
+            + "</lastQuoteTime></getQuote>",
+        "<getQuote><auctionID>%d</auctionID><lastAskPrice>%.2f</lastAskPrice>"
+            + "<lastBidPrice>%.2f</lastBidPrice><auctionStatus>%d</auctionStatus>"
+            + "<nextQuoteTime>%d</nextQuoteTime></getQuote>",
+        "<bidInfo><bidID>%d</bidID><bidString>((1 %.2f))</bidString>"
+            + "<bidHash>%d</bidHash><processingState>%d</processingState>"
+            + "<rejectReason>0</rejectReason><timeProcessed>%d</timeProcessed>"
+            + "<timeClosed>0</timeClosed><clearID>-1</clearID></bidInfo>",
+        "<transInfo><list><transaction><transID>%d</transID><buyerBidID>%d"
+            + "</buyerBidID><sellerBidID>-1</sellerBidID><auction>%d</auction>"
+            + "<quantity>1</quantity><price>%.2f</price><timeOfTransaction>%d"
+            + "</timeOfTransaction></transaction></list></transInfo>"
+    };
+
+    /** Returns count messages, without the NUL terminators. */
+    public static String[] messages(int count, long seed) {
+        byte[] stream = stream(count, seed);
+        String[] messages = new String[count];
+        for (int i = 0, start = 0, n = 0; i < stream.length; i++) {
+            if (stream[i] == 0) {
+                messages[n++] = new String(stream, start, i - start,
+                        java.nio.charset.StandardCharsets.ISO_8859_1);
+                start = i + 1;
+            }
+        }
+        return messages;
+    }
+
+    /** Returns the concatenated stream of count messages. */
+    public static byte[] stream(int count, long seed) {
+        Random random = new Random(seed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long time = 1114000000L;
+        for (int i = 0; i < count; i++) {
+            int choice = random.nextInt(10);
+            String msg;
+            if (choice < 6) {
+                msg = String.format(TEMPLATES[0], random.nextInt(28),
+                        200 + random.nextFloat() * 200, 180 + random.nextFloat() * 200,
+                        random.nextInt(4), time + 60, time);
+            } else if (choice < 8) {
+                msg = String.format(TEMPLATES[1], random.nextInt(28),
+                        200 + random.nextFloat() * 200, 180 + random.nextFloat() * 200,
+                        random.nextInt(4), time + 60);
+            } else if (choice < 9) {
+                msg = String.format(TEMPLATES[2], 10000 + i,
+                        50 + random.nextFloat() * 300, random.nextInt(1 << 30),
+                        random.nextInt(5), time);
+            } else {
+                msg = String.format(TEMPLATES[3], 20000 + i, 10000 + i,
+                        random.nextInt(28), 50 + random.nextFloat() * 300, time);
+            }
+            time += random.nextInt(3);
+            for (int j = 0, n = msg.length(); j < n; j++) {
+                out.write(msg.charAt(j));
+            }
+            out.write(0);
+        }
+        return out.toByteArray();
+    }
+}
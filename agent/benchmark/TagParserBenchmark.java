@@ -0,0 +1,129 @@
+package agent.benchmark;
+
+import se.sics.tac.aw.TagParser;
+
+/**
+ * Parses recorded quote and bidInfo replies the way
+ * {@link se.sics.tac.aw.TACAgent} does, comparing the old substring based
+ * scanning in TACMessage with the in-place {@link se.sics.tac.aw.TagParser}.
+ */
+public class TagParserBenchmark {
+
+    private static final int MESSAGES = 1000;
+
+    private static double checksum;
+
+    public static void main(String[] args) {
+        final String[] messages = RecordedMessages.messages(MESSAGES, 42);
+        System.out.println("Parsing " + MESSAGES + " recorded messages per op:");
+
+        new Benchmark("substring scanning", 200, 2000).run(new Runnable() {
+            public void run() {
+                for (String message : messages) {
+                    LegacyParser parser = new LegacyParser(message);
+                    while (parser.nextTag()) {
+                        if (parser.isTag("lastAskPrice") || parser.isTag("lastBidPrice")) {
+                            checksum += parser.getValueAsFloat(0f);
+                        } else if (parser.isTag("nextQuoteTime")
+                                || parser.isTag("timeProcessed")) {
+                            checksum += parser.getValueAsLong(0L);
+                        } else if (parser.isTag("auctionStatus") || parser.isTag("bidID")
+                                || parser.isTag("processingState")) {
+                            checksum += parser.getValueAsInt(0);
+                        }
+                    }
+                }
+            }
+        });
+
+        final TagParser parser = new TagParser();
+        new Benchmark("TagParser", 200, 2000).run(new Runnable() {
+            public void run() {
+                for (String message : messages) {
+                    parser.reset(message);
+                    while (parser.nextTag()) {
+                        if (parser.isTag("lastAskPrice") || parser.isTag("lastBidPrice")) {
+                            checksum += parser.getValueAsFloat(0f);
+                        } else if (parser.isTag("nextQuoteTime")
+                                || parser.isTag("timeProcessed")) {
+                            checksum += parser.getValueAsLong(0L);
+                        } else if (parser.isTag("auctionStatus") || parser.isTag("bidID")
+                                || parser.isTag("processingState")) {
+                            checksum += parser.getValueAsInt(0);
+                        }
+                    }
+                }
+            }
+        });
+
+        System.out.println("(checksum " + checksum + ')');
+    }
+
+    /** The parsing previously done by TACMessage on the received String. */
+    private static class LegacyParser {
+        private final String receivedMessage;
+        private int pos = 0;
+
+        LegacyParser(String receivedMessage) {
+            this.receivedMessage = receivedMessage;
+        }
+
+        boolean nextTag() {
+            if (pos < receivedMessage.length()) {
+                int nextPos = receivedMessage.indexOf('<', pos);
+                if (nextPos >= 0) {
+                    pos = nextPos + 1;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String getValue() {
+            int start = receivedMessage.indexOf('>', pos);
+            int end = receivedMessage.indexOf('<', start);
+            if (start > 0 && end > 0) {
+                return receivedMessage.substring(start + 1, end);
+            }
+            return null;
+        }
+
+        int getValueAsInt(int def) {
+            String val = getValue();
+            if (val != null) {
+                try {
+                    return Integer.parseInt(val);
+                } catch (Exception e) {
+                }
+            }
+            return def;
+        }
+
+        long getValueAsLong(long def) {
+            String val = getValue();
+            if (val != null) {
+                try {
+                    return Long.parseLong(val);
+                } catch (Exception e) {
+                }
+            }
+            return def;
+        }
+
+        float getValueAsFloat(float def) {
+            String val = getValue();
+            if (val != null) {
+                try {
+                    return Float.parseFloat(val);
+                } catch (Exception e) {
+                }
+            }
+            return def;
+        }
+
+        boolean isTag(String name) {
+            name = name + '>';
+            return receivedMessage.regionMatches(pos, name, 0, name.length());
+        }
+    }
+}
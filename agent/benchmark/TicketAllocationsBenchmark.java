@@ -0,0 +1,99 @@
+package agent.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import agent.TicketAllocations;
+import agent.entertainment.EntertainmentType;
+
+/**
+ * Compares enumerating the entertainment allocations for every candidate of
+ * a {@code createPackages()} call (8 clients, 10 stays, 2 hotels) the way
+ * {@code Agent.getTicketAllocations} did with the precomputed
+ * {@link agent.TicketAllocations} table.
+ */
+public class TicketAllocationsBenchmark {
+
+    private static final int CLIENTS = 8;
+    private static final int NUM_DAYS = 5;
+
+    private static long checksum;
+
+    public static void main(String[] args) {
+        new Benchmark("recursive HashSet enumeration", 200, 2000).run(new Runnable() {
+            public void run() {
+                for (int client = 0; client < CLIENTS; client++) {
+                    for (int arrive = 1; arrive < NUM_DAYS; arrive++) {
+                        for (int depart = arrive + 1; depart <= NUM_DAYS; depart++) {
+                            for (int towers = 0; towers < 2; towers++) {
+                                Set<Integer> days = new HashSet<Integer>();
+                                for (int day = arrive; day < depart; day++) {
+                                    days.add(day);
+                                }
+                                Set<EntertainmentType> types = new HashSet<EntertainmentType>();
+                                for (EntertainmentType type : EntertainmentType.values()) {
+                                    types.add(type);
+                                }
+                                for (EntertainmentType[] alloc : getTicketAllocations(days, types)) {
+                                    for (int day = 1; day <= NUM_DAYS; day++) {
+                                        if (alloc[day] != null) {
+                                            checksum += alloc[day].getValue();
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        new Benchmark("TicketAllocations table", 200, 2000).run(new Runnable() {
+            public void run() {
+                for (int client = 0; client < CLIENTS; client++) {
+                    for (int arrive = 1; arrive < NUM_DAYS; arrive++) {
+                        for (int depart = arrive + 1; depart <= NUM_DAYS; depart++) {
+                            for (int towers = 0; towers < 2; towers++) {
+                                for (int alloc : TicketAllocations.forStay(arrive, depart)) {
+                                    for (int day = arrive; day < depart; day++) {
+                                        checksum += TicketAllocations.getTypeValue(alloc, day);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        System.out.println("(checksum " + checksum + ')');
+    }
+
+    // The enumeration previously done by Agent for every candidate package
+    private static List<EntertainmentType[]> getTicketAllocations(
+        Set<Integer> days, Set<EntertainmentType> types) {
+        List<EntertainmentType[]> allocs = new ArrayList<EntertainmentType[]>();
+
+        if (types.size() > 0 && days.size() > 0) {
+            for (EntertainmentType type : types) {
+                Set<EntertainmentType> lessTypes = new HashSet<EntertainmentType>(types);
+                lessTypes.remove(type);
+                for (int day : days) {
+                    Set<Integer> lessDays = new HashSet<Integer>(days);
+                    lessDays.remove(day);
+                    List<EntertainmentType[]> newAllocs = getTicketAllocations(lessDays, lessTypes);
+                    for (EntertainmentType[] alloc : newAllocs) {
+                        alloc[day] = type;
+                    }
+                    allocs.addAll(newAllocs);
+                }
+            }
+        } else {
+            allocs.add(new EntertainmentType[NUM_DAYS + 1]);
+        }
+
+        return allocs;
+    }
+}
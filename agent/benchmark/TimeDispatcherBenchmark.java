@@ -0,0 +1,65 @@
+package agent.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import se.sics.tac.aw.Task;
+import se.sics.tac.aw.TimeDispatcher;
+
+/**
+ * Measures the cost of scheduling and cancelling tasks with the
+ * {@link se.sics.tac.aw.TimeDispatcher} and how late tasks are dispatched
+ * relative to their deadline.
+ */
+public class TimeDispatcherBenchmark {
+
+    private static final int TASKS = 5000;
+
+    public static void main(String[] args) throws InterruptedException {
+        final TimeDispatcher dispatcher = TimeDispatcher.getDefault();
+        final Task noop = new Task() {
+            public void performWork(long time, Object key, Object value) {
+            }
+        };
+        final Object[] keys = new Object[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            keys[i] = new Object();
+        }
+
+        // Schedule tasks far in the future and cancel them again
+        new Benchmark("schedule+cancel " + TASKS + " tasks", 20, 200).run(new Runnable() {
+            public void run() {
+                long future = System.currentTimeMillis() + 3600000L;
+                for (int i = 0; i < TASKS; i++) {
+                    dispatcher.addTask(future + i, keys[i], null, noop);
+                }
+                for (int i = 0; i < TASKS; i++) {
+                    dispatcher.cancelTask(keys[i], noop);
+                }
+            }
+        });
+
+        // Dispatch jitter: schedule tasks spread over two seconds and
+        // record how late each one is performed.
+        final long[] lateness = new long[TASKS];
+        final CountDownLatch done = new CountDownLatch(TASKS);
+        Task recorder = new Task() {
+            public void performWork(long time, Object key, Object value) {
+                lateness[(Integer) value] = System.currentTimeMillis() - time;
+                done.countDown();
+            }
+        };
+        Random random = new Random(4711);
+        long start = System.currentTimeMillis() + 200;
+        for (int i = 0; i < TASKS; i++) {
+            dispatcher.addTask(start + random.nextInt(2000), keys[i], i, recorder);
+        }
+        done.await();
+
+        Arrays.sort(lateness);
+        System.out.printf("dispatch lateness over %d tasks: p50=%d ms p99=%d ms max=%d ms%n",
+                TASKS, lateness[TASKS / 2], lateness[TASKS * 99 / 100], lateness[TASKS - 1]);
+        System.exit(0);
+    }
+}
@@ -18,9 +18,7 @@ public class EntertainmentAgent extends SubAgent<EntertainmentTicket> {
     private List<Package> packages;
     private List<EntertainmentBuyer> buyers = new ArrayList<EntertainmentBuyer>();
     private List<EntertainmentSeller> sellers = new ArrayList<EntertainmentSeller>();
-
-    private static final float PROFIT_FACTOR = 0.2f;
-    private static final float TICKET_SELL_PRICE = 100f;
+    private final EntertainmentAssignment assignment = new EntertainmentAssignment();
 
     public EntertainmentAgent(Agent agent, List<EntertainmentTicket> stock, AgentLogger logger) {
         super(agent, stock, logger);
@@ -28,7 +26,8 @@ public class EntertainmentAgent extends SubAgent<EntertainmentTicket> {
         createConmen();
     }
 
-    protected class Allocation implements Comparable<Allocation> {
+    /** A ticket given to a package. */
+    public static class Allocation implements Comparable<Allocation> {
         public final Package pkg;
         public final EntertainmentTicket ticket;
 
@@ -89,9 +88,29 @@ public class EntertainmentAgent extends SubAgent<EntertainmentTicket> {
         cancelBidders(sellers);
     }
 
-    private List<Allocation> possibleAllocations() {
+    /**
+     * Chooses which of the tickets to give to which of the packages for the largest total premium, without giving a
+     * client two tickets for the same day or entertainment. Nothing is changed until the allocations are performed.
+     *
+     * @return the chosen allocations.
+     * @see agent.entertainment.EntertainmentAssignment
+     */
+    public static List<Allocation> chooseAllocations(List<Package> packages, List<EntertainmentTicket> stock) {
+        return new EntertainmentAssignment().choose(packages, stock);
+    }
+
+    /**
+     * Chooses the allocations as {@link #chooseAllocations} did before, highest premium first. A high premium taken
+     * early can cost more elsewhere, so the total may be lower. Kept to compare against.
+     *
+     * @return the chosen allocations.
+     */
+    public static List<Allocation> chooseGreedyAllocations(List<Package> packages, List<EntertainmentTicket> stock) {
+        return chooseBestAllocations(possibleAllocations(packages, stock));
+    }
+
+    private static List<Allocation> possibleAllocations(List<Package> packages, List<EntertainmentTicket> stock) {
         List<Allocation> allocations = new ArrayList<Allocation>();
-        logger.log("We already own " + stock.size() + " tickets.");
         for (Package pkg : packages) {
             for (EntertainmentTicket ticket : stock) {
                 if (pkg.getArrivalDay() <= ticket.getDay()
@@ -103,7 +122,7 @@ public class EntertainmentAgent extends SubAgent<EntertainmentTicket> {
         return allocations;
     }
 
-    private List<Allocation> removeMatchingAllocations(List<Allocation> allocations, Allocation addedAllocation) {
+    private static List<Allocation> removeMatchingAllocations(List<Allocation> allocations, Allocation addedAllocation) {
         List<Allocation> newAllocations = new ArrayList<Allocation>();
 
         for (Allocation allocation : allocations) {
@@ -115,7 +134,7 @@ public class EntertainmentAgent extends SubAgent<EntertainmentTicket> {
         return newAllocations;
     }
 
-    private List<Allocation> chooseBestAllocations(List<Allocation> allocations) {
+    private static List<Allocation> chooseBestAllocations(List<Allocation> allocations) {
         java.util.Collections.sort(allocations);
         java.util.Collections.reverse(allocations);
 
@@ -161,7 +180,7 @@ public class EntertainmentAgent extends SubAgent<EntertainmentTicket> {
             try {
                 for (Package.UnfilledEntertainmentSlot slot : pkg.unfilledEntertainmentSlots()) {
                     int day = pkg.reserveDay();
-                    float bidPrice = slot.premium * (1 - PROFIT_FACTOR);
+                    float bidPrice = slot.premium * (1 - agent.getParameters().getEntertainmentProfitFactor());
                     bidFor(pkg, day, slot.type, bidPrice);
                 }
             } catch (Package.PackageFullException ex) { }  // We can't fit anything else in the package, so move on
@@ -192,7 +211,8 @@ public class EntertainmentAgent extends SubAgent<EntertainmentTicket> {
                 if (ticketList.size() == 0) continue;
 
                 logger.log("Selling " + ticketList.size() + " x " + ticketList.get(0));
-                EntertainmentSeller seller = new EntertainmentSeller(this, ticketList, TICKET_SELL_PRICE,
+                EntertainmentSeller seller = new EntertainmentSeller(this, ticketList,
+                        agent.getParameters().getEntertainmentSellPrice(),
                         logger.getSublogger("seller"));
                 sellers.add(seller);
             }
@@ -202,13 +222,13 @@ public class EntertainmentAgent extends SubAgent<EntertainmentTicket> {
     public void fulfillPackages(List<Package> packages) {
         this.packages = packages;
 
-        List<Allocation> allocations = possibleAllocations();
-        List<Allocation> bestAllocations = chooseBestAllocations(allocations);
+        logger.log("We already own " + stock.size() + " tickets.");
+        List<Allocation> bestAllocations = assignment.choose(packages, stock);
 
         for (Allocation allocation : bestAllocations) {
             allocation.perform();
         }
-        logger.log("Made " + bestAllocations.size() + " allocations out of a possible " + allocations.size() + ".");
+        logger.log("Made " + bestAllocations.size() + " allocations.");
 
         bidForUnfilledSlots();
 
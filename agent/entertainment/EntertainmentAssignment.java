@@ -0,0 +1,654 @@
+package agent.entertainment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import agent.Agent;
+import agent.Package;
+
+/**
+ * Chooses which entertainment tickets to give to which packages so that the total premium is as large as possible,
+ * without giving a client two tickets for the same day or the same entertainment.
+ *
+ * <p>The tickets a client is given pair days of their stay with distinct entertainments, so the problem is a matching
+ * of clients, days and entertainments at once. A bipartite assignment (Hungarian algorithm) or a min-cost flow can
+ * keep to the per-day or the per-entertainment limit of a client, but not to both. Tickets of a kind (a day and an
+ * entertainment) are interchangeable, so each client is given one of their ways of using the kinds left (a client
+ * staying 4 nights has 73), by a branch and bound search. A branch is cut when it cannot beat the best choice found so
+ * far even if the clients left got the most they could: the lesser of what each could get on their own, and what the
+ * tickets of each entertainment are worth to the clients who value it most, one ticket each, lowered when that counts
+ * a client for more entertainments than they have nights. The ways of each client are tried highest premium first,
+ * so the rest of a client's ways are cut together. The most found to be possible from the tickets left after some
+ * clients is remembered, so that other ways of those clients that leave the same tickets are cut at once, and the
+ * search ends as soon as it finds a choice as good as the bound of all the clients.
+ *
+ * <p>The search starts from the better of the greedy choice of {@link EntertainmentAgent#chooseGreedyAllocations} and
+ * the choice that gives each entertainment to the clients its bound was reached with, if days can be found for them.
+ * The latter reaches the bound, so no search is needed, whenever the clients stay long enough for the days to work
+ * out, e.g. when they all stay from the first day to the last.
+ *
+ * <p>The search stops at a deadline, in which case the best choice found so far is returned, which is never worse
+ * than the greedy one. An instance keeps its memory of the tickets left between choices, so it should be reused.
+ */
+public class EntertainmentAssignment {
+
+    /** Milliseconds after which {@link #choose(List, List)} stops searching. */
+    public static final long TIME_LIMIT = 50;
+
+    private static final EntertainmentType[] TYPE_VALUES = EntertainmentType.values();
+    private static final int DAYS = Agent.NUM_DAYS - 1;
+    private static final int TYPES = TYPE_VALUES.length;
+    private static final int KINDS = DAYS * TYPES;
+    // Number of branches searched between checks of the deadline
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+    // Number of branches after which no days are looked for in the choice by entertainment
+    private static final int DAY_BRANCH_LIMIT = 1024;
+    // The number of tickets of each kind is packed 4 bits per kind into the low 48 bits of a long, and the index of
+    // the package above them
+    private static final int BITS = 4;
+    private static final int MAX_COUNT = (1 << BITS) - 1;
+    private static final int INDEX_SHIFT = KINDS * BITS;
+
+    /** A way for a client to use some kinds of ticket. */
+    private static class Option {
+        final int premium;
+        // The kinds used, a bit per kind
+        final int kinds;
+
+        Option(int premium, int kinds) {
+            this.premium = premium;
+            this.kinds = kinds;
+        }
+    }
+
+    // Set up by choose, packages who value entertainment most first
+    private List<Package> packages;
+    private int numPackages;
+    private int[] arrivals, departures;
+    // The options of each package, highest premium first and ending with no tickets
+    private Option[][] options;
+    private final List<ArrayDeque<EntertainmentTicket>> ticketsByKind = new ArrayList<ArrayDeque<EntertainmentTicket>>();
+    // The tickets of each kind left
+    private final int[] counts = new int[KINDS];
+    // The packages from an index on that value an entertainment, highest premium first
+    private int[][][] byPremium;
+    private int[][] premiums;
+    // Used by getTypeBound, which leaves the packages it gave a ticket in chosen
+    private final int[] left = new int[DAYS];
+    private int[] chosen;
+    private int numChosen;
+    // How many of the packages from an index on could use a ticket of each kind
+    private int[][] usable;
+    // The entertainments of each package in the choice by entertainment, a bit per entertainment, and the packages
+    // in the order days are found for them, shortest stay first
+    private int[] typeSets;
+    private int[] byStay;
+    private int dayBranches;
+    private int rootBound;
+    // Used by getBound: the entertainments each package is counted for in the type bound, the premium of the first
+    // package left out of each, and the prices, order and margins of getNightsBound
+    private int[] boundTypes;
+    private final int[] leftOut = new int[TYPES];
+    private int[] prices;
+    private int[] order;
+    private final int[] margins = new int[TYPES];
+
+    // Memo of the most the packages from an index on were found to be able to get from the tickets left: open
+    // addressing on the packed index and tickets, cleared by bumping the generation
+    private int memoMask;
+    private int[] memoGeneration;
+    private long[] memoKey;
+    private int[] memoMost;
+    private int memoSize;
+    private int generation = 0;
+
+    private int[] kinds;
+    private int[] bestKinds;
+    private int bestPremium;
+    private long deadline;
+    private int branches;
+    private boolean timedOut;
+
+    public EntertainmentAssignment() {
+        for (int kind = 0; kind < KINDS; kind++) {
+            ticketsByKind.add(new ArrayDeque<EntertainmentTicket>());
+        }
+        allocateMemo(1024);
+    }
+
+    private static int getKind(int day, int type) {
+        return (day - 1) * TYPES + type;
+    }
+
+    private void setUp(List<Package> packages, List<EntertainmentTicket> stock) {
+        this.packages = new ArrayList<Package>(packages);
+        // Clients who value entertainment most are decided first
+        final Map<Package, Integer> own = new IdentityHashMap<Package, Integer>();
+        for (Package pkg : packages) {
+            int premium = 0;
+            for (EntertainmentType type : TYPE_VALUES) {
+                premium += pkg.getClient().getEntertainmentPremium(type);
+            }
+            own.put(pkg, premium);
+        }
+        Collections.sort(this.packages, new Comparator<Package>() {
+            public int compare(Package a, Package b) {
+                return Integer.compare(own.get(b), own.get(a));
+            }
+        });
+        Arrays.fill(counts, 0);
+        for (ArrayDeque<EntertainmentTicket> kindTickets : ticketsByKind) {
+            kindTickets.clear();
+        }
+        for (EntertainmentTicket ticket : stock) {
+            int kind = getKind(ticket.getDay(), ticket.getType().ordinal());
+            ticketsByKind.get(kind).add(ticket);
+            counts[kind]++;
+        }
+
+        int n = numPackages = this.packages.size();
+        arrivals = new int[n];
+        departures = new int[n];
+        premiums = new int[n][TYPES];
+        options = new Option[n][];
+        for (int index = 0; index < n; index++) {
+            Package pkg = this.packages.get(index);
+            arrivals[index] = pkg.getArrivalDay();
+            departures[index] = pkg.getDepartureDay();
+            for (int type = 0; type < TYPES; type++) {
+                premiums[index][type] = pkg.getClient().getEntertainmentPremium(TYPE_VALUES[type]);
+            }
+            List<Option> pkgOptions = new ArrayList<Option>();
+            addOptions(index, arrivals[index], 0, 0, 0, pkgOptions);
+            Collections.sort(pkgOptions, new Comparator<Option>() {
+                public int compare(Option a, Option b) {
+                    return Integer.compare(b.premium, a.premium);
+                }
+            });
+            options[index] = pkgOptions.toArray(new Option[pkgOptions.size()]);
+        }
+
+        byPremium = new int[n + 1][TYPES][];
+        for (int index = 0; index <= n; index++) {
+            for (int type = 0; type < TYPES; type++) {
+                int[] valuing = new int[n - index];
+                int count = 0;
+                for (int i = index; i < n; i++) {
+                    if (premiums[i][type] > 0) {
+                        // Kept in order of premium
+                        int pos = count++;
+                        while (pos > 0 && premiums[valuing[pos - 1]][type] < premiums[i][type]) {
+                            valuing[pos] = valuing[pos - 1];
+                            pos--;
+                        }
+                        valuing[pos] = i;
+                    }
+                }
+                byPremium[index][type] = Arrays.copyOf(valuing, count);
+            }
+        }
+        usable = new int[n + 1][KINDS];
+        for (int index = n - 1; index >= 0; index--) {
+            int used = 0;
+            for (Option option : options[index]) {
+                used |= option.kinds;
+            }
+            for (int kind = 0; kind < KINDS; kind++) {
+                usable[index][kind] = usable[index + 1][kind] + ((used >> kind) & 1);
+            }
+        }
+        kinds = new int[n];
+        chosen = new int[n];
+        typeSets = new int[n];
+        boundTypes = new int[n];
+        prices = new int[n];
+        order = new int[n];
+        byStay = new int[n];
+        for (int index = 0; index < n; index++) {
+            int pos = index;
+            while (pos > 0 && departures[byStay[pos - 1]] - arrivals[byStay[pos - 1]]
+                    > departures[index] - arrivals[index]) {
+                byStay[pos] = byStay[pos - 1];
+                pos--;
+            }
+            byStay[pos] = index;
+        }
+    }
+
+    // Adds the options of the package from the day on, given the entertainments used so far
+    private void addOptions(int index, int day, int usedTypes, int kinds, int premium, List<Option> pkgOptions) {
+        if (day >= departures[index]) {
+            pkgOptions.add(new Option(premium, kinds));
+            return;
+        }
+        addOptions(index, day + 1, usedTypes, kinds, premium, pkgOptions);
+        for (int type = 0; type < TYPES; type++) {
+            int kind = getKind(day, type);
+            if ((usedTypes & (1 << type)) == 0 && premiums[index][type] > 0 && counts[kind] > 0) {
+                addOptions(index, day + 1, usedTypes | (1 << type), kinds | (1 << kind),
+                    premium + premiums[index][type], pkgOptions);
+            }
+        }
+    }
+
+    private boolean isAvailable(Option option) {
+        for (int k = option.kinds; k != 0; k &= k - 1) {
+            if (counts[Integer.numberOfTrailingZeros(k)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void take(int optionKinds, int n) {
+        for (int k = optionKinds; k != 0; k &= k - 1) {
+            counts[Integer.numberOfTrailingZeros(k)] -= n;
+        }
+    }
+
+    private boolean isPastDeadline() {
+        if (++branches % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+            timedOut = true;
+        }
+        return timedOut;
+    }
+
+    // The most the packages from the index on could get from the tickets left
+    private int getBound(int index) {
+        int clientBound = 0;
+        for (int i = index; i < numPackages; i++) {
+            for (Option option : options[i]) {
+                if (isAvailable(option)) {
+                    clientBound += option.premium;
+                    break;
+                }
+            }
+        }
+        int typeBound = 0;
+        for (int i = index; i < numPackages; i++) {
+            boundTypes[i] = 0;
+        }
+        for (int type = 0; type < TYPES && typeBound < clientBound; type++) {
+            typeBound += getTypeBound(index, type);
+            for (int c = 0; c < numChosen; c++) {
+                boundTypes[chosen[c]] |= 1 << type;
+            }
+        }
+        if (typeBound >= clientBound) {
+            return clientBound;
+        }
+        return Math.min(typeBound, getNightsBound(index));
+    }
+
+    /*
+     * The type bound may count a package for more entertainments than it has nights. Charging each package a price
+     * for every entertainment it is counted for, and paying it the price for each of its nights instead, gives
+     * another bound whatever the prices (a Lagrangian relaxation of the nights). The price of a package counted for
+     * too many is what it takes for the package it displaces to be counted instead, in the entertainment where that
+     * is least.
+     */
+    private int getNightsBound(int index) {
+        int bound = 0;
+        boolean overNights = false;
+        for (int i = index; i < numPackages; i++) {
+            int nights = departures[i] - arrivals[i];
+            prices[i] = 0;
+            int over = Integer.bitCount(boundTypes[i]) - nights;
+            if (over > 0) {
+                // The over least margins over the packages left out
+                int numMargins = 0;
+                for (int types = boundTypes[i]; types != 0; types &= types - 1) {
+                    int type = Integer.numberOfTrailingZeros(types);
+                    int margin = Math.max(0, premiums[i][type] - leftOut[type]);
+                    int pos = numMargins++;
+                    while (pos > 0 && margins[pos - 1] > margin) {
+                        margins[pos] = margins[pos - 1];
+                        pos--;
+                    }
+                    margins[pos] = margin;
+                }
+                prices[i] = margins[over - 1];
+                bound += prices[i] * nights;
+                overNights = true;
+            }
+        }
+        if (!overNights) {
+            return Integer.MAX_VALUE;
+        }
+        for (int type = 0; type < TYPES; type++) {
+            int length = 0;
+            for (int i = index; i < numPackages; i++) {
+                int premium = premiums[i][type] - prices[i];
+                if (premium > 0) {
+                    int pos = length++;
+                    while (pos > 0 && premiums[order[pos - 1]][type] - prices[order[pos - 1]] < premium) {
+                        order[pos] = order[pos - 1];
+                        pos--;
+                    }
+                    order[pos] = i;
+                }
+            }
+            bound += getTypeBound(type, order, length, prices);
+        }
+        return bound;
+    }
+
+    /*
+     * The most the packages from the index on could get from the tickets of the entertainment left, when each gets at
+     * most one of them on a day of their stay. As each package is worth the same whichever of the tickets it gets,
+     * the packages are taken highest premium first if the tickets can still go round.
+     */
+    private int getTypeBound(int index, int type) {
+        int[] valuing = byPremium[index][type];
+        return getTypeBound(type, valuing, valuing.length, null);
+    }
+
+    /*
+     * The type bound of the packages in the order, with their premiums less their prices, if any. Leaves the premium
+     * of the first package it did not count in leftOut.
+     */
+    private int getTypeBound(int type, int[] order, int length, int[] prices) {
+        int tickets = 0;
+        for (int day = 1; day <= DAYS; day++) {
+            tickets += counts[getKind(day, type)];
+        }
+        int bound = 0;
+        numChosen = 0;
+        leftOut[type] = 0;
+        for (int o = 0; o < length; o++) {
+            int i = order[o];
+            int premium = premiums[i][type] - (prices != null ? prices[i] : 0);
+            if (numChosen == tickets) {
+                leftOut[type] = premium;
+                break;
+            }
+            // Kept in order of departure
+            int pos = numChosen;
+            while (pos > 0 && departures[chosen[pos - 1]] > departures[i]) {
+                chosen[pos] = chosen[pos - 1];
+                pos--;
+            }
+            chosen[pos] = i;
+            if (canGoRound(numChosen + 1, type)) {
+                bound += premium;
+                numChosen++;
+            } else {
+                System.arraycopy(chosen, pos + 1, chosen, pos, numChosen - pos);
+                if (leftOut[type] == 0) {
+                    leftOut[type] = premium;
+                }
+            }
+        }
+        return bound;
+    }
+
+    // Whether the chosen packages can each get a ticket of the entertainment, the earliest leaving first
+    private boolean canGoRound(int numChosen, int type) {
+        for (int day = 1; day <= DAYS; day++) {
+            left[day - 1] = counts[getKind(day, type)];
+        }
+        for (int c = 0; c < numChosen; c++) {
+            int day = arrivals[chosen[c]];
+            while (day < departures[chosen[c]] && left[day - 1] == 0) {
+                day++;
+            }
+            if (day == departures[chosen[c]]) {
+                return false;
+            }
+            left[day - 1]--;
+        }
+        return true;
+    }
+
+    /*
+     * Gives each entertainment to the packages its bound was reached with, if each of them can be given a day of
+     * their stay for each of their entertainments. The premium is then the bound of the entertainments taken
+     * together.
+     */
+    private void chooseByType() {
+        Arrays.fill(typeSets, 0);
+        int premium = 0;
+        for (int type = 0; type < TYPES; type++) {
+            premium += getTypeBound(0, type);
+            for (int c = 0; c < numChosen; c++) {
+                typeSets[chosen[c]] |= 1 << type;
+            }
+        }
+        // A package can not use more entertainments than it has nights, so those it values least are left out
+        for (int index = 0; index < numPackages; index++) {
+            while (Integer.bitCount(typeSets[index]) > departures[index] - arrivals[index]) {
+                int least = -1;
+                for (int types = typeSets[index]; types != 0; types &= types - 1) {
+                    int type = Integer.numberOfTrailingZeros(types);
+                    if (least < 0 || premiums[index][type] < premiums[index][least]) {
+                        least = type;
+                    }
+                }
+                typeSets[index] &= ~(1 << least);
+                premium -= premiums[index][least];
+            }
+        }
+        dayBranches = 0;
+        if (premium > bestPremium && assignDays(0, typeSets[byStay[0]], 0)) {
+            bestPremium = premium;
+            bestKinds = kinds.clone();
+        }
+    }
+
+    /*
+     * Finds a day of their stay for each entertainment of the packages from the position on in byStay, given the
+     * kinds taken so far by the package at the position. Gives up after DAY_BRANCH_LIMIT branches, as it only looks
+     * for a choice to start the search from.
+     */
+    private boolean assignDays(int pos, int types, int pkgKinds) {
+        int index = byStay[pos];
+        if (types == 0) {
+            kinds[index] = pkgKinds;
+            return pos + 1 == numPackages || assignDays(pos + 1, typeSets[byStay[pos + 1]], 0);
+        }
+        if (++dayBranches > DAY_BRANCH_LIMIT) {
+            return false;
+        }
+        int type = Integer.numberOfTrailingZeros(types);
+        for (int day = arrivals[index]; day < departures[index]; day++) {
+            int kind = getKind(day, type);
+            int dayKinds = ((1 << TYPES) - 1) << getKind(day, 0);
+            if (counts[kind] > 0 && (pkgKinds & dayKinds) == 0) {
+                counts[kind]--;
+                boolean found = assignDays(pos, types & (types - 1), pkgKinds | (1 << kind));
+                counts[kind]++;
+                if (found) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // The tickets left that the packages from the index on could use, or -1 if there are too many to pack
+    private long getState(int index) {
+        long state = 0;
+        for (int kind = 0; kind < KINDS; kind++) {
+            int count = Math.min(counts[kind], usable[index][kind]);
+            if (count > MAX_COUNT) {
+                return -1;
+            }
+            state |= (long) count << (kind * BITS);
+        }
+        return state | (long) index << INDEX_SHIFT;
+    }
+
+    /*
+     * Searches the options of the packages from the index on, given the premium of the packages before it.
+     * @return at least the most the packages from the index on can get from the tickets left.
+     */
+    private int search(int index, int premium) {
+        if (index == numPackages) {
+            if (premium > bestPremium) {
+                bestPremium = premium;
+                bestKinds = kinds.clone();
+            }
+            return 0;
+        }
+        if (bestPremium >= rootBound || isPastDeadline()) {
+            return 0;
+        }
+        // Another way of leaving the same tickets may have shown that no more can be got from them
+        long state = getState(index);
+        int slot = state >= 0 ? find(state) : -1;
+        boolean isKnown = slot >= 0 && memoGeneration[slot] == generation;
+        if (isKnown && premium + memoMost[slot] <= bestPremium) {
+            return memoMost[slot];
+        }
+        int most = isKnown ? memoMost[slot] : Integer.MAX_VALUE;
+
+        int found = 0;
+        // Only the tickets taken by this package lower the bound of the packages after it
+        int rest = getBound(index + 1);
+        for (Option option : options[index]) {
+            if (premium + option.premium + rest <= bestPremium) {
+                // Nor can the options with lower premiums
+                found = Math.max(found, bestPremium - premium);
+                break;
+            }
+            if (isAvailable(option)) {
+                take(option.kinds, 1);
+                kinds[index] = option.kinds;
+                // The first package's options are bounded again with their tickets taken, which rules out whole
+                // searches; deeper it costs more than it saves
+                if (index > 0 || option.premium + getBound(1) > bestPremium) {
+                    found = Math.max(found, option.premium + search(index + 1, premium + option.premium));
+                } else {
+                    found = Math.max(found, bestPremium - premium);
+                }
+                take(option.kinds, -1);
+            }
+        }
+        kinds[index] = 0;
+        if (state >= 0 && !timedOut) {
+            remember(state, Math.min(most, found));
+        }
+        return found;
+    }
+
+    /**
+     * Chooses which of the tickets to give to which of the packages for the largest total premium, without giving a
+     * client two tickets for the same day or entertainment. Nothing is changed until the allocations are performed.
+     *
+     * @param timeLimit Milliseconds after which the search gives up and the best choice found so far is returned.
+     * @return the chosen allocations.
+     */
+    public List<EntertainmentAgent.Allocation> choose(List<Package> packages, List<EntertainmentTicket> stock,
+            long timeLimit) {
+        deadline = System.nanoTime() + timeLimit * 1000000L;
+        timedOut = false;
+        branches = 0;
+        setUp(packages, stock);
+        if (++generation == 0) {
+            Arrays.fill(memoGeneration, 0);
+            generation = 1;
+        }
+        memoSize = 0;
+
+        // Start from the better of the greedy choice and the choice by entertainment
+        Map<Package, Integer> indices = new IdentityHashMap<Package, Integer>();
+        for (int index = 0; index < numPackages; index++) {
+            indices.put(this.packages.get(index), index);
+        }
+        bestKinds = new int[numPackages];
+        bestPremium = 0;
+        for (EntertainmentAgent.Allocation allocation : EntertainmentAgent.chooseGreedyAllocations(packages, stock)) {
+            if (allocation.getValue() > 0) {
+                bestKinds[indices.get(allocation.pkg)] |=
+                    1 << getKind(allocation.ticket.getDay(), allocation.ticket.getType().ordinal());
+                bestPremium += allocation.getValue();
+            }
+        }
+        if (numPackages > 0) {
+            chooseByType();
+        }
+        // The search ends once it finds a choice as good as the bound
+        rootBound = getBound(0);
+        if (rootBound > bestPremium) {
+            Arrays.fill(kinds, 0);
+            search(0, 0);
+        }
+
+        List<EntertainmentAgent.Allocation> allocations = new ArrayList<EntertainmentAgent.Allocation>();
+        for (int index = 0; index < numPackages; index++) {
+            for (int k = bestKinds[index]; k != 0; k &= k - 1) {
+                EntertainmentTicket ticket = ticketsByKind.get(Integer.numberOfTrailingZeros(k)).removeFirst();
+                allocations.add(new EntertainmentAgent.Allocation(this.packages.get(index), ticket));
+            }
+        }
+        return allocations;
+    }
+
+    /** @return true if the last {@link #choose(List, List, long)} was stopped by the deadline before it completed. */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Chooses the allocations like {@link #choose(List, List, long)}, searching for at most {@link #TIME_LIMIT}
+     * milliseconds.
+     *
+     * @return the chosen allocations.
+     */
+    public List<EntertainmentAgent.Allocation> choose(List<Package> packages, List<EntertainmentTicket> stock) {
+        return choose(packages, stock, TIME_LIMIT);
+    }
+
+    // Returns the slot of the key in the memo, or the empty slot where it should go
+    private int find(long key) {
+        long h = (key ^ (key >>> 29)) * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & memoMask;
+        while (memoGeneration[slot] == generation && memoKey[slot] != key) {
+            slot = (slot + 1) & memoMask;
+        }
+        return slot;
+    }
+
+    private void remember(long key, int most) {
+        // Searching may have moved the slot
+        int slot = find(key);
+        if (memoGeneration[slot] != generation) {
+            memoGeneration[slot] = generation;
+            memoKey[slot] = key;
+            if (++memoSize * 2 > memoGeneration.length) {
+                memoMost[slot] = most;
+                growMemo();
+                return;
+            }
+        }
+        memoMost[slot] = most;
+    }
+
+    private void allocateMemo(int size) {
+        memoMask = size - 1;
+        memoGeneration = new int[size];
+        memoKey = new long[size];
+        memoMost = new int[size];
+    }
+
+    private void growMemo() {
+        int[] oldGeneration = memoGeneration;
+        long[] oldKey = memoKey;
+        int[] oldMost = memoMost;
+        allocateMemo(oldGeneration.length * 2);
+        for (int i = 0; i < oldGeneration.length; i++) {
+            if (oldGeneration[i] == generation) {
+                int slot = find(oldKey[i]);
+                memoGeneration[slot] = generation;
+                memoKey[slot] = oldKey[i];
+                memoMost[slot] = oldMost[i];
+            }
+        }
+    }
+}
@@ -60,6 +60,7 @@ public abstract class EntertainmentBidder implements EntertainmentAuction.Watche
         }
     }
 
+    // The bid price is set by the EntertainmentAgent when it plans, so a quote changes nothing here
     @Override
     public void auctionQuoteUpdated(Auction<?> auction, Quote quote) {  }
 
@@ -75,6 +75,19 @@ public class FlightAgent extends SubAgent<FlightTicket> {
             fulfillPackage(pack);
         }
 
+        // Tell the TACAgent how many tickets of each flight the packages use,
+        // so that it stops requesting the quotes of flights we own enough of
+        for (FlightAuction auction : bidders.keySet()) {
+            int allocation = 0;
+            for (agent.Package pack : packages) {
+                int day = auction.getArrival() ? pack.getArrivalDay() : pack.getDepartureDay();
+                if (agent.getFlightAuction(day, auction.getArrival()) == auction) {
+                    allocation++;
+                }
+            }
+            agent.getTACAgent().setAllocation(auction.getAuctionID(), allocation);
+        }
+
         for (FlightBidder bidder : bidders.values()) {
             bidder.start();
         }
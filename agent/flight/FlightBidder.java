@@ -2,6 +2,7 @@ package agent.flight;
 
 import se.sics.tac.aw.BidString;
 import se.sics.tac.aw.Quote;
+import se.sics.tac.aw.QuoteSnapshot;
 import se.sics.tac.aw.Transaction;
 import agent.*;
 import agent.logging.AgentLogger;
@@ -9,13 +10,8 @@ import agent.logging.AgentLogger;
 import java.util.*;
 import java.util.logging.Logger;
 
-public class FlightBidder implements Auction.Watcher {
+public class FlightBidder implements Auction.SnapshotWatcher {
     
-    // How confident that we'll get our ticket?
-    // Low confidence -> Bid lower, less likely to get ticket
-    // High confidence -> Bid higher, more likely to get ticket
-    private static final double BID_CONFIDENCE = 0.95d;
-
     private final AgentLogger logger;
 
     private final FlightAgent flightAgent;
@@ -69,7 +65,9 @@ public class FlightBidder implements Auction.Watcher {
     public void auctionQuoteUpdated(Auction<?> auction, Quote quote) {
         // Update price monitor with new prices information
         monitor.addQuote((double)quote.getAskPrice(), getTimeStep());
+    }
 
+    public void auctionQuotesUpdated(QuoteSnapshot snapshot) {
         // only refresh bid at 30 second intervals to avoid duplicate bid problems
         if (getTimeStep() % 3 == 0) {
             refreshBid();
@@ -161,26 +159,39 @@ public class FlightBidder implements Auction.Watcher {
     }
 
     private float calcPrice() {
+        // The ask price is paid in the final few rounds
+        if (getTimeStep() >= FlightAgent.MAX_TIME - 2 && auction.getAskPrice() >= FlightAgent.PRICE_MIN) {
+            logger.log("PANIC MODE: " + (auction.getAskPrice() + 1f));
+        }
+        return choosePrice(monitor, auction.getAskPrice(), getTimeStep(),
+            flightAgent.agent.getParameters().getFlightBidConfidence());
+    }
+
+    /**
+     * Chooses the price to bid for a ticket at the time step, given the prices seen so far by the monitor.
+     *
+     * @param bidConfidence The most confidence to put in the monitor's estimate of the prices to come, at most 1
+     *                      for no cap. Less confidence bids lower, and is less likely to get the ticket.
+     */
+    public static float choosePrice(FlightPriceMonitor monitor, float askPrice, int timeStep, double bidConfidence) {
         // Get price probability distribution
         // We can't just select the estimated minimum price because
         // the odds are only 50/50 the price will go below that.
         // Instead, select a price with a good probability of being reached.
-        List<Double> dist = monitor.priceCumulativeDist(getTimeStep());
+        double[] dist = monitor.priceCumulativeDistribution(timeStep);
 
-        double confidence = monitor.getConfidence();
+        double confidence = Math.min(monitor.getConfidence(), bidConfidence);
         int min = (int)FlightAgent.PRICE_MIN, max = (int)FlightAgent.PRICE_MAX;
 
         // Don't bid if no ask price yet
-        if (auction.getAskPrice() < min) {
+        if (askPrice < min) {
             return (float)min;
         }
 
         // In the final few rounds, we should just pay the ask price
-        if (getTimeStep() >= FlightAgent.MAX_TIME - 2) {
+        if (timeStep >= FlightAgent.MAX_TIME - 2) {
             // A dollar for luck!
-            float price = auction.getAskPrice() + 1f;
-            logger.log("PANIC MODE: " + price);
-            return price;
+            return askPrice + 1f;
         }
 
         // Find price with highest expected return
@@ -188,17 +199,17 @@ public class FlightBidder implements Auction.Watcher {
         double bestExpectedOutcome = Double.MAX_VALUE;
         for (int price = min; price < max; price ++) {
             // Probabiliy price will be below this, assuming confidence in estimate
-            double probWithConf = dist.get(price);
+            double probWithConf = dist[price];
             // Probability price will be below this if estimate is incorrect
             // TODO: Make this more accurate
             double probWoutConf = ((double)price - FlightAgent.PRICE_MIN) /
-                ((double)auction.getAskPrice() - FlightAgent.PRICE_MIN);
+                ((double)askPrice - FlightAgent.PRICE_MIN);
             if (probWoutConf > 1d) probWoutConf = 1d;
 
             // Potential bad price if estimate is incorrect
             double highPrice = FlightAgent.PRICE_MAX;
             // Potential good price if estimate is incorrect
-            double lowPrice = (double)auction.getAskPrice();
+            double lowPrice = (double)askPrice;
 
             // Outcome if estimate is correct and bid is above true minimum
             double correctOutcomeHigh = confidence * probWithConf * (double)price;
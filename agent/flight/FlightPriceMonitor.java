@@ -12,6 +12,12 @@ public class FlightPriceMonitor {
 
     private static final int X_MIN = -10;
     private static final int X_MAX = 30;
+    private static final int NUM_X = X_MAX - X_MIN + 1;
+
+    // Average price change at each time for each x, indexed by
+    // (x - X_MIN) * MAX_TIME + t. These do not depend on the quotes, so
+    // are shared by all monitors.
+    private static final double[] PRICE_DIFFS = createPriceDiffs();
 
     // The plane ticket auction to monitor
     private final FlightAuction auction;
@@ -19,17 +25,28 @@ public class FlightPriceMonitor {
     // Historic prices
     private final double[] prices = new double[FlightAgent.MAX_TIME];
 
-    // Estimates of the X constant affecting prices
-    private final Map<Integer, Double> probX = new HashMap<Integer, Double>();
+    // Estimates of the X constant affecting prices, indexed by x - X_MIN
+    private final double[] probX = new double[NUM_X];
+
+    // Projection from projectedTime, valid until the next quote
+    private int projectedTime = -1;
+    // Projected prices weighted over all x, indexed by time - projectedTime
+    private final double[] projection = new double[FlightAgent.MAX_TIME];
+    // Projected minimum price for each x
+    private final double[] minPrices = new double[NUM_X];
+    // Cumulative distribution of prices and x sorted by minimum price
+    private final double[] dist = new double[(int)FlightAgent.PRICE_MAX];
+    private final int[] xByPrice = new int[NUM_X];
+    private int distTime = -1;
 
     public FlightPriceMonitor(FlightAuction auction) {
         this.auction = auction;
 
         // Set initial probabilities using probability density
-        double initX = 1d / (double)(X_MAX - X_MIN + 1);
+        double initX = 1d / (double)NUM_X;
 
         for (int x = X_MIN; x <= X_MAX; x ++) {
-            probX.put(x, initX);
+            probX[x - X_MIN] = initX;
         }
 
         // Set prices to default value (-1)
@@ -58,6 +75,8 @@ public class FlightPriceMonitor {
         }
 
         prices[time] = quote;
+        projectedTime = -1;
+        distTime = -1;
 
         // Take change in prices to update estimate
         if (time != 0 && prices[time-1] != -1) {
@@ -66,76 +85,81 @@ public class FlightPriceMonitor {
     }
 
     public int predictMinimumTime(int time) {
-        return time + findMinTime(projectPrices(time));
+        project(time);
+        return time + findMinTime(projection, FlightAgent.MAX_TIME - time);
     }
 
     public double predictMinimumPrice(int time) {
-        return findMinPrice(projectPrices(time));
+        project(time);
+        return findMinPrice(projection, FlightAgent.MAX_TIME - time);
     }
 
     public List<Double> priceCumulativeDist(int time) {
-        // Return a cumulative distribution of prices.
-        // dist.get(p) gives the probability the actual price will be less than p
-
-        List<Double> dist = new ArrayList<Double>();
-
-        final Map<Integer, Double> mins = new HashMap<Integer, Double>();
-        List<Integer> xByPrice = new ArrayList<Integer>();
-
-        // Find all predicted minimum prices
-        for (int x = X_MIN; x <= X_MAX; x ++) {
-            xByPrice.add(x);
-            mins.put(x, findMinPrice(projectPrices(x, time)));
+        double[] cumulative = priceCumulativeDistribution(time);
+        List<Double> dist = new ArrayList<Double>(cumulative.length);
+        for (double prob : cumulative) {
+            dist.add(prob);
         }
+        return dist;
+    }
 
-        // Sort xByPrice to be sorted by price as promised!
-        Collections.sort(xByPrice, new Comparator<Integer>() {
-            @Override
-            public int compare(Integer x1, Integer x2) {
-                return mins.get(x1).compareTo(mins.get(x2));
+    /**
+     * Return a cumulative distribution of prices, so dist[p] gives the
+     * probability the actual price will be less than p. The array is reused
+     * and only valid until the next call.
+     */
+    public double[] priceCumulativeDistribution(int time) {
+        if (distTime == time) {
+            return dist;
+        }
+        project(time);
+
+        // Sort x by predicted minimum price (stable, like Collections.sort)
+        for (int i = 0; i < NUM_X; i ++) {
+            int xi = i;
+            int j = i;
+            while (j > 0 && minPrices[xByPrice[j-1]] > minPrices[xi]) {
+                xByPrice[j] = xByPrice[j-1];
+                j --;
             }
-        });
+            xByPrice[j] = xi;
+        }
 
-        Iterator<Integer> xs = xByPrice.iterator();
-        int x = xs.next();
-        boolean isX = true;
+        int next = 0;
         double cumulative = 0d;
 
-        for (int price = 0; price < FlightAgent.PRICE_MAX; price ++) {
+        for (int price = 0; price < dist.length; price ++) {
             // when we encounter a possible minimum, increase cumulative distribution
-            if (isX && price >= mins.get(x)) {
+            if (next < NUM_X && price >= minPrices[xByPrice[next]]) {
                 // increase chance of this price by probability of X
-                cumulative += probX.get(x);
+                cumulative += probX[xByPrice[next]];
 
                 // look at next minimum price
-                if (xs.hasNext()) {
-                    x = xs.next();
-                } else {
-                    isX = false;
-                }
+                next ++;
             }
 
-            dist.add(cumulative);
+            dist[price] = cumulative;
         }
 
+        distTime = time;
         return dist;
     }
 
     public double getConfidence() {
         // Return an estimate of confidence
         // TODO: See if there's a more mathematical approach here
-        double mean =  1d / (double)probX.size();
+        double mean =  1d / (double)NUM_X;
         double var = 0d;
-        for (int x = X_MIN; x <= X_MAX; x ++) {
-            var += (mean - probX.get(x)) * (mean - probX.get(x));
+        for (int i = 0; i < NUM_X; i ++) {
+            var += (mean - probX[i]) * (mean - probX[i]);
         }
         // Not exactly the variance
-        return Math.sqrt(var * (double)probX.size() / (double)(probX.size() - 1));
+        return Math.sqrt(var * (double)NUM_X / (double)(NUM_X - 1));
     }
 
-    private double findMinPrice(double[] prices) {
+    private double findMinPrice(double[] prices, int length) {
         double min = FlightAgent.PRICE_MAX;
-        for (int i = 0; i < prices.length; i ++) {
+        for (int i = 0; i < length; i ++) {
             if (prices[i] < min && prices[i] != -1) {
                 min = prices[i];
             }
@@ -143,10 +167,10 @@ public class FlightPriceMonitor {
         return min;
     }
 
-    private int findMinTime(double[] prices) {
+    private int findMinTime(double[] prices, int length) {
         double min = FlightAgent.PRICE_MAX;
         int time = 0;
-        for (int i = 0; i < prices.length; i ++) {
+        for (int i = 0; i < length; i ++) {
             if (prices[i] < min && prices[i] != -1) {
                 min = prices[i];
                 time = i;
@@ -155,7 +179,7 @@ public class FlightPriceMonitor {
         return time;
     }
 
-    private double xFunc(int x, int t) {
+    private static double xFunc(int x, int t) {
         return 10d + ((double)t / (double)FlightAgent.MAX_TIME) * ((double)x - 10d);
     }
 
@@ -179,69 +203,77 @@ public class FlightPriceMonitor {
         // Use Baye's theorem to improve estimates
 
         // Find probability of quote occuring for every x
-        Map<Integer, Double> probDiff = new HashMap<Integer, Double>();
         double probDiffAll = 0d;
 
         for (int x = X_MIN; x <= X_MAX; x ++) {
-            double prob = probDiffGivenX(diff, x, t) * probX.get(x);
-            probDiff.put(x, prob);
+            double prob = probDiffGivenX(diff, x, t) * probX[x - X_MIN];
+            probX[x - X_MIN] = prob;
             probDiffAll += prob;
         }
 
         // Update probabilities
-        for (int x = X_MIN; x <= X_MAX; x ++) {
-            probX.put(x, probDiff.get(x) / probDiffAll);
+        for (int i = 0; i < NUM_X; i ++) {
+            probX[i] /= probDiffAll;
         }
     }
 
-    private double averagePriceDiff(int x, int t) {
+    private static double averagePriceDiff(int x, int t) {
         double f = xFunc(x, t);
         if (f > 0) return (f - 10d) / 2d;
         else return (f + 10d) / 2d;
     }
 
-    private double[] projectPrices(int x, int t) {
-        // project future price from t given x
-        double last;
+    private void project(int t) {
+        // project future prices from t over all x, weighted by prob of x,
+        // and the minimum price for each x
+        if (projectedTime == t) {
+            return;
+        }
+
+        double start;
         if (prices[t] != -1) {
-            last = prices[t];
+            start = prices[t];
         } else {
             // Predict initial price
-            last = (double)START_MIN + (double)(START_MAX - START_MIN) / 2d;
+            start = (double)START_MIN + (double)(START_MAX - START_MIN) / 2d;
         }
 
-        double[] futPrices = new double[FlightAgent.MAX_TIME-t];
-        futPrices[0] = last; // Include the most recent real price
-        for (int i = t+1; i < FlightAgent.MAX_TIME; i ++) {
-            double price = last + averagePriceDiff(x, i);
-            if (price < FlightAgent.PRICE_MIN) {
-                price = FlightAgent.PRICE_MIN;
-            } else if (price > FlightAgent.PRICE_MAX) {
-                price = FlightAgent.PRICE_MAX;
+        int length = FlightAgent.MAX_TIME - t;
+        Arrays.fill(projection, 0, length, 0d);
+
+        for (int xi = 0; xi < NUM_X; xi ++) {
+            double prob = probX[xi];
+            int diffs = xi * FlightAgent.MAX_TIME;
+            // Include the most recent real price
+            double last = start;
+            double min = start < FlightAgent.PRICE_MAX ? start : FlightAgent.PRICE_MAX;
+            projection[0] += last * prob;
+            for (int i = t+1; i < FlightAgent.MAX_TIME; i ++) {
+                double price = last + PRICE_DIFFS[diffs + i];
+                if (price < FlightAgent.PRICE_MIN) {
+                    price = FlightAgent.PRICE_MIN;
+                } else if (price > FlightAgent.PRICE_MAX) {
+                    price = FlightAgent.PRICE_MAX;
+                }
+                projection[i-t] += price * prob;
+                if (price < min) {
+                    min = price;
+                }
+                last = price;
             }
-            futPrices[i-t] = price;
-            last = price;
+            minPrices[xi] = min;
         }
 
-        return futPrices;
+        projectedTime = t;
     }
 
-    private double[] projectPrices(int t) {
-        // project future prices over all x
-        double[] futPrices = new double[FlightAgent.MAX_TIME-t];
-        for (int i = 0; i < FlightAgent.MAX_TIME-t; i ++) {
-            futPrices[i] = 0d;
-        }
-
-        for (int x : probX.keySet()) {
-            double[] pricesX = projectPrices(x, t);
-            // add prediction for this x, weighted by prob of x
-            for (int i = 0; i < FlightAgent.MAX_TIME-t; i ++) {
-                double weighted = pricesX[i] * probX.get(x);
-                futPrices[i] += weighted;
+    private static double[] createPriceDiffs() {
+        double[] diffs = new double[NUM_X * FlightAgent.MAX_TIME];
+        for (int x = X_MIN; x <= X_MAX; x ++) {
+            for (int t = 0; t < FlightAgent.MAX_TIME; t ++) {
+                diffs[(x - X_MIN) * FlightAgent.MAX_TIME + t] = averagePriceDiff(x, t);
             }
         }
-
-        return futPrices;
+        return diffs;
     }
 }
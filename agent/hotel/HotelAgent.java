@@ -1,16 +1,7 @@
 package agent.hotel;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInput;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.util.List;
 
 import agent.Agent;
@@ -23,26 +14,46 @@ import agent.Package;
 import agent.SubAgent;
 import agent.logging.AgentLogger;
 import agent.logging.Identity;
+import agent.logging.PersistenceService;
 import se.sics.tac.aw.BidString;
 import se.sics.tac.aw.Quote;
+import se.sics.tac.aw.QuoteSnapshot;
 
 public class HotelAgent extends SubAgent<HotelBooking> {
 
 	private static final boolean DEBUG = true;
-	private static final double[] bidProportions = { 1.5, 1.1, 1.1, 1.1, 1.2,
-			1.3, 1.4, 1.5, 0 };
 	private int[] lastUpdateMinute;
-	private Auction.Watcher watcher = new Auction.Watcher() {
+	private final HotelAuctionWatcher watcher = new HotelAuctionWatcher();
+
+	/**
+	 * Records the ask prices of the hotel auctions in the current game, once
+	 * per round of quotes rather than once per quote.
+	 */
+	private class HotelAuctionWatcher implements Auction.SnapshotWatcher {
 		AgentLogger aucWatcher = logger.getSublogger("auctionWatcher");
 
 		@Override
 		public void auctionQuoteUpdated(Auction<?> auction, Quote quote) {
-			HotelAuction a = ((HotelAuction) auction);
-			aucWatcher.log("Updating " + auction.toString(), AgentLogger.INFO);
-			lastUpdateMinute[hashForIndex(auction.getDay(), a.isTT())]++;
-			int lmu = lastUpdateMinute[hashForIndex(auction.getDay(), a.isTT())];
-			currentGame.setAskPrice(a.getDay(), a.isTT(), a.getAskPrice(), lmu, false);
-			//updateBid(auction.getDay(), ((HotelAuction) auction).isTT());
+		}
+
+		@Override
+		public void auctionQuotesUpdated(QuoteSnapshot snapshot) {
+			for (int day = 1; day < 5; day++) {
+				recordAskPrice(snapshot, agent.getHotelAuction(day, true));
+				recordAskPrice(snapshot, agent.getHotelAuction(day, false));
+			}
+		}
+
+		private void recordAskPrice(QuoteSnapshot snapshot, HotelAuction a) {
+			int i = hashForIndex(a.getDay(), a.isTT());
+			// The closing price has already been recorded as final
+			if (!snapshot.isUpdated(a.getAuctionID()) || auctionsClosed[i])
+				return;
+			aucWatcher.log("Updating " + a.toString(), AgentLogger.INFO);
+			lastUpdateMinute[i]++;
+			currentGame.setAskPrice(a.getDay(), a.isTT(),
+					snapshot.getAskPrice(a.getAuctionID()), lastUpdateMinute[i],
+					false);
 		}
 
 		@Override
@@ -95,7 +106,7 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 					+ auction.getAskPrice() + " per room", AgentLogger.INFO);
 			updateOnAuctionClosed((HotelAuction) auction);
 		}
-	};
+	}
 
 	private boolean[] auctionsClosed;
 	private int[] held = new int[8];
@@ -126,17 +137,17 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 
 		pmLogger = logger.getSublogger("packageManager");
 
-		hotelHist = new HotelHistory();
-		try (InputStream file = new FileInputStream("hotelHistory.hist");
-				InputStream buffer = new BufferedInputStream(file);
-				ObjectInput input = new ObjectInputStream(buffer);) {
-			hotelHist = (HotelHistory) input.readObject();
+		try {
+			hotelHist = HotelHistory.load(new File("hotelHistory.hgh"),
+					new File("hotelHistory.hist"), PersistenceService.getDefault());
 			logger.log("Hotel history loaded with " + hotelHist.getNumGames()
 					+ " games");
-		} catch (Exception e) {
+		} catch (IOException e) {
+			hotelHist = new HotelHistory();
 			logger.log("Unable to read past history file", AgentLogger.WARNING);
 			// logger.logExceptionStack(e, AgentLogger.ERROR);
 		}
+		hotelHist.setDecayed(agent.isHotelHistoryDecayed());
 		currentGame = new HotelGame();
 		hotelHist.setCurrentGame(currentGame);
 		
@@ -160,25 +171,21 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 			agent.getHotelAuction(day, true).removeWatcher(watcher);
 			agent.getHotelAuction(day, false).removeWatcher(watcher);
 		}
-		if (!dirtyHistory)
-			hotelHist.save();
-		else {
-			logger.getSublogger("historyRecorder")
-					.log("Agent entered game after 55 seconds in, so history will be dirty and will not be saved");
-			;
-			hotelHist.discard();
-		}
-		currentGame.dumpToConsole(logger.getSublogger("hotelGame"));
-
-		try (OutputStream file = new FileOutputStream("hotelHistory.hist");
-				OutputStream buffer = new BufferedOutputStream(file);
-				ObjectOutput output = new ObjectOutputStream(buffer);) {
-			output.writeObject(hotelHist);
+		try {
+			if (!dirtyHistory)
+				hotelHist.save();
+			else {
+				logger.getSublogger("historyRecorder")
+						.log("Agent entered game after 55 seconds in, so history will be dirty and will not be saved");
+				hotelHist.discard();
+			}
+			hotelHist.close();
 		} catch (IOException e) {
 			logger.log(
-					"Warning: unable to write to file hotelHistory.hist. Error message: "
+					"Warning: unable to write to file hotelHistory.hgh. Error message: "
 							+ e.getMessage(), AgentLogger.WARNING);
 		}
+		currentGame.dumpToConsole(logger.getSublogger("hotelGame"));
 	}
 
 	private void subscribeAll() {
@@ -238,10 +245,9 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 
 		for (Package p : packages) {
 			cliNum++;
-			pmLogger.log("Sorting preferences for package " + cliNum
-					+ " with days " + Integer.toString(p.getArrivalDay())
-					+ " to " + Integer.toString(p.getDepartureDay()),
-					AgentLogger.INFO);
+			pmLogger.log(AgentLogger.INFO,
+					"Sorting preferences for package {} with days {} to {}",
+					cliNum, p.getArrivalDay(), p.getDepartureDay());
 			c = p.getClient();
 			arrive = p.getArrivalDay();
 			depart = p.getDepartureDay();
@@ -252,9 +258,12 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 				expectedExtra += estDifs[day - 1];
 			}
 			tt = hotelPremium > expectedExtra;
-			pmLogger.log("HP:" + hotelPremium
-					+ ", expected difference in cost:" + expectedExtra
-					+ ", so getting " + (tt ? "TT" : "SS"));
+			// The premium and cost are boxed, so only when logged
+			if (pmLogger.isLoggable(AgentLogger.INFO)) {
+				pmLogger.log(AgentLogger.INFO,
+						"HP:{}, expected difference in cost:{}, so getting {}",
+						hotelPremium, expectedExtra, tt ? "TT" : "SS");
+			}
 			errCount = 0;
 			do {
 				err = false;
@@ -283,28 +292,32 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 			if (!err) {
 				// store hotel intention
 				intendedHotel[cliNum - 1] = tt;
-				String allocIntent = "\n\t\t0\t1\t2\t3\t4\t5\t6\t7\n", alloc = "allocated", intent = "intentions:";
 				// push changes to main intention and allocation arrays
 				for (i = 0; i <= 7; i++) {
 					allocated[i] = allocated[i] + tempAllocations[i];
-					alloc += "\t" + Integer.toString(allocated[i]);
 					intentions[i] = intentions[i] + tempIntentions[i];
-					intent += "\t" + Integer.toString(intentions[i]);
 				}
-				pmLogger.log(allocIntent + alloc + "\n" + intent);
+				if (pmLogger.isLoggable(AgentLogger.INFO)) {
+					StringBuilder alloc = new StringBuilder("\n\t\t0\t1\t2\t3\t4\t5\t6\t7\nallocated");
+					StringBuilder intent = new StringBuilder("intentions:");
+					for (i = 0; i <= 7; i++) {
+						alloc.append('\t').append(allocated[i]);
+						intent.append('\t').append(intentions[i]);
+					}
+					pmLogger.log(alloc.append('\n').append(intent).toString());
+				}
 			} else {
 				// failed to find a feasible solution to this package on
 				// specified days
-				pmLogger.log("Package " + Integer.toString(cliNum)
-						+ " infeasible, requesting package update",
-						AgentLogger.WARNING);
+				pmLogger.log(AgentLogger.WARNING,
+						"Package {} infeasible, requesting package update", cliNum);
 				return false;
 			}
 		}
 		// updateBids(); // Bids are updated individually as initial quote
 		// updates come in
 		// Output intentions
-		if (DEBUG) {
+		if (DEBUG && pmLogger.isLoggable(AgentLogger.INFO)) {
 			String message = "Intentions:\n";
 			cliNum = 0;
 			for (Package p : packages) {
@@ -323,7 +336,6 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 	}
 	
 	public boolean fulfillPackagesRecursive(List<Package> packages) {
-		numRecs = 0;
 		// save packages
 		mostRecentPackages = packages;
 		// gather arrays
@@ -340,15 +352,17 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 		int[] stock = held.clone();
 		
 		// find best(ish) hotel strategy
-		Alloc result = bhsRecurse(0, startDays, endDays, hps, predPrices, isClosed, stock);
-		if (!result.feasible) {
+		if (!allocationSearch.search(len, startDays, endDays, hps, predPrices, isClosed, stock)) {
 			pmLogger.log("Packages infeasible, requesting package update", AgentLogger.WARNING);
 			return false;
 		}
-		String outputStrategy = "";
-		for (int p = 0; p < len; p++)
-			outputStrategy += result.alloc[p] + " ";
-		pmLogger.log("Best hotel strategy found is: " + outputStrategy + ", found after " + numRecs);
+		if (pmLogger.isLoggable(AgentLogger.INFO)) {
+			StringBuilder outputStrategy = new StringBuilder();
+			for (int p = 0; p < len; p++)
+				outputStrategy.append(allocationSearch.getAllocation(p)).append(' ');
+			pmLogger.log("Best hotel strategy found is: " + outputStrategy + ", found after "
+					+ allocationSearch.getStatesSearched());
+		}
 		
 		// clear previous intentions
 		intentions = new int[8];
@@ -357,7 +371,7 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 		int i;
 		for (int p = 0; p < len; p++) {
 			for (int day = startDays[p]; day < endDays[p]; day++) {
-				tt = result.alloc[p];
+				tt = allocationSearch.getAllocation(p);
 				i = hashForIndex(day, tt);
 				if (isClosed[i]) {
 					stock[i]--;
@@ -367,114 +381,24 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 					intentions[i]++;
 			}
 		}
-		String intentionString = "Intentions:";
-		String remStockString = "Remaining stock:";
-		String predPriceString = "Predicted cost:";
-		for (i = 0; i < intentions.length; i++) {
-			intentionString += "\t" + (isClosed[i] ? "Closed" : intentions[i]);
-			remStockString += "\t" + stock[i] + "/" + held[i];
-			predPriceString += "\t" + predPrices[i];
+		if (pmLogger.isLoggable(AgentLogger.INFO)) {
+			StringBuilder intentionString = new StringBuilder("Intentions:");
+			StringBuilder remStockString = new StringBuilder("Remaining stock:");
+			StringBuilder predPriceString = new StringBuilder("Predicted cost:");
+			for (i = 0; i < intentions.length; i++) {
+				intentionString.append('\t').append(isClosed[i] ? "Closed" : Integer.toString(intentions[i]));
+				remStockString.append('\t').append(stock[i]).append('/').append(held[i]);
+				predPriceString.append('\t').append(predPrices[i]);
+			}
+			pmLogger.log(intentionString.toString());
+			pmLogger.log(remStockString.toString());
+			pmLogger.log(predPriceString.toString());
 		}
-		pmLogger.log(intentionString);
-		pmLogger.log(remStockString);
-		pmLogger.log(predPriceString);
 		updateBids();
 		return true;
 	}
 	
-	private int numRecs = 0;
-	
-	private class Alloc {
-		boolean[] alloc;
-		float netCost = 0;
-		boolean feasible = true;
-	}
-	
-	/**
-	 * BestHotelSelectionRecursive
-	 * @param depth
-	 * @param startDays
-	 * @param endDays
-	 * @param hps
-	 * @param predPrices
-	 * @param isClosed
-	 * @param stock
-	 * @return
-	 */
-	private Alloc bhsRecurse(int depth, int[] startDays, int[] endDays, int[] hps, float[] predPrices, boolean[] isClosed, int[] stock) {
-		numRecs++;
-		int startDay = startDays[depth], endDay = endDays[depth], hp = hps[depth];
-		int[] ttStock = stock.clone(), ssStock = stock.clone();
-		Alloc ttAlloc = new Alloc(), ssAlloc = new Alloc();
-		ttAlloc.netCost -= hp;
-		// calculate cost for this depth package for both tt and ss possibilities
-		int ttDay;
-		for (int ssDay = startDay-1; ssDay < endDay-1; ssDay++) {
-			ttDay = ssDay + 4;
-			if (!isClosed[ttDay])
-				ttAlloc.netCost += predPrices[ttDay];
-			else if (ttStock[ttDay] > 0)
-				ttStock[ttDay]--;
-			else
-				ttAlloc.feasible = false;
-			if (!isClosed[ssDay])
-				ssAlloc.netCost += predPrices[ssDay];
-			else if (ssStock[ssDay] > 0)
-				ssStock[ssDay]--;
-			else
-				ssAlloc.feasible = false;
-		}
-		ttAlloc.alloc = new boolean[startDays.length-depth];
-		ttAlloc.alloc[0] = true;
-		ssAlloc.alloc = new boolean[startDays.length-depth];
-		ssAlloc.alloc[0] = false;
-		
-		// if not at maximum depth, recurse
-		if (depth < startDays.length-1) {
-			Alloc newTT, newSS;
-			newTT = ttAlloc.feasible ? bhsRecurse(depth+1,startDays,endDays,hps,predPrices,isClosed,ttStock) : ttAlloc;
-			newSS = ssAlloc.feasible ? bhsRecurse(depth+1,startDays,endDays,hps,predPrices,isClosed,ssStock) : ssAlloc;
-			if (!newTT.feasible && !newSS.feasible) {
-				return newTT;
-			}
-			Alloc head, tail;
-			if (newTT.feasible && newSS.feasible) {
-				ttAlloc.netCost += newTT.netCost;
-				ssAlloc.netCost += newSS.netCost;
-				if (ttAlloc.netCost < ssAlloc.netCost) {
-					head = ttAlloc;
-					tail = newTT;
-				} else {
-					head = ssAlloc;
-					tail = newSS;
-				}
-			} else if (newTT.feasible) {
-				ttAlloc.netCost += newTT.netCost;
-				head = ttAlloc;
-				tail = newTT;
-			} else {
-				ssAlloc.netCost += newSS.netCost;
-				head = ssAlloc;
-				tail = newSS;
-			}
-			for (int i = 0; i < tail.alloc.length; i++)
-				head.alloc[i+1] = tail.alloc[i];
-			return head;
-		} else {
-			// at maximum depth (final package) so just return the lowest cost of the two
-			if (!ttAlloc.feasible && !ssAlloc.feasible)
-				return ttAlloc;
-			if (ttAlloc.feasible && ssAlloc.feasible)
-				if (ttAlloc.netCost < ssAlloc.netCost)
-					return ttAlloc;
-				else
-					return ssAlloc;
-			else if (ttAlloc.feasible)
-				return ttAlloc;
-			else
-				return ssAlloc;
-		}
-	}
+	private final HotelAllocationSearch allocationSearch = new HotelAllocationSearch();
 	
 	private void updateBids() {
 		updateBids(true);
@@ -497,7 +421,8 @@ public class HotelAgent extends SubAgent<HotelBooking> {
 			hotelHist.setEstNextPrice(day, tt);
 			float estNextPrice = hotelHist.getEstNextPrice(day, tt);
 			estNextPrice = Math.max(estNextPrice, auc.getAskPrice() + 75);
-			float proposedBid = (float) (estNextPrice * bidProportions[lmu]);
+			float proposedBid = (float) (estNextPrice
+					* agent.getParameters().getHotelBidProportion(lmu));
 			int dayHash = hashForIndex(day, tt);
 			int hqw = auc.getHQW();
 			float maxBid = 0;
@@ -0,0 +1,293 @@
+package agent.hotel;
+
+import java.util.Arrays;
+
+/**
+ * Finds the cheapest choice of hotel (TT or SS) for each package.
+ *
+ * Each night in an open auction costs its predicted price, a night in a closed auction must come from the stock of
+ * rooms held, and choosing TT earns the client's hotel premium. Only the stock of closed auctions changes during the
+ * search, so the cheapest choice for the remaining packages is memoized on (package, stock left in closed auctions).
+ * A choice is not searched if its own cost plus a lower bound of the remaining packages' cost cannot beat the other
+ * choice. All working memory is kept between searches.
+ *
+ * The result is the same as choosing recursively over all 2^n combinations, preferring SS on equal cost.
+ */
+public class HotelAllocationSearch {
+
+	private static final int NUM_AUCTIONS = 8;
+	private static final int SS = 0;
+	private static final int TT = 1;
+	private static final int INFEASIBLE = 2;
+	// Allowance for rounding when comparing a bound with a cost
+	private static final float BOUND_MARGIN = 0.01f;
+
+	private int capacity = 0;
+	private int numPackages;
+	private int[] startDays, endDays, hps;
+	private float[] predPrices;
+	private boolean[] isClosed;
+
+	// Stock left at each depth, and the best allocation found
+	private int[][] stocks = new int[1][NUM_AUCTIONS];
+	private boolean[] alloc = new boolean[0];
+	// Lower bound of the cost of the packages from a depth onwards
+	private float[] remainingBound = new float[1];
+	private float cost;
+	private int statesSearched;
+
+	// Memo: open addressing on (depth, stock signature), cleared by
+	// bumping the generation
+	private int memoMask;
+	private int[] memoGeneration;
+	private int[] memoDepth;
+	private long[] memoSignature;
+	private float[] memoCost;
+	private byte[] memoChoice;
+	private int memoSize;
+	private int generation = 0;
+
+	public HotelAllocationSearch() {
+		allocateMemo(1024);
+	}
+
+	/**
+	 * Search for the cheapest hotel allocation.
+	 *
+	 * @param numPackages The number of packages.
+	 * @param startDays Arrival day of each package.
+	 * @param endDays Departure day of each package.
+	 * @param hps Hotel premium of each package's client.
+	 * @param predPrices Predicted price per auction, indexed 0-3 for SS day 1-4 and 4-7 for TT day 1-4.
+	 * @param isClosed Whether each auction is closed.
+	 * @param stock Rooms held per auction.
+	 * @return true if there is a feasible allocation.
+	 */
+	public boolean search(int numPackages, int[] startDays, int[] endDays, int[] hps, float[] predPrices,
+						  boolean[] isClosed, int[] stock) {
+		this.numPackages = numPackages;
+		this.startDays = startDays;
+		this.endDays = endDays;
+		this.hps = hps;
+		this.predPrices = predPrices;
+		this.isClosed = isClosed;
+		ensureCapacity(numPackages);
+		statesSearched = 0;
+		if (++generation == 0) {
+			Arrays.fill(memoGeneration, 0);
+			generation = 1;
+		}
+		memoSize = 0;
+
+		// Optimistic cost of each package: the cheaper hotel, with any
+		// room needed in a closed auction taken from stock
+		remainingBound[numPackages] = 0f;
+		for (int p = numPackages - 1; p >= 0; p--) {
+			float ttCost = -hps[p], ssCost = 0f;
+			for (int ssDay = startDays[p] - 1; ssDay < endDays[p] - 1; ssDay++) {
+				int ttDay = ssDay + 4;
+				if (!isClosed[ttDay])
+					ttCost += predPrices[ttDay];
+				if (!isClosed[ssDay])
+					ssCost += predPrices[ssDay];
+			}
+			remainingBound[p] = remainingBound[p + 1] + Math.min(ttCost, ssCost);
+		}
+
+		System.arraycopy(stock, 0, stocks[0], 0, NUM_AUCTIONS);
+		if (numPackages == 0) {
+			cost = 0f;
+			return true;
+		}
+		if (best(0, stocks[0]) == INFEASIBLE) {
+			return false;
+		}
+
+		// Follow the memoized choices to get the allocation
+		int[] current = stocks[0];
+		for (int p = 0; p < numPackages; p++) {
+			int slot = find(p, current);
+			boolean tt = memoChoice[slot] == TT;
+			if (p == 0) {
+				cost = memoCost[slot];
+			}
+			alloc[p] = tt;
+			int[] next = stocks[p + 1];
+			System.arraycopy(current, 0, next, 0, NUM_AUCTIONS);
+			useStock(p, tt, next);
+			current = next;
+		}
+		return true;
+	}
+
+	/** @return true if the package should be given TT in the last feasible search. */
+	public boolean getAllocation(int p) {
+		return alloc[p];
+	}
+
+	/** @return the net cost of the last feasible search. */
+	public float getCost() {
+		return cost;
+	}
+
+	/** @return the number of states expanded by the last search. */
+	public int getStatesSearched() {
+		return statesSearched;
+	}
+
+	// Returns the choice for package p with the given stock (and
+	// memoizes it with its cost)
+	private int best(int p, int[] stock) {
+		int slot = find(p, stock);
+		if (memoGeneration[slot] == generation) {
+			return memoChoice[slot];
+		}
+		statesSearched++;
+
+		// Cost of this package with each hotel
+		boolean ttFeasible = true, ssFeasible = true;
+		float ttCost = -hps[p], ssCost = 0f;
+		for (int ssDay = startDays[p] - 1; ssDay < endDays[p] - 1; ssDay++) {
+			int ttDay = ssDay + 4;
+			if (!isClosed[ttDay])
+				ttCost += predPrices[ttDay];
+			else if (stock[ttDay] <= 0)
+				ttFeasible = false;
+			if (!isClosed[ssDay])
+				ssCost += predPrices[ssDay];
+			else if (stock[ssDay] <= 0)
+				ssFeasible = false;
+		}
+
+		// Add the cost of the remaining packages, trying the cheaper
+		// looking hotel first
+		boolean ttFirst = ttCost < ssCost;
+		float firstCost = Float.NaN, secondCost = Float.NaN;
+		for (int i = 0; i < 2; i++) {
+			boolean tt = (i == 0) == ttFirst;
+			if (!(tt ? ttFeasible : ssFeasible)) {
+				continue;
+			}
+			float own = tt ? ttCost : ssCost;
+			if (i == 1 && !Float.isNaN(firstCost)
+				&& own + remainingBound[p + 1] - BOUND_MARGIN > firstCost) {
+				// Can not be cheaper than the first choice
+				continue;
+			}
+			float total = own;
+			if (p + 1 < numPackages) {
+				int[] next = stocks[p + 1];
+				System.arraycopy(stock, 0, next, 0, NUM_AUCTIONS);
+				useStock(p, tt, next);
+				int nextChoice = best(p + 1, next);
+				if (nextChoice == INFEASIBLE) {
+					continue;
+				}
+				total += memoCost[find(p + 1, next)];
+			}
+			if (i == 0) {
+				firstCost = total;
+			} else {
+				secondCost = total;
+			}
+		}
+
+		float ttTotal = ttFirst ? firstCost : secondCost;
+		float ssTotal = ttFirst ? secondCost : firstCost;
+		int choice;
+		float total;
+		if (Float.isNaN(ttTotal) && Float.isNaN(ssTotal)) {
+			choice = INFEASIBLE;
+			total = 0f;
+		} else if (Float.isNaN(ssTotal) || (!Float.isNaN(ttTotal) && ttTotal < ssTotal)) {
+			choice = TT;
+			total = ttTotal;
+		} else {
+			choice = SS;
+			total = ssTotal;
+		}
+
+		// The table may have grown during the recursion
+		slot = find(p, stock);
+		memoGeneration[slot] = generation;
+		memoDepth[slot] = p;
+		memoSignature[slot] = signature(stock);
+		memoCost[slot] = total;
+		memoChoice[slot] = (byte) choice;
+		if (++memoSize * 2 > memoGeneration.length) {
+			growMemo();
+		}
+		return choice;
+	}
+
+	private void useStock(int p, boolean tt, int[] stock) {
+		for (int day = startDays[p] - 1; day < endDays[p] - 1; day++) {
+			int i = tt ? day + 4 : day;
+			if (isClosed[i]) {
+				stock[i]--;
+			}
+		}
+	}
+
+	// Only the stock in closed auctions matters
+	private long signature(int[] stock) {
+		long signature = 0L;
+		for (int i = 0; i < NUM_AUCTIONS; i++) {
+			signature = (signature << 8) | (isClosed[i] ? Math.max(0, Math.min(stock[i], 255)) : 0);
+		}
+		return signature;
+	}
+
+	// Returns the slot of (p, stock) in the memo, or the empty slot where
+	// it should go
+	private int find(int p, int[] stock) {
+		return find(p, signature(stock));
+	}
+
+	private int find(int p, long signature) {
+		long h = (signature ^ (signature >>> 29)) * 0x9E3779B97F4A7C15L + p;
+		int slot = (int) (h ^ (h >>> 32)) & memoMask;
+		while (memoGeneration[slot] == generation
+			   && (memoDepth[slot] != p || memoSignature[slot] != signature)) {
+			slot = (slot + 1) & memoMask;
+		}
+		return slot;
+	}
+
+	private void ensureCapacity(int numPackages) {
+		if (numPackages > capacity) {
+			capacity = numPackages;
+			stocks = new int[numPackages + 1][NUM_AUCTIONS];
+			alloc = new boolean[numPackages];
+			remainingBound = new float[numPackages + 1];
+		}
+	}
+
+	private void allocateMemo(int size) {
+		memoMask = size - 1;
+		memoGeneration = new int[size];
+		memoDepth = new int[size];
+		memoSignature = new long[size];
+		memoCost = new float[size];
+		memoChoice = new byte[size];
+	}
+
+	private void growMemo() {
+		int[] oldGeneration = memoGeneration, oldDepth = memoDepth;
+		long[] oldSignature = memoSignature;
+		float[] oldCost = memoCost;
+		byte[] oldChoice = memoChoice;
+		allocateMemo(oldGeneration.length * 2);
+		for (int i = 0; i < oldGeneration.length; i++) {
+			if (oldGeneration[i] == generation) {
+				int slot = find(oldDepth[i], oldSignature[i]);
+				memoGeneration[slot] = generation;
+				memoDepth[slot] = oldDepth[i];
+				memoSignature[slot] = oldSignature[i];
+				memoCost[slot] = oldCost[i];
+				memoChoice[slot] = oldChoice[i];
+			}
+		}
+	}
+}
+
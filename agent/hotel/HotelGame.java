@@ -32,6 +32,8 @@ public class HotelGame implements Serializable {
 	}
 
 	public void dumpToConsole(AgentLogger histLogger) {
+		if (!histLogger.isLoggable(AgentLogger.INFO))
+			return;
 		String dump = "\n";
 		dump += "hotelGame\taskPrices:\n";
 		dump += "hotelGame\taucID\t0min\t1min\t2min\t3min\t4min\t5min\t6min\t7min\t8min\tclosed on\n";
@@ -1,22 +1,39 @@
 package agent.hotel;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 
 import agent.logging.AgentLogger;
 import agent.logging.LogEntry;
+import agent.logging.PersistenceService;
 
+/**
+ * The hotel prices of past games. The games are kept in a {@link HotelHistoryStore}; the averages are computed from
+ * its running totals, so neither saving a game nor updating the estimates depends on the number of games. The
+ * averages are either the plain means or, to follow recent opponents, means that decay with the age of the game (see
+ * {@link #setDecayed(boolean)}). Only serializable to read the history files of earlier versions, see
+ * {@link #load(File, File)}.
+ */
 public class HotelHistory implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	// Only set in history files of earlier versions
 	private ArrayList<HotelGame> history;
+	private transient HotelHistoryStore store;
+	private transient HotelTotals totals;
+	private transient boolean decayed;
 	private HotelGame currentGame;
 
 	private float[] avgHotelPriceDifs;
@@ -26,13 +43,76 @@ public class HotelHistory implements Serializable {
 	private float[] estPrices;
 	private float[] estNextPrices = new float[8];
 	
+	/** An empty history that is not stored. */
 	public HotelHistory() {
-		history = new ArrayList<HotelGame>();
+		this((HotelHistoryStore) null);
+	}
+
+	/** A copy of the averages of the history that is not stored, e.g. for a game played offline. */
+	public HotelHistory(HotelHistory history) {
+		this((HotelHistoryStore) null);
+		ByteBuffer buffer = ByteBuffer.allocate(HotelTotals.SIZE);
+		history.totals.write(buffer);
+		buffer.flip();
+		totals.read(buffer);
+		setDecayed(history.decayed);
+	}
+
+	private HotelHistory(HotelHistoryStore store) {
+		this.store = store;
+		totals = store != null ? store.getTotals() : new HotelTotals();
 		setAvgHotelPriceDifs();
 		setAvgPriceRises();
 		setAvgPrices();
 	}
 
+	/**
+	 * Opens the history stored in storeFile. If there is no such file but there is a serialized history of an earlier
+	 * version in legacyFile, its games are copied to a new store first. The legacy file is left as it is.
+	 */
+	public static HotelHistory load(File storeFile, File legacyFile) throws IOException {
+		return load(storeFile, legacyFile, null);
+	}
+
+	/**
+	 * Opens the history like {@link #load(File, File)}.
+	 *
+	 * @param writer The service to save games in the background with, or null to save them before returning.
+	 */
+	public static HotelHistory load(File storeFile, File legacyFile, PersistenceService writer) throws IOException {
+		if (writer != null) {
+			// A game of the previous history may still be being saved
+			writer.flush();
+		}
+		if (!storeFile.exists() && legacyFile.exists()) {
+			migrate(legacyFile, storeFile);
+		}
+		return new HotelHistory(HotelHistoryStore.open(storeFile, writer));
+	}
+
+	private static void migrate(File legacyFile, File storeFile) throws IOException {
+		HotelHistory legacy;
+		try (InputStream file = new FileInputStream(legacyFile);
+				InputStream buffer = new BufferedInputStream(file);
+				ObjectInput input = new ObjectInputStream(buffer);) {
+			legacy = (HotelHistory) input.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("not a hotel history file: " + legacyFile, e);
+		}
+		// Written next to the store and renamed, so a failed migration leaves no partial store behind
+		File tmp = new File(storeFile.getPath() + ".tmp");
+		tmp.delete();
+		try (HotelHistoryStore migrated = HotelHistoryStore.open(tmp)) {
+			if (legacy.history != null) {
+				for (HotelGame g : legacy.history) {
+					migrated.append(g);
+				}
+			}
+		}
+		Files.move(tmp.toPath(), storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
 	public void update() {
 		setEstPrices();
 		setEstHotelPriceDifs();
@@ -42,26 +122,50 @@ public class HotelHistory implements Serializable {
 		currentGame = null;
 	}
 
-	public void save() {
-		history.add(currentGame);
+	/** Adds the current game to the history, appending it to the store if there is one. */
+	public void save() throws IOException {
+		HotelGame game = currentGame;
+		currentGame = null;
+		if (store != null) {
+			store.append(game);
+		} else {
+			totals.add(game);
+		}
 		setAvgHotelPriceDifs();
 		setAvgPriceRises();
 		setAvgPrices();
-		currentGame = null;
 	}
 
-	public static void main(String[] args) {
-		HotelHistory hotelHist = new HotelHistory();
-		try (InputStream file = new FileInputStream("hotelHistory.hist");
-				InputStream buffer = new BufferedInputStream(file);
-				ObjectInput input = new ObjectInputStream(buffer);) {
-			hotelHist = (HotelHistory) input.readObject();
-		} catch (Exception e) {
+	/** Whether the averages weight recent games more, by {@link HotelTotals#DECAY} per game. Default is false. */
+	public void setDecayed(boolean decayed) {
+		this.decayed = decayed;
+		setAvgHotelPriceDifs();
+		setAvgPriceRises();
+		setAvgPrices();
+		if (currentGame != null) {
+			update();
 		}
+	}
+
+	public boolean isDecayed() {
+		return decayed;
+	}
+
+	/** Closes the store, if there is one. */
+	public void close() throws IOException {
+		if (store != null) {
+			store.close();
+			store = null;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		HotelHistory hotelHist = load(new File("hotelHistory.hgh"), new File("hotelHistory.hist"));
 		if (args.length == 0) {
 			
 			SimpleDateFormat f = LogEntry.formatter;
-			for (HotelGame g : hotelHist.history) {
+			for (int i = 0; i < hotelHist.getNumGames(); i++) {
+				HotelGame g = hotelHist.store.getGame(i);
 				String dump = "Date = " + f.format(g.start) + "\n";
 				dump += "hotelGame\taskPrices:\n";
 				dump += "hotelGame\taucID\t0min\t1min\t2min\t3min\t4min\t5min\t6min\t7min\t8min\tclosed on\n";
@@ -91,6 +195,7 @@ public class HotelHistory implements Serializable {
 		} else {
 			
 		}
+		hotelHist.close();
 	}
 
 	public float[] getAvgHotelPriceDifs() {
@@ -98,20 +203,13 @@ public class HotelHistory implements Serializable {
 	}
 
 	private void setAvgHotelPriceDifs() {
-		if (history.isEmpty()) {
+		if (totals.numGames == 0) {
 			avgHotelPriceDifs = new float[] { 25, 25, 25, 25 };
 			return;
 		}
 		float[] prices = new float[8];
-		int gameCount = 0;
-		for (HotelGame g : history) {
-			gameCount++;
-			for (int auction = 0; auction < 8; auction++) {
-				prices[auction] += g.getClosePrice(auction);
-			}
-		}
 		for (int auction = 0; auction < 8; auction++) {
-			prices[auction] = prices[auction] / gameCount;
+			prices[auction] = (float) totals.getClosePriceMean(auction, decayed);
 		}
 		float[] pds = new float[4];
 		for (int day = 0; day < 4; day++) {
@@ -125,7 +223,7 @@ public class HotelHistory implements Serializable {
 	}
 
 	private void setAvgPriceRises() {
-		if (history.isEmpty()) {
+		if (totals.numGames == 0) {
 			float[] ttMid = new float[] { 90, 60, 25, 20, 20, 20, 20, 20 };
 			float[] ttOuter = new float[] { 70, 50, 15, 15, 15, 15, 15, 15 };
 			float[] ssMid = new float[] { 65, 30, 15, 15, 15, 15, 15, 15 };
@@ -134,30 +232,24 @@ public class HotelHistory implements Serializable {
 			return;
 		}
 		float[][] newAPR = new float[8][8];
-		int[][] numInstances = new int[8][8];
-		for (HotelGame g : history) {
-			float[][] prices = g.askPrices;
-			int[] closedOn = g.closedOn;
-			for (int aucID = 0; aucID < 8; aucID++) {
-				for (int minute = 1; minute <= closedOn[aucID]; minute++) {
-					newAPR[aucID][minute - 1] += prices[aucID][minute]
-							- prices[aucID][minute - 1];
-					numInstances[aucID][minute - 1]++;
-				}
-			}
-		}
 		for (int aucID = 0; aucID < 8; aucID++) {
 			for (int minute = 1; minute <= 8; minute++) {
-				if (numInstances[aucID][minute - 1] == 0)
-					newAPR[aucID][minute - 1] = 0;
-				else
-					newAPR[aucID][minute - 1] = newAPR[aucID][minute - 1]
-							/ numInstances[aucID][minute - 1];
+				newAPR[aucID][minute - 1] = (float) totals.getPriceRiseMean(aucID, minute - 1, decayed);
 			}
 		}
 		avgPriceRises = newAPR;
 	}
 
+	/** The sample variance of the close prices of the auction over all games. */
+	public float getClosePriceVariance(int aucID) {
+		return (float) totals.getClosePriceVariance(aucID);
+	}
+
+	/** The sample variance of the price rise of the auction from minute - 1 to minute over all games. */
+	public float getPriceRiseVariance(int aucID, int minute) {
+		return (float) totals.getPriceRiseVariance(aucID, minute - 1);
+	}
+
 	public float[][] getAvgPrices() {
 		return avgPrices;
 	}
@@ -240,7 +332,7 @@ public class HotelHistory implements Serializable {
 	}
 
 	public int getNumGames() {
-		return history.size();
+		return totals.numGames;
 	}
 
 	public float getEstNextPrice(int day, boolean tt) {
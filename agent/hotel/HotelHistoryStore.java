@@ -0,0 +1,197 @@
+package agent.hotel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+
+import agent.logging.PersistenceService;
+
+/**
+ * Append-only file of hotel games, one fixed size record per game.
+ *
+ * The header holds the number of games and the totals that the history's averages are computed from, so opening the
+ * store only reads the header however many games it holds. The records are memory-mapped and only read when a game
+ * is asked for. A game is appended by writing its record, forcing it to disk and then writing the header, so a game
+ * whose write did not complete is simply not counted. The writes can be left to a {@link PersistenceService}.
+ *
+ * Header: magic, version, record size and the {@link HotelTotals}. Record: start time, the minute each auction closed
+ * on and the 8x9 ask prices.
+ */
+public class HotelHistoryStore implements Closeable {
+
+	private static final int MAGIC = 0x54474648; // "TGFH"
+	private static final int VERSION = 2;
+	private static final int AUCTIONS = 8;
+	private static final int MINUTES = 9;
+
+	static final int HEADER_SIZE = 4096;
+	static final int RECORD_SIZE = 8 + AUCTIONS + AUCTIONS * MINUTES * 4;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final PersistenceService writer;
+	private MappedByteBuffer map;
+	private final HotelTotals totals = new HotelTotals();
+
+	private HotelHistoryStore(File f, PersistenceService writer) throws IOException {
+		file = new RandomAccessFile(f, "rw");
+		channel = file.getChannel();
+		this.writer = writer;
+		try {
+			if (channel.size() == 0) {
+				write(header(), 0);
+			} else {
+				readHeader();
+			}
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/** Opens the store, creating an empty one if the file does not exist. */
+	public static HotelHistoryStore open(File f) throws IOException {
+		return open(f, null);
+	}
+
+	/**
+	 * Opens the store, creating an empty one if the file does not exist.
+	 *
+	 * @param writer The service to append games in the background with, or null to append them before returning. The
+	 *            writes of a store opened earlier with the writer are completed first.
+	 */
+	public static HotelHistoryStore open(File f, PersistenceService writer) throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		return new HotelHistoryStore(f, writer);
+	}
+
+	public int getNumGames() {
+		return totals.numGames;
+	}
+
+	/** The totals of the stored games, updated by {@link #append(HotelGame)}. */
+	HotelTotals getTotals() {
+		return totals;
+	}
+
+	/** Reads a stored game. */
+	public HotelGame getGame(int i) throws IOException {
+		int numGames = totals.numGames;
+		if (i < 0 || i >= numGames) {
+			throw new IndexOutOfBoundsException("game " + i + " of " + numGames);
+		}
+		if (writer != null) {
+			writer.flush();
+		}
+		long end = HEADER_SIZE + (long) numGames * RECORD_SIZE;
+		if (map == null || map.capacity() < end) {
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+		}
+		int pos = HEADER_SIZE + i * RECORD_SIZE;
+		HotelGame game = new HotelGame();
+		game.start = new Date(map.getLong(pos));
+		pos += 8;
+		for (int a = 0; a < AUCTIONS; a++) {
+			game.closedOn[a] = map.get(pos++);
+		}
+		for (int a = 0; a < AUCTIONS; a++) {
+			for (int m = 0; m < MINUTES; m++) {
+				game.askPrices[a][m] = map.getFloat(pos);
+				pos += 4;
+			}
+		}
+		game.mostRecentInfo = MINUTES - 1;
+		return game;
+	}
+
+	/** Adds the game to the totals and appends it. */
+	public void append(HotelGame game) throws IOException {
+		final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+		record.putLong(game.start.getTime());
+		for (int a = 0; a < AUCTIONS; a++) {
+			record.put((byte) game.closedOn[a]);
+		}
+		for (int a = 0; a < AUCTIONS; a++) {
+			for (int m = 0; m < MINUTES; m++) {
+				record.putFloat(game.askPrices[a][m]);
+			}
+		}
+		record.flip();
+		final long pos = HEADER_SIZE + (long) totals.numGames * RECORD_SIZE;
+		totals.add(game);
+		final ByteBuffer header = header();
+		run(new PersistenceService.Task() {
+			public void run() throws IOException {
+				write(record, pos);
+				channel.force(false);
+				write(header, 0);
+			}
+		});
+	}
+
+	/** Closes the store once its games are written. */
+	@Override
+	public void close() throws IOException {
+		map = null;
+		run(new PersistenceService.Task() {
+			public void run() throws IOException {
+				file.close();
+			}
+		});
+	}
+
+	private void run(PersistenceService.Task task) throws IOException {
+		if (writer != null) {
+			writer.execute(task);
+		} else {
+			task.run();
+		}
+	}
+
+	private void write(ByteBuffer buffer, long pos) throws IOException {
+		while (buffer.hasRemaining()) {
+			pos += channel.write(buffer, pos);
+		}
+	}
+
+	private ByteBuffer header() {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(RECORD_SIZE);
+		totals.write(header);
+		header.clear();
+		return header;
+	}
+
+	private void readHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.limit((int) Math.min(HEADER_SIZE, channel.size()));
+		long pos = 0;
+		while (header.hasRemaining()) {
+			pos += channel.read(header, pos);
+		}
+		header.flip();
+		if (header.remaining() < 12 || header.getInt() != MAGIC) {
+			throw new IOException("not a hotel history store");
+		}
+		int version = header.getInt();
+		if (version != VERSION || header.getInt() != RECORD_SIZE) {
+			throw new IOException("unsupported hotel history store version " + version);
+		}
+		if (header.limit() < HEADER_SIZE) {
+			throw new IOException("truncated hotel history header");
+		}
+		totals.read(header);
+		if (channel.size() < HEADER_SIZE + (long) totals.numGames * RECORD_SIZE) {
+			throw new IOException("hotel history store holds fewer than " + totals.numGames + " games");
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package agent.hotel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Running statistics over a set of hotel games that the averages of {@link HotelHistory} are computed from: for the
+ * close price of each auction and the price rise of each auction and minute, the number of samples, their sum, the sum
+ * of their squares and a mean that decays by {@link #DECAY} per sample. Adding a game takes constant time.
+ */
+class HotelTotals {
+
+	private static final int AUCTIONS = 8;
+	private static final int MINUTES = 8;
+
+	/**
+	 * The weight of the newest sample in the decayed means. The first 1 / DECAY samples are weighted equally, so the
+	 * decayed mean is the plain mean until then.
+	 */
+	static final double DECAY = 0.05;
+
+	/** The number of bytes written by {@link #write(ByteBuffer)}. */
+	static final int SIZE = 4 + AUCTIONS * 3 * 8 + AUCTIONS * MINUTES * (3 * 8 + 4);
+
+	int numGames;
+	final double[] closePriceSums = new double[AUCTIONS];
+	final double[] closePriceSquares = new double[AUCTIONS];
+	final double[] closePriceDecayed = new double[AUCTIONS];
+	// Rise from minute m to m + 1 at [auction][m]
+	final double[][] priceRiseSums = new double[AUCTIONS][MINUTES];
+	final double[][] priceRiseSquares = new double[AUCTIONS][MINUTES];
+	final double[][] priceRiseDecayed = new double[AUCTIONS][MINUTES];
+	final int[][] priceRiseCounts = new int[AUCTIONS][MINUTES];
+
+	void add(HotelGame game) {
+		numGames++;
+		for (int a = 0; a < AUCTIONS; a++) {
+			double price = game.getClosePrice(a);
+			closePriceSums[a] += price;
+			closePriceSquares[a] += price * price;
+			closePriceDecayed[a] = decay(closePriceDecayed[a], price, numGames);
+			for (int minute = 1; minute <= game.closedOn[a]; minute++) {
+				int m = minute - 1;
+				double rise = game.askPrices[a][minute] - game.askPrices[a][m];
+				priceRiseSums[a][m] += rise;
+				priceRiseSquares[a][m] += rise * rise;
+				priceRiseDecayed[a][m] = decay(priceRiseDecayed[a][m], rise, ++priceRiseCounts[a][m]);
+			}
+		}
+	}
+
+	private static double decay(double mean, double sample, int count) {
+		return mean + (sample - mean) * Math.max(DECAY, 1.0 / count);
+	}
+
+	private static double variance(double sum, double squares, int count) {
+		if (count < 2) {
+			return 0;
+		}
+		return Math.max(0, (squares - sum * sum / count) / (count - 1));
+	}
+
+	double getClosePriceMean(int auction, boolean decayed) {
+		if (numGames == 0) {
+			return 0;
+		}
+		return decayed ? closePriceDecayed[auction] : closePriceSums[auction] / numGames;
+	}
+
+	double getClosePriceVariance(int auction) {
+		return variance(closePriceSums[auction], closePriceSquares[auction], numGames);
+	}
+
+	/** @param m The minute the rise is from, 0-7. */
+	double getPriceRiseMean(int auction, int m, boolean decayed) {
+		int count = priceRiseCounts[auction][m];
+		if (count == 0) {
+			return 0;
+		}
+		return decayed ? priceRiseDecayed[auction][m] : priceRiseSums[auction][m] / count;
+	}
+
+	double getPriceRiseVariance(int auction, int m) {
+		return variance(priceRiseSums[auction][m], priceRiseSquares[auction][m], priceRiseCounts[auction][m]);
+	}
+
+	void write(ByteBuffer buffer) {
+		buffer.putInt(numGames);
+		for (int a = 0; a < AUCTIONS; a++) {
+			buffer.putDouble(closePriceSums[a]);
+			buffer.putDouble(closePriceSquares[a]);
+			buffer.putDouble(closePriceDecayed[a]);
+		}
+		for (int a = 0; a < AUCTIONS; a++) {
+			for (int m = 0; m < MINUTES; m++) {
+				buffer.putDouble(priceRiseSums[a][m]);
+				buffer.putDouble(priceRiseSquares[a][m]);
+				buffer.putDouble(priceRiseDecayed[a][m]);
+				buffer.putInt(priceRiseCounts[a][m]);
+			}
+		}
+	}
+
+	void read(ByteBuffer buffer) {
+		numGames = buffer.getInt();
+		for (int a = 0; a < AUCTIONS; a++) {
+			closePriceSums[a] = buffer.getDouble();
+			closePriceSquares[a] = buffer.getDouble();
+			closePriceDecayed[a] = buffer.getDouble();
+		}
+		for (int a = 0; a < AUCTIONS; a++) {
+			for (int m = 0; m < MINUTES; m++) {
+				priceRiseSums[a][m] = buffer.getDouble();
+				priceRiseSquares[a][m] = buffer.getDouble();
+				priceRiseDecayed[a][m] = buffer.getDouble();
+				priceRiseCounts[a][m] = buffer.getInt();
+			}
+		}
+	}
+}
@@ -1,31 +1,52 @@
 package agent.logging;
 
+import java.io.File;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 
+/**
+ * Logs the messages of the agent to the segments of {@link #fileName} (see {@link LogSegment}), read with
+ * {@link LogReader}. The messages are written in the background by a {@link LogAppender} and are not kept in memory.
+ *
+ * Messages less important than the threshold of their identity are dropped (see {@link #setThreshold(String, int)}).
+ * To not pay for building a dropped message, either pass its parts to {@link #log(int, String, Object)} and friends,
+ * which only format the message if it is logged, or check {@link #isLoggable(int)} first.
+ */
 public class AgentLogger {
 
-	private static volatile int messageNum = 0;
-	private int nextNum;
+	private static volatile LogAppender appender;
 	
 	public static final int INFO = 1;
 	public static final int WARNING = 2;
 	public static final int ERROR = 3;
+	/** The threshold that drops all messages. */
+	public static final int OFF = 4;
 	public static final String fileName = "Agent.log";
 	public static final int MAX_IMPORTANCE = 3;
+	// Messages that can wait to be written, and the size of a segment of the log
+	private static final int RING_SIZE = 8192;
+	private static final long SEGMENT_SIZE = 16 << 20;
+	private static File logFile = new File(fileName);
+	
+	// Threshold by identity path, changes counted so that loggers know to look theirs up again
+	private static final Map<String, Integer> thresholds = new HashMap<String, Integer>();
+	private static volatile int thresholdChanges;
 	
 	private Identity root;
+	private final String path;
+	private int threshold;
+	private int thresholdChange = -1;
 	
 	public AgentLogger() {
-		if (LogFileManager.exists(fileName))
-			root = LogFileManager.readFile(fileName);
-		else
-			root = new Identity("Agent",null);
-		messageNum = Math.max(messageNum, root.getMaxMessageNum());
+		this(new Identity("Agent",null));
+		getAppender();
 	}
 	
 	private AgentLogger(Identity root) {
 		this.root = root;
+		path = root.toString();
 	}
 	
 	public AgentLogger getSublogger(String subPath) {
@@ -33,6 +54,36 @@ public class AgentLogger {
 		return new AgentLogger(i);
 	}
 	
+	private static LogAppender getAppender() {
+		LogAppender a = appender;
+		return a != null ? a : createAppender();
+	}
+	
+	private static synchronized LogAppender createAppender() {
+		if (appender == null) {
+			final LogAppender a = new LogAppender(logFile, RING_SIZE, SEGMENT_SIZE);
+			Runtime.getRuntime().addShutdownHook(new Thread("log-flush") {
+				public void run() {
+					a.flush();
+				}
+			});
+			appender = a;
+		}
+		return appender;
+	}
+	
+	/**
+	 * Logs to the segments of the file instead of {@link #fileName}, e.g. to keep a test's log out of the working
+	 * directory. The messages logged so far are written to the previous file first.
+	 */
+	public static synchronized void setLogFile(File file) {
+		if (appender != null) {
+			appender.flush();
+			appender = null;
+		}
+		logFile = file;
+	}
+	
 	public static Queue<String> parseQueue(String path) {
 		Queue<String> q = new LinkedList<String>();
 		if (path.isEmpty())
@@ -43,39 +94,156 @@ public class AgentLogger {
 		return q;
 	}
 	
+	/**
+	 * Sets the least importance logged by the identity at the path (e.g. "Agent.hotel") and its descendants that have
+	 * no threshold of their own. The default is {@link #INFO}, {@link #OFF} drops all messages.
+	 */
+	public static void setThreshold(String path, int importance) {
+		synchronized (thresholds) {
+			thresholds.put(path, importance);
+			thresholdChanges++;
+		}
+	}
+	
+	/** Removes all thresholds, so that every identity logs from {@link #INFO} again. */
+	public static void clearThresholds() {
+		synchronized (thresholds) {
+			thresholds.clear();
+			thresholdChanges++;
+		}
+	}
+	
+	/**
+	 * Sets the thresholds given as comma separated path:importance pairs, e.g.
+	 * "Agent:2,Agent.hotel.packageManager:4". The importance is a number or INFO, WARNING, ERROR or OFF.
+	 */
+	public static void setThresholds(String thresholds) {
+		if (thresholds == null)
+			return;
+		for (String pair : thresholds.split(",")) {
+			pair = pair.trim();
+			if (pair.isEmpty())
+				continue;
+			int colon = pair.lastIndexOf(':');
+			if (colon < 0)
+				throw new IllegalArgumentException("no importance for " + pair);
+			String importance = pair.substring(colon + 1).trim();
+			int value;
+			switch (importance.toUpperCase()) {
+			case "INFO":
+				value = INFO;
+				break;
+			case "WARNING":
+				value = WARNING;
+				break;
+			case "ERROR":
+				value = ERROR;
+				break;
+			case "OFF":
+				value = OFF;
+				break;
+			default:
+				value = Integer.parseInt(importance);
+				break;
+			}
+			setThreshold(pair.substring(0, colon).trim(), value);
+		}
+	}
+	
+	/** @return whether a message of the importance would be logged. */
+	public boolean isLoggable(int importance) {
+		if (thresholdChange != thresholdChanges) {
+			updateThreshold();
+		}
+		return importance >= threshold;
+	}
+	
+	private void updateThreshold() {
+		synchronized (thresholds) {
+			int change = thresholdChanges;
+			String p = path;
+			Integer t = thresholds.get(p);
+			while (t == null && p.lastIndexOf('.') > 0) {
+				p = p.substring(0, p.lastIndexOf('.'));
+				t = thresholds.get(p);
+			}
+			// The threshold first, so that a thread seeing the change also sees its threshold
+			threshold = t != null ? t : INFO;
+			thresholdChange = change;
+		}
+	}
+	
 	public void log(String message) {
 		log(message,AgentLogger.INFO);
 	}
 	
 	public void log(String message, int importance) {
-		nextNum = ++messageNum;
-		agent.Agent.logMessage(root.toString(), message);
-		LogEntry m = new LogEntry(message,nextNum);
-		root.logMessage(m,importance);
+		if (!isLoggable(importance))
+			return;
+		agent.Agent.logMessage(path, message);
+		getAppender().append(root, importance, message);
+	}
+	
+	/** Logs the pattern with each "{}" replaced by the next argument, if the importance is logged. */
+	public void log(int importance, String pattern, Object arg) {
+		if (isLoggable(importance))
+			log(format(pattern, arg), importance);
+	}
+	
+	/** Logs the pattern with each "{}" replaced by the next argument, if the importance is logged. */
+	public void log(int importance, String pattern, Object arg1, Object arg2) {
+		if (isLoggable(importance))
+			log(format(pattern, arg1, arg2), importance);
+	}
+	
+	/** Logs the pattern with each "{}" replaced by the next argument, if the importance is logged. */
+	public void log(int importance, String pattern, Object arg1, Object arg2, Object arg3) {
+		if (isLoggable(importance))
+			log(format(pattern, arg1, arg2, arg3), importance);
+	}
+	
+	/** Logs the pattern with each "{}" replaced by the next argument, if the importance is logged. */
+	public void log(int importance, String pattern, Object... args) {
+		if (isLoggable(importance))
+			log(format(pattern, args), importance);
+	}
+	
+	static String format(String pattern, Object... args) {
+		StringBuilder sb = new StringBuilder(pattern.length() + 16 * args.length);
+		int from = 0, arg = 0;
+		int at;
+		while (arg < args.length && (at = pattern.indexOf("{}", from)) >= 0) {
+			sb.append(pattern, from, at).append(args[arg++]);
+			from = at + 2;
+		}
+		return sb.append(pattern, from, pattern.length()).toString();
 	}
 	
 	public void logStack(int importance) {
-		StackTraceElement[] stack = Thread.getAllStackTraces().get(Thread.currentThread());
-		String message = "Stack dump:";
-		for (StackTraceElement ste : stack) {
-			message += "\n\t" + ste.toString() ;
+		if (!isLoggable(importance))
+			return;
+		StringBuilder message = new StringBuilder("Stack dump:");
+		for (StackTraceElement ste : Thread.currentThread().getStackTrace()) {
+			message.append("\n\t").append(ste);
 		}
-		log(message,importance);
+		log(message.toString(),importance);
 	}
 	
 	public void logExceptionStack(Exception e, int importance) {
-		StackTraceElement[] stack = e.getStackTrace();
-		String message = "Exception stack dump:";
-		for (StackTraceElement ste : stack) {
-			message += "\n\t" + ste.toString() ;
+		if (!isLoggable(importance))
+			return;
+		StringBuilder message = new StringBuilder("Exception stack dump:");
+		for (StackTraceElement ste : e.getStackTrace()) {
+			message.append("\n\t").append(ste);
 		}
-		log(message,importance);
+		log(message.toString(),importance);
 	}
 	
+	/**
+	 * Forces the messages logged so far to disk in the background. The messages are written as they are logged, so
+	 * nothing else is left to save.
+	 */
 	public void save() {
-		Identity parent = root.getParent();
-		root.setParent(null);
-		LogFileManager.writeFile(root.toString() + ".log",root);
-		root.setParent(parent);
+		getAppender().sync();
 	}
 }
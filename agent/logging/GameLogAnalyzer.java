@@ -0,0 +1,158 @@
+package agent.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts TAC server game logs to the columnar series of {@link GameLogSeries}, one ".tgfs" file per log. Replaces
+ * process_log.py for bulk processing: each log is streamed through a {@link GameLogParser} and the logs are processed
+ * in parallel.
+ */
+public class GameLogAnalyzer {
+
+	public static final String SUFFIX = ".tgfs";
+
+	/** Totals of a run. */
+	public static class Result {
+		public int games;
+		public int failed;
+		public long records;
+		public long bytesRead;
+		public long bytesWritten;
+		public long nanos;
+
+		@Override
+		public String toString() {
+			double seconds = nanos / 1e9;
+			return String.format("%d games (%d failed), %d records, %.1f MB -> %.1f MB in %.2f s: "
+					+ "%.0f games/s, %.1f MB/s", games, failed, records, bytesRead / 1e6, bytesWritten / 1e6, seconds,
+					games / seconds, bytesRead / 1e6 / seconds);
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		File outDir = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<File> logs = new ArrayList<File>();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-o":
+			case "--output":
+				outDir = new File(args[++i]);
+				break;
+			case "-t":
+			case "--threads":
+				threads = Integer.parseInt(args[++i]);
+				break;
+			case "-h":
+			case "--help":
+				showUsage();
+				return;
+			default:
+				addLogs(new File(args[i]), logs);
+				break;
+			}
+		}
+		if (logs.isEmpty()) {
+			showUsage();
+			return;
+		}
+		if (outDir != null && !outDir.isDirectory() && !outDir.mkdirs()) {
+			System.err.println("Could not create output directory " + outDir);
+			return;
+		}
+		System.out.println(analyze(logs, outDir, threads));
+	}
+
+	private static void showUsage() {
+		System.out.println("Usage:");
+		System.out.println("java agent.logging.GameLogAnalyzer [flag value]* [log file or directory]+");
+		System.out.println("-o or --output\t\tThe directory to write the " + SUFFIX
+				+ " files to. Default is next to each log");
+		System.out.println("-t or --threads\t\tThe number of logs to process in parallel. Default is the number of cores");
+	}
+
+	/** Adds the log, or all logs in the directory (any file except the analyzer's output). */
+	public static void addLogs(File file, List<File> logs) {
+		if (file.isDirectory()) {
+			File[] files = file.listFiles();
+			if (files != null) {
+				Arrays.sort(files);
+				for (File f : files) {
+					if (f.isFile() && !f.getName().endsWith(SUFFIX)) {
+						logs.add(f);
+					}
+				}
+			}
+		} else {
+			logs.add(file);
+		}
+	}
+
+	/**
+	 * Analyzes the logs with the given number of threads.
+	 *
+	 * @param outDir The directory for the output, or null to write each output next to its log.
+	 */
+	public static Result analyze(List<File> logs, final File outDir, int threads) throws InterruptedException {
+		Result result = new Result();
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			List<Future<long[]>> futures = new ArrayList<Future<long[]>>(logs.size());
+			for (final File log : logs) {
+				futures.add(executor.submit(new Callable<long[]>() {
+					public long[] call() throws IOException {
+						File dir = outDir != null ? outDir : log.getAbsoluteFile().getParentFile();
+						return analyze(log, new File(dir, log.getName() + SUFFIX));
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					long[] counts = futures.get(i).get();
+					result.games++;
+					result.records += counts[0];
+					result.bytesRead += counts[1];
+					result.bytesWritten += counts[2];
+				} catch (ExecutionException e) {
+					result.failed++;
+					System.err.println("Could not analyze " + logs.get(i) + ": " + e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		result.nanos = System.nanoTime() - start;
+		return result;
+	}
+
+	/** @return the number of records, bytes read and bytes written. */
+	public static long[] analyze(File log, File output) throws IOException {
+		GameLogSeries series = new GameLogSeries();
+		GameLogParser parser = new GameLogParser(series);
+		try (Reader in = new InputStreamReader(new FileInputStream(log), StandardCharsets.ISO_8859_1)) {
+			parser.parse(in);
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output),
+				65536))) {
+			series.write(out);
+			return new long[] { parser.getRecords(), log.length(), out.size() };
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package agent.logging;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for TAC server game logs, the comma separated files read by process_log.py.
+ *
+ * Each line is "time,type,arguments..." and is passed to the handler as soon as it is read, so a log is never held in
+ * memory. Times are given in seconds from the start of the game once the start record has been read. The record types
+ * parsed are start game (g), agent (a), client preferences (c), auctions (u), quote (q), bid (b), transaction (t) and
+ * final allocation (l); other records are skipped.
+ */
+public class GameLogParser {
+
+	/** Receives the records of a log. Array arguments are reused between calls. */
+	public interface Handler {
+		void startGame(long startTime, long endTime);
+
+		void agent(String name, String agentID);
+
+		void auction(int auctionID, int resource, int day);
+
+		/** The client preferences, 6 values per client as in the log. */
+		void clientPreferences(String agentID, int[] prefs, int length);
+
+		void quote(int time, int auctionID, float askPrice, float bidPrice);
+
+		/** The bid type is one of s(ubmit), r(eplace), t(ransact), w(ithdraw) and (reje)c(t). */
+		void bid(int time, int bidID, String agentID, int auctionID, char type, int[] quantities, float[] prices,
+				int points);
+
+		void transaction(int time, String buyerID, String sellerID, int auctionID, int quantity, float price);
+
+		/** The final allocation, 6 values per client as in the log. */
+		void finalAllocation(String agentID, int[] allocation, int length);
+	}
+
+	private static final double[] POW10 = new double[19];
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++) {
+			POW10[i] = POW10[i - 1] * 10;
+		}
+	}
+
+	private final Handler handler;
+	private long startTime = 0;
+	private int records = 0;
+
+	// Field boundaries of the current line
+	private int[] fieldStart = new int[64];
+	private int[] fieldEnd = new int[64];
+	private int fields;
+	private String line;
+
+	private int[] ints = new int[64];
+	private float[] floats = new float[32];
+
+	public GameLogParser(Handler handler) {
+		this.handler = handler;
+	}
+
+	/** @return the number of records passed to the handler so far. */
+	public int getRecords() {
+		return records;
+	}
+
+	public void parse(Reader in) throws IOException {
+		BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 65536);
+		String line;
+		int lineNo = 0;
+		while ((line = reader.readLine()) != null) {
+			lineNo++;
+			if (line.isEmpty()) {
+				continue;
+			}
+			try {
+				parseLine(line);
+			} catch (RuntimeException e) {
+				throw new IOException("malformed record at line " + lineNo + ": " + line, e);
+			}
+		}
+	}
+
+	private void parseLine(String line) {
+		this.line = line;
+		split();
+		if (fields < 2 || fieldEnd[1] - fieldStart[1] != 1) {
+			return;
+		}
+		char type = line.charAt(fieldStart[1]);
+		long absTime = parseLong(0);
+		int time = (int) (absTime - startTime);
+		switch (type) {
+		case 'g':
+			startTime = parseLong(3);
+			handler.startGame(startTime, parseLong(4));
+			break;
+		case 'a':
+			handler.agent(field(2), field(3));
+			break;
+		case 'c':
+			handler.clientPreferences(field(3), parseInts(4), fields - 4);
+			break;
+		case 'u':
+			for (int i = 2; i + 2 < fields; i += 3) {
+				handler.auction(parseInt(i), parseInt(i + 1), parseInt(i + 2));
+			}
+			break;
+		case 'q':
+			handler.quote(time, parseInt(2), parseFloat(3), parseFloat(4));
+			break;
+		case 'b': {
+			int points = Math.max(0, (fields - 7) / 2);
+			if (ints.length < points) {
+				ints = new int[points * 2];
+			}
+			if (floats.length < points) {
+				floats = new float[points * 2];
+			}
+			for (int i = 0; i < points; i++) {
+				ints[i] = parseInt(7 + 2 * i);
+				floats[i] = parseFloat(8 + 2 * i);
+			}
+			handler.bid(time, parseInt(2), field(3), parseInt(4), line.charAt(fieldStart[5]), ints, floats, points);
+			break;
+		}
+		case 't':
+			handler.transaction(time, field(2), field(3), parseInt(4), parseInt(5), parseFloat(6));
+			break;
+		case 'l':
+			handler.finalAllocation(field(3), parseInts(4), fields - 4);
+			break;
+		default:
+			return;
+		}
+		records++;
+	}
+
+	// Finds the fields of the line without creating strings for them
+	private void split() {
+		fields = 0;
+		int start = 0;
+		int length = line.length();
+		while (true) {
+			int end = line.indexOf(',', start);
+			if (end < 0) {
+				end = length;
+			}
+			if (fields == fieldStart.length) {
+				fieldStart = Arrays.copyOf(fieldStart, fields * 2);
+				fieldEnd = Arrays.copyOf(fieldEnd, fields * 2);
+			}
+			fieldStart[fields] = start;
+			fieldEnd[fields++] = end;
+			if (end == length) {
+				break;
+			}
+			start = end + 1;
+		}
+	}
+
+	private String field(int i) {
+		return line.substring(fieldStart[i], fieldEnd[i]);
+	}
+
+	private int[] parseInts(int from) {
+		int n = fields - from;
+		if (ints.length < n) {
+			ints = new int[n * 2];
+		}
+		for (int i = 0; i < n; i++) {
+			ints[i] = parseInt(from + i);
+		}
+		return ints;
+	}
+
+	private int parseInt(int i) {
+		return (int) parseLong(i);
+	}
+
+	private long parseLong(int i) {
+		int pos = fieldStart[i], end = fieldEnd[i];
+		if (pos == end) {
+			throw new NumberFormatException("empty field " + i);
+		}
+		boolean negative = line.charAt(pos) == '-';
+		if (negative) {
+			pos++;
+		}
+		long value = 0;
+		for (; pos < end; pos++) {
+			int digit = line.charAt(pos) - '0';
+			if (digit < 0 || digit > 9) {
+				// Such as "1.0" where an integer is expected
+				return (long) Double.parseDouble(field(i));
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	// Plain decimals are parsed in place, anything else by Float
+	private float parseFloat(int i) {
+		int pos = fieldStart[i], end = fieldEnd[i];
+		boolean negative = pos < end && line.charAt(pos) == '-';
+		if (negative) {
+			pos++;
+		}
+		long mantissa = 0;
+		int decimals = -1;
+		int digits = 0;
+		for (; pos < end; pos++) {
+			char c = line.charAt(pos);
+			if (c == '.' && decimals < 0) {
+				decimals = 0;
+			} else if (c >= '0' && c <= '9' && digits < 18) {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (decimals >= 0) {
+					decimals++;
+				}
+			} else {
+				return Float.parseFloat(field(i));
+			}
+		}
+		if (digits == 0) {
+			return Float.parseFloat(field(i));
+		}
+		double value = decimals > 0 ? mantissa / POW10[decimals] : mantissa;
+		return (float) (negative ? -value : value);
+	}
+}
@@ -0,0 +1,436 @@
+package agent.logging;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The quote and transaction time series of each auction in a game log, plus the client preferences and final
+ * allocations of each agent, collected from a {@link GameLogParser}.
+ *
+ * The series are stored column by column and written the same way: for each auction all quote times, then all ask
+ * prices, then all bid prices, and likewise for the transactions. Times and agent indices are written as variable
+ * length integers (times as the difference from the previous time) so a game takes a few kilobytes.
+ */
+public class GameLogSeries implements GameLogParser.Handler {
+
+	/** "TGFS" */
+	public static final int MAGIC = 0x54474653;
+	public static final int VERSION = 1;
+	/** The agent index of the auctioneer in transactions. */
+	public static final int AUCTIONEER = -1;
+
+	private long startTime, endTime;
+	private final ArrayList<String> agentNames = new ArrayList<String>();
+	private final ArrayList<String> agentIDs = new ArrayList<String>();
+	private final ArrayList<int[]> preferences = new ArrayList<int[]>();
+	private final ArrayList<int[]> allocations = new ArrayList<int[]>();
+	private final HashMap<String, Integer> agentIndex = new HashMap<String, Integer>();
+	private final ArrayList<AuctionSeries> auctions = new ArrayList<AuctionSeries>();
+	private final HashMap<Integer, AuctionSeries> auctionByID = new HashMap<Integer, AuctionSeries>();
+
+	public static class AuctionSeries {
+		public final int auctionID;
+		private int resource, day;
+		private int bids;
+
+		private int quotes;
+		private int[] quoteTimes = new int[64];
+		private float[] askPrices = new float[64];
+		private float[] bidPrices = new float[64];
+
+		private int transactions;
+		private int[] transTimes = new int[16];
+		private int[] buyers = new int[16];
+		private int[] sellers = new int[16];
+		private int[] quantities = new int[16];
+		private float[] transPrices = new float[16];
+
+		AuctionSeries(int auctionID, int resource, int day) {
+			this.auctionID = auctionID;
+			this.resource = resource;
+			this.day = day;
+		}
+
+		/** @return the resource as in the log: 0-1 flights, 2-3 hotels (TT, SS), 4-6 entertainment, -1 if unknown. */
+		public int getResource() {
+			return resource;
+		}
+
+		public int getDay() {
+			return day;
+		}
+
+		public int getBidCount() {
+			return bids;
+		}
+
+		public int getQuoteCount() {
+			return quotes;
+		}
+
+		public int getQuoteTime(int i) {
+			return quoteTimes[i];
+		}
+
+		public float getAskPrice(int i) {
+			return askPrices[i];
+		}
+
+		public float getBidPrice(int i) {
+			return bidPrices[i];
+		}
+
+		public int getTransactionCount() {
+			return transactions;
+		}
+
+		public int getTransactionTime(int i) {
+			return transTimes[i];
+		}
+
+		public int getBuyer(int i) {
+			return buyers[i];
+		}
+
+		public int getSeller(int i) {
+			return sellers[i];
+		}
+
+		public int getQuantity(int i) {
+			return quantities[i];
+		}
+
+		public float getTransactionPrice(int i) {
+			return transPrices[i];
+		}
+
+		void addQuote(int time, float ask, float bid) {
+			if (quotes == quoteTimes.length) {
+				int size = quotes * 2;
+				quoteTimes = Arrays.copyOf(quoteTimes, size);
+				askPrices = Arrays.copyOf(askPrices, size);
+				bidPrices = Arrays.copyOf(bidPrices, size);
+			}
+			quoteTimes[quotes] = time;
+			askPrices[quotes] = ask;
+			bidPrices[quotes++] = bid;
+		}
+
+		void addTransaction(int time, int buyer, int seller, int quantity, float price) {
+			if (transactions == transTimes.length) {
+				int size = transactions * 2;
+				transTimes = Arrays.copyOf(transTimes, size);
+				buyers = Arrays.copyOf(buyers, size);
+				sellers = Arrays.copyOf(sellers, size);
+				quantities = Arrays.copyOf(quantities, size);
+				transPrices = Arrays.copyOf(transPrices, size);
+			}
+			transTimes[transactions] = time;
+			buyers[transactions] = buyer;
+			sellers[transactions] = seller;
+			quantities[transactions] = quantity;
+			transPrices[transactions++] = price;
+		}
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getEndTime() {
+		return endTime;
+	}
+
+	public int getAgentCount() {
+		return agentNames.size();
+	}
+
+	public String getAgentName(int agent) {
+		return agentNames.get(agent);
+	}
+
+	/** @return the preferences of the agent's clients, 6 values per client, or null if not in the log. */
+	public int[] getClientPreferences(int agent) {
+		return preferences.get(agent);
+	}
+
+	/** @return the final allocation of the agent's clients, 6 values per client, or null if not in the log. */
+	public int[] getFinalAllocation(int agent) {
+		return allocations.get(agent);
+	}
+
+	public int getAuctionCount() {
+		return auctions.size();
+	}
+
+	public AuctionSeries getAuction(int i) {
+		return auctions.get(i);
+	}
+
+	public AuctionSeries getAuctionByID(int auctionID) {
+		return auctionByID.get(auctionID);
+	}
+
+	// -------------------------------------------------------------------
+	// GameLogParser.Handler
+	// -------------------------------------------------------------------
+
+	@Override
+	public void startGame(long startTime, long endTime) {
+		this.startTime = startTime;
+		this.endTime = endTime;
+	}
+
+	@Override
+	public void agent(String name, String agentID) {
+		agentIndex.put(agentID, agentNames.size());
+		agentNames.add(name);
+		agentIDs.add(agentID);
+		preferences.add(null);
+		allocations.add(null);
+	}
+
+	@Override
+	public void auction(int auctionID, int resource, int day) {
+		AuctionSeries a = auctionByID.get(auctionID);
+		if (a == null) {
+			addAuction(auctionID, resource, day);
+		} else {
+			a.resource = resource;
+			a.day = day;
+		}
+	}
+
+	@Override
+	public void clientPreferences(String agentID, int[] prefs, int length) {
+		int agent = agent(agentID);
+		if (agent >= 0) {
+			preferences.set(agent, Arrays.copyOf(prefs, length));
+		}
+	}
+
+	@Override
+	public void quote(int time, int auctionID, float askPrice, float bidPrice) {
+		auction(auctionID).addQuote(time, askPrice, bidPrice);
+	}
+
+	@Override
+	public void bid(int time, int bidID, String agentID, int auctionID, char type, int[] quantities, float[] prices,
+			int points) {
+		auction(auctionID).bids++;
+	}
+
+	@Override
+	public void transaction(int time, String buyerID, String sellerID, int auctionID, int quantity, float price) {
+		auction(auctionID).addTransaction(time, agent(buyerID), agent(sellerID), quantity, price);
+	}
+
+	@Override
+	public void finalAllocation(String agentID, int[] allocation, int length) {
+		int agent = agent(agentID);
+		if (agent >= 0) {
+			allocations.set(agent, Arrays.copyOf(allocation, length));
+		}
+	}
+
+	private int agent(String agentID) {
+		Integer index = agentIndex.get(agentID);
+		return index == null ? AUCTIONEER : index;
+	}
+
+	private AuctionSeries auction(int auctionID) {
+		AuctionSeries a = auctionByID.get(auctionID);
+		return a != null ? a : addAuction(auctionID, -1, 0);
+	}
+
+	private AuctionSeries addAuction(int auctionID, int resource, int day) {
+		AuctionSeries a = new AuctionSeries(auctionID, resource, day);
+		auctions.add(a);
+		auctionByID.put(auctionID, a);
+		return a;
+	}
+
+	// -------------------------------------------------------------------
+	// Columnar file format
+	// -------------------------------------------------------------------
+
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(startTime);
+		out.writeLong(endTime);
+
+		out.writeShort(agentNames.size());
+		for (int i = 0; i < agentNames.size(); i++) {
+			out.writeUTF(agentNames.get(i));
+			out.writeUTF(agentIDs.get(i));
+			writeInts(out, preferences.get(i));
+			writeInts(out, allocations.get(i));
+		}
+
+		out.writeShort(auctions.size());
+		for (AuctionSeries a : auctions) {
+			out.writeInt(a.auctionID);
+			out.writeByte(a.resource);
+			out.writeByte(a.day);
+			writeVarInt(out, a.bids);
+
+			writeVarInt(out, a.quotes);
+			writeTimes(out, a.quoteTimes, a.quotes);
+			for (int i = 0; i < a.quotes; i++) {
+				out.writeFloat(a.askPrices[i]);
+			}
+			for (int i = 0; i < a.quotes; i++) {
+				out.writeFloat(a.bidPrices[i]);
+			}
+
+			writeVarInt(out, a.transactions);
+			writeTimes(out, a.transTimes, a.transactions);
+			for (int i = 0; i < a.transactions; i++) {
+				writeVarInt(out, a.buyers[i] + 1);
+			}
+			for (int i = 0; i < a.transactions; i++) {
+				writeVarInt(out, a.sellers[i] + 1);
+			}
+			for (int i = 0; i < a.transactions; i++) {
+				writeVarInt(out, a.quantities[i]);
+			}
+			for (int i = 0; i < a.transactions; i++) {
+				out.writeFloat(a.transPrices[i]);
+			}
+		}
+	}
+
+	public static GameLogSeries read(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("not a game log series");
+		}
+		int version = in.readByte();
+		if (version != VERSION) {
+			throw new IOException("unsupported game log series version " + version);
+		}
+		GameLogSeries series = new GameLogSeries();
+		series.startGame(in.readLong(), in.readLong());
+
+		int agents = in.readUnsignedShort();
+		for (int i = 0; i < agents; i++) {
+			series.agent(in.readUTF(), in.readUTF());
+			series.preferences.set(i, readInts(in));
+			series.allocations.set(i, readInts(in));
+		}
+
+		int auctions = in.readUnsignedShort();
+		for (int i = 0; i < auctions; i++) {
+			AuctionSeries a = series.addAuction(in.readInt(), in.readByte(), in.readByte());
+			a.bids = readVarInt(in);
+
+			int quotes = readVarInt(in);
+			int[] times = readTimes(in, quotes);
+			float[] asks = readFloats(in, quotes);
+			float[] bids = readFloats(in, quotes);
+			for (int q = 0; q < quotes; q++) {
+				a.addQuote(times[q], asks[q], bids[q]);
+			}
+
+			int transactions = readVarInt(in);
+			times = readTimes(in, transactions);
+			int[] buyers = new int[transactions], sellers = new int[transactions];
+			int[] quantities = new int[transactions];
+			for (int t = 0; t < transactions; t++) {
+				buyers[t] = readVarInt(in) - 1;
+			}
+			for (int t = 0; t < transactions; t++) {
+				sellers[t] = readVarInt(in) - 1;
+			}
+			for (int t = 0; t < transactions; t++) {
+				quantities[t] = readVarInt(in);
+			}
+			float[] prices = readFloats(in, transactions);
+			for (int t = 0; t < transactions; t++) {
+				a.addTransaction(times[t], buyers[t], sellers[t], quantities[t], prices[t]);
+			}
+		}
+		return series;
+	}
+
+	private static void writeInts(DataOutput out, int[] values) throws IOException {
+		if (values == null) {
+			writeVarInt(out, 0);
+			return;
+		}
+		writeVarInt(out, values.length + 1);
+		for (int v : values) {
+			writeVarInt(out, zigZag(v));
+		}
+	}
+
+	private static int[] readInts(DataInput in) throws IOException {
+		int length = readVarInt(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = unZigZag(readVarInt(in));
+		}
+		return values;
+	}
+
+	private static void writeTimes(DataOutput out, int[] times, int n) throws IOException {
+		int last = 0;
+		for (int i = 0; i < n; i++) {
+			writeVarInt(out, zigZag(times[i] - last));
+			last = times[i];
+		}
+	}
+
+	private static int[] readTimes(DataInput in, int n) throws IOException {
+		int[] times = new int[n];
+		int last = 0;
+		for (int i = 0; i < n; i++) {
+			last += unZigZag(readVarInt(in));
+			times[i] = last;
+		}
+		return times;
+	}
+
+	private static float[] readFloats(DataInput in, int n) throws IOException {
+		float[] values = new float[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = in.readFloat();
+		}
+		return values;
+	}
+
+	private static int zigZag(int v) {
+		return (v << 1) ^ (v >> 31);
+	}
+
+	private static int unZigZag(int v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private static void writeVarInt(DataOutput out, int v) throws IOException {
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	private static int readVarInt(DataInput in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			v |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+		}
+		throw new IOException("malformed variable length integer");
+	}
+}
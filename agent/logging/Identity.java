@@ -22,6 +22,8 @@ public class Identity implements Serializable {
 	private Identity parent;
 	private List<Identity> children;
 	private List<LogEntry> infoLog, warningLog, errorLog;
+	// The id of the identity in the segments written by LogAppender, 0 until it logs
+	transient int logID;
 
 	public Identity(String name, Identity parent) {
 		this.name = name;
@@ -118,8 +120,8 @@ public class Identity implements Serializable {
 	public void logMessage(LogEntry m, int importance) {
 		m.setAuthor(this);
 		String message = m.getMessage();
-		message = message.replaceAll("\n", "\n\t");
-		m.setMessage(message);
+		if (message.indexOf('\n') >= 0)
+			m.setMessage(message.replace("\n", "\n\t"));
 		if (importance < 2)
 			infoLog.add(m);
 		else if (importance == 2)
@@ -0,0 +1,246 @@
+package agent.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes log messages to the segments of a log (see {@link LogSegment}) on a background thread.
+ *
+ * Messages are passed to the writer through a ring buffer of fixed size, so logging only waits when the writer falls
+ * a full ring behind, and nothing is kept once it is written. Nothing is read at startup but the header of the last
+ * segment: the first sequence number of the new segment is that of the last segment plus its length, which is more
+ * than any sequence number in it.
+ */
+public class LogAppender {
+
+	private static final Logger log = Logger.getLogger(LogAppender.class.getName());
+
+	private final File file;
+	private final long segmentSize;
+
+	// The ring, slot i % capacity holds the message with sequence number firstSeq + i
+	private final int capacity;
+	private final Identity[] authors;
+	private final byte[] levels;
+	private final long[] times;
+	private final String[] messages;
+	private final long firstSeq;
+	// Messages up to head are written, up to flushed are flushed, up to tail are appended
+	private long head, flushed, tail;
+	private boolean syncRequested;
+
+	// Only used by the writer thread
+	private int nextID = 1;
+	private int segmentNumber;
+	private DataOutputStream out;
+	private FileOutputStream segment;
+	private final BitSet defined = new BitSet();
+
+	/**
+	 * @param file The log, whose segments are named after it.
+	 * @param capacity The number of messages that can wait to be written.
+	 * @param segmentSize The size in bytes after which a new segment is started.
+	 */
+	public LogAppender(File file, int capacity, long segmentSize) {
+		this.file = file;
+		this.capacity = capacity;
+		this.segmentSize = segmentSize;
+		authors = new Identity[capacity];
+		levels = new byte[capacity];
+		times = new long[capacity];
+		messages = new String[capacity];
+
+		long seq = 1;
+		List<File> segments = LogSegment.list(file);
+		if (!segments.isEmpty()) {
+			segmentNumber = LogSegment.getNumber(file, segments.get(segments.size() - 1));
+		}
+		// Normally only the last segment is read, unless its header was not written
+		long after = 0;
+		for (int i = segments.size() - 1; i >= 0; i--) {
+			File f = segments.get(i);
+			after += f.length();
+			try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+				if (in.readInt() == LogSegment.MAGIC) {
+					in.readInt();
+					seq = in.readLong() + after;
+					break;
+				}
+			} catch (IOException e) {
+				// No header
+			}
+		}
+		firstSeq = seq;
+
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				writeMessages();
+			}
+		}, "log-appender");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** Appends a message. @return its sequence number. */
+	public synchronized long append(Identity author, int level, String message) {
+		boolean interrupted = false;
+		while (tail - head >= capacity) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		int slot = (int) (tail % capacity);
+		authors[slot] = author;
+		levels[slot] = (byte) level;
+		times[slot] = System.currentTimeMillis();
+		messages[slot] = message;
+		if (tail++ == head) {
+			notifyAll();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return firstSeq + tail - 1;
+	}
+
+	/** Asks the writer to force the messages appended so far to disk. Does not wait. */
+	public synchronized void sync() {
+		syncRequested = true;
+		notifyAll();
+	}
+
+	/** Waits until the messages appended so far are written to the current segment. */
+	public synchronized void flush() {
+		long target = tail;
+		boolean interrupted = false;
+		while (flushed < target) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeMessages() {
+		while (true) {
+			long from, to;
+			boolean sync;
+			synchronized (this) {
+				while (head == tail && !syncRequested) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// Only stopped with the virtual machine
+					}
+				}
+				from = head;
+				to = tail;
+				sync = syncRequested;
+				syncRequested = false;
+			}
+			for (long i = from; i < to; i++) {
+				int slot = (int) (i % capacity);
+				write(authors[slot], levels[slot], firstSeq + i, times[slot], messages[slot]);
+				authors[slot] = null;
+				messages[slot] = null;
+				if ((i & 63) == 63) {
+					synchronized (this) {
+						head = i + 1;
+						notifyAll();
+					}
+				}
+			}
+			synchronized (this) {
+				head = to;
+				notifyAll();
+			}
+			try {
+				if (out != null) {
+					out.flush();
+					if (sync) {
+						segment.getFD().sync();
+					}
+				}
+			} catch (IOException e) {
+				fail(e);
+			}
+			synchronized (this) {
+				flushed = to;
+				notifyAll();
+			}
+		}
+	}
+
+	private void write(Identity author, int level, long seq, long time, String message) {
+		try {
+			if (out == null || out.size() >= segmentSize) {
+				startSegment(seq, time);
+			}
+			int id = author.logID;
+			if (id == 0) {
+				id = author.logID = nextID++;
+			}
+			if (!defined.get(id)) {
+				byte[] path = author.toString().getBytes(StandardCharsets.US_ASCII);
+				out.writeByte(LogSegment.DEFINE);
+				out.writeInt(id);
+				out.writeInt(path.length);
+				out.write(path);
+				defined.set(id);
+			}
+			byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+			out.writeByte(LogSegment.MESSAGE);
+			out.writeInt(id);
+			out.writeByte(level);
+			out.writeLong(seq);
+			out.writeLong(time);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	private void startSegment(long seq, long time) throws IOException {
+		if (out != null) {
+			out.close();
+		}
+		segmentNumber++;
+		segment = new FileOutputStream(LogSegment.getSegment(file, segmentNumber));
+		out = new DataOutputStream(new BufferedOutputStream(segment, 65536));
+		out.writeInt(LogSegment.MAGIC);
+		out.writeInt(LogSegment.VERSION);
+		out.writeLong(seq);
+		out.writeLong(time);
+		defined.clear();
+	}
+
+	// Drops the segment, the next message starts a new one
+	private void fail(IOException e) {
+		log.log(Level.WARNING, "could not write log " + file, e);
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e2) {
+				// Already reported
+			}
+			out = null;
+		}
+	}
+}
@@ -16,7 +16,11 @@ public class LogEntry implements Comparable<LogEntry>, Serializable {
 	private Identity author;
 	
 	public LogEntry(String message, int messageNum) {
-		timeOfMessage = new Date();
+		this(message, messageNum, new Date());
+	}
+	
+	public LogEntry(String message, int messageNum, Date timeOfMessage) {
+		this.timeOfMessage = timeOfMessage;
 		this.message = message;
 		this.messageNum = messageNum;
 	}
@@ -21,14 +21,4 @@ public class LogFileManager {
 		return id;
 	}
 
-	public static void writeFile(String filename, Identity id) {
-		try (OutputStream file = new FileOutputStream(filename);
-				OutputStream buffer = new BufferedOutputStream(file);
-				ObjectOutput output = new ObjectOutputStream(buffer);) {
-			output.writeObject(id);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-	}
-
 }
@@ -0,0 +1,263 @@
+package agent.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The index of a log segment, kept next to it with the suffix ".idx". It is built when a segment is first queried,
+ * and again when the segment has grown since.
+ *
+ * The index starts with the magic, version, the length of the segment it indexes, the range of the sequence numbers
+ * and times in the segment and the number of identities. Then follows the directory, for each identity its path, the
+ * number of messages of each importance and the position of its postings, and then the postings: for each message of
+ * each identity in order its sequence number, time, importance and position in the segment.
+ */
+public class LogIndex {
+
+	private static final int MAGIC = 0x54474649; // "TGFI"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 8 + 8 + 4;
+	static final int POSTING_SIZE = 8 + 8 + 1 + 8;
+
+	public static final String SUFFIX = ".idx";
+
+	/** The messages of one identity in a segment. */
+	public static class Entry {
+		public final String path;
+		/** The number of messages of each importance, indexed by importance. */
+		public final int[] counts = new int[AgentLogger.MAX_IMPORTANCE + 1];
+		final long postings;
+
+		Entry(String path, long postings) {
+			this.path = path;
+			this.postings = postings;
+		}
+
+		public int getCount() {
+			int count = 0;
+			for (int c : counts) {
+				count += c;
+			}
+			return count;
+		}
+
+		/** The number of messages of at least the importance. */
+		public int getCount(int importance) {
+			int count = 0;
+			for (int i = Math.max(0, importance); i < counts.length; i++) {
+				count += counts[i];
+			}
+			return count;
+		}
+	}
+
+	private final File segment;
+	private final long minSeq, maxSeq, minTime, maxTime;
+	private final List<Entry> entries;
+
+	private LogIndex(File segment, long minSeq, long maxSeq, long minTime, long maxTime, List<Entry> entries) {
+		this.segment = segment;
+		this.minSeq = minSeq;
+		this.maxSeq = maxSeq;
+		this.minTime = minTime;
+		this.maxTime = maxTime;
+		this.entries = entries;
+	}
+
+	public static File getIndexFile(File segment) {
+		return new File(segment.getPath() + SUFFIX);
+	}
+
+	/** Reads the index of the segment, building it first if it is missing or out of date. */
+	public static LogIndex open(File segment) throws IOException {
+		File f = getIndexFile(segment);
+		if (f.exists()) {
+			LogIndex index = read(segment, f);
+			if (index != null) {
+				return index;
+			}
+		}
+		build(segment, f);
+		LogIndex index = read(segment, f);
+		if (index == null) {
+			throw new IOException("segment changed while it was indexed: " + segment);
+		}
+		return index;
+	}
+
+	public File getSegment() {
+		return segment;
+	}
+
+	public File getFile() {
+		return getIndexFile(segment);
+	}
+
+	/** @return false if the segment has no messages. */
+	public boolean isEmpty() {
+		return minSeq > maxSeq;
+	}
+
+	public long getMinSeq() {
+		return minSeq;
+	}
+
+	public long getMaxSeq() {
+		return maxSeq;
+	}
+
+	public long getMinTime() {
+		return minTime;
+	}
+
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	// Null if the index is not that of the segment as it is now
+	private static LogIndex read(File segment, File f) throws IOException {
+		try (RandomAccessFile in = new RandomAccessFile(f, "r")) {
+			if (in.length() < HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION
+					|| in.readLong() != segment.length()) {
+				return null;
+			}
+			long minSeq = in.readLong();
+			long maxSeq = in.readLong();
+			long minTime = in.readLong();
+			long maxTime = in.readLong();
+			int n = in.readInt();
+			List<Entry> entries = new ArrayList<Entry>(n);
+			for (int i = 0; i < n; i++) {
+				byte[] path = new byte[in.readInt()];
+				in.readFully(path);
+				Entry e = new Entry(new String(path, StandardCharsets.US_ASCII), in.readLong());
+				for (int l = 0; l < e.counts.length; l++) {
+					e.counts[l] = in.readInt();
+				}
+				entries.add(e);
+			}
+			return new LogIndex(segment, minSeq, maxSeq, minTime, maxTime, entries);
+		}
+	}
+
+	private static class Postings {
+		final int[] counts = new int[AgentLogger.MAX_IMPORTANCE + 1];
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+	}
+
+	private static void build(File segment, File f) throws IOException {
+		long length = segment.length();
+		long minSeq = Long.MAX_VALUE, maxSeq = Long.MIN_VALUE;
+		long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+		Map<String, Postings> postings = new LinkedHashMap<String, Postings>();
+		try (LogSegment.Reader reader = new LogSegment.Reader(segment)) {
+			// Only what was there when the length was taken, the rest is indexed next time
+			while (reader.next() && reader.getEnd() <= length) {
+				Postings p = postings.get(reader.getPath());
+				if (p == null) {
+					p = new Postings();
+					postings.put(reader.getPath(), p);
+				}
+				int level = Math.max(0, Math.min(AgentLogger.MAX_IMPORTANCE, reader.getLevel()));
+				p.counts[level]++;
+				p.out.writeLong(reader.getSeq());
+				p.out.writeLong(reader.getTime());
+				p.out.writeByte(reader.getLevel());
+				p.out.writeLong(reader.getOffset());
+				minSeq = Math.min(minSeq, reader.getSeq());
+				maxSeq = Math.max(maxSeq, reader.getSeq());
+				minTime = Math.min(minTime, reader.getTime());
+				maxTime = Math.max(maxTime, reader.getTime());
+			}
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(length);
+		out.writeLong(minSeq);
+		out.writeLong(maxSeq);
+		out.writeLong(minTime);
+		out.writeLong(maxTime);
+		out.writeInt(postings.size());
+		long pos = HEADER_SIZE;
+		for (String path : postings.keySet()) {
+			pos += 4 + path.length() + 8 + 4 * (AgentLogger.MAX_IMPORTANCE + 1);
+		}
+		for (Map.Entry<String, Postings> e : postings.entrySet()) {
+			byte[] path = e.getKey().getBytes(StandardCharsets.US_ASCII);
+			out.writeInt(path.length);
+			out.write(path);
+			out.writeLong(pos);
+			for (int count : e.getValue().counts) {
+				out.writeInt(count);
+			}
+			pos += e.getValue().bytes.size();
+		}
+		for (Postings p : postings.values()) {
+			p.bytes.writeTo(out);
+		}
+		out.flush();
+		PersistenceService.writeAtomically(f, bytes.toByteArray());
+	}
+
+	/**
+	 * Reads the postings of an identity in order through a small buffer.
+	 */
+	static class Cursor {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(POSTING_SIZE * 256);
+		private long pos;
+		private int remaining;
+
+		long seq, time, offset;
+		int level;
+
+		Cursor(FileChannel channel, Entry entry) {
+			this.channel = channel;
+			pos = entry.postings;
+			remaining = entry.getCount();
+			buffer.limit(0);
+		}
+
+		/** @return false after the last posting. */
+		boolean next() throws IOException {
+			if (remaining == 0) {
+				return false;
+			}
+			if (!buffer.hasRemaining()) {
+				buffer.clear();
+				buffer.limit(Math.min(buffer.capacity(), remaining * POSTING_SIZE));
+				while (buffer.hasRemaining()) {
+					int n = channel.read(buffer, pos);
+					if (n < 0) {
+						throw new IOException("truncated log index");
+					}
+					pos += n;
+				}
+				buffer.flip();
+			}
+			seq = buffer.getLong();
+			time = buffer.getLong();
+			level = buffer.get();
+			offset = buffer.getLong();
+			remaining--;
+			return true;
+		}
+	}
+}
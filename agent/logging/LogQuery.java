@@ -0,0 +1,273 @@
+package agent.logging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Reads the messages of a log that match a filter, in the order they were logged, through the indexes of its
+ * segments (see {@link LogIndex}).
+ *
+ * Segments whose range of sequence numbers or times does not meet the query are skipped from their index alone. In
+ * the others the postings of the matching identities are merged by sequence number, and only the matching messages
+ * are read from the segment. Only one segment is open at a time and nothing is kept but the current message.
+ */
+public class LogQuery implements Closeable {
+
+	/** Chooses the identities of a query. */
+	public interface Filter {
+		/**
+		 * @return the least importance of the messages of the identity at the path (e.g. "Agent.hotel") to read, or
+		 *         more than {@link AgentLogger#MAX_IMPORTANCE} to read none.
+		 */
+		int getImportance(String path);
+	}
+
+	/** All messages of all identities. */
+	public static final Filter ALL = new Filter() {
+		public int getImportance(String path) {
+			return AgentLogger.INFO;
+		}
+	};
+
+	private static final Comparator<Match> BY_SEQ = new Comparator<Match>() {
+		public int compare(Match a, Match b) {
+			return Long.compare(a.seq, b.seq);
+		}
+	};
+
+	// The postings of an identity in a segment that match the query
+	private static class Match extends LogIndex.Cursor {
+		final String path;
+		final int importance;
+
+		Match(FileChannel channel, LogIndex.Entry entry, int importance) {
+			super(channel, entry);
+			path = entry.path;
+			this.importance = importance;
+		}
+	}
+
+	private final File log;
+	private Filter filter = ALL;
+	private long fromSeq = Long.MIN_VALUE, toSeq = Long.MAX_VALUE;
+	private long fromTime = Long.MIN_VALUE, toTime = Long.MAX_VALUE;
+	private int last = -1;
+
+	private List<File> segments;
+	private int segment;
+	private long skip;
+	private FileChannel segmentChannel, indexChannel;
+	private final PriorityQueue<Match> queue = new PriorityQueue<Match>(16, BY_SEQ);
+	private final ByteBuffer header = ByteBuffer.allocate(LogSegment.MESSAGE_HEADER_SIZE);
+	private ByteBuffer body = ByteBuffer.allocate(1024);
+
+	private String path;
+	private int level;
+	private long seq;
+	private long time;
+	private String message;
+
+	/** @param log The log, whose segments are named after it (see {@link LogSegment}). */
+	public LogQuery(File log) {
+		this.log = log;
+	}
+
+	public void setFilter(Filter filter) {
+		this.filter = filter;
+	}
+
+	/** Only reads the messages with sequence numbers from and to, inclusive. */
+	public void setSeqRange(long from, long to) {
+		fromSeq = from;
+		toSeq = to;
+	}
+
+	/** Only reads the messages logged from and to the times in milliseconds, inclusive. */
+	public void setTimeRange(long from, long to) {
+		fromTime = from;
+		toTime = to;
+	}
+
+	/** Only reads the last messages that match, or all of them if negative. */
+	public void setLast(int last) {
+		this.last = last;
+	}
+
+	/** Moves to the next matching message. @return false after the last one. */
+	public boolean next() throws IOException {
+		if (segments == null) {
+			segments = LogSegment.list(log);
+			segment = last >= 0 ? findTail() : 0;
+		}
+		message = null;
+		while (true) {
+			Match m = queue.poll();
+			if (m == null) {
+				if (segment >= segments.size()) {
+					close();
+					return false;
+				}
+				open(segments.get(segment++));
+				continue;
+			}
+			if (skip > 0) {
+				skip--;
+			} else {
+				path = m.path;
+				level = m.level;
+				seq = m.seq;
+				time = m.time;
+				message = readMessage(m.offset);
+			}
+			if (advance(m)) {
+				queue.add(m);
+			}
+			if (message != null) {
+				return true;
+			}
+		}
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public long getSeq() {
+		return seq;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	// Finds the segment that holds the first of the last messages and how many messages of it to skip
+	private int findTail() throws IOException {
+		long count = 0;
+		for (int i = segments.size() - 1; i >= 0; i--) {
+			open(segments.get(i));
+			long n = queue.size();
+			while (!queue.isEmpty()) {
+				Match m = queue.poll();
+				if (advance(m)) {
+					queue.add(m);
+					n++;
+				}
+			}
+			count += n;
+			if (count >= last) {
+				skip = count - last;
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	// Opens the segment and queues a cursor at the first match of each identity
+	private void open(File f) throws IOException {
+		closeChannels();
+		queue.clear();
+		LogIndex index;
+		try {
+			index = LogIndex.open(f);
+		} catch (IOException e) {
+			throw new IOException("could not index " + f + ": " + e.getMessage(), e);
+		}
+		if (index.isEmpty() || index.getMaxSeq() < fromSeq || index.getMinSeq() > toSeq
+				|| index.getMaxTime() < fromTime || index.getMinTime() > toTime) {
+			return;
+		}
+		List<Match> matches = new ArrayList<Match>();
+		for (LogIndex.Entry e : index.getEntries()) {
+			int importance = filter.getImportance(e.path);
+			if (importance <= AgentLogger.MAX_IMPORTANCE && e.getCount(importance) > 0) {
+				if (indexChannel == null) {
+					indexChannel = FileChannel.open(index.getFile().toPath(), StandardOpenOption.READ);
+				}
+				matches.add(new Match(indexChannel, e, importance));
+			}
+		}
+		if (matches.isEmpty()) {
+			return;
+		}
+		segmentChannel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+		for (Match m : matches) {
+			if (advance(m)) {
+				queue.add(m);
+			}
+		}
+	}
+
+	// Moves the cursor to its next match. False if it has none.
+	private boolean advance(Match m) throws IOException {
+		while (m.next()) {
+			if (m.seq > toSeq) {
+				return false;
+			}
+			if (m.level >= m.importance && m.seq >= fromSeq && m.time >= fromTime && m.time <= toTime) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String readMessage(long offset) throws IOException {
+		header.clear();
+		readFully(header, offset);
+		if (header.get() != LogSegment.MESSAGE) {
+			throw new IOException("no message at " + offset);
+		}
+		int length = header.getInt(LogSegment.MESSAGE_HEADER_SIZE - 4);
+		if (body.capacity() < length) {
+			body = ByteBuffer.allocate(Math.max(length, 2 * body.capacity()));
+		}
+		body.clear();
+		body.limit(length);
+		readFully(body, offset + LogSegment.MESSAGE_HEADER_SIZE);
+		return new String(body.array(), 0, length, StandardCharsets.UTF_8);
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = segmentChannel.read(buffer, position);
+			if (n < 0) {
+				throw new IOException("truncated log segment at " + position);
+			}
+			position += n;
+		}
+		buffer.flip();
+	}
+
+	private void closeChannels() throws IOException {
+		if (segmentChannel != null) {
+			segmentChannel.close();
+			segmentChannel = null;
+		}
+		if (indexChannel != null) {
+			indexChannel.close();
+			indexChannel = null;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		queue.clear();
+		closeChannels();
+	}
+}
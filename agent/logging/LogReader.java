@@ -1,7 +1,12 @@
 package agent.logging;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 import agent.logging.*;
@@ -12,9 +17,14 @@ public class LogReader {
 	public static final int EXPECTING_FILE = 1;
 	public static final int EXPECTING_IMPORTANCE = 2;
 	public static final int PRINT_IDS = 3;
+	public static final int EXPECTING_FROM_TIME = 4;
+	public static final int EXPECTING_TO_TIME = 5;
+	public static final int EXPECTING_FROM_NUM = 6;
+	public static final int EXPECTING_TO_NUM = 7;
+	public static final int EXPECTING_LAST = 8;
 
 	public static void main(String[] args) throws NoSuchChildException,
-			InvalidPathException {
+			InvalidPathException, IOException {
 		if (args.length == 0 || args[0].equals("--help")
 				|| args[0].equals("-h")) {
 			showUsage();
@@ -25,61 +35,143 @@ public class LogReader {
 		int importance = 1;
 		String fileName = "Agent.log";
 		Tree root = new Tree("agent");
+		long fromTime = Long.MIN_VALUE, toTime = Long.MAX_VALUE;
+		long fromNum = Long.MIN_VALUE, toNum = Long.MAX_VALUE;
+		int last = -1;
 
 		for (String arg : args) {
-			switch (state) {
-			case STANDARD:
-				switch (arg) {
-				case "-f":
-				case "--file":
-					state = EXPECTING_FILE;
+			try {
+				switch (state) {
+				case STANDARD:
+					switch (arg) {
+					case "-f":
+					case "--file":
+						state = EXPECTING_FILE;
+						break;
+					case "-i":
+					case "--importance":
+						state = EXPECTING_IMPORTANCE;
+						break;
+					case "-t":
+					case "--id-tags":
+						state = PRINT_IDS;
+						break;
+					case "--from":
+						state = EXPECTING_FROM_TIME;
+						break;
+					case "--to":
+						state = EXPECTING_TO_TIME;
+						break;
+					case "--from-num":
+						state = EXPECTING_FROM_NUM;
+						break;
+					case "--to-num":
+						state = EXPECTING_TO_NUM;
+						break;
+					case "-l":
+					case "--last":
+						state = EXPECTING_LAST;
+						break;
+					default:
+						root.updateChild(arg, importance);
+						break;
+					}
 					break;
-				case "-i":
-				case "--importance":
-					state = EXPECTING_IMPORTANCE;
+				case EXPECTING_FILE:
+					fileName = arg;
+					state = STANDARD;
 					break;
-				case "-t":
-				case "--id-tags":
-					state = PRINT_IDS;
+				case EXPECTING_IMPORTANCE:
+					switch (arg) {
+					case "INFO":
+					case "info":
+						importance = 1;
+						break;
+					case "WARNING":
+					case "warning":
+						importance = 2;
+						break;
+					case "ERROR":
+					case "error":
+						importance = 3;
+						break;
+					default:
+						importance = Integer.parseInt(arg);
+						break;
+					}
+					state = STANDARD;
 					break;
-				default:
-					root.updateChild(arg, importance);
+				case EXPECTING_FROM_TIME:
+					fromTime = parseTime(arg);
+					state = STANDARD;
 					break;
-				}
-				break;
-			case EXPECTING_FILE:
-				fileName = arg;
-				state = STANDARD;
-				break;
-			case EXPECTING_IMPORTANCE:
-				switch (arg) {
-				case "INFO":
-				case "info":
-					importance = 1;
+				case EXPECTING_TO_TIME:
+					toTime = parseTime(arg);
+					state = STANDARD;
 					break;
-				case "WARNING":
-				case "warning":
-					importance = 2;
+				case EXPECTING_FROM_NUM:
+					fromNum = Long.parseLong(arg);
+					state = STANDARD;
 					break;
-				case "ERROR":
-				case "error":
-					importance = 3;
+				case EXPECTING_TO_NUM:
+					toNum = Long.parseLong(arg);
+					state = STANDARD;
 					break;
-				default:
-					try {
-						importance = Integer.parseInt(arg);
-						state = STANDARD;
-					} catch (NumberFormatException e) {
-						System.err.println("Invalid argument at '" + arg
-								+ "'. Was expecting integer.");
-						return;
-					}
+				case EXPECTING_LAST:
+					last = Integer.parseInt(arg);
+					state = STANDARD;
 					break;
 				}
-				break;
+			} catch (NumberFormatException | ParseException e) {
+				System.err.println("Invalid argument at '" + arg
+						+ "'. Was expecting "
+						+ (state == EXPECTING_FROM_TIME || state == EXPECTING_TO_TIME
+								? "a time in milliseconds or as " + TIME_FORMAT
+								: "integer") + ".");
+				return;
+			}
+		}
+
+		File log = new File(fileName);
+		if (LogSegment.list(log).isEmpty()) {
+			// A log of an earlier version
+			printLegacyLog(LogFileManager.readFile(fileName), root, state);
+			return;
+		}
+		if (state == PRINT_IDS) {
+			readIdentities(log).printIDTreeString();
+			return;
+		}
+		try (LogQuery query = new LogQuery(log)) {
+			query.setFilter(root);
+			query.setTimeRange(fromTime, toTime);
+			query.setSeqRange(fromNum, toNum);
+			query.setLast(last);
+			StringBuilder sb = new StringBuilder();
+			while (query.next()) {
+				sb.setLength(0);
+				sb.append(LogEntry.formatter.format(new Date(query.getTime()))).append('\t');
+				sb.append(query.getPath()).append('\t');
+				String message = query.getMessage();
+				sb.append(message.indexOf('\n') >= 0 ? message.replace("\n", "\n\t") : message);
+				System.out.println(sb);
 			}
 		}
-		Identity i = LogFileManager.readFile(fileName);
+	}
+
+	private static final String TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
+
+	// Milliseconds since the epoch, or a local time
+	private static long parseTime(String arg) throws ParseException {
+		try {
+			return Long.parseLong(arg);
+		} catch (NumberFormatException e) {
+			return new SimpleDateFormat(TIME_FORMAT).parse(arg).getTime();
+		}
+	}
+
+	private static void printLegacyLog(Identity i, Tree root, int state)
+			throws NoSuchChildException {
 		switch (state) {
 		case PRINT_IDS:
 			i.printIDTreeString();
@@ -99,6 +191,19 @@ public class LogReader {
 		}
 	}
 
+	// The identities that logged, from the indexes of the segments
+	private static Identity readIdentities(File log) throws IOException {
+		Identity root = new Identity("Agent", null);
+		for (File f : LogSegment.list(log)) {
+			for (LogIndex.Entry e : LogIndex.open(f).getEntries()) {
+				int dot = e.path.indexOf('.');
+				root.getChildWithCreation(AgentLogger.parseQueue(dot < 0 ? ""
+						: e.path.substring(dot + 1)));
+			}
+		}
+		return root;
+	}
+
 	private static void showUsage() {
 		System.out.println("Usage:");
 		System.out.println("java LogReader [flag value]* [path ]+");
@@ -107,6 +212,9 @@ public class LogReader {
 		System.out.println("-f or --file\t\tA log file path. Determines which log file to read. Default is './Agent.log'");
 		System.out.println("-i or --importance\t\tInteger between 1 and 3 or the name of an output level. Sets what level output to display for the identity paths that follow");
 		System.out.println("-t or --id-tags\t\t(no value required) Shows the tree of identity values in the log file. This should be stated last if specifying a file");
+		System.out.println("--from or --to\t\tOnly shows messages logged from or to a time, in milliseconds since 1970 or as " + TIME_FORMAT);
+		System.out.println("--from-num or --to-num\t\tOnly shows messages with numbers from or to a message number");
+		System.out.println("-l or --last\t\tOnly shows the last given number of messages");
 		System.out.println("paths:");
 		System.out.println("'*' or regex Agent[.subID]*[.*]? where subID is the name of any identifier (print ids with -t). Using path.* will only include all children of path, not messages within path itself. Specify with two different statements if you require both (e.g. 'path.* path')");
 		System.out.println("Caution: if using '*' in an argument, quote or escape it to get desired behaviour");
@@ -114,7 +222,7 @@ public class LogReader {
 
 }
 
-class Tree {
+class Tree implements LogQuery.Filter {
 	public static final int NONE = 1000;
 
 	public static int numTabs = 0;
@@ -129,6 +237,28 @@ class Tree {
 		this.name = name;
 	}
 
+	/**
+	 * The least importance of the messages shown of the identity at the path, its own importance if it has a node or
+	 * else that of the descendants of its nearest ancestor.
+	 */
+	public int getImportance(String path) {
+		String[] names = path.split("\\.");
+		int result = NONE;
+		Tree t = this;
+		for (int n = 1; n < names.length; n++) {
+			result = Math.min(result, t.descImportance);
+			Tree child = null;
+			for (Tree c : t.children) {
+				if (c.name.equals(names[n]))
+					child = c;
+			}
+			if (child == null)
+				return result;
+			t = child;
+		}
+		return Math.min(result, t.importance);
+	}
+
 	public ArrayList<LogEntry> getLogs() throws NoSuchChildException {
 		ArrayList<LogEntry> log = getLogs_();
 		Collections.sort(log);
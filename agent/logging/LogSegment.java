@@ -0,0 +1,203 @@
+package agent.logging;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The files written by {@link LogAppender}. A log named "Agent.log" is kept in the segments "Agent.log.000001",
+ * "Agent.log.000002" and so on, each started when the previous one is full or when the agent starts.
+ *
+ * A segment starts with the magic, version, the sequence number of its first message and the time it was started.
+ * It is followed by records of two types: the definition of an identity ('D', the id and its path), which comes before
+ * the first message of the identity in each segment, and a message ('M', the identity id, importance, sequence
+ * number, time and the message as UTF-8). Paths are ASCII. Sequence numbers increase over all segments of a log.
+ */
+public class LogSegment {
+
+	static final int MAGIC = 0x5447464c; // "TGFL"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+
+	static final byte DEFINE = 'D';
+	static final byte MESSAGE = 'M';
+	// The fixed part of a message: type, id, importance, sequence number, time and length
+	static final int MESSAGE_HEADER_SIZE = 1 + 4 + 1 + 8 + 8 + 4;
+
+	private static final int DIGITS = 6;
+
+	private LogSegment() {
+	}
+
+	public static File getSegment(File log, int number) {
+		return new File(log.getPath() + '.' + String.format("%0" + DIGITS + "d", number));
+	}
+
+	/** @return the number of the segment of the log, or -1 if the file is not one. */
+	public static int getNumber(File log, File segment) {
+		String prefix = log.getName() + '.';
+		String name = segment.getName();
+		if (!name.startsWith(prefix) || name.length() != prefix.length() + DIGITS) {
+			return -1;
+		}
+		for (int i = prefix.length(); i < name.length(); i++) {
+			if (!Character.isDigit(name.charAt(i))) {
+				return -1;
+			}
+		}
+		return Integer.parseInt(name.substring(prefix.length()));
+	}
+
+	/** The segments of the log, oldest first. */
+	public static List<File> list(final File log) {
+		List<File> segments = new ArrayList<File>();
+		File dir = log.getAbsoluteFile().getParentFile();
+		File[] files = dir != null ? dir.listFiles() : null;
+		if (files != null) {
+			for (File f : files) {
+				if (f.isFile() && getNumber(log, f) >= 0) {
+					segments.add(f);
+				}
+			}
+		}
+		Collections.sort(segments, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return Integer.compare(getNumber(log, a), getNumber(log, b));
+			}
+		});
+		return segments;
+	}
+
+	/** Reads the messages of a segment in order. A segment cut short by a crash ends at its last complete record. */
+	public static class Reader implements Closeable {
+
+		private final DataInputStream in;
+		private final long firstSeq;
+		private final long startTime;
+		private final List<String> paths = new ArrayList<String>();
+
+		private long offset = HEADER_SIZE;
+		private long recordOffset;
+		private int id;
+		private int level;
+		private long seq;
+		private long time;
+		private String message;
+
+		public Reader(File segment) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment), 65536));
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new IOException("not a log segment: " + segment);
+				}
+				int version = in.readInt();
+				if (version != VERSION) {
+					throw new IOException("unsupported log segment version " + version + ": " + segment);
+				}
+				firstSeq = in.readLong();
+				startTime = in.readLong();
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+
+		public long getFirstSeq() {
+			return firstSeq;
+		}
+
+		public long getStartTime() {
+			return startTime;
+		}
+
+		/** Moves to the next message. @return false at the end of the segment. */
+		public boolean next() throws IOException {
+			try {
+				while (true) {
+					long start = offset;
+					byte type = in.readByte();
+					if (type == DEFINE) {
+						int defined = in.readInt();
+						String path = readString();
+						while (paths.size() <= defined) {
+							paths.add(null);
+						}
+						paths.set(defined, path);
+						offset += 1 + 4 + 4 + path.length();
+					} else if (type == MESSAGE) {
+						id = in.readInt();
+						level = in.readByte();
+						seq = in.readLong();
+						time = in.readLong();
+						int length = in.readInt();
+						byte[] bytes = new byte[length];
+						in.readFully(bytes);
+						message = new String(bytes, StandardCharsets.UTF_8);
+						offset += MESSAGE_HEADER_SIZE + length;
+						recordOffset = start;
+						return true;
+					} else {
+						throw new IOException("corrupt log segment at " + start);
+					}
+				}
+			} catch (EOFException e) {
+				return false;
+			}
+		}
+
+		private String readString() throws IOException {
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.US_ASCII);
+		}
+
+		/** The position of the current message in the segment. */
+		public long getOffset() {
+			return recordOffset;
+		}
+
+		/** The position after the current message. */
+		public long getEnd() {
+			return offset;
+		}
+
+		public int getID() {
+			return id;
+		}
+
+		/** The path of the identity of the current message, e.g. "Agent.hotel". */
+		public String getPath() {
+			return paths.get(id);
+		}
+
+		public int getLevel() {
+			return level;
+		}
+
+		public long getSeq() {
+			return seq;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
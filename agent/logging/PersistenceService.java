@@ -0,0 +1,182 @@
+package agent.logging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes files on a background thread, so that saving at the end of a game does not delay joining the next one.
+ *
+ * Whole files are written by {@link #write(File, byte[])} to a temporary file that is renamed over the target, so a
+ * crash leaves either the old or the new file. A write replaces a queued write of the same file. Other tasks, like
+ * appends, are run in the order they were submitted by {@link #execute(Task)}. At most {@code capacity} tasks are
+ * queued, after which submitting waits for the queue to drain. The default service is flushed when the virtual
+ * machine shuts down.
+ */
+public class PersistenceService {
+
+	/** A write to run in the background. */
+	public interface Task {
+		void run() throws IOException;
+	}
+
+	private static final Logger log = Logger.getLogger(PersistenceService.class.getName());
+
+	private static PersistenceService defaultService;
+
+	private final int capacity;
+	private final ArrayDeque<Entry> queue = new ArrayDeque<Entry>();
+	// The entry being run, which can no longer be replaced
+	private Entry running;
+	private final Thread thread;
+
+	private static class Entry {
+		final File file;
+		Task task;
+
+		Entry(File file, Task task) {
+			this.file = file;
+			this.task = task;
+		}
+	}
+
+	public PersistenceService(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity " + capacity);
+		}
+		this.capacity = capacity;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				runTasks();
+			}
+		}, "persistence");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** The service shared by the agent, flushed on shutdown. */
+	public static synchronized PersistenceService getDefault() {
+		if (defaultService == null) {
+			final PersistenceService service = new PersistenceService(16);
+			Runtime.getRuntime().addShutdownHook(new Thread("persistence-flush") {
+				public void run() {
+					service.flush();
+				}
+			});
+			defaultService = service;
+		}
+		return defaultService;
+	}
+
+	/** Writes the data to the file in the background, replacing any queued write of the same file. */
+	public void write(final File file, final byte[] data) {
+		Task task = new Task() {
+			public void run() throws IOException {
+				writeAtomically(file, data);
+			}
+		};
+		synchronized (this) {
+			for (Entry e : queue) {
+				if (file.equals(e.file)) {
+					e.task = task;
+					return;
+				}
+			}
+			enqueue(new Entry(file, task));
+		}
+	}
+
+	/** Runs the task in the background after all tasks submitted before it. */
+	public synchronized void execute(Task task) {
+		enqueue(new Entry(null, task));
+	}
+
+	private void enqueue(Entry entry) {
+		boolean interrupted = false;
+		while (queue.size() >= capacity) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		queue.add(entry);
+		notifyAll();
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Waits until all submitted tasks have been run. */
+	public synchronized void flush() {
+		if (Thread.currentThread() == thread) {
+			return;
+		}
+		boolean interrupted = false;
+		while (!queue.isEmpty() || running != null) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** The number of tasks queued or running. */
+	public synchronized int getPending() {
+		return queue.size() + (running != null ? 1 : 0);
+	}
+
+	private void runTasks() {
+		while (true) {
+			Entry entry;
+			synchronized (this) {
+				while (queue.isEmpty()) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// Only stopped with the virtual machine
+					}
+				}
+				entry = running = queue.poll();
+				notifyAll();
+			}
+			try {
+				entry.task.run();
+			} catch (Throwable e) {
+				log.log(Level.WARNING, "could not write " + (entry.file != null ? entry.file : "in background"), e);
+			}
+			synchronized (this) {
+				running = null;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Writes the data to a temporary file next to the target, forces it to disk and renames it over the target, so
+	 * the target is either the old or the new file should the write fail.
+	 */
+	public static void writeAtomically(File file, byte[] data) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(tmp)) {
+			out.write(data);
+			out.getFD().sync();
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -0,0 +1,352 @@
+package agent.sweep;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import agent.Agent;
+import agent.Client;
+import agent.PackageModel;
+import agent.PackageOptimizer;
+import agent.StrategyParameters;
+import agent.entertainment.EntertainmentTicket;
+import agent.entertainment.EntertainmentType;
+import agent.flight.FlightBidder;
+import agent.flight.FlightPriceMonitor;
+import agent.flight.FlightTicket;
+import agent.hotel.HotelBooking;
+import agent.hotel.HotelGame;
+import agent.hotel.HotelHistory;
+import se.sics.tac.aw.MarketGame;
+import se.sics.tac.aw.TACAgent;
+
+/**
+ * A game played offline against the local market (see {@link MarketGame}) in simulated time, with the strategy of
+ * the agent under a set of {@link StrategyParameters}. The other places are taken by the market's dummy traders. No
+ * clock is waited for, so a game takes as long as its computation, and games can be played in parallel.
+ *
+ * The decisions are made by the agent's own code where it does not need a server: packages by the
+ * {@link PackageOptimizer}, flight bids by {@link FlightBidder#choosePrice} and hotel estimates by a
+ * {@link HotelHistory} without past games. The package search has no deadline, so that a score does not depend on the
+ * load of the machine. Hotel bids and entertainment trades follow the hotel and entertainment
+ * agents in simple form: the packages are chosen once at the start, and each auction gets one bid for what they need.
+ *
+ * The score is that of the server: the utility of the best allocation of the goods owned at the end, less the cost.
+ */
+public class OfflineGame {
+
+    // Seconds between the agent's looks at the market
+    private static final int TICK = 10;
+    // Estimates of the entertainment agent
+    private static final float ENTERTAINMENT_PRICE = 100f;
+    private static final float ENTERTAINMENT_PROBABILITY = 0.75f;
+    // The penalty per day of travel of the score, whatever the strategy assumes
+    private static final int TRAVEL_PENALTY = 100;
+
+    /** A client of the game, with the preferences drawn by the market. */
+    private static class MarketClient extends Client {
+        private final int[] preferences;
+
+        MarketClient(int[] preferences) {
+            this.preferences = preferences;
+        }
+
+        public int getPreferredArrivalDay() { return preferences[TACAgent.ARRIVAL]; }
+        public int getPreferredDepartureDay() { return preferences[TACAgent.DEPARTURE]; }
+        public int getHotelPremium() { return preferences[TACAgent.HOTEL_VALUE]; }
+
+        public int getEntertainmentPremium(EntertainmentType type) {
+            return preferences[type.getTACPreferenceQueryValue()];
+        }
+    }
+
+    private final StrategyParameters parameters;
+    private final MarketGame game;
+    private final MarketGame.Participant me;
+    private final Client[] clients = new Client[Agent.NUM_CLIENTS];
+
+    private final FlightPriceMonitor[] monitors = new FlightPriceMonitor[TACAgent.MAX_FLIGHT + 1];
+    private final HotelHistory hotelHistory;
+    private final HotelGame hotelGame = new HotelGame();
+    private final boolean[] hotelClosed = new boolean[TACAgent.getAuctionNo()];
+
+    // The packages chosen at the start and the units of each auction they need
+    private int[] packageOptions;
+    private final int[] need = new int[TACAgent.getAuctionNo()];
+    // The premiums of the entertainment given to the packages, see allocateTickets
+    private int funBonus;
+
+    /**
+     * @param seed The seed of the market, which draws the clients, the prices and the dummies' bids.
+     * @param history The past games to estimate the hotel prices from, copied, or null for none.
+     */
+    public OfflineGame(long seed, StrategyParameters parameters, HotelHistory history) {
+        this.parameters = parameters;
+        hotelHistory = history != null ? new HotelHistory(history) : new HotelHistory();
+        game = new MarketGame(1, 0L, seed);
+        me = game.join(0);
+        for (int c = 0; c < clients.length; c++) {
+            clients[c] = new MarketClient(me.clients[c]);
+        }
+        for (int a = TACAgent.MIN_FLIGHT; a <= TACAgent.MAX_FLIGHT; a++) {
+            monitors[a] = new FlightPriceMonitor(null);
+        }
+        hotelHistory.setCurrentGame(hotelGame);
+    }
+
+    /** Plays the game to its end. @return the score. */
+    public float play() {
+        for (int second = 0; !game.isEnded(); second += TICK) {
+            game.advance(second * 1000L);
+            if (game.isEnded()) {
+                break;
+            }
+            int step = second / TICK;
+            for (int a = TACAgent.MIN_FLIGHT; a <= TACAgent.MAX_FLIGHT; a++) {
+                monitors[a].addQuote(game.getAskPrice(a), step);
+            }
+            if (second % 60 == 0 && second > 0) {
+                updateHotels(second / 60);
+            }
+            if (second == 0) {
+                choosePackages();
+                tradeEntertainment();
+            }
+            // The flight bidders refresh their bids every 30 seconds
+            if (step % 3 == 0) {
+                bidFlights(step);
+            }
+            if (second % 60 == 0) {
+                bidHotels(second / 60);
+            }
+        }
+        return getScore();
+    }
+
+    private static int flightAuction(int day, boolean arrival) {
+        return TACAgent.getAuctionFor(TACAgent.CAT_FLIGHT,
+            arrival ? TACAgent.TYPE_INFLIGHT : TACAgent.TYPE_OUTFLIGHT, day);
+    }
+
+    private static int hotelAuction(int day, boolean towers) {
+        return TACAgent.getAuctionFor(TACAgent.CAT_HOTEL,
+            towers ? TACAgent.TYPE_GOOD_HOTEL : TACAgent.TYPE_CHEAP_HOTEL, day);
+    }
+
+    private static int entertainmentAuction(int day, EntertainmentType type) {
+        return TACAgent.getAuctionFor(TACAgent.CAT_ENTERTAINMENT, type.getValue(), day);
+    }
+
+    // Records the hotel quotes of the minute, as the hotel agent's watcher does
+    private void updateHotels(int minute) {
+        for (int day = 1; day < Agent.NUM_DAYS; day++) {
+            for (boolean towers : new boolean[] { true, false }) {
+                int a = hotelAuction(day, towers);
+                if (!hotelClosed[a]) {
+                    hotelClosed[a] = game.isClosed(a);
+                    hotelGame.setAskPrice(day, towers, game.getAskPrice(a), minute, hotelClosed[a]);
+                }
+            }
+        }
+        hotelHistory.update();
+    }
+
+    private PackageModel createModel(int[] owns, int penalty) {
+        List<FlightTicket> flights = new ArrayList<FlightTicket>();
+        List<HotelBooking> hotels = new ArrayList<HotelBooking>();
+        List<EntertainmentTicket> tickets = new ArrayList<EntertainmentTicket>();
+        for (int day = 1; day <= Agent.NUM_DAYS; day++) {
+            if (day < Agent.NUM_DAYS) {
+                for (int i = 0; i < owns[flightAuction(day, true)]; i++) {
+                    flights.add(new FlightTicket(day, true));
+                }
+                for (boolean towers : new boolean[] { true, false }) {
+                    for (int i = 0; i < owns[hotelAuction(day, towers)]; i++) {
+                        hotels.add(new HotelBooking(day, towers));
+                    }
+                }
+            }
+            if (day > 1) {
+                for (int i = 0; i < owns[flightAuction(day, false)]; i++) {
+                    flights.add(new FlightTicket(day, false));
+                }
+            }
+        }
+        return new PackageModel(clients, flights, hotels, tickets, penalty);
+    }
+
+    // Chooses the packages from the estimates at the start, as the agent does
+    private void choosePackages() {
+        PackageModel model = createModel(new int[need.length], parameters.getTravelPenalty());
+        float[] hotelPrices = hotelHistory.getEstPrices();
+        for (int day = 1; day <= Agent.NUM_DAYS; day++) {
+            if (day > 1) {
+                model.setFlight(day, false, (float) monitors[flightAuction(day, false)].predictMinimumPrice(0), 1f);
+            }
+            if (day < Agent.NUM_DAYS) {
+                model.setFlight(day, true, (float) monitors[flightAuction(day, true)].predictMinimumPrice(0), 1f);
+                for (boolean towers : new boolean[] { true, false }) {
+                    model.setHotel(day, towers, hotelPrices[day - 1 + (towers ? 4 : 0)],
+                        day == 2 || day == 3 ? 0.9f : 0.95f, false);
+                }
+                for (EntertainmentType type : EntertainmentType.values()) {
+                    model.setEntertainment(day, type, ENTERTAINMENT_PRICE, ENTERTAINMENT_PROBABILITY);
+                }
+            }
+        }
+        int[] options = new PackageOptimizer(model).optimize();
+        for (int c = 0; c < options.length; c++) {
+            if (options[c] != PackageModel.NO_OPTION) {
+                int arrive = PackageModel.getArrivalDay(options[c]);
+                int depart = PackageModel.getDepartureDay(options[c]);
+                need[flightAuction(arrive, true)]++;
+                need[flightAuction(depart, false)]++;
+                for (int day = arrive; day < depart; day++) {
+                    need[hotelAuction(day, PackageModel.isTowers(options[c]))]++;
+                }
+            }
+        }
+        packageOptions = options;
+    }
+
+    private void bidFlights(int step) {
+        for (int a = TACAgent.MIN_FLIGHT; a <= TACAgent.MAX_FLIGHT; a++) {
+            int missing = need[a] - me.owns[a];
+            if (missing > 0 && !game.isClosed(a)) {
+                float price = FlightBidder.choosePrice(monitors[a], game.getAskPrice(a), step,
+                    parameters.getFlightBidConfidence());
+                game.submitBid(me, a, "((" + missing + ' ' + price + "))", step * TICK * 1000L);
+            }
+        }
+    }
+
+    // Bids the estimated next price times the proportion for the number of quotes, as the hotel agent does
+    private void bidHotels(int minute) {
+        for (int day = 1; day < Agent.NUM_DAYS; day++) {
+            for (boolean towers : new boolean[] { true, false }) {
+                int a = hotelAuction(day, towers);
+                int missing = need[a] - me.owns[a];
+                if (missing > 0 && !game.isClosed(a)) {
+                    hotelHistory.setEstNextPrice(day, towers);
+                    float estimate = Math.max(hotelHistory.getEstNextPrice(day, towers), game.getAskPrice(a) + 75);
+                    float price = (float) (estimate * parameters.getHotelBidProportion(minute));
+                    if (price > 0) {
+                        game.submitBid(me, a, "((" + missing + ' ' + price + "))", minute * 60000L);
+                    }
+                }
+            }
+        }
+    }
+
+    // Gives the endowed tickets to the packages, bids for the rest and offers the tickets left over
+    private void tradeEntertainment() {
+        int[] tickets = me.owns.clone();
+        List<int[]> wanted = allocateTickets(packageOptions, tickets);
+        // Bids for each auction as (quantity, price) points
+        List<List<float[]>> points = new ArrayList<List<float[]>>();
+        for (int a = 0; a < need.length; a++) {
+            points.add(new ArrayList<float[]>());
+        }
+        for (int[] w : wanted) {
+            // No buying where tickets are left over, whose sell price may be below the bid
+            if (tickets[w[1]] > 0) {
+                continue;
+            }
+            float price = w[2] * (1 - parameters.getEntertainmentProfitFactor());
+            points.get(w[1]).add(new float[] { 1, price });
+        }
+        for (int a = TACAgent.MIN_ENTERTAINMENT; a <= TACAgent.MAX_ENTERTAINMENT; a++) {
+            if (tickets[a] > 0) {
+                points.get(a).add(new float[] { -tickets[a], parameters.getEntertainmentSellPrice() });
+            }
+            if (!points.get(a).isEmpty()) {
+                StringBuilder bid = new StringBuilder("(");
+                for (float[] p : points.get(a)) {
+                    bid.append('(').append((int) p[0]).append(' ').append(p[1]).append(')');
+                }
+                game.submitBid(me, a, bid.append(')').toString(), 0L);
+            }
+        }
+    }
+
+    /**
+     * Gives the tickets to the clients with the options, highest premium first, at most one a day and one of each
+     * type per client, taking them from the tickets and adding up their premiums in funBonus.
+     *
+     * @return the slots left for each client with a package as (client, auction, premium), highest premium first
+     *         for each client, on the free days in order.
+     */
+    private List<int[]> allocateTickets(int[] options, int[] tickets) {
+        funBonus = 0;
+        boolean[][] dayUsed = new boolean[options.length][Agent.NUM_DAYS + 1];
+        boolean[][] typeUsed = new boolean[options.length][EntertainmentType.values().length + 1];
+        List<int[]> candidates = new ArrayList<int[]>();
+        for (int c = 0; c < options.length; c++) {
+            if (options[c] == PackageModel.NO_OPTION) {
+                continue;
+            }
+            for (int day = PackageModel.getArrivalDay(options[c]); day < PackageModel.getDepartureDay(options[c]);
+                    day++) {
+                for (EntertainmentType type : EntertainmentType.values()) {
+                    candidates.add(new int[] { c, day, type.getValue(), clients[c].getEntertainmentPremium(type) });
+                }
+            }
+        }
+        Collections.sort(candidates, new Comparator<int[]>() {
+            public int compare(int[] a, int[] b) {
+                return Integer.compare(b[3], a[3]);
+            }
+        });
+        for (int[] cand : candidates) {
+            int a = entertainmentAuction(cand[1], EntertainmentType.fromValue(cand[2]));
+            if (tickets[a] > 0 && !dayUsed[cand[0]][cand[1]] && !typeUsed[cand[0]][cand[2]]) {
+                tickets[a]--;
+                dayUsed[cand[0]][cand[1]] = true;
+                typeUsed[cand[0]][cand[2]] = true;
+                funBonus += cand[3];
+            }
+        }
+
+        List<int[]> wanted = new ArrayList<int[]>();
+        for (int c = 0; c < options.length; c++) {
+            if (options[c] == PackageModel.NO_OPTION) {
+                continue;
+            }
+            int day = PackageModel.getArrivalDay(options[c]);
+            List<EntertainmentType> types = new ArrayList<EntertainmentType>();
+            for (EntertainmentType type : EntertainmentType.values()) {
+                if (!typeUsed[c][type.getValue()]) {
+                    types.add(type);
+                }
+            }
+            final Client client = clients[c];
+            Collections.sort(types, new Comparator<EntertainmentType>() {
+                public int compare(EntertainmentType a, EntertainmentType b) {
+                    return Integer.compare(client.getEntertainmentPremium(b), client.getEntertainmentPremium(a));
+                }
+            });
+            for (EntertainmentType type : types) {
+                while (day < PackageModel.getDepartureDay(options[c]) && dayUsed[c][day]) {
+                    day++;
+                }
+                if (day >= PackageModel.getDepartureDay(options[c])) {
+                    break;
+                }
+                dayUsed[c][day] = true;
+                wanted.add(new int[] { c, entertainmentAuction(day, type), client.getEntertainmentPremium(type) });
+            }
+        }
+        return wanted;
+    }
+
+    private float getScore() {
+        // With nothing to buy, the expected outcome of an option is its utility if the goods are owned, else 0
+        PackageModel model = createModel(me.owns, TRAVEL_PENALTY);
+        PackageOptimizer optimizer = new PackageOptimizer(model);
+        int[] options = optimizer.optimize();
+        double utility = optimizer.getValue(options);
+        allocateTickets(options, me.owns.clone());
+        return (float) (utility + funBonus - me.getCost());
+    }
+}
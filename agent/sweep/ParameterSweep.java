@@ -0,0 +1,241 @@
+package agent.sweep;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import agent.StrategyParameters;
+import agent.hotel.HotelHistory;
+
+/**
+ * Compares sets of strategy parameters by playing each in the same offline games (see {@link OfflineGame}).
+ *
+ * The sets are the product of the values given for each parameter, e.g.
+ *
+ * <pre>
+ * java agent.sweep.ParameterSweep -g 50 "travelPenalty=80;100;120" "entertainmentProfitFactor=0.1;0.2"
+ * </pre>
+ *
+ * plays 50 games with each of the 6 sets. Every set plays the games of the same seeds, so the differences between
+ * them are not hidden by the luck of the draw. The games are tasks of a work-stealing pool, one per game, and the
+ * summary of the scores of each set is printed best mean first.
+ */
+public class ParameterSweep {
+
+    private static final int DEFAULT_GAMES = 20;
+
+    /** The scores of a set of parameters. */
+    public static class Result {
+        public final StrategyParameters parameters;
+        public final float[] scores;
+
+        Result(StrategyParameters parameters, float[] scores) {
+            this.parameters = parameters;
+            this.scores = scores;
+        }
+
+        public double getMean() {
+            double sum = 0;
+            for (float s : scores) {
+                sum += s;
+            }
+            return sum / scores.length;
+        }
+
+        public double getStandardDeviation() {
+            if (scores.length < 2) {
+                return 0;
+            }
+            double mean = getMean(), squares = 0;
+            for (float s : scores) {
+                squares += (s - mean) * (s - mean);
+            }
+            return Math.sqrt(squares / (scores.length - 1));
+        }
+
+        /** @return the score at the fraction (0-1) of the sorted scores. */
+        public float getPercentile(double fraction) {
+            float[] sorted = scores.clone();
+            Arrays.sort(sorted);
+            return sorted[(int) Math.round(fraction * (sorted.length - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%8.1f %7.1f %8.1f %8.1f %8.1f %8.1f %8.1f  %s", getMean(), getStandardDeviation(),
+                getPercentile(0), getPercentile(0.1), getPercentile(0.5), getPercentile(0.9), getPercentile(1),
+                parameters);
+        }
+    }
+
+    private final List<StrategyParameters> sets;
+    private final int games;
+    private final long seed;
+    private final HotelHistory history;
+
+    /**
+     * @param history The past games the hotel prices are estimated from in every game, or null for none.
+     */
+    public ParameterSweep(List<StrategyParameters> sets, int games, long seed, HotelHistory history) {
+        this.sets = sets;
+        this.games = games;
+        this.seed = seed;
+        this.history = history;
+    }
+
+    /** Plays the games of every set on the pool. @return the results in the order of the sets. */
+    public List<Result> run(ForkJoinPool pool) throws InterruptedException, ExecutionException {
+        List<List<Future<Float>>> futures = new ArrayList<List<Future<Float>>>();
+        for (final StrategyParameters parameters : sets) {
+            List<Future<Float>> set = new ArrayList<Future<Float>>();
+            for (int g = 0; g < games; g++) {
+                final long gameSeed = seed + g;
+                set.add(pool.submit(new Callable<Float>() {
+                    public Float call() {
+                        return new OfflineGame(gameSeed, parameters, history).play();
+                    }
+                }));
+            }
+            futures.add(set);
+        }
+        List<Result> results = new ArrayList<Result>();
+        for (int i = 0; i < sets.size(); i++) {
+            float[] scores = new float[games];
+            for (int g = 0; g < games; g++) {
+                scores[g] = futures.get(i).get(g).get();
+            }
+            results.add(new Result(sets.get(i), scores));
+        }
+        return results;
+    }
+
+    /**
+     * @return the product of the values of each parameter as "name=value;value;...", over the defaults.
+     * @throws IllegalArgumentException if a parameter or value is not valid.
+     */
+    public static List<StrategyParameters> product(List<String> grid) {
+        List<StrategyParameters> sets = new ArrayList<StrategyParameters>();
+        sets.add(new StrategyParameters());
+        for (String axis : grid) {
+            int eq = axis.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("expected name=value;value;... but got " + axis);
+            }
+            String name = axis.substring(0, eq).trim();
+            List<StrategyParameters> next = new ArrayList<StrategyParameters>();
+            for (StrategyParameters set : sets) {
+                for (String value : axis.substring(eq + 1).split(";")) {
+                    StrategyParameters p = new StrategyParameters(set);
+                    p.set(name, value);
+                    next.add(p);
+                }
+            }
+            sets = next;
+        }
+        return sets;
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java agent.sweep.ParameterSweep [options] [name=value;value;...]...");
+        System.err.println("Plays offline games with each set of strategy parameters and compares the scores.");
+        System.err.println("Options:");
+        System.err.println("  -g <games>    games per set of parameters (default " + DEFAULT_GAMES + ")");
+        System.err.println("  -t <threads>  games played at once (default the number of processors)");
+        System.err.println("  -s <seed>     seed of the first game (default 1)");
+        System.err.println("  -H <file>     hotel history to estimate hotel prices from, e.g. hotelHistory.hgh");
+        System.err.println("  -h            show this help");
+        System.err.println("Parameters: " + Arrays.toString(StrategyParameters.NAMES));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int games = DEFAULT_GAMES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        File historyFile = null;
+        List<String> grid = new ArrayList<String>();
+        List<StrategyParameters> sets;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-h")) {
+                    usage();
+                    return;
+                } else if (arg.startsWith("-")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("missing value of " + arg);
+                    }
+                    String value = args[++i];
+                    switch (arg) {
+                    case "-g":
+                        games = Integer.parseInt(value);
+                        break;
+                    case "-t":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "-s":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "-H":
+                        historyFile = new File(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + arg);
+                    }
+                } else {
+                    grid.add(arg);
+                }
+            }
+            if (games < 1 || threads < 1) {
+                throw new IllegalArgumentException("games and threads must be positive");
+            }
+            sets = product(grid);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(1);
+            return;
+        }
+
+        HotelHistory history = null;
+        if (historyFile != null) {
+            if (!historyFile.exists()) {
+                System.err.println("no hotel history " + historyFile);
+                System.exit(1);
+            }
+            history = HotelHistory.load(historyFile, new File(historyFile.getPath() + ".legacy"));
+        }
+
+        System.out.println("Playing " + games + " games with each of " + sets.size() + " sets of parameters on "
+            + threads + " threads");
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Result> results;
+        try {
+            results = new ParameterSweep(sets, games, seed, history).run(pool);
+        } finally {
+            pool.shutdown();
+            if (history != null) {
+                history.close();
+            }
+        }
+        Collections.sort(results, new Comparator<Result>() {
+            public int compare(Result a, Result b) {
+                return Double.compare(b.getMean(), a.getMean());
+            }
+        });
+        System.out.println(String.format("%8s %7s %8s %8s %8s %8s %8s  %s", "mean", "stddev", "min", "p10", "median",
+            "p90", "max", "parameters"));
+        for (Result r : results) {
+            System.out.println(r);
+        }
+        System.out.println(String.format("%.1f s", (System.nanoTime() - start) / 1e9));
+    }
+}
@@ -0,0 +1,55 @@
+package agent.test;
+
+import agent.logging.AgentLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AgentLoggerTest {
+
+	private File dir;
+
+	@Before
+	public void setUp() throws IOException {
+		// Keep the log out of the working directory
+		dir = Files.createTempDirectory("agentLogger").toFile();
+		AgentLogger.setLogFile(new File(dir, AgentLogger.fileName));
+	}
+
+	@After
+	public void tearDown() {
+		AgentLogger.clearThresholds();
+		AgentLogger.setLogFile(new File(AgentLogger.fileName));
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void testThresholds() {
+		AgentLogger root = new AgentLogger().getSublogger("thresholdTest");
+		AgentLogger hotel = root.getSublogger("hotel");
+		AgentLogger manager = hotel.getSublogger("packageManager");
+		assertTrue(manager.isLoggable(AgentLogger.INFO));
+
+		AgentLogger.setThresholds("Agent.thresholdTest:WARNING, Agent.thresholdTest.hotel.packageManager:4");
+		assertFalse(root.isLoggable(AgentLogger.INFO));
+		assertTrue(root.isLoggable(AgentLogger.WARNING));
+		// Inherited from the nearest ancestor with a threshold
+		assertFalse(hotel.isLoggable(AgentLogger.INFO));
+		assertTrue(hotel.isLoggable(AgentLogger.ERROR));
+		assertFalse(manager.isLoggable(AgentLogger.ERROR));
+
+		AgentLogger.setThreshold("Agent.thresholdTest.hotel", AgentLogger.INFO);
+		assertTrue(hotel.isLoggable(AgentLogger.INFO));
+		assertFalse(manager.isLoggable(AgentLogger.ERROR));
+		assertFalse(root.isLoggable(AgentLogger.INFO));
+	}
+}
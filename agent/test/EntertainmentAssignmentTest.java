@@ -0,0 +1,188 @@
+package agent.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import agent.Client;
+import agent.Package;
+import agent.entertainment.EntertainmentAgent;
+import agent.entertainment.EntertainmentAssignment;
+import agent.entertainment.EntertainmentTicket;
+import agent.entertainment.EntertainmentType;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class EntertainmentAssignmentTest {
+
+	private static int premium(List<EntertainmentAgent.Allocation> allocations) {
+		int premium = 0;
+		for (EntertainmentAgent.Allocation allocation : allocations) {
+			premium += allocation.getValue();
+		}
+		return premium;
+	}
+
+	@Test
+	public void testBeatsTheGreedyChoice() {
+		// The greedy choice gives the first client the alligator wrestling on day 1, which leaves them no day for
+		// the amusement park
+		Package first = new Package(new FunClient(1, 3, 100, 90, 0), 1, 3);
+		Package second = new Package(new FunClient(1, 2, 0, 10, 0), 1, 2);
+		List<Package> packages = Arrays.asList(first, second);
+		List<EntertainmentTicket> stock = Arrays.asList(
+			new EntertainmentTicket(2, EntertainmentType.ALLIGATOR_WRESTLING),
+			new EntertainmentTicket(1, EntertainmentType.AMUSEMENT),
+			new EntertainmentTicket(1, EntertainmentType.ALLIGATOR_WRESTLING));
+
+		assertEquals(110, premium(EntertainmentAgent.chooseGreedyAllocations(packages, stock)));
+		List<EntertainmentAgent.Allocation> allocations = EntertainmentAgent.chooseAllocations(packages, stock);
+		assertEquals(190, premium(allocations));
+		for (EntertainmentAgent.Allocation allocation : allocations) {
+			assertSame(first, allocation.pkg);
+		}
+	}
+
+	@Test
+	public void testOneTicketPerDayAndEntertainment() {
+		Package pkg = new Package(new FunClient(1, 5, 50, 60, 70), 1, 5);
+		List<EntertainmentTicket> stock = Arrays.asList(
+			new EntertainmentTicket(1, EntertainmentType.MUSEUM),
+			new EntertainmentTicket(1, EntertainmentType.AMUSEMENT),
+			new EntertainmentTicket(2, EntertainmentType.MUSEUM),
+			new EntertainmentTicket(3, EntertainmentType.MUSEUM),
+			new EntertainmentTicket(4, EntertainmentType.ALLIGATOR_WRESTLING),
+			new EntertainmentTicket(4, EntertainmentType.AMUSEMENT));
+
+		List<EntertainmentAgent.Allocation> allocations =
+			EntertainmentAgent.chooseAllocations(Arrays.asList(pkg), stock);
+		assertEquals(180, premium(allocations));
+		for (int i = 0; i < allocations.size(); i++) {
+			for (int j = i + 1; j < allocations.size(); j++) {
+				assertFalse(allocations.get(i).conflictsWith(allocations.get(j)));
+			}
+		}
+	}
+
+	@Test
+	public void testMatchesExhaustiveSearch() {
+		// Reused, so that nothing is left over from one choice to the next
+		EntertainmentAssignment assignment = new EntertainmentAssignment();
+		for (long seed = 0; seed < 20; seed++) {
+			Random rnd = new Random(seed);
+			List<Package> packages = new ArrayList<Package>();
+			for (int i = 0; i < 3; i++) {
+				packages.add(randomPackage(rnd, 1 + rnd.nextInt(4)));
+			}
+			List<EntertainmentTicket> stock = new ArrayList<EntertainmentTicket>();
+			for (int i = 0; i < 7; i++) {
+				stock.add(new EntertainmentTicket(1 + rnd.nextInt(4), EntertainmentType.randomType(rnd)));
+			}
+			List<EntertainmentAgent.Allocation> allocations = assignment.choose(packages, stock, 10000);
+			assertFalse(assignment.isTimedOut());
+			assertValid(allocations);
+			assertEquals(bestPremium(packages, stock, new ArrayList<EntertainmentAgent.Allocation>(), 0),
+				premium(allocations));
+		}
+	}
+
+	@Test
+	public void testLongStaysWithATicketPerKind() {
+		// Every client can use every ticket, which gives the most ways to search
+		List<EntertainmentTicket> stock = new ArrayList<EntertainmentTicket>();
+		for (int day = 1; day <= 4; day++) {
+			for (EntertainmentType type : EntertainmentType.values()) {
+				stock.add(new EntertainmentTicket(day, type));
+			}
+		}
+		for (long seed = 0; seed < 5; seed++) {
+			Random rnd = new Random(seed);
+			List<Package> packages = new ArrayList<Package>();
+			for (int i = 0; i < 8; i++) {
+				packages.add(randomPackage(rnd, 1));
+			}
+			int greedy = premium(EntertainmentAgent.chooseGreedyAllocations(packages, stock));
+
+			long start = System.nanoTime();
+			List<EntertainmentAgent.Allocation> allocations = EntertainmentAgent.chooseAllocations(packages, stock);
+			long millis = (System.nanoTime() - start) / 1000000;
+			assertTrue("took " + millis + " ms", millis < 10 * EntertainmentAssignment.TIME_LIMIT);
+			assertValid(allocations);
+			assertTrue(premium(allocations) >= greedy);
+
+			EntertainmentAssignment assignment = new EntertainmentAssignment();
+			List<EntertainmentAgent.Allocation> best = assignment.choose(packages, stock, 10000);
+			assertFalse(assignment.isTimedOut());
+			assertValid(best);
+			assertTrue(premium(best) >= premium(allocations));
+		}
+	}
+
+	private static Package randomPackage(Random rnd, int in) {
+		int out = in == 1 ? 5 : in + 1 + rnd.nextInt(5 - in);
+		return new Package(new FunClient(in, out, rnd.nextInt(200), rnd.nextInt(200), rnd.nextInt(200)), in, out);
+	}
+
+	private static void assertValid(List<EntertainmentAgent.Allocation> allocations) {
+		for (int i = 0; i < allocations.size(); i++) {
+			EntertainmentAgent.Allocation allocation = allocations.get(i);
+			assertTrue(allocation.pkg.getArrivalDay() <= allocation.ticket.getDay()
+				&& allocation.ticket.getDay() < allocation.pkg.getDepartureDay());
+			for (int j = i + 1; j < allocations.size(); j++) {
+				assertFalse(allocation.conflictsWith(allocations.get(j)));
+			}
+		}
+	}
+
+	// Tries each ticket with each package and without one
+	private static int bestPremium(List<Package> packages, List<EntertainmentTicket> stock,
+			List<EntertainmentAgent.Allocation> allocations, int ticket) {
+		if (ticket == stock.size()) {
+			return premium(allocations);
+		}
+		int best = bestPremium(packages, stock, allocations, ticket + 1);
+		for (Package pkg : packages) {
+			EntertainmentAgent.Allocation allocation = new EntertainmentAgent.Allocation(pkg, stock.get(ticket));
+			boolean valid = pkg.getArrivalDay() <= allocation.ticket.getDay()
+				&& allocation.ticket.getDay() < pkg.getDepartureDay();
+			for (EntertainmentAgent.Allocation other : allocations) {
+				valid &= !allocation.conflictsWith(other);
+			}
+			if (valid) {
+				allocations.add(allocation);
+				best = Math.max(best, bestPremium(packages, stock, allocations, ticket + 1));
+				allocations.remove(allocations.size() - 1);
+			}
+		}
+		return best;
+	}
+}
+
+class FunClient extends Client {
+	private final int in, out;
+	private final int[] premiums;
+
+	public FunClient(int in, int out, int alligatorWrestling, int amusement, int museum) {
+		this.in = in;
+		this.out = out;
+		this.premiums = new int[] { alligatorWrestling, amusement, museum };
+	}
+
+	public int getPreferredArrivalDay() {
+		return in;
+	}
+
+	public int getPreferredDepartureDay() {
+		return out;
+	}
+
+	public int getHotelPremium() {
+		return 0;
+	}
+
+	public int getEntertainmentPremium(EntertainmentType type) {
+		return premiums[type.getValue() - 1];
+	}
+}
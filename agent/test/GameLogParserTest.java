@@ -0,0 +1,87 @@
+package agent.test;
+
+import agent.logging.GameLogParser;
+import agent.logging.GameLogSeries;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class GameLogParserTest {
+	private static final String LOG =
+		"1000,v,9.0,TAC server\n"
+		+ "1000,g,7,1000,1540,7,tacClassic,2\n"
+		+ "1000,a,TheGreaterFool,11\n"
+		+ "1000,a,dummy,12\n"
+		+ "1000,u,101,0,1,109,2,3,117,4,2\n"
+		+ "1000,c,7,11,1,3,120,50,0,200,2,4,60,10,20,30\n"
+		+ "1010,q,101,312.5,0\n"
+		+ "1012,b,500,11,109,s,2,2,80.25,1,120\n"
+		+ "1020,q,101,318.25,-1.5E1\n"
+		+ "1025,t,11,auction,101,2,318.25,900\n"
+		+ "1060,q,109,80.25,0,2\n"
+		+ "1061,z,109\n"
+		+ "1061,t,12,11,117,1,55.5\n"
+		+ "1540,l,7,11,1,3,1,0,2,0,2,4,0,0,0,0\n";
+
+	private static GameLogSeries parse() throws IOException {
+		GameLogSeries series = new GameLogSeries();
+		GameLogParser parser = new GameLogParser(series);
+		parser.parse(new StringReader(LOG));
+		assertEquals(12, parser.getRecords());
+		return series;
+	}
+
+	@Test
+	public void testSeries() throws IOException {
+		check(parse());
+	}
+
+	@Test
+	public void testColumnarRoundTrip() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		parse().write(new DataOutputStream(bytes));
+		check(GameLogSeries.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+	}
+
+	private static void check(GameLogSeries series) {
+		assertEquals(1000L, series.getStartTime());
+		assertEquals(1540L, series.getEndTime());
+		assertEquals(2, series.getAgentCount());
+		assertEquals("TheGreaterFool", series.getAgentName(0));
+		assertArrayEquals(new int[] { 1, 3, 120, 50, 0, 200, 2, 4, 60, 10, 20, 30 }, series.getClientPreferences(0));
+		assertArrayEquals(new int[] { 1, 3, 1, 0, 2, 0, 2, 4, 0, 0, 0, 0 }, series.getFinalAllocation(0));
+		assertNull(series.getClientPreferences(1));
+		assertEquals(3, series.getAuctionCount());
+
+		GameLogSeries.AuctionSeries flight = series.getAuctionByID(101);
+		assertEquals(0, flight.getResource());
+		assertEquals(1, flight.getDay());
+		assertEquals(2, flight.getQuoteCount());
+		assertEquals(10, flight.getQuoteTime(0));
+		assertEquals(20, flight.getQuoteTime(1));
+		assertEquals(312.5f, flight.getAskPrice(0), 0f);
+		assertEquals(318.25f, flight.getAskPrice(1), 0f);
+		assertEquals(-15f, flight.getBidPrice(1), 0f);
+		assertEquals(1, flight.getTransactionCount());
+		assertEquals(25, flight.getTransactionTime(0));
+		assertEquals(0, flight.getBuyer(0));
+		assertEquals(GameLogSeries.AUCTIONEER, flight.getSeller(0));
+		assertEquals(2, flight.getQuantity(0));
+
+		GameLogSeries.AuctionSeries hotel = series.getAuctionByID(109);
+		assertEquals(1, hotel.getBidCount());
+		assertEquals(80.25f, hotel.getAskPrice(0), 0f);
+
+		GameLogSeries.AuctionSeries ticket = series.getAuctionByID(117);
+		assertEquals(1, ticket.getBuyer(0));
+		assertEquals(0, ticket.getSeller(0));
+		assertEquals(55.5f, ticket.getTransactionPrice(0), 0f);
+	}
+}
@@ -0,0 +1,76 @@
+package agent.test;
+
+import agent.hotel.HotelAllocationSearch;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HotelAllocationSearchTest {
+	@Test
+	public void testMatchesExhaustiveSearch() {
+		HotelAllocationSearch search = new HotelAllocationSearch();
+		Random rnd = new Random(1);
+		for (int i = 0; i < 200; i++) {
+			int n = 1 + rnd.nextInt(10);
+			int[] startDays = new int[n], endDays = new int[n], hps = new int[n];
+			for (int p = 0; p < n; p++) {
+				startDays[p] = 1 + rnd.nextInt(4);
+				endDays[p] = startDays[p] + 1 + rnd.nextInt(5 - startDays[p]);
+				hps[p] = 50 + rnd.nextInt(100);
+			}
+			float[] predPrices = new float[8];
+			boolean[] isClosed = new boolean[8];
+			int[] stock = new int[8];
+			for (int a = 0; a < 8; a++) {
+				predPrices[a] = 20 + rnd.nextInt(300) + rnd.nextFloat();
+				isClosed[a] = rnd.nextInt(3) == 0;
+				stock[a] = rnd.nextInt(4);
+			}
+
+			float best = Float.NaN;
+			for (int mask = 0; mask < 1 << n; mask++) {
+				float cost = cost(mask, startDays, endDays, hps, predPrices, isClosed, stock);
+				if (!Float.isNaN(cost) && (Float.isNaN(best) || cost < best)) {
+					best = cost;
+				}
+			}
+
+			boolean feasible = search.search(n, startDays, endDays, hps, predPrices, isClosed, stock);
+			assertEquals(!Float.isNaN(best), feasible);
+			if (feasible) {
+				assertEquals(best, search.getCost(), 1e-2);
+				int mask = 0;
+				for (int p = 0; p < n; p++) {
+					if (search.getAllocation(p)) {
+						mask |= 1 << p;
+					}
+				}
+				assertEquals(best, cost(mask, startDays, endDays, hps, predPrices, isClosed, stock), 1e-2);
+			}
+		}
+	}
+
+	// Net cost of giving TT to the packages in the mask, NaN if infeasible
+	private static float cost(int mask, int[] startDays, int[] endDays, int[] hps, float[] predPrices,
+			boolean[] isClosed, int[] stock) {
+		int[] left = stock.clone();
+		float cost = 0f;
+		for (int p = 0; p < startDays.length; p++) {
+			boolean tt = (mask & 1 << p) != 0;
+			if (tt) {
+				cost -= hps[p];
+			}
+			for (int day = startDays[p] - 1; day < endDays[p] - 1; day++) {
+				int i = tt ? day + 4 : day;
+				if (!isClosed[i]) {
+					cost += predPrices[i];
+				} else if (left[i]-- <= 0) {
+					return Float.NaN;
+				}
+			}
+		}
+		return cost;
+	}
+}
@@ -0,0 +1,118 @@
+package agent.test;
+
+import agent.hotel.HotelGame;
+import agent.hotel.HotelHistory;
+import agent.hotel.HotelHistoryStore;
+import agent.logging.PersistenceService;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HotelHistoryStoreTest {
+
+	private static HotelGame game(float rise) {
+		HotelGame game = new HotelGame();
+		for (int day = 1; day <= 4; day++) {
+			for (int minute = 1; minute <= day; minute++) {
+				game.setAskPrice(day, false, minute * rise, minute, minute == day);
+				game.setAskPrice(day, true, minute * rise * 2, minute, minute == day);
+			}
+		}
+		return game;
+	}
+
+	@Test
+	public void testAppendAndReopen() throws IOException {
+		File f = File.createTempFile("hotelHistory", ".hgh");
+		f.delete();
+		try {
+			try (HotelHistoryStore store = HotelHistoryStore.open(f)) {
+				assertEquals(0, store.getNumGames());
+				store.append(game(10));
+				store.append(game(20));
+			}
+			try (HotelHistoryStore store = HotelHistoryStore.open(f)) {
+				assertEquals(2, store.getNumGames());
+				HotelGame g = store.getGame(1);
+				assertEquals(60f, g.getClosePrice(2), 0f);
+				assertEquals(160f, g.getClosePrice(7), 0f);
+				store.append(game(30));
+				assertEquals(90f, store.getGame(2).getClosePrice(2), 0f);
+			}
+		} finally {
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testAppendInBackground() throws IOException {
+		File f = File.createTempFile("hotelHistory", ".hgh");
+		f.delete();
+		PersistenceService writer = new PersistenceService(2);
+		try {
+			for (int i = 1; i <= 3; i++) {
+				try (HotelHistoryStore store = HotelHistoryStore.open(f, writer)) {
+					assertEquals(i - 1, store.getNumGames());
+					store.append(game(10 * i));
+					assertEquals(i, store.getNumGames());
+				}
+			}
+			try (HotelHistoryStore store = HotelHistoryStore.open(f, writer)) {
+				assertEquals(90f, store.getGame(2).getClosePrice(2), 0f);
+			}
+			writer.flush();
+		} finally {
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testAveragesFromStore() throws IOException {
+		File f = File.createTempFile("hotelHistory", ".hgh");
+		f.delete();
+		File legacy = new File(f.getPath() + ".hist");
+		try {
+			HotelHistory hist = HotelHistory.load(f, legacy);
+			hist.setCurrentGame(game(10));
+			hist.save();
+			hist.setCurrentGame(game(20));
+			hist.save();
+			hist.close();
+
+			hist = HotelHistory.load(f, legacy);
+			assertEquals(2, hist.getNumGames());
+			// Close prices of day 3 are 30 and 60 in SS, 60 and 120 in TT
+			assertEquals(90f - 45f, hist.getAvgHotelPriceDifs()[2], 1e-4f);
+			assertEquals(15f, hist.getAvgPriceRises()[2][2], 1e-4f);
+			assertEquals(0f, hist.getAvgPriceRises()[0][1], 0f);
+			hist.close();
+		} finally {
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testStatistics() throws IOException {
+		HotelHistory hist = new HotelHistory();
+		for (int i = 0; i < 30; i++) {
+			hist.setCurrentGame(game(10));
+			hist.save();
+		}
+		hist.setCurrentGame(game(50));
+		hist.save();
+		assertEquals(350f / 31, hist.getAvgPriceRises()[2][2], 1e-4f);
+		float variance = (30 * 100 + 2500 - 350f * 350 / 31) / 30;
+		assertEquals(variance, hist.getPriceRiseVariance(2, 3), 1e-2f);
+		// Day 1 closes after its first rise
+		assertEquals(variance, hist.getClosePriceVariance(0), 1e-2f);
+
+		// Equal weights for the first 20 games, then the newest game weighs 0.05
+		hist.setDecayed(true);
+		assertEquals(12f, hist.getAvgPriceRises()[2][2], 1e-4f);
+		hist.setDecayed(false);
+		assertEquals(350f / 31, hist.getAvgPriceRises()[2][2], 1e-4f);
+	}
+}
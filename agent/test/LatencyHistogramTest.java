@@ -0,0 +1,52 @@
+package agent.test;
+
+import se.sics.tac.util.LatencyHistogram;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBuckets() {
+		assertEquals(0, LatencyHistogram.getBucket(999));
+		assertEquals(1, LatencyHistogram.getBucket(1000));
+		assertEquals(1, LatencyHistogram.getBucket(1999));
+		assertEquals(2, LatencyHistogram.getBucket(2000));
+		assertEquals(11, LatencyHistogram.getBucket(1500000));
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.getBucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testPercentilesAreBucketLimitsUpToTheMax() {
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(0.0, h.getPercentileMicros(0.5), 0.0);
+		for (int i = 0; i < 98; i++) {
+			h.record(3000);
+		}
+		h.record(50000);
+		h.record(700000);
+		assertEquals(100, h.getCount());
+		assertEquals(4.0, h.getPercentileMicros(0.5), 0.0);
+		assertEquals(64.0, h.getPercentileMicros(0.99), 0.0);
+		assertEquals(700.0, h.getPercentileMicros(1.0), 0.0);
+		assertEquals(700.0, h.getMaxMicros(), 0.0);
+		assertEquals((98 * 3000 + 50000 + 700000) / 100 / 1000.0, h.getMeanMicros(), 1e-9);
+	}
+
+	@Test
+	public void testAddAndReset() {
+		LatencyHistogram a = new LatencyHistogram(), b = new LatencyHistogram();
+		a.record(1000);
+		b.record(2000000);
+		b.record(-5);
+		a.add(b);
+		assertEquals(3, a.getCount());
+		assertEquals(1, a.getCount(0));
+		assertEquals(2000.0, a.getMaxMicros(), 0.0);
+		a.reset();
+		assertEquals(0, a.getCount());
+		assertEquals(0, a.getCount(1));
+		assertEquals(0.0, a.getMaxMicros(), 0.0);
+	}
+}
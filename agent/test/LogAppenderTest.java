@@ -0,0 +1,68 @@
+package agent.test;
+
+import agent.logging.AgentLogger;
+import agent.logging.Identity;
+import agent.logging.LogAppender;
+import agent.logging.LogSegment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LogAppenderTest {
+
+	@Test
+	public void testRollingSegments() throws IOException {
+		File dir = Files.createTempDirectory("log").toFile();
+		File log = new File(dir, "Agent.log");
+		Identity root = new Identity("Agent", null);
+		Identity hotel = root.getChildWithCreation(AgentLogger.parseQueue("hotel"));
+		try {
+			// A small ring and segments, so the writer is waited for and segments roll
+			LogAppender appender = new LogAppender(log, 4, 256);
+			long first = appender.append(root, AgentLogger.INFO, "started");
+			for (int i = 0; i < 20; i++) {
+				assertEquals(first + i + 1, appender.append(hotel, AgentLogger.WARNING, "bid " + i + "\nsecond line"));
+			}
+			appender.flush();
+			List<File> segments = LogSegment.list(log);
+			assertTrue(segments.size() > 1);
+
+			long last = 0;
+			int count = 0;
+			for (File f : segments) {
+				try (LogSegment.Reader reader = new LogSegment.Reader(f)) {
+					while (reader.next()) {
+						assertTrue(reader.getSeq() > last);
+						last = reader.getSeq();
+						if (count == 0) {
+							assertEquals("Agent", reader.getPath());
+							assertEquals("started", reader.getMessage());
+						} else {
+							assertEquals("Agent.hotel", reader.getPath());
+							assertEquals(AgentLogger.WARNING, reader.getLevel());
+							assertEquals("bid " + (count - 1) + "\nsecond line", reader.getMessage());
+						}
+						count++;
+					}
+				}
+			}
+			assertEquals(21, count);
+
+			// Continues after the messages of the earlier appender, in a new segment
+			LogAppender restarted = new LogAppender(log, 4, 256);
+			assertTrue(restarted.append(root, AgentLogger.INFO, "restarted") > last);
+			restarted.flush();
+			assertEquals(segments.size() + 1, LogSegment.list(log).size());
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+}
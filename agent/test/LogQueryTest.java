@@ -0,0 +1,98 @@
+package agent.test;
+
+import agent.logging.AgentLogger;
+import agent.logging.Identity;
+import agent.logging.LogAppender;
+import agent.logging.LogIndex;
+import agent.logging.LogQuery;
+import agent.logging.LogSegment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LogQueryTest {
+
+	@Test
+	public void testQuery() throws IOException {
+		File dir = Files.createTempDirectory("log").toFile();
+		File log = new File(dir, "Agent.log");
+		Identity root = new Identity("Agent", null);
+		Identity hotel = root.getChildWithCreation(AgentLogger.parseQueue("hotel"));
+		Identity flight = root.getChildWithCreation(AgentLogger.parseQueue("flight"));
+		try {
+			LogAppender appender = new LogAppender(log, 16, 512);
+			List<Long> hotelWarnings = new ArrayList<Long>();
+			for (int i = 0; i < 60; i++) {
+				appender.append(root, AgentLogger.INFO, "agent " + i);
+				appender.append(flight, AgentLogger.INFO, "flight " + i);
+				long seq = appender.append(hotel, i % 3 == 0 ? AgentLogger.WARNING : AgentLogger.INFO, "hotel " + i);
+				if (i % 3 == 0) {
+					hotelWarnings.add(seq);
+				}
+			}
+			appender.flush();
+			assertTrue(LogSegment.list(log).size() > 2);
+
+			// The warnings of the hotel, in order
+			LogQuery.Filter hotelOnly = new LogQuery.Filter() {
+				public int getImportance(String path) {
+					return path.equals("Agent.hotel") ? AgentLogger.WARNING : AgentLogger.OFF;
+				}
+			};
+			List<Long> seqs = new ArrayList<Long>();
+			try (LogQuery query = new LogQuery(log)) {
+				query.setFilter(hotelOnly);
+				while (query.next()) {
+					assertEquals("Agent.hotel", query.getPath());
+					assertEquals(AgentLogger.WARNING, query.getLevel());
+					assertEquals("hotel " + (3 * seqs.size()), query.getMessage());
+					seqs.add(query.getSeq());
+				}
+			}
+			assertEquals(hotelWarnings, seqs);
+			assertTrue(LogIndex.getIndexFile(LogSegment.list(log).get(0)).exists());
+
+			// All messages merged by sequence number, within a range of numbers
+			long from = hotelWarnings.get(5), to = hotelWarnings.get(10);
+			try (LogQuery query = new LogQuery(log)) {
+				query.setSeqRange(from, to);
+				long expected = from;
+				while (query.next()) {
+					assertEquals(expected++, query.getSeq());
+				}
+				assertEquals(to + 1, expected);
+			}
+
+			// The last messages, with a segment written after the indexes were
+			LogAppender restarted = new LogAppender(log, 16, 512);
+			restarted.append(hotel, AgentLogger.ERROR, "restarted");
+			restarted.flush();
+			seqs.clear();
+			String message = null;
+			try (LogQuery query = new LogQuery(log)) {
+				query.setFilter(hotelOnly);
+				query.setLast(3);
+				while (query.next()) {
+					seqs.add(query.getSeq());
+					message = query.getMessage();
+				}
+			}
+			assertEquals("restarted", message);
+			assertEquals(3, seqs.size());
+			assertEquals(hotelWarnings.get(hotelWarnings.size() - 2), seqs.get(0));
+			assertEquals(hotelWarnings.get(hotelWarnings.size() - 1), seqs.get(1));
+			assertTrue(seqs.get(2) > seqs.get(1));
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package agent.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import se.sics.tac.aw.MessageMetrics;
+import se.sics.tac.aw.TACMessage;
+import se.sics.tac.aw.TACMessageReceiver;
+import se.sics.tac.aw.TACPipelinedReader;
+import se.sics.tac.util.Clock;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MessageMetricsTest {
+
+	private static final long TIMEOUT = 100;
+
+	private static class TestReader extends TACPipelinedReader {
+		void connect(Socket socket) throws IOException {
+			start(socket);
+		}
+	}
+
+	/** A server that answers bidInfo after more than the timeout, transIDs never and everything else at once. */
+	private static class StubServer extends Thread {
+		final ServerSocket serverSocket;
+		volatile IOException error;
+
+		StubServer() throws IOException {
+			serverSocket = new ServerSocket(0);
+		}
+
+		public void run() {
+			try (Socket socket = serverSocket.accept()) {
+				InputStream in = socket.getInputStream();
+				OutputStream out = socket.getOutputStream();
+				StringBuilder request = new StringBuilder();
+				int c;
+				while ((c = in.read()) >= 0) {
+					if (c != 0) {
+						request.append((char) c);
+						continue;
+					}
+					String type = request.substring(1, request.indexOf(">"));
+					request.setLength(0);
+					if (type.equals("transIDs")) {
+						continue;
+					} else if (type.equals("bidInfo")) {
+						Thread.sleep(3 * TIMEOUT);
+					}
+					out.write(("<" + type + "></" + type + ">\0").getBytes("US-ASCII"));
+					out.flush();
+				}
+			} catch (IOException e) {
+				error = e;
+			} catch (InterruptedException e) {
+			}
+		}
+	}
+
+	@After
+	public void tearDown() {
+		MessageMetrics metrics = MessageMetrics.getDefault();
+		metrics.reset();
+		metrics.setTimeout(MessageMetrics.DEFAULT_TIMEOUT);
+		metrics.setGameStart(-1);
+	}
+
+	@Test
+	public void testRoundTripsAndTimeouts() throws Exception {
+		MessageMetrics metrics = MessageMetrics.getDefault();
+		metrics.reset();
+		metrics.setTimeout(TIMEOUT);
+		// Two and a half minutes into the game
+		metrics.setGameStart(Clock.getDefault().currentTimeMillis() - 150000);
+
+		StubServer server = new StubServer();
+		server.start();
+		TestReader reader = new TestReader();
+		reader.connect(new Socket("localhost", server.serverSocket.getLocalPort()));
+
+		final CountDownLatch replies = new CountDownLatch(4);
+		TACMessageReceiver receiver = new TACMessageReceiver() {
+			public void messageReceived(TACMessage msg) {
+				replies.countDown();
+			}
+		};
+		for (int i = 0; i < 3; i++) {
+			TACMessage msg = new TACMessage("getQuote");
+			msg.setParameter("auctionID", i);
+			reader.sendMessage(msg, receiver);
+		}
+		reader.sendMessage(new TACMessage("bidInfo"), receiver);
+		// Without a receiver its reply is not awaited, so it is not measured
+		reader.sendMessage(new TACMessage("getGameIDs"));
+		// The replies come in order, so the unanswered message goes last
+		reader.sendMessage(new TACMessage("transIDs"), receiver);
+
+		assertTrue(replies.await(5, TimeUnit.SECONDS));
+		Thread.sleep(2 * TIMEOUT);
+		assertEquals(Arrays.asList("bidInfo", "getQuote", "transIDs"), metrics.getTypes());
+
+		assertEquals(3, metrics.getSentCount("getQuote"));
+		assertEquals(0, metrics.getInFlightCount("getQuote"));
+		assertEquals(0, metrics.getTimeoutCount("getQuote"));
+		assertEquals(3, metrics.getHistogram("getQuote").getCount());
+		assertEquals(3, metrics.getHistogram("getQuote", 2).getCount());
+		assertEquals(0, metrics.getHistogram("getQuote", 1).getCount());
+
+		// A late reply
+		assertEquals(1, metrics.getSentCount("bidInfo"));
+		assertEquals(0, metrics.getInFlightCount("bidInfo"));
+		assertEquals(1, metrics.getTimeoutCount("bidInfo"));
+		assertEquals(1, metrics.getHistogram("bidInfo").getCount());
+		assertTrue(metrics.getHistogram("bidInfo").getMaxMicros() >= TIMEOUT * 1000);
+
+		// No reply, for longer than the timeout
+		assertEquals(1, metrics.getSentCount("transIDs"));
+		assertEquals(1, metrics.getInFlightCount("transIDs"));
+		assertEquals(1, metrics.getTimeoutCount("transIDs"));
+		assertEquals(0, metrics.getHistogram("transIDs").getCount());
+		assertTrue(metrics.format().contains("getQuote"));
+
+		reader.disconnect();
+		server.join(5000);
+		assertNull(server.error);
+
+		metrics.reset();
+		assertTrue(metrics.getTypes().isEmpty());
+	}
+}
@@ -0,0 +1,127 @@
+package agent.test;
+
+import agent.Client;
+import agent.PackageModel;
+import agent.PackageOptimizer;
+import agent.entertainment.EntertainmentTicket;
+import agent.entertainment.EntertainmentType;
+import agent.flight.FlightTicket;
+import agent.hotel.HotelBooking;
+
+import java.util.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PackageOptimizerTest {
+	@Test
+	public void testMatchesExhaustiveSearch() {
+		for (long seed = 0; seed < 10; seed++) {
+			PackageModel model = randomModel(new Random(seed), 4);
+			PackageOptimizer optimizer = new PackageOptimizer(model);
+			int[] options = optimizer.optimize(10000);
+			assertFalse(optimizer.isTimedOut());
+			assertEquals(bestValue(optimizer, new int[4], 0), optimizer.getValue(options), 1e-2);
+		}
+	}
+
+	@Test
+	public void testNeverWorseThanGreedy() {
+		for (long seed = 0; seed < 10; seed++) {
+			PackageModel model = randomModel(new Random(seed), 8);
+			PackageOptimizer optimizer = new PackageOptimizer(model);
+			double greedy = optimizer.getValue(optimizer.greedy());
+			int[] options = optimizer.optimize(5000);
+			assertFalse(optimizer.isTimedOut());
+			assertTrue(optimizer.getValue(options) >= greedy - 1e-3);
+			assertEquals(optimizer.getPackages(options).size(), countPackages(options));
+		}
+	}
+
+	private static double bestValue(PackageOptimizer optimizer, int[] options, int client) {
+		if (client == options.length) {
+			return optimizer.getValue(options);
+		}
+		double best = Double.NEGATIVE_INFINITY;
+		for (int o = PackageModel.NO_OPTION; o < PackageModel.NUM_OPTIONS; o++) {
+			options[client] = o;
+			best = Math.max(best, bestValue(optimizer, options, client + 1));
+		}
+		return best;
+	}
+
+	private static int countPackages(int[] options) {
+		int count = 0;
+		for (int option : options) {
+			if (option != PackageModel.NO_OPTION) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static PackageModel randomModel(Random rnd, int numClients) {
+		Client[] clients = new Client[numClients];
+		for (int i = 0; i < numClients; i++) {
+			int in = 1 + rnd.nextInt(4);
+			int out = in + 1 + rnd.nextInt(5 - in);
+			clients[i] = new RandomClient(in, out, 50 + rnd.nextInt(100), rnd);
+		}
+
+		List<FlightTicket> flights = new ArrayList<FlightTicket>();
+		List<HotelBooking> hotels = new ArrayList<HotelBooking>();
+		List<EntertainmentTicket> tickets = new ArrayList<EntertainmentTicket>();
+		for (int i = 0; i < 4; i++) {
+			flights.add(new FlightTicket(1 + rnd.nextInt(4), true));
+			flights.add(new FlightTicket(2 + rnd.nextInt(4), false));
+			hotels.add(new HotelBooking(1 + rnd.nextInt(4), rnd.nextBoolean()));
+			tickets.add(new EntertainmentTicket(1 + rnd.nextInt(4), EntertainmentType.randomType(rnd)));
+		}
+
+		PackageModel model = new PackageModel(clients, flights, hotels, tickets);
+		for (int day = 1; day <= 5; day++) {
+			if (day > 1) {
+				model.setFlight(day, false, 250 + rnd.nextInt(300), 1f);
+			}
+			if (day < 5) {
+				model.setFlight(day, true, 250 + rnd.nextInt(300), 1f);
+				model.setHotel(day, true, 100 + rnd.nextInt(200), 0.9f, rnd.nextInt(8) == 0);
+				model.setHotel(day, false, 50 + rnd.nextInt(150), 0.95f, rnd.nextInt(8) == 0);
+				for (EntertainmentType type : EntertainmentType.values()) {
+					model.setEntertainment(day, type, 40 + rnd.nextInt(100), 0.8f);
+				}
+			}
+		}
+		return model;
+	}
+}
+
+class RandomClient extends Client {
+	private int in, out, premium;
+	private int[] funPremium = new int[4];
+
+	public RandomClient(int in, int out, int premium, Random rnd) {
+		this.in = in;
+		this.out = out;
+		this.premium = premium;
+		for (int i = 1; i < funPremium.length; i++) {
+			funPremium[i] = rnd.nextInt(200);
+		}
+	}
+
+	public int getPreferredArrivalDay() {
+		return this.in;
+	}
+
+	public int getPreferredDepartureDay() {
+		return this.out;
+	}
+
+	public int getHotelPremium() {
+		return this.premium;
+	}
+
+	public int getEntertainmentPremium(EntertainmentType type) {
+		return funPremium[type.getValue()];
+	}
+}
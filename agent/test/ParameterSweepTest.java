@@ -0,0 +1,75 @@
+package agent.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import agent.StrategyParameters;
+import agent.sweep.ParameterSweep;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ParameterSweepTest {
+
+	@Test
+	public void testParametersRoundTrip() {
+		StrategyParameters defaults = new StrategyParameters();
+		StrategyParameters copy = new StrategyParameters();
+		for (String name : StrategyParameters.NAMES) {
+			copy.set(name, defaults.get(name));
+		}
+		assertEquals(defaults, copy);
+		assertEquals("default", copy.toString());
+
+		StrategyParameters p = new StrategyParameters();
+		p.set("hotelBidProportions", " 1.4, 1.2 ");
+		p.set("flightBidConfidence", "0.9");
+		p.set("entertainmentProfitFactor", "0.3");
+		p.set("entertainmentSellPrice", "80");
+		p.set("travelPenalty", "120");
+		assertEquals("1.4,1.2", p.get("hotelBidProportions"));
+		assertEquals(1.2, p.getHotelBidProportion(5), 0);
+		StrategyParameters q = new StrategyParameters();
+		for (String name : StrategyParameters.NAMES) {
+			q.set(name, p.get(name));
+		}
+		assertEquals(p, q);
+		assertEquals(p.toString(), q.toString());
+		assertFalse(p.equals(defaults));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownParameter() {
+		new StrategyParameters().set("bidProportions", "1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadValue() {
+		new StrategyParameters().set("travelPenalty", "high");
+	}
+
+	@Test
+	public void testProduct() {
+		List<StrategyParameters> sets = ParameterSweep.product(
+			Arrays.asList("travelPenalty=80;120", "entertainmentSellPrice = 90;100;110"));
+		assertEquals(6, sets.size());
+		int i = 0;
+		for (String penalty : new String[] { "80", "120" }) {
+			for (String price : new String[] { "90.0", "100.0", "110.0" }) {
+				StrategyParameters set = sets.get(i++);
+				assertEquals(penalty, set.get("travelPenalty"));
+				assertEquals(price, set.get("entertainmentSellPrice"));
+				// The others keep their defaults
+				assertEquals(new StrategyParameters().get("flightBidConfidence"), set.get("flightBidConfidence"));
+			}
+		}
+
+		List<StrategyParameters> none = ParameterSweep.product(Arrays.<String> asList());
+		assertEquals(Arrays.asList(new StrategyParameters()), none);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testProductWithoutValues() {
+		ParameterSweep.product(Arrays.asList("travelPenalty"));
+	}
+}
@@ -0,0 +1,54 @@
+package agent.test;
+
+import agent.logging.PersistenceService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PersistenceServiceTest {
+
+	@Test
+	public void testWritesInOrderAndReplacesQueuedWrites() throws Exception {
+		PersistenceService service = new PersistenceService(4);
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final List<Integer> order = new ArrayList<Integer>();
+		// Hold the writer until all writes are queued
+		service.execute(new PersistenceService.Task() {
+			public void run() throws IOException {
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				order.add(1);
+			}
+		});
+		File f = File.createTempFile("persistence", ".log");
+		try {
+			service.write(f, new byte[] { 1 });
+			service.write(f, new byte[] { 2 });
+			service.execute(new PersistenceService.Task() {
+				public void run() {
+					order.add(2);
+				}
+			});
+			assertEquals(3, service.getPending());
+			blocked.countDown();
+			service.flush();
+			assertEquals(0, service.getPending());
+			assertArrayEquals(new byte[] { 2 }, Files.readAllBytes(f.toPath()));
+			assertFalse(new File(f.getPath() + ".tmp").exists());
+			assertEquals(2, order.size());
+			assertEquals(1, (int) order.get(0));
+		} finally {
+			f.delete();
+		}
+	}
+}
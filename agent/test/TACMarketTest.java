@@ -0,0 +1,103 @@
+package agent.test;
+
+import se.sics.tac.aw.TACMarket;
+import se.sics.tac.aw.TACMessage;
+import se.sics.tac.aw.TagParser;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TACMarketTest {
+	// Auction IDs of game 1
+	private static final int FIRST_AUCTION_ID = 33;
+
+	private static class TestMarket extends TACMarket {
+		long time = 1000000000L;
+
+		public long getTime() {
+			return time;
+		}
+	}
+
+	private static String request(TACMarket market, TACMarket.Session session, String type, String... params) {
+		TACMessage msg = new TACMessage(type);
+		for (int i = 0; i < params.length; i += 2) {
+			msg.setParameter(params[i], params[i + 1]);
+		}
+		return market.handle(session, msg);
+	}
+
+	private static String value(String reply, String tag) {
+		TagParser parser = new TagParser(reply);
+		while (parser.nextTag()) {
+			if (parser.isTag(tag)) {
+				return parser.getValue();
+			}
+		}
+		return null;
+	}
+
+	private static TACMarket.Session join(TestMarket market) {
+		TACMarket.Session session = market.createSession();
+		request(market, session, "auth", "userName", "agent", "userPW", "");
+		String reply = request(market, session, "nextGame");
+		assertEquals("0", value(reply, "commandStatus"));
+		assertEquals("1", value(reply, "gameID"));
+		market.time = Long.parseLong(value(reply, "startTime")) * 1000;
+		return session;
+	}
+
+	@Test
+	public void testFlightBidTransactsAtAskPrice() {
+		TestMarket market = new TestMarket();
+		TACMarket.Session session = join(market);
+		String auctionID = Integer.toString(FIRST_AUCTION_ID);
+		float ask = Float.parseFloat(value(request(market, session, "getQuote", "auctionID", auctionID),
+				"lastAskPrice"));
+
+		String reply = request(market, session, "submitBid", "auctionID", auctionID, "bidString", "((2 800))");
+		assertEquals("0", value(reply, "rejectReason"));
+		String transID = value(request(market, session, "transIDs", "earliestTransID", "-1"), "transID");
+		assertNotNull(transID);
+		reply = request(market, session, "transInfo", "transID", transID);
+		assertEquals(auctionID, value(reply, "auctionID"));
+		assertEquals("2", value(reply, "quantity"));
+		assertEquals(ask, Float.parseFloat(value(reply, "price")), 0f);
+	}
+
+	@Test
+	public void testOneHotelClosesEachMinute() {
+		TestMarket market = new TestMarket();
+		TACMarket.Session session = join(market);
+		long start = market.time;
+		for (int minute = 0; minute <= 8; minute++) {
+			market.time = start + minute * 60000L;
+			int closed = 0;
+			for (int i = 8; i < 16; i++) {
+				String reply = request(market, session, "getQuote", "auctionID",
+						Integer.toString(FIRST_AUCTION_ID + i));
+				if ("3".equals(value(reply, "auctionStatus"))) {
+					closed++;
+				}
+			}
+			assertEquals(minute, closed);
+		}
+	}
+
+	@Test
+	public void testSeededGamesRepeat() {
+		String[] replies = new String[2];
+		for (int i = 0; i < replies.length; i++) {
+			TestMarket market = new TestMarket();
+			market.setSeed(42L);
+			TACMarket.Session session = join(market);
+			market.time += 300000L;
+			StringBuilder sb = new StringBuilder(request(market, session, "getGameParams", "gameID", "1"));
+			for (int a = 0; a < 28; a++) {
+				sb.append(request(market, session, "getQuote", "auctionID", Integer.toString(FIRST_AUCTION_ID + a)));
+			}
+			replies[i] = sb.toString();
+		}
+		assertEquals(replies[0], replies[1]);
+	}
+}
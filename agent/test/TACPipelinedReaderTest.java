@@ -0,0 +1,241 @@
+package agent.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.sics.tac.aw.TACMessage;
+import se.sics.tac.aw.TACMessageReceiver;
+import se.sics.tac.aw.TACPipelinedReader;
+import se.sics.tac.aw.TACRequest;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TACPipelinedReaderTest {
+
+	private static final int MESSAGES = 3 * TACPipelinedReader.WINDOW_SIZE;
+
+	private static class TestReader extends TACPipelinedReader {
+		void connect(Socket socket) throws IOException {
+			start(socket);
+		}
+	}
+
+	/**
+	 * A server that holds back its replies until the agent stops sending, and then answers every request in order,
+	 * echoing its auction ID.
+	 */
+	private static class StubServer extends Thread {
+		final ServerSocket serverSocket;
+		final int messages;
+		int maxUnanswered;
+		volatile IOException error;
+
+		StubServer(int messages) throws IOException {
+			serverSocket = new ServerSocket(0);
+			this.messages = messages;
+		}
+
+		public void run() {
+			try (Socket socket = serverSocket.accept()) {
+				socket.setSoTimeout(300);
+				InputStream in = socket.getInputStream();
+				OutputStream out = socket.getOutputStream();
+				List<String> unanswered = new ArrayList<String>();
+				StringBuilder request = new StringBuilder();
+				boolean answering = false;
+				int answered = 0;
+				while (answered < messages) {
+					int c;
+					try {
+						c = in.read();
+					} catch (SocketTimeoutException e) {
+						// The agent waits for replies
+						answering = true;
+						c = -2;
+					}
+					if (c == -1) {
+						break;
+					} else if (c == 0) {
+						String r = request.toString();
+						unanswered.add(r.substring(r.indexOf("<auctionID>") + 11, r.indexOf("</auctionID>")));
+						maxUnanswered = Math.max(maxUnanswered, unanswered.size());
+						request.setLength(0);
+					} else if (c > 0) {
+						request.append((char) c);
+					}
+					if (answering) {
+						for (String id : unanswered) {
+							out.write(("<getQuote><auctionID>" + id + "</auctionID></getQuote>\0").getBytes("US-ASCII"));
+						}
+						out.flush();
+						answered += unanswered.size();
+						unanswered.clear();
+					}
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+	}
+
+	/** A server that reads the requests and never answers them. */
+	private static class SilentServer extends Thread {
+		final ServerSocket serverSocket;
+
+		SilentServer() throws IOException {
+			serverSocket = new ServerSocket(0);
+		}
+
+		public void run() {
+			try (Socket socket = serverSocket.accept()) {
+				InputStream in = socket.getInputStream();
+				while (in.read() >= 0) {
+				}
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private static TACMessage getQuote(int auctionID) {
+		TACMessage msg = new TACMessage("getQuote");
+		msg.setParameter("auctionID", auctionID);
+		return msg;
+	}
+
+	@Test
+	public void testRepliesMatchRequestsWithinTheWindow() throws Exception {
+		StubServer server = new StubServer(MESSAGES);
+		server.start();
+		TestReader reader = new TestReader();
+		reader.connect(new Socket("localhost", server.serverSocket.getLocalPort()));
+
+		final CountDownLatch replies = new CountDownLatch(MESSAGES);
+		final AtomicInteger mismatches = new AtomicInteger();
+		final StringBuffer order = new StringBuffer();
+		TACMessageReceiver receiver = new TACMessageReceiver() {
+			public void messageReceived(TACMessage msg) {
+				String reply = null;
+				while (msg.nextTag()) {
+					if (msg.isTag("auctionID")) {
+						reply = msg.getValue();
+					}
+				}
+				if (!msg.getParameter("auctionID").equals(reply)) {
+					mismatches.incrementAndGet();
+				}
+				order.append(reply).append(' ');
+				replies.countDown();
+			}
+		};
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < MESSAGES; i++) {
+			TACMessage msg = new TACMessage("getQuote");
+			msg.setParameter("auctionID", i);
+			reader.sendMessage(msg, receiver);
+			expected.append(i).append(' ');
+		}
+
+		assertTrue(replies.await(10, TimeUnit.SECONDS));
+		reader.disconnect();
+		server.join(5000);
+		assertNull(server.error);
+		assertEquals(0, mismatches.get());
+		assertEquals(expected.toString(), order.toString());
+		assertEquals(TACPipelinedReader.WINDOW_SIZE, server.maxUnanswered);
+		assertEquals(TACPipelinedReader.WINDOW_SIZE, reader.getMaxInFlight());
+		assertTrue(reader.getWindowStalls() > 0);
+	}
+
+	@Test
+	public void testRequestsCompleteWithTheirReplies() throws Exception {
+		StubServer server = new StubServer(2);
+		server.start();
+		TestReader reader = new TestReader();
+		reader.connect(new Socket("localhost", server.serverSocket.getLocalPort()));
+
+		final List<String> replies = new ArrayList<String>();
+		TACMessageReceiver receiver = new TACMessageReceiver() {
+			public void messageReceived(TACMessage msg) {
+				while (msg.nextTag()) {
+					if (msg.isTag("auctionID")) {
+						replies.add(msg.getValue());
+					}
+				}
+			}
+		};
+		final CountDownLatch completed = new CountDownLatch(2);
+		TACRequest.Listener listener = new TACRequest.Listener() {
+			public void requestCompleted(TACRequest request) {
+				completed.countDown();
+			}
+		};
+		TACRequest first = reader.sendRequest(getQuote(7), receiver);
+		TACRequest second = reader.sendRequest(getQuote(8), receiver);
+		first.addListener(listener);
+		second.addListener(listener);
+		assertEquals(first.getID() + 1, second.getID());
+
+		TACMessage reply = second.get(10, TimeUnit.SECONDS);
+		assertSame(second.getMessage(), reply);
+		assertTrue(first.isDone());
+		assertNull(first.getError());
+		assertSame(first.getMessage(), first.get());
+		// The receiver is called before the request completes
+		assertEquals(Arrays.asList("7", "8"), replies);
+		assertTrue(completed.await(5, TimeUnit.SECONDS));
+
+		// Listeners added once done are called at once
+		final CountDownLatch late = new CountDownLatch(1);
+		first.addListener(new TACRequest.Listener() {
+			public void requestCompleted(TACRequest request) {
+				late.countDown();
+			}
+		});
+		assertEquals(0, late.getCount());
+
+		reader.disconnect();
+		server.join(5000);
+		assertNull(server.error);
+	}
+
+	@Test
+	public void testRequestsFailAtDisconnect() throws Exception {
+		SilentServer server = new SilentServer();
+		server.start();
+		TestReader reader = new TestReader();
+		reader.connect(new Socket("localhost", server.serverSocket.getLocalPort()));
+
+		TACRequest request = reader.sendRequest(getQuote(1), null);
+		try {
+			request.get(200, TimeUnit.MILLISECONDS);
+			fail("no reply was sent");
+		} catch (TimeoutException e) {
+		}
+		assertEquals(1, reader.getInFlight());
+
+		reader.disconnect();
+		assertTrue(request.isDone());
+		assertNotNull(request.getError());
+		try {
+			request.get();
+			fail("the request did not fail");
+		} catch (ExecutionException e) {
+			assertSame(request.getError(), e.getCause());
+		}
+		assertEquals(0, reader.getInFlight());
+		server.join(5000);
+	}
+}
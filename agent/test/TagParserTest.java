@@ -0,0 +1,99 @@
+package agent.test;
+
+import se.sics.tac.aw.ByteSequence;
+import se.sics.tac.aw.TagParser;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TagParserTest {
+	private static final String QUOTE =
+		"<?xml version=\"1.0\"?><getQuote><auctionID>12</auctionID>"
+		+ "<lastAskPrice>325.75</lastAskPrice><lastBidPrice>-1.5E2</lastBidPrice>"
+		+ "<hypotheticalQuantityWon>3</hypotheticalQuantityWon>"
+		+ "<nextQuoteTime>1114000060</nextQuoteTime><bad>12x</bad></getQuote>";
+
+	@Test
+	public void testTags() {
+		TagParser parser = new TagParser(QUOTE);
+		assertTrue(parser.nextTag());
+		assertTrue(parser.isDeclaration());
+		assertTrue(parser.nextTag());
+		assertTrue(parser.isTag("getQuote"));
+		assertFalse(parser.isTag("getQuot"));
+		assertEquals("getQuote", parser.getTag());
+		assertTrue(parser.nextTag());
+		assertEquals("auctionID", parser.getTag());
+		assertEquals("12", parser.getValue());
+	}
+
+	@Test
+	public void testValuesMatchJavaParsing() {
+		TagParser parser = new TagParser(QUOTE);
+		while (parser.nextTag()) {
+			String value = parser.getValue();
+			assertEquals(parseInt(value), parser.getValueAsInt(-99));
+			assertEquals(parseLong(value), parser.getValueAsLong(-99L));
+			assertEquals(parseFloat(value), parser.getValueAsFloat(-99f), 0f);
+		}
+	}
+
+	@Test
+	public void testNumberEdgeCases() {
+		String[] values = {
+			"0", "-0", "+7", "2147483647", "2147483648", "-2147483648",
+			"9223372036854775807", "9223372036854775808", "-9223372036854775808",
+			"", "-", ".5", "5.", "1e3", "1.25E-3", "0.1", "123456.789",
+			"1234567890123456789.5", " 4", "NaN", "abc"
+		};
+		for (String value : values) {
+			TagParser parser = new TagParser("<v>" + value + "</v>");
+			assertTrue(parser.nextTag());
+			assertEquals(value, parseInt(value), parser.getValueAsInt(-99));
+			assertEquals(value, parseLong(value), parser.getValueAsLong(-99L));
+			assertEquals(value, parseFloat(value), parser.getValueAsFloat(-99f), 0f);
+		}
+	}
+
+	@Test
+	public void testByteSequence() {
+		ByteBuffer buffer = ByteBuffer.allocate(QUOTE.length());
+		for (int i = 0; i < QUOTE.length(); i++) {
+			buffer.put((byte) QUOTE.charAt(i));
+		}
+		TagParser parser = new TagParser(new ByteSequence(buffer, 0, QUOTE.length()));
+		TagParser expected = new TagParser(QUOTE);
+		while (expected.nextTag()) {
+			assertTrue(parser.nextTag());
+			assertEquals(expected.getTag(), parser.getTag());
+			assertEquals(expected.getValueAsFloat(0f), parser.getValueAsFloat(0f), 0f);
+		}
+		assertFalse(parser.nextTag());
+	}
+
+	private static int parseInt(String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (Exception e) {
+			return -99;
+		}
+	}
+
+	private static long parseLong(String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (Exception e) {
+			return -99L;
+		}
+	}
+
+	private static float parseFloat(String value) {
+		try {
+			return Float.parseFloat(value);
+		} catch (Exception e) {
+			return -99f;
+		}
+	}
+}
@@ -6,7 +6,23 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
 	FlightPriceMonitorTest.class,
-	ClientTest.class
+	ClientTest.class,
+	TagParserTest.class,
+	PackageOptimizerTest.class,
+	HotelAllocationSearchTest.class,
+	TACMarketTest.class,
+	GameLogParserTest.class,
+	HotelHistoryStoreTest.class,
+	PersistenceServiceTest.class,
+	LogAppenderTest.class,
+	AgentLoggerTest.class,
+	LogQueryTest.class,
+	LatencyHistogramTest.class,
+	EntertainmentAssignmentTest.class,
+	TimeDispatcherTest.class,
+	TACPipelinedReaderTest.class,
+	ParameterSweepTest.class,
+	MessageMetricsTest.class
 })
 public class TestSuite {
 
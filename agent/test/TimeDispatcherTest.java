@@ -0,0 +1,58 @@
+package agent.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.sics.tac.aw.Task;
+import se.sics.tac.aw.TimeDispatcher;
+import se.sics.tac.util.Clock;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TimeDispatcherTest {
+
+	// Counts how many of its works overlap
+	private static class SlowTask implements Task {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final CountDownLatch done;
+		final StringBuffer order = new StringBuffer();
+
+		SlowTask(int works) {
+			done = new CountDownLatch(works);
+		}
+
+		public void performWork(long time, Object key, Object value) {
+			int now = running.incrementAndGet();
+			if (now > maxRunning.get()) {
+				maxRunning.set(now);
+			}
+			order.append(value);
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+			}
+			running.decrementAndGet();
+			done.countDown();
+		}
+	}
+
+	@Test
+	public void testWorkOfOneTaskIsNotPerformedConcurrently() throws InterruptedException {
+		TimeDispatcher dispatcher = TimeDispatcher.getDefault();
+		SlowTask a = new SlowTask(5), b = new SlowTask(5);
+		long time = Clock.getDefault().currentTimeMillis() + 50;
+		for (int i = 0; i < 5; i++) {
+			dispatcher.addTask(time + i, "work", i, a);
+			dispatcher.addTask(time + i, "work", i, b);
+		}
+		assertTrue(a.done.await(5, TimeUnit.SECONDS));
+		assertTrue(b.done.await(5, TimeUnit.SECONDS));
+		assertEquals(1, a.maxRunning.get());
+		assertEquals(1, b.maxRunning.get());
+		assertEquals("01234", a.order.toString());
+		assertEquals("01234", b.order.toString());
+	}
+}
@@ -0,0 +1 @@
+java -cp . agent.benchmark.DecisionBenchmark "$@"
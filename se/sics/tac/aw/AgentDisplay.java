@@ -25,6 +25,7 @@
 
 package se.sics.tac.aw;
 import java.awt.BorderLayout;
+import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowEvent;
@@ -43,6 +44,7 @@ public class AgentDisplay implements ActionListener, WindowListener {
   private JTable agentTable;
   private TACAgent agent;
   private JLabel status;
+  private JLabel agentStatus;
   private Timer timer;
   private boolean isVisible = false;
   private boolean isClosing = false;
@@ -58,7 +60,10 @@ public class AgentDisplay implements ActionListener, WindowListener {
     panel.setLayout(new BorderLayout());
     agentTable = new JTable(tableModel);
     panel.add(new JScrollPane(agentTable), BorderLayout.CENTER);
-    panel.add(status = new JLabel(" - "), BorderLayout.SOUTH);
+    JPanel statusPanel = new JPanel(new GridLayout(2, 1));
+    statusPanel.add(status = new JLabel(" - "));
+    statusPanel.add(agentStatus = new JLabel(" "));
+    panel.add(statusPanel, BorderLayout.SOUTH);
     window.getContentPane().add(panel);
     timer = new Timer(1000, this);
   }
@@ -98,6 +103,8 @@ public class AgentDisplay implements ActionListener, WindowListener {
 		       "  Avg. response time: " +
 		       TACMessage.getAverageResponseTime() + " msek" +
 		       "  Time left: " + agent.getGameTimeLeftAsString());
+	String implStatus = agent.getAgentImplStatus();
+	agentStatus.setText(implStatus != null ? implStatus : " ");
       }
     }
   }
@@ -61,12 +61,33 @@ public abstract class AgentImpl {
     return null;
   }
 
+  /**
+   * Returns a line about the state of the agent implementation that is
+   * shown and updated live in the agent display, or <code>null</code>
+   * for none.  Called from the GUI thread.  The default implementation
+   * returns <code>null</code>.
+   */
+  public String getStatus() {
+    return null;
+  }
+
   public void quoteUpdated(Quote quote) {
   }
 
   public void quoteUpdated(int auctionCategory) {
   }
 
+  /**
+   * Called after quoteUpdated(int) with a copy of the quotes for all
+   * auctions.  Agents that recompute their bids from the quotes should
+   * do it here, once per round of quotes, instead of for every quote.
+   *
+   * @param snapshot the quotes when the round of quotes for
+   *	snapshot.getCategory() completed
+   */
+  public void quotesUpdated(QuoteSnapshot snapshot) {
+  }
+
   public abstract void bidUpdated(BidString bid);
   public abstract void bidRejected(BidString bid);
   public abstract void bidError(BidString bid, int error);
@@ -26,6 +26,8 @@
 package se.sics.tac.aw;
 import java.util.StringTokenizer;
 
+import se.sics.tac.util.Clock;
+
 public class BidString {
 
   public final static String EMPTY_BID_STRING = "()";
@@ -116,6 +118,17 @@ public class BidString {
     this.auction = oldBid.auction;
   }
 
+  /**
+   * Creates an unsubmitted bid for the auction from a bid string such
+   * as "((1 250.0)(-2 80.0))", as found in the bid information of the
+   * server.
+   */
+  public static BidString parse(int auction, String bidString) {
+    BidString bid = new BidString(auction);
+    bid.setBidString(bidString);
+    return bid;
+  }
+
   BidString(BidString oldBid, String bidString, String bidHash) {
     this.id = oldBid.id;
     this.auction = oldBid.auction;
@@ -138,7 +151,7 @@ public class BidString {
     if (timeSubmitted > 0) {
       throw new IllegalStateException("BidString already submitted");
     }
-    timeSubmitted = System.currentTimeMillis();
+    timeSubmitted = Clock.getDefault().currentTimeMillis();
   }
 
   void setID(int bidID) {
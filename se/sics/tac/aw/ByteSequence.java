@@ -0,0 +1,66 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * ByteSequence
+ *
+ * Purpose :
+ *   A CharSequence view of a region of a ByteBuffer.  The TAC protocol
+ *   is plain ASCII XML so each byte is one character (bytes outside the
+ *   ASCII range are read as ISO-8859-1).  The view does not copy the
+ *   bytes and is only valid as long as the underlying buffer region is
+ *   left untouched; use toString() to get a copy that can be kept.
+ */
+
+package se.sics.tac.aw;
+import java.nio.ByteBuffer;
+
+public class ByteSequence implements CharSequence {
+
+  private ByteBuffer buffer;
+  private int offset;
+  private int length;
+
+  public ByteSequence() {
+  }
+
+  public ByteSequence(ByteBuffer buffer, int offset, int length) {
+    set(buffer, offset, length);
+  }
+
+  void set(ByteBuffer buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Index: " + index
+					  + ", Size: " + length);
+    }
+    return (char) (buffer.get(offset + index) & 0xff);
+  }
+
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end
+					  + ", length " + length);
+    }
+    return new ByteSequence(buffer, offset + start, end - start);
+  }
+
+  public String toString() {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) (buffer.get(offset + i) & 0xff);
+    }
+    return new String(chars);
+  }
+
+} // ByteSequence
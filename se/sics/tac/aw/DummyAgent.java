@@ -109,6 +109,9 @@
  *  - new information about the quotes on all auctions for the auction
  *    category has arrived (quotes for a specific type of auctions are
  *    often requested at once).
+ * quotesUpdated(QuoteSnapshot snapshot)
+ *  - called after quoteUpdated(int category) with a copy of all quotes;
+ *    agents should recompute their bids here, once per round of quotes.
 
  * auctionClosed(int auction)
  *  - the auction with id "auction" has closed
@@ -0,0 +1,770 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * MarketGame
+ *
+ * Purpose :
+ *   One game of the local TAC market (see TACMarket).  The game holds
+ *   the 28 auctions, the participants with their clients, endowments,
+ *   holdings and transactions, and the bids.
+ *
+ *   The market is modelled on the TAC Classic rules:
+ *   - flights are sold at a posted ask price that follows a random
+ *     walk every 10 seconds, drifting towards a hidden per auction
+ *     constant x in [-10, 30].  Bids at or above the ask price buy at
+ *     the ask price.
+ *   - hotels are ascending auctions of 16 rooms.  The ask price is the
+ *     16th highest unit price and is updated every minute, when one
+ *     randomly chosen hotel also closes.  The 16 highest units win at
+ *     the ask price.  The beat-the-quote withdrawal rule is not
+ *     enforced.
+ *   - entertainment tickets are traded in continuous double auctions
+ *     at the price of the standing order.
+ *
+ *   Places not taken by agents are filled with simple dummy traders
+ *   that buy their clients' flights at the start, raise their hotel
+ *   bids every minute and trade entertainment around fixed prices.
+ *
+ *   The game does not run by itself: advance() processes all events
+ *   up to a given time, and the market calls it before every request.
+ *   Given the same seed, participants and requests at the same game
+ *   times, a game plays out the same way.
+ */
+
+package se.sics.tac.aw;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+public class MarketGame {
+
+  /** Game length in seconds */
+  public final static int GAME_LENGTH = 540;
+  public final static int NO_AUCTIONS = 28;
+  public final static int NO_CLIENTS = 8;
+  public final static int NO_PARTICIPANTS = 8;
+
+  // Auction, bid and transaction IDs are made unique over all games
+  // by including the game ID
+  final static int AUCTION_ID_RANGE = 32;
+  final static int ID_RANGE = 100000;
+
+  private final static int HOTEL_ROOMS = 16;
+  // Seconds between events
+  private final static int TICK = 10;
+  private final static int NO_TICKS = GAME_LENGTH / TICK;
+
+  private final static float FLIGHT_START_MIN = 250f;
+  private final static float FLIGHT_START_MAX = 400f;
+  private final static float FLIGHT_MIN = 150f;
+  private final static float FLIGHT_MAX = 800f;
+
+  private final int gameID;
+  private final long startTime;
+  // The auctions and the participants are drawn from different streams
+  // so that the auctions do not depend on the number of agents
+  private final Random auctionRandom;
+  private final Random participantRandom;
+
+  private final MarketAuction[] auctions = new MarketAuction[NO_AUCTIONS];
+  private final int[] hotelClosingOrder;
+  private final ArrayList<Participant> participants =
+    new ArrayList<Participant>();
+  private final HashMap<Integer,Bid> bids = new HashMap<Integer,Bid>();
+  private int nextBidID;
+  private int nextTransID;
+  private long bidSequence = 0;
+
+  // The next tick to process, in seconds from the start of the game
+  private int nextTick = 0;
+  private boolean ended = false;
+
+  public MarketGame(int gameID, long startTime, long seed) {
+    this.gameID = gameID;
+    this.startTime = startTime;
+    this.auctionRandom = new Random(seed);
+    this.participantRandom = new Random(~seed);
+    this.nextBidID = gameID * ID_RANGE + 1;
+    this.nextTransID = gameID * ID_RANGE + 1;
+
+    for (int i = 0; i < NO_AUCTIONS; i++) {
+      switch (TACAgent.getAuctionCategory(i)) {
+      case TACAgent.CAT_FLIGHT:
+	auctions[i] = new FlightAuction(i);
+	break;
+      case TACAgent.CAT_HOTEL:
+	auctions[i] = new HotelAuction(i);
+	break;
+      default:
+	auctions[i] = new EntertainmentAuction(i);
+	break;
+      }
+    }
+
+    hotelClosingOrder = new int[TACAgent.MAX_HOTEL - TACAgent.MIN_HOTEL + 1];
+    for (int i = 0; i < hotelClosingOrder.length; i++) {
+      hotelClosingOrder[i] = TACAgent.MIN_HOTEL + i;
+    }
+    for (int i = hotelClosingOrder.length - 1; i > 0; i--) {
+      int j = auctionRandom.nextInt(i + 1);
+      int tmp = hotelClosingOrder[i];
+      hotelClosingOrder[i] = hotelClosingOrder[j];
+      hotelClosingOrder[j] = tmp;
+    }
+  }
+
+  public int getGameID() {
+    return gameID;
+  }
+
+  /** Returns the start time in milliseconds */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /** Returns the end time in milliseconds */
+  public long getEndTime() {
+    return startTime + GAME_LENGTH * 1000L;
+  }
+
+  public boolean isEnded() {
+    return ended;
+  }
+
+  public boolean isFull() {
+    return participants.size() >= NO_PARTICIPANTS;
+  }
+
+  /** Adds an agent to the game.  Must be called before the game starts. */
+  public Participant join(int userID) {
+    if (isFull() || nextTick > 0) {
+      throw new IllegalStateException("can not join game " + gameID);
+    }
+    Participant p = new Participant(userID);
+    participants.add(p);
+    return p;
+  }
+
+  public Participant getParticipant(int userID) {
+    for (int i = 0, n = participants.size(); i < n; i++) {
+      Participant p = participants.get(i);
+      if (p.userID == userID) {
+	return p;
+      }
+    }
+    return null;
+  }
+
+  public int getParticipantCount() {
+    return participants.size();
+  }
+
+  public Participant getParticipantAt(int index) {
+    return participants.get(index);
+  }
+
+  public int getAuctionID(int auction) {
+    return gameID * AUCTION_ID_RANGE + auction + 1;
+  }
+
+  /** Returns the auction (0 - 27) with the ID or -1 if not in this game */
+  public int getAuction(int auctionID) {
+    int auction = auctionID - gameID * AUCTION_ID_RANGE - 1;
+    return auction >= 0 && auction < NO_AUCTIONS ? auction : -1;
+  }
+
+  public Bid getBid(int bidID) {
+    return bids.get(bidID);
+  }
+
+  public boolean isClosed(int auction) {
+    return auctions[auction].closed;
+  }
+
+  public float getAskPrice(int auction) {
+    return auctions[auction].askPrice;
+  }
+
+  public float getBidPrice(int auction) {
+    return auctions[auction].bidPrice;
+  }
+
+  /** Returns the time in seconds of the next quote or 0 if continuous */
+  public long getNextQuoteTime(int auction) {
+    MarketAuction a = auctions[auction];
+    if (a.closed || a instanceof EntertainmentAuction) {
+      return 0L;
+    }
+    int period = a instanceof HotelAuction ? 60 : TICK;
+    int next = (nextTick + period - 1) / period * period;
+    return (startTime / 1000) + next;
+  }
+
+  /** Returns the number of units the bid would win if the auction closed now */
+  public int getHypotheticalQuantityWon(Bid bid) {
+    MarketAuction a = auctions[bid.auction];
+    return a instanceof HotelAuction ? ((HotelAuction) a).getHQW(bid) : -1;
+  }
+
+
+  // -------------------------------------------------------------------
+  // Bidding
+  // -------------------------------------------------------------------
+
+  /**
+   * Submits a bid, replacing the active bid of the participant in the
+   * auction (if any).  Returns the new bid, which may be rejected.
+   *
+   * @throws IllegalArgumentException if the bid string is malformed
+   */
+  public Bid submitBid(Participant p, int auction, String bidString,
+		       long time) {
+    Bid bid = new Bid(nextBidID++, p, auction, bidSequence++);
+    bid.parse(bidString);
+    bid.timeProcessed = time / 1000;
+    bids.put(bid.id, bid);
+
+    if (TACAgent.getAuctionCategory(auction) != TACAgent.CAT_ENTERTAINMENT) {
+      for (int i = 0; i < bid.len; i++) {
+	if (bid.quantity[i] < 0) {
+	  bid.rejectReason = BidString.SELL_NOT_ALLOWED;
+	  bid.state = BidString.REJECTED;
+	  return bid;
+	}
+      }
+    }
+
+    Bid oldBid = p.bids[auction];
+    if (oldBid != null) {
+      oldBid.state = BidString.REPLACED;
+      auctions[auction].remove(oldBid);
+    }
+    p.bids[auction] = bid;
+    auctions[auction].submit(bid, time);
+    return bid;
+  }
+
+
+  // -------------------------------------------------------------------
+  // Time
+  // -------------------------------------------------------------------
+
+  /** Processes all events up to the time (in milliseconds) */
+  public void advance(long time) {
+    while (!ended && startTime + nextTick * 1000L <= time) {
+      tick(nextTick, startTime + nextTick * 1000L);
+      nextTick += TICK;
+    }
+  }
+
+  private void tick(int second, long time) {
+    if (second == 0) {
+      while (!isFull()) {
+	participants.add(new Participant(-1));
+      }
+    }
+
+    if (second < GAME_LENGTH && second % 30 == 0) {
+      for (int i = 0, n = participants.size(); i < n; i++) {
+	Participant p = participants.get(i);
+	if (p.isDummy()) {
+	  actAsDummy(p, second, time);
+	}
+      }
+    }
+
+    int minute = second / 60;
+    if (second > 0 && second % 60 == 0 && minute <= hotelClosingOrder.length) {
+      for (int i = TACAgent.MIN_HOTEL; i <= TACAgent.MAX_HOTEL; i++) {
+	if (!auctions[i].closed) {
+	  ((HotelAuction) auctions[i]).updateQuote();
+	}
+      }
+      auctions[hotelClosingOrder[minute - 1]].close(time);
+    }
+
+    if (second > 0 && second < GAME_LENGTH) {
+      for (int i = TACAgent.MIN_FLIGHT; i <= TACAgent.MAX_FLIGHT; i++) {
+	((FlightAuction) auctions[i]).updatePrice(second, time);
+      }
+    }
+
+    if (second >= GAME_LENGTH) {
+      for (int i = 0; i < NO_AUCTIONS; i++) {
+	if (!auctions[i].closed) {
+	  auctions[i].close(time);
+	}
+      }
+      ended = true;
+    }
+  }
+
+  private void actAsDummy(Participant p, int second, long time) {
+    int[] need = new int[NO_AUCTIONS];
+    for (int c = 0; c < NO_CLIENTS; c++) {
+      int[] prefs = p.clients[c];
+      int arrival = prefs[TACAgent.ARRIVAL];
+      int departure = prefs[TACAgent.DEPARTURE];
+      need[TACAgent.getAuctionFor(TACAgent.CAT_FLIGHT,
+				  TACAgent.TYPE_INFLIGHT, arrival)]++;
+      need[TACAgent.getAuctionFor(TACAgent.CAT_FLIGHT,
+				  TACAgent.TYPE_OUTFLIGHT, departure)]++;
+      int hotelType = prefs[TACAgent.HOTEL_VALUE] > 100
+	? TACAgent.TYPE_GOOD_HOTEL : TACAgent.TYPE_CHEAP_HOTEL;
+      for (int day = arrival; day < departure; day++) {
+	need[TACAgent.getAuctionFor(TACAgent.CAT_HOTEL, hotelType, day)]++;
+      }
+    }
+
+    for (int i = 0; i < NO_AUCTIONS; i++) {
+      MarketAuction a = auctions[i];
+      if (a.closed) {
+	continue;
+      }
+      int missing = need[i] - p.owns[i];
+      if (a instanceof FlightAuction) {
+	// Buy all flights at once
+	if (second == 0 && missing > 0) {
+	  submitBid(p, i, "((" + missing + ' ' + FLIGHT_MAX + "))", time);
+	}
+      } else if (a instanceof HotelAuction) {
+	// Raise the bid every minute
+	if (second % 60 == 0 && missing > 0) {
+	  float price = a.askPrice + 10 + participantRandom.nextInt(40);
+	  submitBid(p, i, "((" + missing + ' ' + price + "))", time);
+	}
+      } else if (p.owns[i] > 0) {
+	float price = 60 + participantRandom.nextInt(60);
+	submitBid(p, i, "((" + -p.owns[i] + ' ' + price + "))", time);
+      } else if (participantRandom.nextBoolean()) {
+	float price = 20 + participantRandom.nextInt(40);
+	submitBid(p, i, "((1 " + price + "))", time);
+      }
+    }
+  }
+
+  private void trade(Bid bid, int quantity, float price, long time) {
+    Participant p = bid.owner;
+    Transaction trans = new Transaction(nextTransID++, bid.auction, quantity,
+					price, time / 1000);
+    p.transactions.add(trans);
+    p.owns[bid.auction] += quantity;
+    p.cost += quantity * price;
+    bid.version++;
+  }
+
+
+  // -------------------------------------------------------------------
+  // Participants, bids and transactions
+  // -------------------------------------------------------------------
+
+  public class Participant {
+    /** The user ID of the agent or -1 for a dummy */
+    public final int userID;
+    /** Client preferences, indexed as in TACAgent.getClientPreference */
+    public final int[][] clients = new int[NO_CLIENTS][6];
+    /** Entertainment endowment per auction */
+    public final int[] endowment = new int[NO_AUCTIONS];
+    public final int[] owns = new int[NO_AUCTIONS];
+    private final Bid[] bids = new Bid[NO_AUCTIONS];
+    private final ArrayList<Transaction> transactions =
+      new ArrayList<Transaction>();
+    private float cost = 0f;
+
+    Participant(int userID) {
+      this.userID = userID;
+      Random random = participantRandom;
+      for (int c = 0; c < NO_CLIENTS; c++) {
+	int[] prefs = clients[c];
+	prefs[TACAgent.ARRIVAL] = 1 + random.nextInt(4);
+	prefs[TACAgent.DEPARTURE] = prefs[TACAgent.ARRIVAL] + 1
+	  + random.nextInt(5 - prefs[TACAgent.ARRIVAL]);
+	prefs[TACAgent.HOTEL_VALUE] = 50 + random.nextInt(101);
+	prefs[TACAgent.E1] = random.nextInt(201);
+	prefs[TACAgent.E2] = random.nextInt(201);
+	prefs[TACAgent.E3] = random.nextInt(201);
+      }
+      // Four tickets of each type, on days 1 and 4 or on days 2 and 3
+      for (int type = TACAgent.TYPE_ALLIGATOR_WRESTLING;
+	   type <= TACAgent.TYPE_MUSEUM; type++) {
+	boolean outer = random.nextBoolean();
+	int first = TACAgent.getAuctionFor(TACAgent.CAT_ENTERTAINMENT, type,
+					   outer ? 1 : 2);
+	int second = TACAgent.getAuctionFor(TACAgent.CAT_ENTERTAINMENT, type,
+					    outer ? 4 : 3);
+	endowment[first] += 2;
+	endowment[second] += 2;
+      }
+      System.arraycopy(endowment, 0, owns, 0, NO_AUCTIONS);
+    }
+
+    public boolean isDummy() {
+      return userID < 0;
+    }
+
+    /** Returns the money spent minus the money received */
+    public float getCost() {
+      return cost;
+    }
+
+    public Bid getActiveBid(int auction) {
+      return bids[auction];
+    }
+
+    public int getTransactionCount() {
+      return transactions.size();
+    }
+
+    public Transaction getTransaction(int index) {
+      return transactions.get(index);
+    }
+  }
+
+  public static class Transaction {
+    public final int id;
+    public final int auction;
+    public final int quantity;
+    public final float price;
+    /** Time of the transaction in seconds */
+    public final long time;
+
+    Transaction(int id, int auction, int quantity, float price, long time) {
+      this.id = id;
+      this.auction = auction;
+      this.quantity = quantity;
+      this.price = price;
+      this.time = time;
+    }
+  }
+
+  public static class Bid {
+    public final int id;
+    public final Participant owner;
+    public final int auction;
+    private final long sequence;
+    // The part of the bid that has not transacted
+    private int[] quantity = new int[4];
+    private float[] price = new float[4];
+    private int len = 0;
+    private int version = 0;
+    private int state = BidString.VALID;
+    private int rejectReason = BidString.NOT_REJECTED;
+    private long timeProcessed;
+    private long timeClosed;
+
+    Bid(int id, Participant owner, int auction, long sequence) {
+      this.id = id;
+      this.owner = owner;
+      this.auction = auction;
+      this.sequence = sequence;
+    }
+
+    private void parse(String bidString) {
+      StringTokenizer tok = new StringTokenizer(bidString, "() \t\r\n");
+      while (tok.hasMoreTokens()) {
+	int q = (int) Float.parseFloat(tok.nextToken());
+	if (!tok.hasMoreTokens()) {
+	  throw new IllegalArgumentException("missing price in " + bidString);
+	}
+	float p = Float.parseFloat(tok.nextToken());
+	if (q != 0) {
+	  add(q, p);
+	}
+      }
+    }
+
+    private void add(int q, float p) {
+      if (len == quantity.length) {
+	quantity = Arrays.copyOf(quantity, len * 2);
+	price = Arrays.copyOf(price, len * 2);
+      }
+      quantity[len] = q;
+      price[len++] = p;
+    }
+
+    private void removePoint(int index) {
+      len--;
+      System.arraycopy(quantity, index + 1, quantity, index, len - index);
+      System.arraycopy(price, index + 1, price, index, len - index);
+    }
+
+    public String getBidString() {
+      StringBuffer sb = new StringBuffer();
+      sb.append('(');
+      for (int i = 0; i < len; i++) {
+	sb.append('(').append(quantity[i]).append(' ')
+	  .append(price[i]).append(')');
+      }
+      return sb.append(')').toString();
+    }
+
+    /** Changes whenever a part of the bid transacts */
+    public String getBidHash() {
+      return Integer.toHexString(id) + '.' + version;
+    }
+
+    public int getProcessingState() {
+      return state;
+    }
+
+    public int getRejectReason() {
+      return rejectReason;
+    }
+
+    public long getTimeProcessed() {
+      return timeProcessed;
+    }
+
+    public long getTimeClosed() {
+      return timeClosed;
+    }
+
+    public boolean isActive() {
+      return state == BidString.VALID;
+    }
+  }
+
+
+  // -------------------------------------------------------------------
+  // Auctions
+  // -------------------------------------------------------------------
+
+  private abstract class MarketAuction {
+    final int auction;
+    final ArrayList<Bid> standing = new ArrayList<Bid>();
+    boolean closed = false;
+    float askPrice = 0f;
+    float bidPrice = 0f;
+
+    MarketAuction(int auction) {
+      this.auction = auction;
+    }
+
+    void submit(Bid bid, long time) {
+      standing.add(bid);
+      match(time);
+    }
+
+    void remove(Bid bid) {
+      standing.remove(bid);
+    }
+
+    void match(long time) {
+    }
+
+    void close(long time) {
+      match(time);
+      closed = true;
+      for (int i = 0, n = standing.size(); i < n; i++) {
+	Bid bid = standing.get(i);
+	bid.state = BidString.TRANSACTED;
+	bid.timeClosed = time / 1000;
+      }
+      standing.clear();
+    }
+  }
+
+  private class FlightAuction extends MarketAuction {
+    private final int x;
+
+    FlightAuction(int auction) {
+      super(auction);
+      askPrice = FLIGHT_START_MIN
+	+ auctionRandom.nextFloat() * (FLIGHT_START_MAX - FLIGHT_START_MIN);
+      x = -10 + auctionRandom.nextInt(41);
+    }
+
+    void updatePrice(int second, long time) {
+      double f = 10d + ((double) second / GAME_LENGTH) * (x - 10d);
+      double min = f < 0 ? f : -10d;
+      double max = f > 0 ? f : 10d;
+      float price = askPrice
+	+ (float) (min + (max - min) * auctionRandom.nextDouble());
+      askPrice = Math.max(FLIGHT_MIN, Math.min(FLIGHT_MAX, price));
+      match(time);
+    }
+
+    void match(long time) {
+      for (int b = 0, n = standing.size(); b < n; b++) {
+	Bid bid = standing.get(b);
+	for (int i = bid.len - 1; i >= 0; i--) {
+	  if (bid.price[i] >= askPrice) {
+	    trade(bid, bid.quantity[i], askPrice, time);
+	    bid.removePoint(i);
+	  }
+	}
+      }
+    }
+  }
+
+  private class HotelAuction extends MarketAuction {
+
+    HotelAuction(int auction) {
+      super(auction);
+    }
+
+    void submit(Bid bid, long time) {
+      // Bids only clear when the auction closes
+      standing.add(bid);
+    }
+
+    // Fills the owners and prices of the highest units, ordered by
+    // price and then by time of bid
+    private int rank(Bid[] owners, float[] prices) {
+      int count = 0;
+      Bid[] sorted = standing.toArray(new Bid[standing.size()]);
+      for (int b = 0; b < sorted.length; b++) {
+	Bid bid = sorted[b];
+	for (int i = 0; i < bid.len; i++) {
+	  for (int q = 0; q < bid.quantity[i]; q++) {
+	    // Insert keeping the order, dropping units beyond the rooms
+	    float p = bid.price[i];
+	    int pos = count;
+	    while (pos > 0 && (prices[pos - 1] < p
+			       || (prices[pos - 1] == p
+				   && owners[pos - 1].sequence > bid.sequence))) {
+	      pos--;
+	    }
+	    if (pos < HOTEL_ROOMS) {
+	      int last = Math.min(count, HOTEL_ROOMS - 1);
+	      System.arraycopy(owners, pos, owners, pos + 1, last - pos);
+	      System.arraycopy(prices, pos, prices, pos + 1, last - pos);
+	      owners[pos] = bid;
+	      prices[pos] = p;
+	      if (count < HOTEL_ROOMS) {
+		count++;
+	      }
+	    }
+	  }
+	}
+      }
+      return count;
+    }
+
+    void updateQuote() {
+      Bid[] owners = new Bid[HOTEL_ROOMS];
+      float[] prices = new float[HOTEL_ROOMS];
+      int count = rank(owners, prices);
+      askPrice = count < HOTEL_ROOMS ? 0f : prices[HOTEL_ROOMS - 1];
+    }
+
+    int getHQW(Bid bid) {
+      Bid[] owners = new Bid[HOTEL_ROOMS];
+      float[] prices = new float[HOTEL_ROOMS];
+      int count = rank(owners, prices);
+      int won = 0;
+      for (int i = 0; i < count; i++) {
+	if (owners[i] == bid) {
+	  won++;
+	}
+      }
+      return won;
+    }
+
+    void close(long time) {
+      Bid[] owners = new Bid[HOTEL_ROOMS];
+      float[] prices = new float[HOTEL_ROOMS];
+      int count = rank(owners, prices);
+      askPrice = count < HOTEL_ROOMS ? 0f : prices[HOTEL_ROOMS - 1];
+      for (int i = 0; i < count; i++) {
+	Bid bid = owners[i];
+	if (bid != null) {
+	  int won = 0;
+	  for (int j = i; j < count; j++) {
+	    if (owners[j] == bid) {
+	      owners[j] = null;
+	      won++;
+	    }
+	  }
+	  trade(bid, won, askPrice, time);
+	}
+      }
+      for (int i = 0, n = standing.size(); i < n; i++) {
+	standing.get(i).len = 0;
+      }
+      super.close(time);
+    }
+  }
+
+  private class EntertainmentAuction extends MarketAuction {
+
+    EntertainmentAuction(int auction) {
+      super(auction);
+    }
+
+    void submit(Bid bid, long time) {
+      // Match each point against the standing orders of the others
+      for (int i = 0; i < bid.len; i++) {
+	boolean buy = bid.quantity[i] > 0;
+	while (bid.quantity[i] != 0) {
+	  Bid best = null;
+	  int bestPoint = -1;
+	  for (int b = 0, n = standing.size(); b < n; b++) {
+	    Bid other = standing.get(b);
+	    if (other.owner == bid.owner) {
+	      continue;
+	    }
+	    for (int j = 0; j < other.len; j++) {
+	      if ((other.quantity[j] < 0) == buy
+		  && (buy ? other.price[j] <= bid.price[i]
+		      : other.price[j] >= bid.price[i])
+		  && (best == null
+		      || (buy ? other.price[j] < best.price[bestPoint]
+			  : other.price[j] > best.price[bestPoint]))) {
+		best = other;
+		bestPoint = j;
+	      }
+	    }
+	  }
+	  if (best == null) {
+	    break;
+	  }
+	  int q = Math.min(Math.abs(bid.quantity[i]),
+			   Math.abs(best.quantity[bestPoint]));
+	  float p = best.price[bestPoint];
+	  trade(bid, buy ? q : -q, p, time);
+	  trade(best, buy ? -q : q, p, time);
+	  bid.quantity[i] += buy ? -q : q;
+	  best.quantity[bestPoint] += buy ? q : -q;
+	  if (best.quantity[bestPoint] == 0) {
+	    best.removePoint(bestPoint);
+	  }
+	}
+      }
+      for (int i = bid.len - 1; i >= 0; i--) {
+	if (bid.quantity[i] == 0) {
+	  bid.removePoint(i);
+	}
+      }
+      standing.add(bid);
+      updateQuote();
+    }
+
+    void remove(Bid bid) {
+      super.remove(bid);
+      updateQuote();
+    }
+
+    private void updateQuote() {
+      float ask = Float.MAX_VALUE;
+      float bid = 0f;
+      for (int b = 0, n = standing.size(); b < n; b++) {
+	Bid other = standing.get(b);
+	for (int j = 0; j < other.len; j++) {
+	  if (other.quantity[j] < 0) {
+	    ask = Math.min(ask, other.price[j]);
+	  } else {
+	    bid = Math.max(bid, other.price[j]);
+	  }
+	}
+      }
+      askPrice = ask == Float.MAX_VALUE ? 0f : ask;
+      bidPrice = bid;
+    }
+  }
+
+} // MarketGame
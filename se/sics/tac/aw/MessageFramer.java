@@ -0,0 +1,93 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * MessageFramer
+ *
+ * Purpose :
+ *   Splits the NUL terminated messages of the TAC protocol out of a
+ *   reused ByteBuffer.  Bytes are read straight into the buffer (see
+ *   getBuffer()) and each complete message is handed to the handler as
+ *   a ByteSequence view of the buffer, without copying or decoding.
+ *   Partial messages are moved to the start of the buffer and the
+ *   buffer is grown if a single message does not fit.
+ */
+
+package se.sics.tac.aw;
+import java.nio.ByteBuffer;
+
+public class MessageFramer {
+
+  public interface Handler {
+    /**
+     * Called for each complete message.  The message is only valid
+     * during the call.
+     */
+    public void messageFramed(CharSequence message);
+  }
+
+  private ByteBuffer buffer;
+  // Bytes before this position in the buffer are known to contain no NUL
+  private int scanned = 0;
+  private final ByteSequence view = new ByteSequence();
+
+  public MessageFramer(int capacity) {
+    buffer = ByteBuffer.allocateDirect(capacity);
+  }
+
+  /**
+   * Returns the buffer to read more bytes into.  The buffer is always in
+   * write mode and has room for at least one more byte.
+   */
+  public ByteBuffer getBuffer() {
+    if (!buffer.hasRemaining()) {
+      ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+      buffer.flip();
+      larger.put(buffer);
+      buffer = larger;
+    }
+    return buffer;
+  }
+
+  /** Copies the bytes into the buffer and frames them */
+  public void feed(byte[] data, int offset, int length, Handler handler) {
+    while (length > 0) {
+      ByteBuffer buffer = getBuffer();
+      int n = Math.min(length, buffer.remaining());
+      buffer.put(data, offset, n);
+      offset += n;
+      length -= n;
+      frame(handler);
+    }
+  }
+
+  /**
+   * Delivers all complete messages read into the buffer since the last
+   * call to the handler.
+   */
+  public void frame(Handler handler) {
+    ByteBuffer buffer = this.buffer;
+    int limit = buffer.position();
+    int start = 0;
+    for (int i = scanned; i < limit; i++) {
+      if (buffer.get(i) == 0) {
+	view.set(buffer, start, i - start);
+	handler.messageFramed(view);
+	start = i + 1;
+      }
+    }
+    view.set(null, 0, 0);
+
+    if (start == 0) {
+      scanned = limit;
+    } else {
+      // Move the partial message (if any) to the start of the buffer
+      buffer.flip();
+      buffer.position(start);
+      buffer.compact();
+      scanned = limit - start;
+    }
+  }
+
+} // MessageFramer
@@ -0,0 +1,231 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * MessageMetrics
+ *
+ * Purpose :
+ *   The round trip times of the messages sent to the server, per
+ *   message type (getQuote, submitBid, replaceBid, bidInfo, transIDs,
+ *   transInfo, ...): a LatencyHistogram over the game and one per game
+ *   minute the message was sent in, so that the latency of the bids
+ *   placed just before a hotel auction closes can be told from the
+ *   rest.  Also counts the messages sent, those still awaiting their
+ *   reply, and timeouts: replies that came later than the timeout
+ *   and messages that have awaited their reply for longer.
+ *
+ *   TACMessage marks itself when it is sent and when its reply is
+ *   received.  TACAgent resets the metrics when a game starts and
+ *   writes them to games/<prefix>_GAME_<id>.metrics when it ends.
+ */
+
+package se.sics.tac.aw;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import se.sics.tac.util.Clock;
+import se.sics.tac.util.LatencyHistogram;
+
+public class MessageMetrics {
+
+  /** The number of game minutes with their own histograms */
+  public static final int MINUTES = 9;
+
+  /** Replies taking longer than this many milliseconds are timeouts */
+  public static final long DEFAULT_TIMEOUT = 5000;
+
+  private static final MessageMetrics defaultMetrics = new MessageMetrics();
+
+  public static MessageMetrics getDefault() {
+    return defaultMetrics;
+  }
+
+  private static class TypeMetrics {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    final LatencyHistogram[] minutes = new LatencyHistogram[MINUTES];
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong lateReplies = new AtomicLong();
+
+    TypeMetrics() {
+      for (int i = 0; i < MINUTES; i++) {
+	minutes[i] = new LatencyHistogram();
+      }
+    }
+  }
+
+  private final ConcurrentHashMap<String,TypeMetrics> types =
+    new ConcurrentHashMap<String,TypeMetrics>();
+  // The messages awaiting their reply, with the time they were sent
+  private final ConcurrentHashMap<TACMessage,Long> inFlight =
+    new ConcurrentHashMap<TACMessage,Long>();
+  private volatile long timeoutNanos = DEFAULT_TIMEOUT * 1000000L;
+  // The local time the current game started, or -1 between games
+  private volatile long gameStart = -1L;
+
+  public void setTimeout(long millis) {
+    timeoutNanos = millis * 1000000L;
+  }
+
+  public long getTimeout() {
+    return timeoutNanos / 1000000L;
+  }
+
+  private TypeMetrics getTypeMetrics(String type) {
+    TypeMetrics m = types.get(type);
+    if (m == null) {
+      m = new TypeMetrics();
+      TypeMetrics old = types.putIfAbsent(type, m);
+      if (old != null) {
+	m = old;
+      }
+    }
+    return m;
+  }
+
+  /**
+   * Sets the local time (as given by Clock) the current game started,
+   * or -1 if no game is being played
+   */
+  public void setGameStart(long gameStart) {
+    this.gameStart = gameStart;
+  }
+
+  /** Returns the game minute (0 - 8) now, or -1 between games */
+  private int getGameMinute() {
+    long start = gameStart;
+    if (start < 0) {
+      return -1;
+    }
+    long minute = (Clock.getDefault().currentTimeMillis() - start) / 60000;
+    return minute < 0 ? 0 : (minute >= MINUTES ? MINUTES - 1 : (int) minute);
+  }
+
+  /** Marks a message as sent */
+  void sent(TACMessage msg) {
+    long now = System.nanoTime();
+    msg.sentNanos = now;
+    msg.sentMinute = getGameMinute();
+    getTypeMetrics(msg.getType()).sent.incrementAndGet();
+    inFlight.put(msg, now);
+  }
+
+  /** Records the round trip of a message whose reply has been received */
+  void received(TACMessage msg) {
+    if (inFlight.remove(msg) == null) {
+      // Not sent through the agent or sent before a reset
+      return;
+    }
+    long nanos = System.nanoTime() - msg.sentNanos;
+    TypeMetrics m = getTypeMetrics(msg.getType());
+    m.histogram.record(nanos);
+    if (msg.sentMinute >= 0) {
+      m.minutes[msg.sentMinute].record(nanos);
+    }
+    if (nanos > timeoutNanos) {
+      m.lateReplies.incrementAndGet();
+    }
+  }
+
+  /** Forgets all messages, e.g. at the start of a game */
+  public void reset() {
+    types.clear();
+    inFlight.clear();
+  }
+
+  /** Returns the types of the messages sent, in alphabetical order */
+  public List<String> getTypes() {
+    List<String> list = new ArrayList<String>(types.keySet());
+    Collections.sort(list);
+    return list;
+  }
+
+  /** Returns the round trip times of the replies of the type */
+  public LatencyHistogram getHistogram(String type) {
+    return getTypeMetrics(type).histogram;
+  }
+
+  /**
+   * Returns the round trip times of the replies of the type to the
+   * messages sent in the game minute (0 - 8)
+   */
+  public LatencyHistogram getHistogram(String type, int minute) {
+    return getTypeMetrics(type).minutes[minute];
+  }
+
+  public long getSentCount(String type) {
+    return getTypeMetrics(type).sent.get();
+  }
+
+  /** Returns the number of messages of the type awaiting their reply */
+  public int getInFlightCount(String type) {
+    int count = 0;
+    for (TACMessage msg : inFlight.keySet()) {
+      if (type.equals(msg.getType())) {
+	count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of messages of the type whose reply came later
+   * than the timeout or has still not come after it
+   */
+  public long getTimeoutCount(String type) {
+    long count = getTypeMetrics(type).lateReplies.get();
+    long now = System.nanoTime();
+    for (Map.Entry<TACMessage,Long> e : inFlight.entrySet()) {
+      if (type.equals(e.getKey().getType())
+	  && now - e.getValue() > timeoutNanos) {
+	count++;
+      }
+    }
+    return count;
+  }
+
+  /** Writes a table of the metrics of each message type to the file */
+  public void write(File file) throws IOException {
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    try {
+      out.print(format());
+    } finally {
+      out.close();
+    }
+    if (out.checkError()) {
+      throw new IOException("could not write " + file);
+    }
+  }
+
+  public String format() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%-16s %6s %9s %9s  %s%n", "type", "sent",
+			    "inflight", "timeouts", "round trip"));
+    List<String> list = getTypes();
+    for (String type : list) {
+      sb.append(String.format("%-16s %6d %9d %9d  %s%n", type,
+			      getSentCount(type), getInFlightCount(type),
+			      getTimeoutCount(type), getHistogram(type)));
+    }
+    sb.append(String.format("%nRound trip by game minute sent%n"));
+    for (String type : list) {
+      for (int minute = 0; minute < MINUTES; minute++) {
+	LatencyHistogram h = getHistogram(type, minute);
+	if (h.getCount() > 0) {
+	  sb.append(String.format("%-16s %d  %s%n", type, minute, h));
+	}
+      }
+    }
+    return sb.toString();
+  }
+
+} // MessageMetrics
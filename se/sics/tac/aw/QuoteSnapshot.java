@@ -0,0 +1,93 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * QuoteSnapshot
+ *
+ * Purpose :
+ *   An immutable copy of the quotes for all auctions, taken when all
+ *   quotes requested for an auction category have been answered.
+ *   Agents that recompute their bids from the quotes can do it once
+ *   per snapshot instead of once per quote.  isUpdated() tells which
+ *   auctions received a new quote since the previous snapshot for
+ *   the same category.
+ */
+
+package se.sics.tac.aw;
+
+public class QuoteSnapshot {
+
+  private final int category;
+  private final long serverTime;
+
+  private final float[] askPrice;
+  private final float[] bidPrice;
+  private final int[] hqw;
+  private final int[] status;
+  private final long[] nextQuoteTime;
+  private final boolean[] updated;
+
+  QuoteSnapshot(int category, long serverTime, Quote[] quotes,
+		boolean[] updated) {
+    int n = quotes.length;
+    this.category = category;
+    this.serverTime = serverTime;
+    this.askPrice = new float[n];
+    this.bidPrice = new float[n];
+    this.hqw = new int[n];
+    this.status = new int[n];
+    this.nextQuoteTime = new long[n];
+    this.updated = updated.clone();
+    for (int i = 0; i < n; i++) {
+      Quote quote = quotes[i];
+      askPrice[i] = quote.getAskPrice();
+      bidPrice[i] = quote.getBidPrice();
+      hqw[i] = quote.getHQW();
+      status[i] = quote.getAuctionStatus();
+      nextQuoteTime[i] = quote.getNextQuoteTime();
+    }
+  }
+
+  /** Returns the auction category whose quote round completed */
+  public int getCategory() {
+    return category;
+  }
+
+  public long getServerTime() {
+    return serverTime;
+  }
+
+  public int getAuctionCount() {
+    return askPrice.length;
+  }
+
+  public boolean isUpdated(int auction) {
+    return updated[auction];
+  }
+
+  public float getAskPrice(int auction) {
+    return askPrice[auction];
+  }
+
+  public float getBidPrice(int auction) {
+    return bidPrice[auction];
+  }
+
+  public int getHQW(int auction) {
+    return hqw[auction];
+  }
+
+  public int getAuctionStatus(int auction) {
+    return status[auction];
+  }
+
+  public boolean isAuctionClosed(int auction) {
+    return status[auction] == Quote.AUCTION_CLOSED;
+  }
+
+  public long getNextQuoteTime(int auction) {
+    return nextQuoteTime[auction];
+  }
+
+} // QuoteSnapshot
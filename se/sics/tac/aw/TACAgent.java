@@ -40,6 +40,7 @@ import java.util.logging.Logger;
 import javax.swing.table.AbstractTableModel;
 
 import se.sics.tac.util.ArgEnumerator;
+import se.sics.tac.util.Clock;
 import se.sics.tac.util.LogFormatter;
 
 public class TACAgent implements Task, TACMessageReceiver {
@@ -173,6 +174,27 @@ public class TACAgent implements Task, TACMessageReceiver {
      */
     private final static int INFO_UPDATE_PERIOD = 30000;
 
+    /**
+     * Constants for the quote polling: how often the auctions are checked
+     * for quotes due, how long after a flight or hotel quote changes it is
+     * requested, and how often the entertainment quotes are requested
+     * (backing off while nothing changes for our bids, and more often
+     * before the auctions close at the end of the game when we hold
+     * tickets or bids in them). A check only sends the requests of the
+     * quotes due. Flight and hotel quotes are requested as often as the
+     * server changes them, but right after the change instead of at a
+     * fixed offset from it, and flight quotes no longer once we own all
+     * the tickets allocated and have no bid left. Hotel quotes are
+     * requested until the auctions close since rooms are only owned then
+     * and the hotel agent records every minute's price.
+     */
+    private final static int QUOTE_POLL_PERIOD = 1000;
+    private final static int QUOTE_DELAY = 1000;
+    private final static int ENTERTAINMENT_QUOTE_PERIOD = INFO_UPDATE_PERIOD;
+    private final static int MAX_ENTERTAINMENT_QUOTE_PERIOD = 120000;
+    private final static int CLOSING_PERIOD = 60000;
+    private final static int CLOSING_QUOTE_PERIOD = 10000;
+
     private final static int DEFAULT_GAME_LENGTH = 12 * 60 * 1000;
 
     private final static String[] auctionType = new String[]{
@@ -212,7 +234,9 @@ public class TACAgent implements Task, TACMessageReceiver {
 
     private boolean isNextGameTaskRunning = false;
 
-    private int lastHotelAuction = -1;
+    // The auctions of each category whose quotes have been requested in
+    // the current round and not yet received, a bit per auction
+    private int[] roundQuotes = new int[3];
     private int clearID = 0;
     // Client Preferences
     private int[][] clientPrefs = new int[8][6];
@@ -225,6 +249,11 @@ public class TACAgent implements Task, TACMessageReceiver {
     private float[] costs = new float[NO_AUCTIONS];
 
     private long[] pendingQuotes = new long[NO_AUCTIONS];
+    // The server time each quote is next due to be requested
+    private long[] nextQuoteRequest = new long[NO_AUCTIONS];
+    private long[] entertainmentQuotePeriod = new long[NO_AUCTIONS];
+    // Auctions with new quotes since the last snapshot of their category
+    private boolean[] quotesSinceSnapshot = new boolean[NO_AUCTIONS];
 
     private int[] allocate = new int[NO_AUCTIONS];
 
@@ -322,6 +351,12 @@ public class TACAgent implements Task, TACMessageReceiver {
                     + " played games");
             System.exit(0);
         }
+        int clockSpeed = a.getArgument("-clockSpeed",
+                getInt(config, "clockSpeed", 1));
+        if (clockSpeed > 1) {
+            // Only meaningful if the server shares the clock
+            Clock.setDefault(new Clock(clockSpeed));
+        }
 
         int consoleLevel =
                 a.getArgument("-consoleLogLevel", getInt(config, "consoleLogLevel", 3));
@@ -347,6 +382,9 @@ public class TACAgent implements Task, TACMessageReceiver {
         log.fine("Starting TAC AgentWare version " + VERSION);
         log.fine("Using agent implementation " + agent.getClass().getName());
         log.fine("Using TAC server " + host + " at port " + port);
+        if (clockSpeed > 1) {
+            log.fine("Running the clock at " + clockSpeed + " times real time");
+        }
 
         agent.init(this, a);
 
@@ -415,7 +453,7 @@ public class TACAgent implements Task, TACMessageReceiver {
                 log.warning("could not connect to server " + host + " at port "
                         + port + " (will retry in 5 seconds)");
                 try {
-                    Thread.sleep(5000);
+                    Clock.getDefault().sleep(5000);
                 } catch (Exception e) {
                 }
             }
@@ -431,46 +469,20 @@ public class TACAgent implements Task, TACMessageReceiver {
         TimeDispatcher d = TimeDispatcher.getDefault();
         d.cancelTask("gameStarts", this);
         d.cancelTask("gameEnds", this);
-        d.cancelTask("hotelQuotes", this);
-        d.cancelTask("flightQuotes", this);
         d.cancelTask("quotes", this);
         d.cancelTask("bids", this);
         d.cancelTask("printOwn", this);
     }
 
+    // Called by the TimeDispatcher, which performs the work of a task one
+    // at a time, so the timers never run concurrently with each other
     public void performWork(long time, Object key, Object value) {
         TimeDispatcher td = TimeDispatcher.getDefault();
-        if (key == "hotelQuotes") {
-            // Request all hotel quotes
-            if (value == connection) {
-                td.addTask(time + 60000, key, value, this);
-                TACConnection conn = (TACConnection) value;
-                for (int i = MIN_HOTEL; i <= MAX_HOTEL; i++) {
-                    if (!quotes[i].isAuctionClosed()) {
-                        lastHotelAuction = i;
-                        requestQuote(quotes[i], conn, false);
-                    }
-                }
-            }
-
-        } else if (key == "flightQuotes") {
-            // Request all flight quotes
+        if (key == "quotes") {
             if (value == connection) {
-                td.addTask(time + 10000, key, value, this);
-                TACConnection conn = (TACConnection) value;
-
-                for (int i = MIN_FLIGHT; i <= MAX_FLIGHT; i++) {
-                    if (!quotes[i].isAuctionClosed()) {
-                        requestQuote(quotes[i], conn, false);
-                    }
-                }
-            }
-
-        } else if (key == "quotes") {
-            if (value == connection) {
-                // Request the entertainment quotes only
-                td.addTask(time + INFO_UPDATE_PERIOD, key, value, this);
-                requestQuotes((TACConnection) value, false, false);
+                // Request the quotes that are due
+                td.addTask(time + QUOTE_POLL_PERIOD, key, value, this);
+                requestQuotes((TACConnection) value);
             }
 
         } else if (key == "bids") {
@@ -491,8 +503,6 @@ public class TACAgent implements Task, TACMessageReceiver {
         } else if (key == "gameEnds") {
             gameEnds();
 
-        } else if (key instanceof Quote) {
-            requestQuote((Quote) key, (TACConnection) value, true);
         }
     }
 
@@ -527,7 +537,7 @@ public class TACAgent implements Task, TACMessageReceiver {
     }
 
     public long getServerTime() {
-        return System.currentTimeMillis() - timeDiff;
+        return Clock.getDefault().currentTimeMillis() - timeDiff;
     }
 
     public long getGameTime() {
@@ -553,6 +563,11 @@ public class TACAgent implements Task, TACMessageReceiver {
         return getTimeAsString(getGameTimeLeft());
     }
 
+    // The status line of the agent implementation for the display
+    String getAgentImplStatus() {
+        return agent.getStatus();
+    }
+
     // Returns the time in minutes and seconds
     private String getTimeAsString(long time) {
         long timeInSeconds = time / 1000;
@@ -714,7 +729,7 @@ public class TACAgent implements Task, TACMessageReceiver {
 
     private void clearAll() {
         isGameStarted = false;
-        lastHotelAuction = -1;
+        clearRoundQuotes();
         clearID = 0;
         for (int i = 0, n = clientPrefs.length; i < n; i++) {
             int[] tmp = clientPrefs[i];
@@ -731,6 +746,9 @@ public class TACAgent implements Task, TACMessageReceiver {
             allocate[i] = 0;
             quotes[i].clearAll();
             pendingQuotes[i] = 0L;
+            nextQuoteRequest[i] = 0L;
+            entertainmentQuotePeriod[i] = ENTERTAINMENT_QUOTE_PERIOD;
+            quotesSinceSnapshot[i] = false;
         }
         if (tableModel != null) {
             tableModel.fireTableDataChanged();
@@ -841,7 +859,7 @@ public class TACAgent implements Task, TACMessageReceiver {
 
             if (timeout > 0) {
                 try {
-                    Thread.sleep(timeout);
+                    Clock.getDefault().sleep(timeout);
                 } catch (Exception e) {
                 }
             }
@@ -856,7 +874,7 @@ public class TACAgent implements Task, TACMessageReceiver {
             try {
                 m.setMessageReceiver(this);
                 connection.sendMessage(m);
-                Thread.sleep(timeout);
+                Clock.getDefault().sleep(timeout);
             } catch (Exception e) {
             }
             connection.disconnect();
@@ -947,31 +965,82 @@ public class TACAgent implements Task, TACMessageReceiver {
         sendMessage(msg, this);
     }
 
-    private void requestQuotes(TACConnection conn, boolean flightQuotes,
-                               boolean hotelQuotes) {
-        // This should be changed so that it will only request those quotes
-        // that are old enough...
-        if (flightQuotes) {
-            for (int i = MIN_FLIGHT; i <= MAX_FLIGHT; i++) {
-                if (!quotes[i].isAuctionClosed()) {
-                    requestQuote(quotes[i], conn, false);
-                }
-            }
+    /**
+     * Requests the quotes of the open auctions that are due: the flight
+     * and hotel quotes when the server has changed them, and the
+     * entertainment quotes as often as they have been changing
+     */
+    private void requestQuotes(TACConnection conn) {
+        long serverTime = getServerTime();
+        if (serverTime >= startTime + gameLength) {
+            // The game is over and its auctions are closing
+            return;
         }
-        for (int i = MIN_ENTERTAINMENT; i <= MAX_ENTERTAINMENT; i++) {
-            if (!quotes[i].isAuctionClosed()) {
+        for (int i = 0; i < NO_AUCTIONS; i++) {
+            if (!quotes[i].isAuctionClosed()
+                    && nextQuoteRequest[i] <= serverTime
+                    && !isFinishedWith(i)) {
+                // Not due again until the reply has arrived or timed out
+                nextQuoteRequest[i] = serverTime + QUOTE_TIMEOUT;
                 requestQuote(quotes[i], conn, false);
             }
         }
+    }
+
+    // Whether nothing more is to be bought in the auction: a flight
+    // auction where we own the tickets allocated and have no bid left
+    private boolean isFinishedWith(int auction) {
+        return getAuctionCategory(auction) == CAT_FLIGHT
+                && allocate[auction] > 0 && owns[auction] >= allocate[auction]
+                && !hasLiveBid(auction);
+    }
 
-        if (hotelQuotes) {
-            for (int i = MIN_HOTEL; i <= MAX_HOTEL; i++) {
-                if (!quotes[i].isAuctionClosed()) {
-                    lastHotelAuction = i;
-                    requestQuote(quotes[i], conn, false);
+    // Whether we have a bid in the auction that may still trade
+    private boolean hasLiveBid(int auction) {
+        BidString bid = bids[auction];
+        if (bid != null) {
+            for (int i = 0, n = bid.getNoBidPoints(); i < n; i++) {
+                if (bid.getQuantity(i) != 0) {
+                    return true;
                 }
             }
         }
+        return false;
+    }
+
+    // Returns the server time the quote is next due to be requested
+    private long getNextQuoteRequest(Quote quote, boolean changed,
+                                     long serverTime) {
+        int auction = quote.getAuction();
+        long nextQuoteTime = quote.getNextQuoteTime();
+        if (nextQuoteTime > 0) {
+            // Flight and hotel quotes change at times given by the server
+            return nextQuoteTime + QUOTE_DELAY;
+        }
+        int category = getAuctionCategory(auction);
+        if (category == CAT_FLIGHT) {
+            return serverTime + 10000;
+        } else if (category == CAT_HOTEL) {
+            return serverTime + 60000;
+        }
+
+        // Entertainment quotes may change at any time
+        long period = entertainmentQuotePeriod[auction];
+        if (changed) {
+            period = ENTERTAINMENT_QUOTE_PERIOD;
+        } else if (period < MAX_ENTERTAINMENT_QUOTE_PERIOD) {
+            period = Math.min(2 * period, MAX_ENTERTAINMENT_QUOTE_PERIOD);
+        }
+        entertainmentQuotePeriod[auction] = period;
+
+        long closingTime = startTime + gameLength - CLOSING_PERIOD;
+        long next = serverTime + period;
+        if (next > closingTime
+                && (owns[auction] > 0 || hasLiveBid(auction))) {
+            next = Math.min(next, Math.max(closingTime,
+                    serverTime + CLOSING_QUOTE_PERIOD));
+        }
+        return next;
     }
 
     private void requestQuote(Quote quote, TACConnection conn, boolean force) {
@@ -979,7 +1048,7 @@ public class TACAgent implements Task, TACMessageReceiver {
         int auctionID = auctionIDs[auction];
 
         if (auctionID > 0) {
-            long currentTime = System.currentTimeMillis();
+            long currentTime = Clock.getDefault().currentTimeMillis();
 
 //       log.info("requesting quote for " + auctionID);
 
@@ -998,6 +1067,8 @@ public class TACAgent implements Task, TACMessageReceiver {
 
             } else {
                 pendingQuotes[auction] = currentTime;
+                // Part of the round before the reply can arrive
+                addRoundQuote(auction);
                 try {
                     TACMessage msg = new TACMessage("getQuote");
                     msg.setParameter("auctionID", auctionID);
@@ -1021,6 +1092,7 @@ public class TACAgent implements Task, TACMessageReceiver {
                     log.log(Level.SEVERE, "could not request quote for auction "
                             + auction + " (" + getAuctionTypeAsString(auction) + ')', e);
                     pendingQuotes[auction] = 0L;
+                    clearRoundQuotes();
                     reset(0, conn);
                 }
             }
@@ -1054,7 +1126,7 @@ public class TACAgent implements Task, TACMessageReceiver {
             transActionsNum++;
             TACMessage msg = new TACMessage("transIDs");
             msg.setParameter("earliestTransID", earliestTransID);
-            lastSentTransactionRequest = System.currentTimeMillis();
+            lastSentTransactionRequest = Clock.getDefault().currentTimeMillis();
             sendMessage(msg, this);
         } else {
             if (waitActionsNum == waitActions.length) {
@@ -1064,7 +1136,7 @@ public class TACAgent implements Task, TACMessageReceiver {
             }
             waitActions[waitActionsNum++] = call;
 
-            long currentTime = System.currentTimeMillis();
+            long currentTime = Clock.getDefault().currentTimeMillis();
             if ((currentTime - lastSentTransactionRequest) > 30000) {
                 // Too long time after last sent transaction
                 TACMessage msg = new TACMessage("transIDs");
@@ -1135,6 +1207,7 @@ public class TACAgent implements Task, TACMessageReceiver {
     }
 
     private synchronized void handleGameEnd() {
+        writeMessageMetrics(lastGamePlayed);
         exitGameLog();
         if (exitAfterGames > 0 && gamesPlayed >= exitAfterGames) {
             // We have played the specified number of games
@@ -1148,6 +1221,20 @@ public class TACAgent implements Task, TACMessageReceiver {
         }
     }
 
+    private void writeMessageMetrics(int gameID) {
+        MessageMetrics metrics = MessageMetrics.getDefault();
+        metrics.setGameStart(-1L);
+        File file = new File(childLogPrefix + "_GAME_" + gameID + ".metrics");
+        try {
+            metrics.write(file);
+            log.fine("Message metrics for game " + gameID + " written to "
+                    + file);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "could not write message metrics for game "
+                    + gameID, e);
+        }
+    }
+
     private boolean handleLogin(TACMessage msg) {
         int status = NO_ERROR;
         while (msg.nextTag()) {
@@ -1344,6 +1431,9 @@ public class TACAgent implements Task, TACMessageReceiver {
                             lastGamePlayed = playingGame;
                             gamesPlayed++;
                         }
+                        MessageMetrics metrics = MessageMetrics.getDefault();
+                        metrics.reset();
+                        metrics.setGameStart(startTime + timeDiff);
                         agent.gameStarted();
                     } else if (ival == OP_GAME_ENDS) {
                         agent.gameStopped();
@@ -1363,7 +1453,7 @@ public class TACAgent implements Task, TACMessageReceiver {
                     TimeDispatcher d = TimeDispatcher.getDefault();
                     long currentTime = getServerTime();
                     isGameStarted = true;
-                    d.addTask(currentTime + INFO_UPDATE_PERIOD,
+                    d.addTask(currentTime + QUOTE_POLL_PERIOD,
                             "quotes", connection, this);
                     d.addTask(currentTime + (int) (1.5 * INFO_UPDATE_PERIOD),
                             "bids", connection, this);
@@ -1372,23 +1462,7 @@ public class TACAgent implements Task, TACMessageReceiver {
                                 "printOwn", connection, this);
                     }
 
-                    // Start the hotel quote fetch (one second after update)
-                    long nextHotelTime = startTime + 61000;
-                    if (nextHotelTime < currentTime) {
-                        nextHotelTime += 60000 * ((currentTime - nextHotelTime) / 60000);
-                    }
-                    long nextFlightTime = startTime + 11000;
-                    if (nextFlightTime < currentTime) {
-                        nextFlightTime += 10000 * ((currentTime - nextFlightTime) / 10000);
-                    }
-
-                    TimeDispatcher.getDefault().addTask(nextHotelTime,
-                            "hotelQuotes",
-                            connection, this);
-                    TimeDispatcher.getDefault().addTask(nextFlightTime,
-                            "flightQuotes",
-                            connection, this);
-                    requestQuotes(connection, true, true);
+                    requestQuotes(connection);
                 }
             }
         }
@@ -1418,13 +1492,16 @@ public class TACAgent implements Task, TACMessageReceiver {
         Object obj = msg.getUserData();
         Quote quote;
         int auction;
+        int oldHQW;
         if (obj instanceof Quote) {
             quote = (Quote) obj;
             auction = quote.getAuction();
+            oldHQW = quote.getHQW();
         } else {
             BidString bid = (BidString) obj;
             auction = bid.getAuction();
             quote = quotes[auction];
+            oldHQW = quote.hasHQW(bid) ? quote.getHQW() : -1;
             quote.setHQW(-1);
             quote.setBid(bid);
         }
@@ -1448,6 +1525,13 @@ public class TACAgent implements Task, TACMessageReceiver {
                 quote.setLastQuoteTime(1000 * msg.getValueAsLong(0));
             }
         }
+        // The prices of an auction change with every bid of the other
+        // traders, but only the quantity our bid would win and the status
+        // of the auction change what we do
+        nextQuoteRequest[auction] =
+                getNextQuoteRequest(quote, quote.getHQW() != oldHQW
+                        || quote.getAuctionStatus() != oldAuctionStatus,
+                        getServerTime());
 
         try {
             agent.quoteUpdated(quote);
@@ -1456,9 +1540,12 @@ public class TACAgent implements Task, TACMessageReceiver {
                     "agent could not handle quoteUpdated for " + quote, e);
         }
 
+        quotesSinceSnapshot[auction] = true;
         try {
-            if (isLastAuction(quote)) {
-                agent.quoteUpdated(getAuctionCategory(auction));
+            if (completesRound(quote)) {
+                int category = getAuctionCategory(auction);
+                agent.quoteUpdated(category);
+                agent.quotesUpdated(createQuoteSnapshot(category));
             }
         } catch (Exception e) {
             log.log(Level.SEVERE,
@@ -1473,24 +1560,43 @@ public class TACAgent implements Task, TACMessageReceiver {
         }
     }
 
-    private boolean isLastAuction(Quote quote) {
+    private QuoteSnapshot createQuoteSnapshot(int category) {
+        boolean[] updated = new boolean[NO_AUCTIONS];
+        for (int i = 0; i < NO_AUCTIONS; i++) {
+            if (quotesSinceSnapshot[i] && getAuctionCategory(i) == category) {
+                updated[i] = true;
+                quotesSinceSnapshot[i] = false;
+            }
+        }
+        return new QuoteSnapshot(category, getServerTime(), quotes, updated);
+    }
+
+    // Returns whether the quote is the last one awaited in the round of
+    // quotes of its category
+    private synchronized boolean completesRound(Quote quote) {
         int auction = quote.getAuction();
         int category = getAuctionCategory(auction);
-        long serverTime, quoteTime;
-        if (category == CAT_ENTERTAINMENT) {
-            return auction == MAX_ENTERTAINMENT;
-        } else if (category == CAT_FLIGHT) {
-            return auction == MAX_FLIGHT;
-        } else if (!quote.isAuctionClosed() &&
+        long quoteTime;
+        if (category == CAT_HOTEL && !quote.isAuctionClosed() &&
                 (quoteTime = quote.getNextQuoteTime()) > 0 &&
-                (serverTime = getServerTime()) > quoteTime) {
-            lastHotelAuction = auction;
+                getServerTime() > quoteTime) {
+            // The quote is from before the hotel auctions cleared and is
+            // awaited again at the next check of the quotes due
             log.fine("rerequesting hotel quote for auction " + auction);
-            TimeDispatcher.getDefault()
-                    .addTask(serverTime + 1000, quote, connection, this);
             return false;
-        } else {
-            return auction == lastHotelAuction;
+        }
+        int round = roundQuotes[category];
+        roundQuotes[category] = round & ~(1 << auction);
+        return round == 1 << auction;
+    }
+
+    private synchronized void addRoundQuote(int auction) {
+        roundQuotes[getAuctionCategory(auction)] |= 1 << auction;
+    }
+
+    private synchronized void clearRoundQuotes() {
+        for (int i = 0; i < roundQuotes.length; i++) {
+            roundQuotes[i] = 0;
         }
     }
 
@@ -1682,7 +1788,7 @@ public class TACAgent implements Task, TACMessageReceiver {
                 if (status == GAME_FUTURE) {
                     // Wait a second and retry!
                     try {
-                        Thread.sleep(1000);
+                        Clock.getDefault().sleep(1000);
                     } catch (Exception e) {
                     }
                     log.fine("handleGetAuctions: Game future, retrying");
@@ -1941,7 +2047,7 @@ public class TACAgent implements Task, TACMessageReceiver {
         while (msg.nextTag()) {
             if (msg.isTag("time")) {
                 long serverTime = msg.getValueAsLong(-1) * 1000;
-                long time = System.currentTimeMillis();
+                long time = Clock.getDefault().currentTimeMillis();
                 timeDiff = time - serverTime;
                 log.fine("Setting server time diff to " + (timeDiff / 1000)
                         + " seconds");
@@ -2141,6 +2247,7 @@ public class TACAgent implements Task, TACMessageReceiver {
 //       + "    -gameType <type>          set the game type to play\n"
                         + "    -exitAfterGames <games>   set the number of games to play\n"
                         + "    -connection <className>   set the TAC connection handler\n"
+                        + "    -clockSpeed <speed>       run the clock faster (local market only)\n"
                         + "    -consoleLogLevel <level>  set the console log level\n"
                         + "    -fileLogLevel <level>     set the file log level\n"
                         + "    -logPrefix <prefix>       set the prefix to log files\n"
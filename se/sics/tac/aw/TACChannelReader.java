@@ -0,0 +1,185 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * TACChannelReader
+ *
+ * Purpose :
+ *   A TACConnection using a non-blocking SocketChannel.  The reader
+ *   thread waits on a Selector and reads directly into a reused direct
+ *   buffer where the messages are framed by a MessageFramer.  Replies
+ *   are handed to the TACMessage as a view of the buffer instead of
+ *   being copied into a new String per read and per message, which
+ *   keeps the garbage produced per quote update close to zero.
+ *
+ *   Since the buffer is reused, the received message is only valid
+ *   while it is being delivered.
+ *
+ *   Use it by setting 'connection=se.sics.tac.aw.TACChannelReader'
+ *   in the configuration file.
+ */
+
+package se.sics.tac.aw;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.botbox.util.ArrayQueue;
+
+public class TACChannelReader extends TACConnection
+  implements Runnable, MessageFramer.Handler {
+
+  private static final Logger log =
+    Logger.getLogger(TACChannelReader.class.getName());
+
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  private SocketChannel channel;
+  private Selector readSelector;
+  private Selector writeSelector;
+
+  private final MessageFramer framer = new MessageFramer(BUFFER_SIZE);
+  private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  private ArrayQueue queue = new ArrayQueue();
+  private volatile boolean disconnected = true;
+
+  protected void init() {
+    doConnect();
+  }
+
+  public boolean isConnected() {
+    return !disconnected;
+  }
+
+  public void disconnect() {
+    disconnected = true;
+    if (channel != null) {
+      try {
+	channel.close();
+	readSelector.close();
+	writeSelector.close();
+      } catch (Exception e) {
+	log.log(Level.SEVERE,"could not close connection:", e);
+      } finally {
+	channel = null;
+      }
+    }
+  }
+
+  public synchronized void sendMessage(TACMessage msg) throws IOException {
+    if (disconnected) {
+      throw new IOException("Disconnected from server");
+    }
+
+    String msgStr = msg.getMessageString();
+    ByteBuffer buffer = writeBuffer;
+    int len = msgStr.length();
+    if (len > buffer.capacity()) {
+      buffer = writeBuffer = ByteBuffer.allocateDirect(len * 2);
+    }
+    buffer.clear();
+    for (int i = 0; i < len; i++) {
+      buffer.put((byte) msgStr.charAt(i));
+    }
+    buffer.flip();
+
+    addMessage(msg);
+    while (buffer.hasRemaining()) {
+      if (channel.write(buffer) == 0) {
+	// The socket send buffer is full: wait until it can take more
+	writeSelector.select(1000);
+	writeSelector.selectedKeys().clear();
+      }
+    }
+  }
+
+  public void run() {
+    try {
+      SocketChannel channel = this.channel;
+      Selector selector = this.readSelector;
+      while (!disconnected) {
+	if (selector.select() == 0) {
+	  continue;
+	}
+	selector.selectedKeys().clear();
+
+	int len;
+	while ((len = channel.read(framer.getBuffer())) > 0) {
+	  framer.frame(this);
+	}
+	if (len < 0) {
+	  break;
+	}
+      }
+    } catch (Throwable e) {
+      if (!disconnected) {
+	log.log(Level.SEVERE, "could not read:", e);
+      }
+    } finally {
+      agent.reset(0, this);
+    }
+  }
+
+  // Synchronized to ensure that no one else sends a message before
+  // authentication of this connection!
+  private synchronized void doConnect() {
+    try {
+      String host = agent.getHost();
+      int port = agent.getPort();
+      log.fine("Connecting to server " + host + ':' + port);
+      channel = SocketChannel.open(new InetSocketAddress(host, port));
+      channel.socket().setTcpNoDelay(true);
+      channel.configureBlocking(false);
+      readSelector = Selector.open();
+      writeSelector = Selector.open();
+      channel.register(readSelector, SelectionKey.OP_READ);
+      channel.register(writeSelector, SelectionKey.OP_WRITE);
+      disconnected = false;
+      new Thread(this, "tac-reader").start();
+
+      // Automatically login! -> give an auth to the agent...
+      TACMessage msg = new TACMessage("auth");
+      msg.setParameter("userName", agent.getUser());
+      msg.setParameter("userPW", agent.getPassword());
+      msg.setMessageReceiver(agent);
+      sendMessage(msg);
+
+    } catch (Exception e) {
+      disconnected = true;
+      log.log(Level.SEVERE, "connection to server failed:", e);
+      channel = null;
+    }
+  }
+
+  private synchronized void addMessage(TACMessage msg) {
+    queue.add(msg);
+  }
+
+  private synchronized TACMessage getMessage() {
+    if (queue.isEmpty()) {
+      return null;
+    }
+    return (TACMessage) queue.remove(0);
+  }
+
+  public void messageFramed(CharSequence msg) {
+    TACMessage tacMsg = getMessage();
+    if (tacMsg == null) {
+      ///??? ILLEGAL STATE!!!
+      throw new IllegalStateException("received unexpected message: "
+				      + msg);
+    }
+    if (!disconnected) {
+      tacMsg.setReceivedMessage(msg);
+      tacMsg.deliverMessage();
+      tacMsg.releaseReceivedMessage();
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * TACLocalConnection
+ *
+ * Purpose :
+ *   A TACConnection to a local market in the same virtual machine
+ *   instead of a TAC server (see TACMarket).  The agent can then play
+ *   complete games without a network or a server, against dummy
+ *   traders and any other agents connected to the same market.
+ *
+ *   The requests are handled in order by a separate thread, as the
+ *   replies of a real server arrive on the reader thread: the agent
+ *   expects a message to be sent before its reply is delivered.
+ *
+ *   Use it by setting 'connection=se.sics.tac.aw.TACLocalConnection'
+ *   in the configuration file.  The host and port select the market,
+ *   so agents with the same host and port play in the same games.
+ */
+
+package se.sics.tac.aw;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.botbox.util.ArrayQueue;
+
+public class TACLocalConnection extends TACConnection implements Runnable {
+
+  private static final Logger log =
+    Logger.getLogger(TACLocalConnection.class.getName());
+
+  private TACMarket market;
+  private TACMarket.Session session;
+
+  private final ArrayQueue queue = new ArrayQueue();
+  private volatile boolean disconnected = true;
+
+  protected void init() {
+    market = TACMarket.getMarket(agent.getHost(), agent.getPort());
+    session = market.createSession();
+    disconnected = false;
+    new Thread(this, "tac-local").start();
+
+    try {
+      // Automatically login!
+      TACMessage msg = new TACMessage("auth");
+      msg.setParameter("userName", agent.getUser());
+      msg.setParameter("userPW", agent.getPassword());
+      msg.setMessageReceiver(agent);
+      sendMessage(msg);
+    } catch (IOException e) {
+      log.log(Level.SEVERE, "connection to local market failed:", e);
+      disconnected = true;
+    }
+  }
+
+  public TACMarket getMarket() {
+    return market;
+  }
+
+  public boolean isConnected() {
+    return !disconnected;
+  }
+
+  public void disconnect() {
+    disconnected = true;
+    synchronized (queue) {
+      queue.clear();
+      queue.notifyAll();
+    }
+  }
+
+  public void sendMessage(TACMessage msg) throws IOException {
+    if (disconnected) {
+      throw new IOException("Disconnected from market");
+    }
+    // Timestamps the message for the response time
+    msg.getMessageString();
+    synchronized (queue) {
+      queue.add(msg);
+      queue.notifyAll();
+    }
+  }
+
+  public void run() {
+    try {
+      while (!disconnected) {
+	TACMessage msg;
+	synchronized (queue) {
+	  while (!disconnected && queue.isEmpty()) {
+	    queue.wait();
+	  }
+	  if (disconnected) {
+	    break;
+	  }
+	  msg = (TACMessage) queue.remove(0);
+	}
+	msg.setReceivedMessage(market.handle(session, msg));
+	msg.deliverMessage();
+      }
+    } catch (Throwable e) {
+      if (!disconnected) {
+	log.log(Level.SEVERE, "could not handle message:", e);
+      }
+    } finally {
+      agent.reset(0, this);
+    }
+  }
+
+} // TACLocalConnection
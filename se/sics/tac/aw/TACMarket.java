@@ -0,0 +1,437 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * TACMarket
+ *
+ * Purpose :
+ *   A local stand-in for the TAC server.  The market answers the
+ *   requests of the agentware (auth, nextGame, getQuote, submitBid,
+ *   bidInfo, transIDs, ...) with the same replies as the TAC server,
+ *   and runs the games itself (see MarketGame).
+ *
+ *   There is one market per host and port, shared by all agents in
+ *   the same virtual machine, so several agents can compete in the
+ *   same games.  Each agent asking for a game joins the next game that
+ *   has not yet started and the places left when a game starts are
+ *   taken by dummy traders.
+ *
+ *   The games are seeded from the market seed and the game ID.  The
+ *   seed, the delay before a new game starts and the number of agents
+ *   per game are taken from the system properties 'tac.market.seed',
+ *   'tac.market.gameDelay' (seconds) and 'tac.market.agentsPerGame'.
+ */
+
+package se.sics.tac.aw;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import se.sics.tac.util.Clock;
+
+public class TACMarket {
+
+  private static final Logger log =
+    Logger.getLogger(TACMarket.class.getName());
+
+  // Command status codes as sent by the TAC server
+  private final static int NO_ERROR = 0;
+  private final static int GAME_FUTURE = 9;
+  private final static int GAME_COMPLETE = 10;
+  private final static int AUCTION_CLOSED = 12;
+  private final static int BID_NOT_FOUND = 13;
+  private final static int BAD_BIDSTRING_FORMAT = 16;
+  private final static int NOT_SUPPORTED = 17;
+  private final static int NOT_AUTHORIZED = 23;
+
+  // The number of ended games kept for late requests
+  private final static int MAX_GAMES = 16;
+
+  private static final HashMap<String,TACMarket> markets =
+    new HashMap<String,TACMarket>();
+
+  /** Returns the market for the host and port, creating it if needed */
+  public static synchronized TACMarket getMarket(String host, int port) {
+    String key = host + ':' + port;
+    TACMarket market = markets.get(key);
+    if (market == null) {
+      market = new TACMarket();
+      markets.put(key, market);
+      log.fine("Created local market " + key + " with seed "
+	       + market.getSeed());
+    }
+    return market;
+  }
+
+  private long seed = Long.getLong("tac.market.seed", 0L).longValue();
+  private int gameDelay =
+    Integer.getInteger("tac.market.gameDelay", 5).intValue();
+  private int agentsPerGame =
+    Integer.getInteger("tac.market.agentsPerGame",
+		       MarketGame.NO_PARTICIPANTS).intValue();
+
+  private final HashMap<String,Integer> users = new HashMap<String,Integer>();
+  private final Map<Integer,MarketGame> games =
+    new LinkedHashMap<Integer,MarketGame>() {
+      protected boolean removeEldestEntry(Map.Entry<Integer,MarketGame> e) {
+	return size() > MAX_GAMES && e.getValue().isEnded();
+      }
+    };
+  // The latest game of each user
+  private final HashMap<Integer,MarketGame> userGames =
+    new HashMap<Integer,MarketGame>();
+  private MarketGame pendingGame;
+  private int nextGameID = 1;
+
+  public synchronized long getSeed() {
+    return seed;
+  }
+
+  public synchronized void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /** Sets the number of seconds between a game request and the game start */
+  public synchronized void setGameDelay(int gameDelay) {
+    this.gameDelay = gameDelay;
+  }
+
+  /** Sets the maximal number of agents in a game (the rest are dummies) */
+  public synchronized void setAgentsPerGame(int agentsPerGame) {
+    if (agentsPerGame < 1 || agentsPerGame > MarketGame.NO_PARTICIPANTS) {
+      throw new IllegalArgumentException("agents per game must be 1 - "
+					 + MarketGame.NO_PARTICIPANTS);
+    }
+    this.agentsPerGame = agentsPerGame;
+  }
+
+  /** Returns the market time in milliseconds */
+  public long getTime() {
+    return Clock.getDefault().currentTimeMillis();
+  }
+
+  public synchronized MarketGame getGame(int gameID) {
+    return games.get(gameID);
+  }
+
+  public Session createSession() {
+    return new Session();
+  }
+
+
+  // -------------------------------------------------------------------
+  // Requests
+  // -------------------------------------------------------------------
+
+  /** Handles a request and returns the reply as the TAC server would */
+  public synchronized String handle(Session session, TACMessage msg) {
+    long now = getTime();
+    String type = msg.getType();
+    StringBuffer sb = new StringBuffer();
+    sb.append('<').append(type).append('>');
+    int status = NO_ERROR;
+    if ("auth".equals(type)) {
+      status = auth(session, msg, sb);
+    } else if (session.userID < 0) {
+      status = NOT_AUTHORIZED;
+    } else {
+      MarketGame game = userGames.get(session.userID);
+      if (game != null) {
+	game.advance(now);
+      }
+      if ("serverTime".equals(type)) {
+	tag(sb, "time", now / 1000);
+      } else if ("nextGame".equals(type)) {
+	status = nextGame(session, now, sb);
+      } else if ("getGameAuctionIDs".equals(type)) {
+	status = getGameAuctionIDs(session, msg, now, sb);
+      } else if ("getGameConsts".equals(type)) {
+	tag(sb, "gameLength", MarketGame.GAME_LENGTH);
+	tag(sb, "gameType", "tacClassic");
+      } else if ("getGameParams".equals(type)) {
+	status = getGameParams(session, msg, sb);
+      } else if ("submitBid".equals(type) || "replaceBid".equals(type)) {
+	status = submitBid(session, msg, now, sb);
+      } else if ("bidInfo".equals(type)) {
+	status = bidInfo(session, msg, sb);
+      } else if ("getQuote".equals(type)) {
+	status = getQuote(session, msg, sb);
+      } else if ("transIDs".equals(type)) {
+	status = transIDs(session, msg, sb);
+      } else if ("transInfo".equals(type)) {
+	status = transInfo(session, msg, sb);
+      } else if ("recoverBidIDs".equals(type)) {
+	status = recoverBidIDs(session, sb);
+      } else if ("quit".equals(type)) {
+	session.userID = -1;
+      } else {
+	status = NOT_SUPPORTED;
+      }
+    }
+    tag(sb, "commandStatus", status);
+    return sb.append("</").append(type).append('>').toString();
+  }
+
+  private int auth(Session session, TACMessage msg, StringBuffer sb) {
+    String userName = msg.getParameter("userName");
+    if (userName == null) {
+      return NOT_AUTHORIZED;
+    }
+    Integer userID = users.get(userName);
+    if (userID == null) {
+      userID = users.size() + 1;
+      users.put(userName, userID);
+    }
+    session.userID = userID.intValue();
+    tag(sb, "userID", session.userID);
+    return NO_ERROR;
+  }
+
+  private int nextGame(Session session, long now, StringBuffer sb) {
+    MarketGame game = userGames.get(session.userID);
+    if (game == null || game.isEnded()) {
+      if (pendingGame == null || pendingGame.getStartTime() <= now
+	  || pendingGame.getParticipantCount() >= agentsPerGame) {
+	// Start at a whole second since start times are sent in seconds
+	long startTime = (now / 1000 + gameDelay) * 1000;
+	int gameID = nextGameID++;
+	pendingGame = new MarketGame(gameID, startTime, seed + gameID);
+	games.put(gameID, pendingGame);
+	log.fine("Created game " + gameID + " starting at " + startTime);
+      }
+      game = pendingGame;
+      game.join(session.userID);
+      userGames.put(session.userID, game);
+    }
+    tag(sb, "gameID", game.getGameID());
+    tag(sb, "startTime", game.getStartTime() / 1000);
+    return NO_ERROR;
+  }
+
+  private int getGameAuctionIDs(Session session, TACMessage msg, long now,
+				StringBuffer sb) {
+    MarketGame game = getUserGame(session, msg);
+    if (game == null) {
+      return GAME_COMPLETE;
+    } else if (game.getStartTime() > now) {
+      return GAME_FUTURE;
+    }
+    sb.append("<auctionIDs><list>");
+    for (int i = 0; i < MarketGame.NO_AUCTIONS; i++) {
+      int category = TACAgent.getAuctionCategory(i);
+      sb.append("<TACAuctionTuple>");
+      tag(sb, "type", TACAgent.getAuctionType(i));
+      tag(sb, "day", TACAgent.getAuctionDay(i));
+      tag(sb, "category", category == TACAgent.CAT_FLIGHT ? "flight"
+	  : (category == TACAgent.CAT_HOTEL ? "hotel" : "entertainment"));
+      tag(sb, "ID", game.getAuctionID(i));
+      sb.append("</TACAuctionTuple>");
+    }
+    sb.append("</list></auctionIDs>");
+    return NO_ERROR;
+  }
+
+  private int getGameParams(Session session, TACMessage msg,
+			    StringBuffer sb) {
+    MarketGame game = getUserGame(session, msg);
+    MarketGame.Participant p =
+      game == null ? null : game.getParticipant(session.userID);
+    if (p == null) {
+      return GAME_COMPLETE;
+    }
+    sb.append("<clientPreferences><list>");
+    for (int c = 0; c < MarketGame.NO_CLIENTS; c++) {
+      int[] prefs = p.clients[c];
+      sb.append("<clientPrefTuple>");
+      tag(sb, "client", c + 1);
+      tag(sb, "arrival", prefs[TACAgent.ARRIVAL]);
+      tag(sb, "departure", prefs[TACAgent.DEPARTURE]);
+      tag(sb, "hotel", prefs[TACAgent.HOTEL_VALUE]);
+      sb.append("<ticketPreferences><list>");
+      for (int type = TACAgent.TYPE_ALLIGATOR_WRESTLING;
+	   type <= TACAgent.TYPE_MUSEUM; type++) {
+	sb.append("<typePriceTuple>");
+	tag(sb, "type", type);
+	tag(sb, "price", prefs[TACAgent.E1 + type - 1]);
+	sb.append("</typePriceTuple>");
+      }
+      sb.append("</list></ticketPreferences></clientPrefTuple>");
+    }
+    sb.append("</list></clientPreferences><ticketEndowments><list>");
+    for (int i = TACAgent.MIN_ENTERTAINMENT; i <= TACAgent.MAX_ENTERTAINMENT;
+	 i++) {
+      if (p.endowment[i] > 0) {
+	sb.append("<ticketEndowmentTuple>");
+	tag(sb, "day", TACAgent.getAuctionDay(i));
+	tag(sb, "type", TACAgent.getAuctionType(i));
+	tag(sb, "quantity", p.endowment[i]);
+	sb.append("</ticketEndowmentTuple>");
+      }
+    }
+    sb.append("</list></ticketEndowments>");
+    return NO_ERROR;
+  }
+
+  private int submitBid(Session session, TACMessage msg, long now,
+			StringBuffer sb) {
+    int auctionID = parseInt(msg.getParameter("auctionID"));
+    MarketGame game = userGames.get(session.userID);
+    int auction = game == null ? -1 : game.getAuction(auctionID);
+    MarketGame.Participant p =
+      auction < 0 ? null : game.getParticipant(session.userID);
+    if (p == null) {
+      return NOT_AUTHORIZED;
+    } else if (game.isClosed(auction)) {
+      return AUCTION_CLOSED;
+    }
+    // The bid hash of a replaced bid is not checked: the new bid
+    // always replaces the active bid
+    MarketGame.Bid bid;
+    try {
+      bid = game.submitBid(p, auction, msg.getParameter("bidString"), now);
+    } catch (RuntimeException e) {
+      return BAD_BIDSTRING_FORMAT;
+    }
+    tag(sb, "bidID", bid.id);
+    tag(sb, "bidHash", bid.getBidHash());
+    tag(sb, "rejectReason", bid.getRejectReason());
+    return NO_ERROR;
+  }
+
+  private int bidInfo(Session session, TACMessage msg, StringBuffer sb) {
+    MarketGame.Bid bid = getBid(session, parseInt(msg.getParameter("bidID")));
+    if (bid == null) {
+      return BID_NOT_FOUND;
+    }
+    tag(sb, "bidString", bid.getBidString());
+    tag(sb, "bidHash", bid.getBidHash());
+    tag(sb, "rejectReason", bid.getRejectReason());
+    tag(sb, "processingState", bid.getProcessingState());
+    tag(sb, "timeClosed", bid.getTimeClosed());
+    tag(sb, "timeProcessed", bid.getTimeProcessed());
+    return NO_ERROR;
+  }
+
+  private int getQuote(Session session, TACMessage msg, StringBuffer sb) {
+    int auctionID = parseInt(msg.getParameter("auctionID"));
+    MarketGame game = userGames.get(session.userID);
+    int auction = game == null ? -1 : game.getAuction(auctionID);
+    if (auction < 0) {
+      return GAME_COMPLETE;
+    }
+    tag(sb, "lastAskPrice", game.getAskPrice(auction));
+    tag(sb, "lastBidPrice", game.getBidPrice(auction));
+    String bidID = msg.getParameter("bidID");
+    if (bidID != null) {
+      MarketGame.Bid bid = getBid(session, parseInt(bidID));
+      if (bid != null && bid.auction == auction) {
+	tag(sb, "hypotheticalQuantityWon",
+	    game.getHypotheticalQuantityWon(bid));
+      }
+    }
+    tag(sb, "auctionStatus", game.isClosed(auction) ? 3 : 1);
+    tag(sb, "nextQuoteTime", game.getNextQuoteTime(auction));
+    return NO_ERROR;
+  }
+
+  private int transIDs(Session session, TACMessage msg, StringBuffer sb) {
+    MarketGame game = userGames.get(session.userID);
+    MarketGame.Participant p =
+      game == null ? null : game.getParticipant(session.userID);
+    if (p == null) {
+      return GAME_COMPLETE;
+    }
+    int earliest = parseInt(msg.getParameter("earliestTransID"));
+    sb.append("<list>");
+    for (int i = 0, n = p.getTransactionCount(); i < n; i++) {
+      MarketGame.Transaction trans = p.getTransaction(i);
+      if (trans.id > earliest) {
+	tag(sb, "transID", trans.id);
+      }
+    }
+    sb.append("</list>");
+    return NO_ERROR;
+  }
+
+  private int transInfo(Session session, TACMessage msg, StringBuffer sb) {
+    MarketGame game = userGames.get(session.userID);
+    MarketGame.Participant p =
+      game == null ? null : game.getParticipant(session.userID);
+    int transID = parseInt(msg.getParameter("transID"));
+    for (int i = 0, n = p == null ? 0 : p.getTransactionCount(); i < n; i++) {
+      MarketGame.Transaction trans = p.getTransaction(i);
+      if (trans.id == transID) {
+	tag(sb, "transID", trans.id);
+	tag(sb, "auctionID", game.getAuctionID(trans.auction));
+	tag(sb, "quantity", trans.quantity);
+	tag(sb, "price", trans.price);
+	return NO_ERROR;
+      }
+    }
+    return NOT_SUPPORTED;
+  }
+
+  private int recoverBidIDs(Session session, StringBuffer sb) {
+    MarketGame game = userGames.get(session.userID);
+    MarketGame.Participant p =
+      game == null ? null : game.getParticipant(session.userID);
+    sb.append("<list>");
+    for (int i = 0; p != null && i < MarketGame.NO_AUCTIONS; i++) {
+      MarketGame.Bid bid = p.getActiveBid(i);
+      if (bid != null && bid.isActive()) {
+	sb.append("<auctionBidIDsTuple>");
+	tag(sb, "auctionID", game.getAuctionID(i));
+	tag(sb, "bidID", bid.id);
+	sb.append("</auctionBidIDsTuple>");
+      }
+    }
+    sb.append("</list>");
+    return NO_ERROR;
+  }
+
+  private MarketGame getUserGame(Session session, TACMessage msg) {
+    MarketGame game = userGames.get(session.userID);
+    String gameID = msg.getParameter("gameID");
+    if (game == null
+	|| (gameID != null && parseInt(gameID) != game.getGameID())) {
+      return null;
+    }
+    return game;
+  }
+
+  private MarketGame.Bid getBid(Session session, int bidID) {
+    MarketGame game = games.get(bidID / MarketGame.ID_RANGE);
+    MarketGame.Bid bid = game == null ? null : game.getBid(bidID);
+    return bid != null && bid.owner.userID == session.userID ? bid : null;
+  }
+
+  private static int parseInt(String value) {
+    try {
+      return value == null ? -1 : Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void tag(StringBuffer sb, String name, Object value) {
+    sb.append('<').append(name).append('>').append(value)
+      .append("</").append(name).append('>');
+  }
+
+
+  // -------------------------------------------------------------------
+  // Session
+  // -------------------------------------------------------------------
+
+  /** The state of one connection to the market */
+  public static class Session {
+    private int userID = -1;
+
+    public int getUserID() {
+      return userID;
+    }
+  }
+
+} // TACMarket
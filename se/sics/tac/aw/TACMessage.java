@@ -41,8 +41,13 @@ public class TACMessage {
 
   private String sentMessage;
   private long timeSent;
-  private String receivedMessage;
-  private int pos = 0;
+  // Set by MessageMetrics when the message is sent
+  long sentNanos;
+  int sentMinute = -1;
+  // Only valid during delivery when the connection reuses its buffers
+  private CharSequence receivedMessage;
+  private boolean isReceived = false;
+  private final TagParser parser = new TagParser();
   private long responseTime;
   private boolean isTACError = false;
 
@@ -93,17 +98,20 @@ public class TACMessage {
     return responseTime;
   }
 
-  void setReceivedMessage(String receivedMessage) {
-    if (this.receivedMessage != null) {
+  void setReceivedMessage(CharSequence receivedMessage) {
+    if (isReceived) {
       throw new IllegalStateException("Message alredy received: " +
 				      this.receivedMessage);
     }
+    isReceived = true;
     if (timeSent > 0) {
       responseTime = System.currentTimeMillis() - timeSent;
     }
     this.receivedMessage = receivedMessage;
+    parser.reset(receivedMessage);
     totalResponseTime += responseTime;
     msgCount++;
+    MessageMetrics.getDefault().received(this);
 
     // Check if extra information should be displayed
     if ("getQuote".equals(type)) {
@@ -128,16 +136,17 @@ public class TACMessage {
       }
     }
 
-    log.finest("XML out: '" + sentMessage + '\'');
-    log.finest("XML in: '" + receivedMessage + "' responseTime: " +
-	       getResponseTime() + " avg: " +
-	       getAverageResponseTime() + " count: " +
-	       getMessageCount());
+    if (log.isLoggable(Level.FINEST)) {
+      log.finest("XML out: '" + sentMessage + '\'');
+      log.finest("XML in: '" + receivedMessage + "' responseTime: " +
+		 getResponseTime() + " avg: " +
+		 getAverageResponseTime() + " count: " +
+		 getMessageCount());
+    }
 
-    pos = 0;
     if (nextTag() && (!isDeclaration() || nextTag())) {
       if (isTag(type)) {
-	pos = 0;
+	parser.rewind();
       } else if (isTag("tacerror")) {
 	isTACError = true;
       } else {
@@ -150,6 +159,16 @@ public class TACMessage {
     }
   }
 
+  /**
+   * Drops the received message.  Called by connections that frame the
+   * replies directly in a reused buffer once the message has been
+   * delivered, since the message contents are no longer valid.
+   */
+  void releaseReceivedMessage() {
+    receivedMessage = null;
+    parser.reset(null);
+  }
+
   public void setParameter(String name, String value) {
     msg.add(name);
     msg.add(value);
@@ -177,79 +196,39 @@ public class TACMessage {
   }
 
   public boolean nextTag() {
-    if (pos < receivedMessage.length()) {
-      int nextPos = receivedMessage.indexOf('<', pos);
-      if (nextPos >= 0) {
-	pos = nextPos + 1;
-	return true;
-      }
-    }
-    return false;
+    return parser.nextTag();
   }
 
   public String getValue() {
-    int start = receivedMessage.indexOf('>', pos);
-    int end = receivedMessage.indexOf('<', start);
-    if (start > 0 && end > 0) {
-      return receivedMessage.substring(start + 1, end);
-    }
-    return null;
+    return parser.getValue();
   }
 
   public int getValueAsInt(int def) {
-    String val = getValue();
-    if (val != null) {
-      try {
-	return Integer.parseInt(val);
-      } catch (Exception e) {
-      }
-    }
-    return def;
+    return parser.getValueAsInt(def);
   }
 
   public long getValueAsLong(long def) {
-    String val = getValue();
-    if (val != null) {
-      try {
-	return Long.parseLong(val);
-      } catch (Exception e) {
-      }
-    }
-    return def;
+    return parser.getValueAsLong(def);
   }
 
   public float getValueAsFloat(float def) {
-    String val = getValue();
-    if (val != null) {
-      try {
-	return Float.parseFloat(val);
-      } catch (Exception e) {
-      }
-    }
-    return def;
+    return parser.getValueAsFloat(def);
   }
 
   public String getTag() {
-    int end = receivedMessage.indexOf('>', pos);
-    if (end > 0) {
-      return receivedMessage.substring(pos, end);
-    }
-    return null;
+    return parser.getTag();
   }
 
   public boolean isDeclaration() {
-    return pos < receivedMessage.length()
-      && receivedMessage.charAt(pos) == '?';
+    return parser.isDeclaration();
   }
 
   public boolean isTag(String name) {
-    name = name + '>';
-    int len = name.length();
-    return receivedMessage.regionMatches(pos, name, 0, len);
+    return parser.isTag(name);
   }
 
 //   public void reset() {
-//     pos = 0;
+//     parser.rewind();
 //   }
 
   public String getMessageString() {
@@ -267,10 +246,17 @@ public class TACMessage {
       this.sentMessage = sb.toString();
       // Timestamp the generation of this message (when it was sent)
       this.timeSent = System.currentTimeMillis();
+      // Only the messages whose replies are awaited are measured
+      if (receiver != null) {
+	MessageMetrics.getDefault().sent(this);
+      }
       return sb.append('\0').toString();
     } else {
       // Timestamp the generation of this message (when it was sent)
       this.timeSent = System.currentTimeMillis();
+      if (receiver != null) {
+	MessageMetrics.getDefault().sent(this);
+      }
       return message + '\0';
     }
   }
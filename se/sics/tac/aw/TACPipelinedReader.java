@@ -0,0 +1,350 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * TACPipelinedReader
+ *
+ * Purpose :
+ *   A TACConnection that keeps several requests outstanding on the
+ *   same socket.  Messages are queued by the senders and written by a
+ *   separate writer thread which coalesces everything queued into a
+ *   single write and flush, so a burst of quote requests goes out as
+ *   one packet instead of one synchronized write per message.
+ *
+ *   The TAC server answers the requests on a connection in the order
+ *   they were received.  Each request is given a sequence number when
+ *   it is queued, and since the requests are written in that order
+ *   each reply answers the request with the next sequence number.  The
+ *   requests in flight are kept in a ring indexed by their sequence
+ *   numbers, whose size bounds the number of requests in flight; when
+ *   the window is full the messages stay queued (the senders are never
+ *   blocked since replies are delivered on the reader thread which
+ *   itself sends new messages).
+ *
+ *   sendRequest() returns a TACRequest that completes when the reply
+ *   has been delivered, or fails when the connection is lost.
+ *
+ *   Use it by setting 'connection=se.sics.tac.aw.TACPipelinedReader'
+ *   in the configuration file.
+ */
+
+package se.sics.tac.aw;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.botbox.util.ArrayQueue;
+
+public class TACPipelinedReader extends TACConnection implements Runnable {
+
+  private static final Logger log =
+    Logger.getLogger(TACPipelinedReader.class.getName());
+
+  /** The maximal number of requests awaiting a reply */
+  public final static int WINDOW_SIZE = 32;
+
+  private InputStream input;
+  private Writer output;
+  private Socket socket;
+
+  private final Object lock = new Object();
+  // Requests not yet written to the server
+  private final ArrayQueue outbound = new ArrayQueue();
+  // Requests written to the server and awaiting replies, by sequence
+  // number modulo the window size
+  private final TACRequest[] inFlight = new TACRequest[WINDOW_SIZE];
+  private int nextRequestID = 1;
+  // The sequence numbers of the next request to write and to reply to
+  private int nextWriteID = 1;
+  private int nextReplyID = 1;
+  private volatile boolean disconnected = true;
+
+  // Statistics
+  private int maxInFlight = 0;
+  private int maxQueued = 0;
+  private long windowStalls = 0;
+  private long writes = 0;
+  private long messagesWritten = 0;
+
+  protected void init() {
+    doConnect();
+  }
+
+  public boolean isConnected() {
+    return !disconnected;
+  }
+
+  public void disconnect() {
+    disconnected = true;
+    synchronized (lock) {
+      lock.notifyAll();
+    }
+    if (socket != null) {
+      try {
+	output.close();
+	input.close();
+	socket.close();
+      } catch (Exception e) {
+	log.log(Level.SEVERE,"could not close connection:", e);
+      } finally {
+	socket = null;
+      }
+    }
+    failPending(new IOException("Disconnected from server"));
+  }
+
+  public void sendMessage(TACMessage msg) throws IOException {
+    send(msg);
+  }
+
+  /**
+   * Queues the message and returns its request, which is completed
+   * after the reply has been delivered to the message receiver.
+   */
+  public TACRequest sendRequest(TACMessage msg, TACMessageReceiver rcv)
+    throws IOException
+  {
+    msg.setMessageReceiver(rcv);
+    return send(msg);
+  }
+
+  private TACRequest send(TACMessage msg) throws IOException {
+    if (disconnected) {
+      throw new IOException("Disconnected from server");
+    }
+    synchronized (lock) {
+      TACRequest request = new TACRequest(nextRequestID++, msg);
+      outbound.add(request);
+      if (outbound.size() > maxQueued) {
+	maxQueued = outbound.size();
+      }
+      lock.notifyAll();
+      return request;
+    }
+  }
+
+
+  // -------------------------------------------------------------------
+  // Statistics
+  // -------------------------------------------------------------------
+
+  public int getInFlight() {
+    synchronized (lock) {
+      return nextWriteID - nextReplyID;
+    }
+  }
+
+  public int getQueued() {
+    synchronized (lock) {
+      return outbound.size();
+    }
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public int getMaxQueued() {
+    return maxQueued;
+  }
+
+  /** Returns the number of times queued messages had to wait for the window */
+  public long getWindowStalls() {
+    return windowStalls;
+  }
+
+  /** Returns the average number of messages written per flush */
+  public float getAverageBatchSize() {
+    return writes == 0 ? 0f : (float) messagesWritten / writes;
+  }
+
+
+  // -------------------------------------------------------------------
+  // Writer thread
+  // -------------------------------------------------------------------
+
+  private void writeLoop() {
+    StringBuffer batch = new StringBuffer();
+    try {
+      while (!disconnected) {
+	synchronized (lock) {
+	  while (!disconnected
+		 && (outbound.isEmpty()
+		     || nextWriteID - nextReplyID >= WINDOW_SIZE)) {
+	    if (!outbound.isEmpty()) {
+	      windowStalls++;
+	    }
+	    lock.wait();
+	  }
+	  if (disconnected) {
+	    break;
+	  }
+	  batch.setLength(0);
+	  int count = 0;
+	  while (!outbound.isEmpty()
+		 && nextWriteID - nextReplyID < WINDOW_SIZE) {
+	    TACRequest request = (TACRequest) outbound.remove(0);
+	    // Must be in flight before it is written since the reply
+	    // might arrive before the write returns.
+	    inFlight[nextWriteID++ % WINDOW_SIZE] = request;
+	    batch.append(request.getMessage().getMessageString());
+	    count++;
+	  }
+	  if (nextWriteID - nextReplyID > maxInFlight) {
+	    maxInFlight = nextWriteID - nextReplyID;
+	  }
+	  messagesWritten += count;
+	  writes++;
+	}
+	output.write(batch.toString());
+	output.flush();
+      }
+    } catch (Throwable e) {
+      if (!disconnected) {
+	log.log(Level.SEVERE, "could not write:", e);
+	disconnect();
+      }
+    }
+  }
+
+
+  // -------------------------------------------------------------------
+  // Reader thread
+  // -------------------------------------------------------------------
+
+  public void run() {
+    try {
+      byte[] buffer = new byte[4096];
+      ByteArrayOutputStream lastMessage = new ByteArrayOutputStream();
+      int len;
+      int lastPos;
+
+      while (!disconnected && (len = input.read(buffer)) != -1) {
+	lastPos = 0;
+	for (int i = 0; i < len; i++) {
+	  if (buffer[i] == 0) {
+	    String msg;
+	    if (lastMessage.size() == 0) {
+	      msg = new String(buffer, lastPos, i - lastPos);
+	    } else {
+	      lastMessage.write(buffer, lastPos, i - lastPos);
+	      msg = lastMessage.toString();
+	      lastMessage.reset();
+	    }
+	    handleMessage(msg);
+	    lastPos = i + 1;
+	  }
+	}
+	if (lastPos < len) {
+	  lastMessage.write(buffer, lastPos, len - lastPos);
+	}
+      }
+    } catch (Throwable e) {
+      if (!disconnected) {
+	log.log(Level.SEVERE, "could not read:", e);
+      }
+    } finally {
+      // There is no agent when the connection was started directly
+      if (agent != null) {
+	agent.reset(0, this);
+      }
+    }
+  }
+
+  private void handleMessage(String msg) {
+    TACRequest request;
+    synchronized (lock) {
+      if (nextReplyID == nextWriteID) {
+	throw new IllegalStateException("received unexpected message: "
+					+ msg);
+      }
+      // The replies come in the order the requests were written
+      int index = nextReplyID++ % WINDOW_SIZE;
+      request = inFlight[index];
+      inFlight[index] = null;
+      // Room in the window for more messages
+      lock.notifyAll();
+    }
+    if (!disconnected) {
+      TACMessage message = request.getMessage();
+      message.setReceivedMessage(msg);
+      message.deliverMessage();
+      request.complete();
+    } else {
+      request.fail(new IOException("Disconnected from server"));
+    }
+  }
+
+  // Fails the requests that will never be answered
+  private void failPending(IOException error) {
+    TACRequest[] pending;
+    synchronized (lock) {
+      int count = nextWriteID - nextReplyID;
+      pending = new TACRequest[count + outbound.size()];
+      for (int i = 0; i < count; i++) {
+	int index = nextReplyID++ % WINDOW_SIZE;
+	pending[i] = inFlight[index];
+	inFlight[index] = null;
+      }
+      for (int i = 0, n = outbound.size(); i < n; i++) {
+	pending[count + i] = (TACRequest) outbound.get(i);
+      }
+      outbound.clear();
+      // The requests not written are skipped
+      nextWriteID = nextReplyID = nextRequestID;
+    }
+    for (int i = 0; i < pending.length; i++) {
+      pending[i].fail(error);
+    }
+  }
+
+  private void doConnect() {
+    try {
+      String host = agent.getHost();
+      int port = agent.getPort();
+      log.fine("Connecting to server " + host + ':' + port
+	       + " (pipelined, window " + WINDOW_SIZE + ')');
+      start(new Socket(host, port));
+
+      // Automatically login! The auth message is the first message
+      // queued and will therefore be the first message sent.
+      TACMessage msg = new TACMessage("auth");
+      msg.setParameter("userName", agent.getUser());
+      msg.setParameter("userPW", agent.getPassword());
+      msg.setMessageReceiver(agent);
+      sendMessage(msg);
+
+    } catch (Exception e) {
+      disconnected = true;
+      log.log(Level.SEVERE, "connection to server failed:", e);
+      socket = null;
+    }
+  }
+
+  /**
+   * Starts reading and writing messages on a socket connected to the
+   * server.  Called when the connection is initialized by the agent.
+   */
+  protected void start(Socket socket) throws IOException {
+    socket.setTcpNoDelay(true);
+    this.socket = socket;
+    input = socket.getInputStream();
+    output = new OutputStreamWriter(new BufferedOutputStream
+				    (socket.getOutputStream()));
+    disconnected = false;
+    new Thread(this, "tac-reader").start();
+    new Thread(new Runnable() {
+	public void run() {
+	  writeLoop();
+	}
+      }, "tac-writer").start();
+  }
+
+} // TACPipelinedReader
@@ -0,0 +1,150 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * TACRequest
+ *
+ * Purpose :
+ *   The completion of a message sent with
+ *   TACPipelinedReader.sendRequest().  The request is completed with
+ *   its message once the reply has been delivered to the message
+ *   receiver, or fails if the connection is lost before the reply
+ *   arrives.  Listeners are called on the thread that completes the
+ *   request, or at once if it is already done.
+ */
+
+package se.sics.tac.aw;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class TACRequest implements Future<TACMessage> {
+
+  /** Called when a request is completed or fails */
+  public interface Listener {
+    void requestCompleted(TACRequest request);
+  }
+
+  private final int id;
+  private final TACMessage msg;
+
+  private boolean done;
+  private IOException error;
+  private ArrayList<Listener> listeners;
+
+  TACRequest(int id, TACMessage msg) {
+    this.id = id;
+    this.msg = msg;
+  }
+
+  /** Returns the sequence number of the request on its connection */
+  public int getID() {
+    return id;
+  }
+
+  public TACMessage getMessage() {
+    return msg;
+  }
+
+  /** Returns the reason the request failed or null if it did not */
+  public synchronized IOException getError() {
+    return error;
+  }
+
+  public void addListener(Listener listener) {
+    synchronized (this) {
+      if (!done) {
+	if (listeners == null) {
+	  listeners = new ArrayList<Listener>();
+	}
+	listeners.add(listener);
+	return;
+      }
+    }
+    listener.requestCompleted(this);
+  }
+
+  void complete() {
+    finish(null);
+  }
+
+  void fail(IOException error) {
+    finish(error);
+  }
+
+  private void finish(IOException error) {
+    ArrayList<Listener> listeners;
+    synchronized (this) {
+      if (done) {
+	return;
+      }
+      done = true;
+      this.error = error;
+      listeners = this.listeners;
+      this.listeners = null;
+      notifyAll();
+    }
+    if (listeners != null) {
+      for (int i = 0, n = listeners.size(); i < n; i++) {
+	listeners.get(i).requestCompleted(this);
+      }
+    }
+  }
+
+
+  // -------------------------------------------------------------------
+  // Future
+  // -------------------------------------------------------------------
+
+  /** Requests can not be cancelled once sent */
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    return false;
+  }
+
+  public boolean isCancelled() {
+    return false;
+  }
+
+  public synchronized boolean isDone() {
+    return done;
+  }
+
+  public synchronized TACMessage get()
+    throws InterruptedException, ExecutionException
+  {
+    while (!done) {
+      wait();
+    }
+    return getResult();
+  }
+
+  public synchronized TACMessage get(long timeout, TimeUnit unit)
+    throws InterruptedException, ExecutionException, TimeoutException
+  {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!done) {
+      long left = deadline - System.nanoTime();
+      if (left <= 0) {
+	throw new TimeoutException(toString());
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, left);
+    }
+    return getResult();
+  }
+
+  private TACMessage getResult() throws ExecutionException {
+    if (error != null) {
+      throw new ExecutionException(error);
+    }
+    return msg;
+  }
+
+  public String toString() {
+    return "Request[" + id + ',' + msg.getType() + ']';
+  }
+
+} // TACRequest
@@ -0,0 +1,265 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * TagParser
+ *
+ * Purpose :
+ *   A cursor style pull parser for the flat XML messages of the TAC
+ *   protocol.  The parser works on any CharSequence (a String or a
+ *   ByteSequence view of a network buffer) and moves a position from
+ *   tag to tag.  Numeric values are parsed directly from the message
+ *   without creating intermediate Strings; only getTag() and getValue()
+ *   allocate.
+ */
+
+package se.sics.tac.aw;
+
+public class TagParser {
+
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+  };
+
+  // Mantissas with more digits than this can not be parsed exactly
+  private static final int MAX_DIGITS = 15;
+
+  private CharSequence message;
+  private int pos = 0;
+
+  public TagParser() {
+  }
+
+  public TagParser(CharSequence message) {
+    reset(message);
+  }
+
+  public void reset(CharSequence message) {
+    this.message = message;
+    this.pos = 0;
+  }
+
+  public CharSequence getMessage() {
+    return message;
+  }
+
+  /** Resets the cursor to the start of the message */
+  public void rewind() {
+    pos = 0;
+  }
+
+  /**
+   * Moves to the next tag (opening or closing).  Returns false if there
+   * are no more tags in the message.
+   */
+  public boolean nextTag() {
+    if (pos < message.length()) {
+      int nextPos = indexOf('<', pos);
+      if (nextPos >= 0) {
+	pos = nextPos + 1;
+	return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean isDeclaration() {
+    return pos < message.length() && message.charAt(pos) == '?';
+  }
+
+  public boolean isTag(String name) {
+    CharSequence message = this.message;
+    int len = name.length();
+    if (pos + len >= message.length()) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      if (message.charAt(pos + i) != name.charAt(i)) {
+	return false;
+      }
+    }
+    return message.charAt(pos + len) == '>';
+  }
+
+  public String getTag() {
+    int end = indexOf('>', pos);
+    if (end > 0) {
+      return message.subSequence(pos, end).toString();
+    }
+    return null;
+  }
+
+  public String getValue() {
+    int start = indexOf('>', pos);
+    int end = indexOf('<', start);
+    if (start > 0 && end > 0) {
+      return message.subSequence(start + 1, end).toString();
+    }
+    return null;
+  }
+
+  public int getValueAsInt(int def) {
+    long value = getValueAsLong(Long.MIN_VALUE);
+    if (value == Long.MIN_VALUE
+	|| value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      return def;
+    }
+    return (int) value;
+  }
+
+  public long getValueAsLong(long def) {
+    int start = indexOf('>', pos);
+    int end = indexOf('<', start);
+    if (start <= 0 || end <= 0) {
+      return def;
+    }
+    CharSequence message = this.message;
+    int i = start + 1;
+    if (i == end) {
+      return def;
+    }
+    boolean negative = false;
+    char c = message.charAt(i);
+    if (c == '-' || c == '+') {
+      negative = c == '-';
+      if (++i == end) {
+	return def;
+      }
+    }
+    // Accumulate negatively to be able to represent Long.MIN_VALUE
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long multmin = limit / 10;
+    long result = 0;
+    for (; i < end; i++) {
+      int digit = message.charAt(i) - '0';
+      if (digit < 0 || digit > 9 || result < multmin) {
+	return def;
+      }
+      result *= 10;
+      if (result < limit + digit) {
+	return def;
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  public float getValueAsFloat(float def) {
+    double value = getValueAsDouble(Double.NaN);
+    if (Double.isNaN(value)) {
+      // Either not a number or a format not handled here (NaN,
+      // Infinity, hex floats, too many digits...)
+      String val = getValue();
+      if (val != null) {
+	try {
+	  return Float.parseFloat(val);
+	} catch (Exception e) {
+	}
+      }
+      return def;
+    }
+    return (float) value;
+  }
+
+  /**
+   * Parses decimal values such as "-123.45" or "1.5E3".  Returns def for
+   * anything that can not be parsed exactly in place.
+   */
+  private double getValueAsDouble(double def) {
+    int start = indexOf('>', pos);
+    int end = indexOf('<', start);
+    if (start <= 0 || end <= 0) {
+      return def;
+    }
+    CharSequence message = this.message;
+    int i = start + 1;
+    boolean negative = false;
+    if (i < end) {
+      char c = message.charAt(i);
+      if (c == '-' || c == '+') {
+	negative = c == '-';
+	i++;
+      }
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean hasPoint = false;
+    boolean hasDigits = false;
+    for (; i < end; i++) {
+      char c = message.charAt(i);
+      if (c >= '0' && c <= '9') {
+	hasDigits = true;
+	if (mantissa != 0 || c != '0') {
+	  if (++digits > MAX_DIGITS) {
+	    return def;
+	  }
+	}
+	mantissa = mantissa * 10 + (c - '0');
+	if (hasPoint) {
+	  scale--;
+	}
+      } else if (c == '.' && !hasPoint) {
+	hasPoint = true;
+      } else {
+	break;
+      }
+    }
+    if (!hasDigits) {
+      return def;
+    }
+    if (i < end) {
+      char c = message.charAt(i);
+      if (c != 'e' && c != 'E' || ++i == end) {
+	return def;
+      }
+      boolean negativeExp = false;
+      c = message.charAt(i);
+      if (c == '-' || c == '+') {
+	negativeExp = c == '-';
+	if (++i == end) {
+	  return def;
+	}
+      }
+      int exp = 0;
+      for (; i < end; i++) {
+	int digit = message.charAt(i) - '0';
+	if (digit < 0 || digit > 9 || exp > 1000) {
+	  return def;
+	}
+	exp = exp * 10 + digit;
+      }
+      scale += negativeExp ? -exp : exp;
+    }
+
+    double value = mantissa;
+    if (scale < 0) {
+      if (-scale >= POWERS_OF_TEN.length) {
+	return def;
+      }
+      value /= POWERS_OF_TEN[-scale];
+    } else if (scale > 0) {
+      if (scale >= POWERS_OF_TEN.length) {
+	return def;
+      }
+      value *= POWERS_OF_TEN[scale];
+    }
+    return negative ? -value : value;
+  }
+
+  private int indexOf(char c, int fromIndex) {
+    CharSequence message = this.message;
+    if (fromIndex < 0) {
+      fromIndex = 0;
+    }
+    for (int i = fromIndex, n = message.length(); i < n; i++) {
+      if (message.charAt(i) == c) {
+	return i;
+      }
+    }
+    return -1;
+  }
+
+} // TagParser
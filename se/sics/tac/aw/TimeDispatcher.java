@@ -28,13 +28,40 @@
  *
  *   A TimeDispatcher object is obtained by calling
  *   TimeDispatcher.getDefault().
+ *
+ *   Tasks are kept in a priority queue ordered by time (and by order
+ *   of addition for tasks with the same time).  The dispatcher thread
+ *   sleeps until the earliest deadline and then hands the task to a
+ *   small pool of worker threads so that a slow task does not delay
+ *   the tasks scheduled after it.  The work of one Task object is
+ *   still performed one at a time and in deadline order, so that its
+ *   performWork need not be thread safe: work that falls due while the
+ *   task is busy waits for it.  Cancelled tasks are only marked as
+ *   cancelled and are dropped when they reach the head of the queue.
  */
 
 package se.sics.tac.aw;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import se.sics.tac.util.Clock;
 
 public class TimeDispatcher extends Thread {
 
+  private static final Logger log =
+    Logger.getLogger(TimeDispatcher.class.getName());
+
+  /** The number of threads used to perform the tasks */
+  private final static int WORKERS = 2;
+
   private static TimeDispatcher dispatcher;
 
   public static TimeDispatcher getDefault() {
@@ -48,76 +75,240 @@ public class TimeDispatcher extends Thread {
     return dispatcher;
   }
 
-  private ArrayList list = new ArrayList();
+  private final PriorityQueue<TaskHolder> queue =
+    new PriorityQueue<TaskHolder>();
+  // (key, task) -> scheduled task holders, used for cancellation
+  private final HashMap<TaskKey,ArrayList<TaskHolder>> scheduled =
+    new HashMap<TaskKey,ArrayList<TaskHolder>>();
+  private final ExecutorService workers;
+  // The tasks being performed, with the work waiting for each of them
+  private final IdentityHashMap<Task,ArrayDeque<TaskHolder>> busy =
+    new IdentityHashMap<Task,ArrayDeque<TaskHolder>>();
   private long timeDiff;
+  private long sequence;
+  private int cancelled;
 
   private TimeDispatcher() {
     super("timer");
+    workers = Executors.newFixedThreadPool(WORKERS, new ThreadFactory() {
+	private int count = 0;
+	public Thread newThread(Runnable r) {
+	  Thread t = new Thread(r, "timer-worker-" + (++count));
+	  t.setDaemon(true);
+	  return t;
+	}
+      });
     start();
   }
 
-  public void setTimeDiff(long timeDiff) {
+  public synchronized void setTimeDiff(long timeDiff) {
     this.timeDiff = timeDiff;
+    // The deadlines might have moved
+    notify();
   }
 
   public synchronized
     void addTask(long time, Object key, Object value, Task task) {
-    list.add(new TaskHolder(time, key, value, task));
-    notify();
+    TaskHolder h = new TaskHolder(time, sequence++, key, value, task);
+    TaskKey k = new TaskKey(key, task);
+    ArrayList<TaskHolder> list = scheduled.get(k);
+    if (list == null) {
+      list = new ArrayList<TaskHolder>(2);
+      scheduled.put(k, list);
+    }
+    list.add(h);
+    queue.add(h);
+    // Only wake up the dispatcher if the earliest deadline changed
+    if (queue.peek() == h) {
+      notify();
+    }
   }
 
   public synchronized void cancelTask(Object key, Task task) {
-    for (int i = 0, n = list.size(); i < n; i++) {
-      TaskHolder h = (TaskHolder) list.get(i);
-      if (h.key == key && h.task == task) {
-	list.remove(i);
-	i--; n--;
+    ArrayList<TaskHolder> list = scheduled.remove(new TaskKey(key, task));
+    if (list != null) {
+      for (int i = 0, n = list.size(); i < n; i++) {
+	list.get(i).cancelled = true;
+      }
+      cancelled += list.size();
+      if (cancelled > 64 && cancelled > queue.size() / 2) {
+	purge();
+      }
+    }
+  }
+
+  // Removes all cancelled tasks from the queue
+  private void purge() {
+    ArrayList<TaskHolder> live = new ArrayList<TaskHolder>(queue.size());
+    for (TaskHolder h : queue) {
+      if (!h.cancelled) {
+	live.add(h);
       }
     }
+    queue.clear();
+    queue.addAll(live);
+    cancelled = 0;
+  }
+
+  // Removes the holder from the cancellation index after it has been
+  // taken from the queue
+  private void unschedule(TaskHolder h) {
+    TaskKey k = new TaskKey(h.key, h.task);
+    ArrayList<TaskHolder> list = scheduled.get(k);
+    if (list != null && list.remove(h) && list.isEmpty()) {
+      scheduled.remove(k);
+    }
   }
 
   private synchronized TaskHolder nextTask() {
+    Clock clock = Clock.getDefault();
     do {
-      long currentTime = System.currentTimeMillis() - timeDiff;
-      for (int i = 0, n = list.size(); i < n; i++) {
-	TaskHolder h = (TaskHolder) list.get(i);
-	if (h.time <= currentTime) {
-	  list.remove(i);
-	  return h;
-	}
+      TaskHolder h = queue.peek();
+      if (h != null && h.cancelled) {
+	queue.poll();
+	cancelled--;
+	continue;
+      }
+
+      long delay = h == null
+	? 0L
+	: h.time - (clock.currentTimeMillis() - timeDiff);
+      if (h != null && delay <= 0) {
+	queue.poll();
+	unschedule(h);
+	return h;
       }
       try {
-	wait(1000);
-      } catch (Exception e) {
-	e.printStackTrace();
+	// A delay of zero means wait until a task is added
+	clock.waitOn(this, delay);
+      } catch (InterruptedException e) {
+	log.log(Level.WARNING, "timer interrupted", e);
       }
     } while (true);
   }
 
   public void run() {
     do {
-      TaskHolder h = nextTask();
-      try {
-	h.task.performWork(h.time, h.key, h.value);
-      } catch (Exception e) {
-	e.printStackTrace();
+      final TaskHolder h = nextTask();
+      if (queueWork(h)) {
+	workers.execute(new TaskRunner(h.task));
       }
     } while (true);
   }
 
+  // Queues the work for its task and returns true if the task is idle
+  // and a runner must be started for it
+  private boolean queueWork(TaskHolder h) {
+    synchronized (busy) {
+      ArrayDeque<TaskHolder> work = busy.get(h.task);
+      boolean idle = work == null;
+      if (idle) {
+	work = new ArrayDeque<TaskHolder>(2);
+	busy.put(h.task, work);
+      }
+      work.add(h);
+      return idle;
+    }
+  }
+
+  // Returns the next work of the task, or null (and marks the task as
+  // idle) if there is none
+  private TaskHolder nextWork(Task task) {
+    synchronized (busy) {
+      ArrayDeque<TaskHolder> work = busy.get(task);
+      TaskHolder h = work.poll();
+      if (h == null) {
+	busy.remove(task);
+      }
+      return h;
+    }
+  }
+
+  // Performs the work of one task until there is no more
+  private class TaskRunner implements Runnable {
+    private final Task task;
+
+    public TaskRunner(Task task) {
+      this.task = task;
+    }
+
+    public void run() {
+      boolean done = false;
+      try {
+	TaskHolder h;
+	while ((h = nextWork(task)) != null) {
+	  h.run();
+	}
+	done = true;
+      } finally {
+	if (!done) {
+	  // The work threw an error: go on with the rest in a new thread
+	  workers.execute(this);
+	}
+      }
+    }
+  }
+
 
-  private static class TaskHolder {
-    public long time;
-    public Object key;
-    public Object value;
-    public Task task;
+  private static class TaskHolder implements Comparable<TaskHolder>,
+					      Runnable {
+    public final long time;
+    public final long sequence;
+    public final Object key;
+    public final Object value;
+    public final Task task;
+    public volatile boolean cancelled;
 
-    public TaskHolder(long time, Object key, Object value, Task task) {
+    public TaskHolder(long time, long sequence, Object key, Object value,
+		      Task task) {
       this.time = time;
+      this.sequence = sequence;
       this.key = key;
       this.value = value;
       this.task = task;
     }
+
+    public int compareTo(TaskHolder o) {
+      if (time != o.time) {
+	return time < o.time ? -1 : 1;
+      }
+      return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+    }
+
+    public void run() {
+      if (cancelled) {
+	return;
+      }
+      try {
+	task.performWork(time, key, value);
+      } catch (Exception e) {
+	log.log(Level.SEVERE, "task could not perform work for " + key, e);
+      }
+    }
+  }
+
+  // Tasks are cancelled by key and task identity
+  private static class TaskKey {
+    private final Object key;
+    private final Task task;
+
+    public TaskKey(Object key, Task task) {
+      this.key = key;
+      this.task = task;
+    }
+
+    public int hashCode() {
+      return System.identityHashCode(key) * 31
+	+ System.identityHashCode(task);
+    }
+
+    public boolean equals(Object o) {
+      if (!(o instanceof TaskKey)) {
+	return false;
+      }
+      TaskKey k = (TaskKey) o;
+      return k.key == key && k.task == task;
+    }
   }
 
 } // TimeDispatcher
@@ -0,0 +1,95 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * Clock
+ *
+ * Purpose :
+ *   The source of time for the agentware.  All game times, timers and
+ *   timeouts are taken from Clock.getDefault() instead of the system
+ *   clock so that games can be played faster than real time.
+ *
+ *   A clock with speed 1 is the system clock.  A clock with speed 100
+ *   runs from the time it was created at 100 times the system clock,
+ *   and sleeps and waits are shortened by the same factor, so a game
+ *   of 540 seconds takes 5.4 seconds.  This is only meaningful when
+ *   the server uses the same clock, i.e. with the local market in the
+ *   same virtual machine (see se.sics.tac.aw.TACLocalConnection).
+ *
+ *   Other clocks, for example one that is advanced by a simulation,
+ *   can be installed by subclassing and overriding the methods.
+ */
+
+package se.sics.tac.util;
+
+public class Clock {
+
+  private static volatile Clock defaultClock = new Clock(1.0);
+
+  public static Clock getDefault() {
+    return defaultClock;
+  }
+
+  public static void setDefault(Clock clock) {
+    if (clock == null) {
+      throw new NullPointerException();
+    }
+    defaultClock = clock;
+  }
+
+  private final double speed;
+  // The system time when the clock was created, where both agree
+  private final long origin;
+
+  public Clock(double speed) {
+    if (!(speed > 0.0)) {
+      throw new IllegalArgumentException("clock speed must be positive: "
+					 + speed);
+    }
+    this.speed = speed;
+    this.origin = System.currentTimeMillis();
+  }
+
+  public double getSpeed() {
+    return speed;
+  }
+
+  /** Returns the current time in milliseconds */
+  public long currentTimeMillis() {
+    return toClockTime(System.currentTimeMillis());
+  }
+
+  /** Converts a system time (such as the time of a log record) */
+  public long toClockTime(long systemTime) {
+    return speed == 1.0
+      ? systemTime
+      : origin + (long) ((systemTime - origin) * speed);
+  }
+
+  /** Returns the system time in milliseconds a positive duration takes */
+  public long toSystemDuration(long millis) {
+    if (speed == 1.0 || millis <= 0) {
+      return millis;
+    }
+    long duration = (long) Math.ceil(millis / speed);
+    return duration > 0 ? duration : 1;
+  }
+
+  public void sleep(long millis) throws InterruptedException {
+    if (millis > 0) {
+      Thread.sleep(toSystemDuration(millis));
+    }
+  }
+
+  /**
+   * Waits on the monitor, which must be held by the caller, for at most
+   * the time.  A time of zero or less waits until notified.
+   */
+  public void waitOn(Object monitor, long millis)
+    throws InterruptedException
+  {
+    monitor.wait(millis > 0 ? toSystemDuration(millis) : 0L);
+  }
+
+} // Clock
@@ -0,0 +1,162 @@
+/**
+ * TAC AgentWare - TheGreaterFool extensions
+ *
+ * -----------------------------------------------------------------
+ *
+ * LatencyHistogram
+ *
+ * Purpose :
+ *   Counts durations in fixed buckets whose bounds double from one
+ *   microsecond: bucket 0 holds durations under 1 us, bucket k > 0
+ *   durations from 2^(k-1) up to 2^k us, and the last bucket everything
+ *   longer.  Recording a duration is a few atomic increments and takes
+ *   no locks and no memory, so it can be done on every call of a hot
+ *   path.  Percentiles are only known to the upper bound of their
+ *   bucket, i.e. to within a factor of 2, which is enough to tell a
+ *   millisecond from a second.
+ *
+ *   Durations may be recorded from several threads and read from
+ *   others.  A reading taken while durations are recorded may mix
+ *   counts from before and after a recording.
+ */
+
+package se.sics.tac.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+
+  public static final int BUCKETS = 32;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /** Records a duration in nanoseconds */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    counts.incrementAndGet(getBucket(nanos));
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+      max = maxNanos.get();
+    }
+  }
+
+  /** Records the time since System.nanoTime() returned startNanos */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /** Returns the bucket of a duration in nanoseconds */
+  public static int getBucket(long nanos) {
+    long micros = nanos / 1000;
+    int bucket = 64 - Long.numberOfLeadingZeros(micros);
+    return bucket < BUCKETS ? bucket : BUCKETS - 1;
+  }
+
+  /** Returns the upper bound of the bucket in microseconds */
+  public static long getBucketLimit(int bucket) {
+    return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getCount(int bucket) {
+    return counts.get(bucket);
+  }
+
+  public long getTotalNanos() {
+    return totalNanos.get();
+  }
+
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  public double getMeanMicros() {
+    long n = count.get();
+    return n == 0 ? 0.0 : totalNanos.get() / 1000.0 / n;
+  }
+
+  public double getMaxMicros() {
+    return maxNanos.get() / 1000.0;
+  }
+
+  /**
+   * Returns the duration in microseconds that the fraction (0 - 1) of
+   * the recorded durations do not exceed: the upper bound of the bucket
+   * the percentile falls in, or the longest duration if that is less.
+   * Returns 0 if nothing has been recorded.
+   */
+  public double getPercentileMicros(double fraction) {
+    long n = count.get();
+    if (n == 0) {
+      return 0.0;
+    }
+    long rank = (long) Math.ceil(fraction * n);
+    if (rank < 1) {
+      rank = 1;
+    }
+    double max = getMaxMicros();
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+	long limit = getBucketLimit(i);
+	return limit < max ? limit : max;
+      }
+    }
+    return max;
+  }
+
+  /** Adds the durations recorded by another histogram */
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.addAndGet(i, other.counts.get(i));
+    }
+    count.addAndGet(other.count.get());
+    totalNanos.addAndGet(other.totalNanos.get());
+    long otherMax = other.maxNanos.get();
+    long max = maxNanos.get();
+    while (otherMax > max && !maxNanos.compareAndSet(max, otherMax)) {
+      max = maxNanos.get();
+    }
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0L);
+    }
+    count.set(0L);
+    totalNanos.set(0L);
+    maxNanos.set(0L);
+  }
+
+  /** Formats a duration in microseconds with a unit, e.g. "12us" or "1.5ms" */
+  public static String formatMicros(double micros) {
+    if (micros < 1000.0) {
+      return Math.round(micros) + "us";
+    } else if (micros < 1000000.0) {
+      return String.format("%.1fms", micros / 1000.0);
+    } else {
+      return String.format("%.2fs", micros / 1000000.0);
+    }
+  }
+
+  public String toString() {
+    return "n=" + getCount()
+      + " mean=" + formatMicros(getMeanMicros())
+      + " p50<=" + formatMicros(getPercentileMicros(0.5))
+      + " p99<=" + formatMicros(getPercentileMicros(0.99))
+      + " max=" + formatMicros(getMaxMicros());
+  }
+
+} // LatencyHistogram
@@ -48,7 +48,8 @@ public class LogFormatter extends Formatter {
 
   public synchronized String format(LogRecord record) {
     StringBuffer sb = new StringBuffer();
-    date.setTime(record.getMillis() + timeDiff);
+    date.setTime(Clock.getDefault().toClockTime(record.getMillis())
+		 + timeDiff);
     sb.append(dFormat.format(date)).append(' ')
       .append(record.getLevel()).append(' ')
       .append(getAliasFor(record.getLoggerName())).append('|')